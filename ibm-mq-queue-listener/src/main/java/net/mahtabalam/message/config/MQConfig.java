@@ -0,0 +1,208 @@
+package net.mahtabalam.message.config;
+
+import net.mahtabalam.message.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Application configuration, resolved in this order (last one wins):
+ * <ol>
+ *     <li>the properties file bundled on the classpath</li>
+ *     <li>an external properties file given with -Dmq.config=path</li>
+ *     <li>environment variables, e.g. MQ_QUEUE_MANAGER overrides mq.queueManager</li>
+ * </ol>
+ * Keys starting with "tuning." are safe to change at runtime: when the external
+ * file changes, listeners registered with onChange() receive the new value.
+ * Other keys only take effect after a restart.
+ */
+public class MQConfig {
+
+    public static final String CONFIG_FILE_PROPERTY = "mq.config";
+    private static final Logger LOG = Logger.getLogger(MQConfig.class);
+    private static final String RELOADABLE_PREFIX = "tuning.";
+
+    private final String resourceName;
+    private final Path externalFile;
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+    private volatile Properties properties;
+    private long externalFileModified;
+    private ScheduledExecutorService watcher;
+
+    private MQConfig(String resourceName, Path externalFile) {
+        this.resourceName = resourceName;
+        this.externalFile = externalFile;
+    }
+
+    /**
+     * Load the classpath resource plus the -Dmq.config file and environment overrides
+     */
+    public static MQConfig load(String resourceName) {
+        String externalPath = System.getProperty(CONFIG_FILE_PROPERTY);
+        MQConfig config = new MQConfig(resourceName, externalPath != null ? Paths.get(externalPath) : null);
+        try {
+            config.properties = config.read();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load configuration " + resourceName + ": " + e.getMessage(), e);
+        }
+        LOG.info("✓ Configuration loaded from {}{}", resourceName, externalPath != null ? " and " + externalPath : "");
+        return config;
+    }
+
+    private Properties read() throws IOException {
+        Properties merged = new Properties();
+        try (InputStream in = MQConfig.class.getClassLoader().getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IOException("Resource not found on classpath: " + resourceName);
+            }
+            merged.load(in);
+        }
+        if (externalFile != null) {
+            externalFileModified = Files.getLastModifiedTime(externalFile).toMillis();
+            try (Reader reader = Files.newBufferedReader(externalFile, StandardCharsets.UTF_8)) {
+                merged.load(reader);
+            }
+        }
+        for (String key : merged.stringPropertyNames()) {
+            String override = System.getenv(toEnvironmentName(key));
+            if (override != null) {
+                merged.setProperty(key, override);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * mq.queueManager becomes MQ_QUEUE_MANAGER
+     */
+    static String toEnvironmentName(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.' || c == '-') {
+                name.append('_');
+            } else if (Character.isUpperCase(c)) {
+                name.append('_').append(c);
+            } else {
+                name.append(Character.toUpperCase(c));
+            }
+        }
+        return name.toString();
+    }
+
+    public String getString(String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalStateException("Missing configuration key: " + key);
+        }
+        return value.trim();
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key) {
+        return parse(key, getString(key), Integer::parseInt);
+    }
+
+    public long getLong(String key) {
+        return parse(key, getString(key), Long::parseLong);
+    }
+
+    public double getDouble(String key) {
+        return parse(key, getString(key), Double::parseDouble);
+    }
+
+    public boolean getBoolean(String key) {
+        return Boolean.parseBoolean(getString(key));
+    }
+
+    private static <T> T parse(String key, String value, java.util.function.Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid value for " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Call the listener with the new value whenever a reloadable key changes
+     */
+    public void onChange(String key, Consumer<String> listener) {
+        if (!key.startsWith(RELOADABLE_PREFIX)) {
+            throw new IllegalArgumentException(key + " is not reloadable, only " + RELOADABLE_PREFIX + "* keys are");
+        }
+        listeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Poll the external configuration file for changes
+     */
+    public void startWatching(long intervalMs) {
+        if (externalFile == null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mq-config-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        LOG.info("✓ Watching {} for tuning changes", externalFile);
+    }
+
+    public void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    private void reloadIfChanged() {
+        try {
+            if (Files.getLastModifiedTime(externalFile).toMillis() == externalFileModified) {
+                return;
+            }
+            Properties previous = properties;
+            Properties updated = read();
+            properties = updated;
+
+            for (String key : updated.stringPropertyNames()) {
+                String newValue = updated.getProperty(key);
+                if (Objects.equals(previous.getProperty(key), newValue)) {
+                    continue;
+                }
+                if (!key.startsWith(RELOADABLE_PREFIX)) {
+                    LOG.warn("⚠ Configuration {} changed, restart required to apply it", key);
+                    continue;
+                }
+                LOG.info("✓ Configuration {} changed to {}", key, newValue);
+                for (Consumer<String> listener : listeners.getOrDefault(key, List.of())) {
+                    try {
+                        listener.accept(newValue.trim());
+                    } catch (RuntimeException e) {
+                        LOG.error("✗ Could not apply {}={}: {}", key, newValue, e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("✗ Error reloading configuration {}: {}", externalFile, e.getMessage());
+        }
+    }
+}
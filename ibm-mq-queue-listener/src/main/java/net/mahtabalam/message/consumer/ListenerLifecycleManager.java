@@ -0,0 +1,122 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drain-and-stop lifecycle for a message listener.
+ * Shutdown stops message intake, waits for in-flight handlers up to a deadline,
+ * commits or acknowledges the finished work and only then closes the consumer
+ * and the connection.
+ */
+public class ListenerLifecycleManager {
+
+    private static final Logger LOG = Logger.getLogger(ListenerLifecycleManager.class);
+
+    private final MQConnectionManager connectionManager;
+    private final MQMessageListener messageListener;
+    private final long drainTimeoutMs;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final AtomicBoolean stopping = new AtomicBoolean(false);
+
+    public ListenerLifecycleManager(MQConnectionManager connectionManager,
+                                    MQMessageListener messageListener,
+                                    long drainTimeoutMs) {
+        this.connectionManager = connectionManager;
+        this.messageListener = messageListener;
+        this.drainTimeoutMs = drainTimeoutMs;
+    }
+
+    /**
+     * Block the calling thread until shutdown() has completed
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    /**
+     * Drain in-flight messages and close all resources.
+     * Safe to call more than once, later callers wait for the first one to finish.
+     */
+    public void shutdown() {
+        if (!stopping.compareAndSet(false, true)) {
+            awaitQuietly();
+            return;
+        }
+
+        try {
+            LOG.info("Stopping message intake...");
+            boolean drained = stopIntake();
+            if (drained) {
+                LOG.info("✓ All in-flight messages completed");
+            } else {
+                LOG.error("✗ Drain deadline of {} ms reached with {} message(s) still in flight", drainTimeoutMs,
+                        messageListener.getInFlightCount());
+            }
+            completeUnitOfWork(drained);
+        } finally {
+            messageListener.close();
+            connectionManager.disconnect();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Connection.stop() blocks until running onMessage() calls return, so it is
+     * run on a helper thread to bound the wait by the drain deadline
+     */
+    private boolean stopIntake() {
+        Thread stopper = new Thread(() -> {
+            try {
+                connectionManager.getConnection().stop();
+            } catch (JMSException e) {
+                LOG.error("✗ Error stopping connection: {}", e.getMessage());
+            }
+        }, "mq-listener-drain");
+        stopper.setDaemon(true);
+        stopper.start();
+
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        try {
+            stopper.join(drainTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Messages already handed to processing lanes finish after onMessage() returned
+        boolean lanesIdle = messageListener.awaitIdle(Math.max(0, deadline - System.currentTimeMillis()));
+        return !stopper.isAlive() && lanesIdle && messageListener.getInFlightCount() == 0;
+    }
+
+    /**
+     * Acknowledge completed work. Work that did not finish before the deadline is
+     * left unacknowledged so the queue manager redelivers it after the close.
+     */
+    private void completeUnitOfWork(boolean drained) {
+        try {
+            Session session = connectionManager.getSession();
+            if (session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE && drained) {
+                messageListener.acknowledgeProcessed();
+                LOG.info("✓ Processed messages acknowledged");
+            }
+        } catch (JMSException e) {
+            LOG.error("✗ Error completing unit of work: {}", e.getMessage());
+        }
+    }
+
+    private void awaitQuietly() {
+        try {
+            terminated.await(drainTimeoutMs * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
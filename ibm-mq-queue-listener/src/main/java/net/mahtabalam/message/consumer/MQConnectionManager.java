@@ -2,6 +2,7 @@ package net.mahtabalam.message.consumer;
 
 import com.ibm.mq.jms.MQConnectionFactory;
 import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
 
 import javax.jms.Connection;
 import javax.jms.JMSException;
@@ -12,34 +13,42 @@ import javax.jms.Session;
  */
 public class MQConnectionManager {
 
+    private static final Logger LOG = Logger.getLogger(MQConnectionManager.class);
+
     private final String host;
     private final int port;
     private final String channel;
     private final String queueManager;
+    private final int acknowledgeMode;
 
     private MQConnectionFactory connectionFactory;
     private Connection connection;
     private Session session;
 
     public MQConnectionManager(String host, int port, String channel, String queueManager) {
+        this(host, port, channel, queueManager, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    public MQConnectionManager(String host, int port, String channel, String queueManager, int acknowledgeMode) {
         this.host = host;
         this.port = port;
         this.channel = channel;
         this.queueManager = queueManager;
+        this.acknowledgeMode = acknowledgeMode;
     }
 
     /**
      * Establishes connection to IBM MQ
      */
     public void connect() throws JMSException {
-        System.out.println("\n=========================================");
-        System.out.println("Connecting to IBM MQ...");
-        System.out.println("=========================================");
-        System.out.println("Host: " + host);
-        System.out.println("Port: " + port);
-        System.out.println("Channel: " + channel);
-        System.out.println("Queue Manager: " + queueManager);
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("Connecting to IBM MQ...");
+        LOG.info("=========================================");
+        LOG.info("Host: {}", host);
+        LOG.info("Port: {}", port);
+        LOG.info("Channel: {}", channel);
+        LOG.info("Queue Manager: {}", queueManager);
+        LOG.info("=========================================");
 
         // Create connection factory
         connectionFactory = new MQConnectionFactory();
@@ -52,40 +61,40 @@ public class MQConnectionManager {
         // Create connection
         connection = connectionFactory.createConnection();
 
-        // Create session (non-transacted, auto-acknowledge)
-        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        // Create session (non-transacted, auto-acknowledge unless configured otherwise)
+        session = connection.createSession(false, acknowledgeMode);
 
         // Start the connection (required for message listeners)
         connection.start();
 
-        System.out.println("✓ Successfully connected to IBM MQ\n");
+        LOG.info("✓ Successfully connected to IBM MQ");
     }
 
     /**
      * Disconnects from IBM MQ
      */
     public void disconnect() {
-        System.out.println("\nDisconnecting from IBM MQ...");
+        LOG.info("Disconnecting from IBM MQ...");
 
         try {
             if (session != null) {
                 session.close();
-                System.out.println("✓ Session closed");
+                LOG.info("✓ Session closed");
             }
         } catch (JMSException e) {
-            System.err.println("✗ Error closing session: " + e.getMessage());
+            LOG.error("✗ Error closing session: {}", e.getMessage());
         }
 
         try {
             if (connection != null) {
                 connection.close();
-                System.out.println("✓ Connection closed");
+                LOG.info("✓ Connection closed");
             }
         } catch (JMSException e) {
-            System.err.println("✗ Error closing connection: " + e.getMessage());
+            LOG.error("✗ Error closing connection: {}", e.getMessage());
         }
 
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
     }
 
     public Session getSession() {
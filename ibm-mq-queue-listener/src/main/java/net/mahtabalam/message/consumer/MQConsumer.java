@@ -1,6 +1,15 @@
 package net.mahtabalam.message.consumer;
 
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.BatchingFileSpanExporter;
+import net.mahtabalam.message.tracing.TraceSampler;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
+import javax.jms.Session;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * IBM MQ Consumer with Asynchronous Message Listener
@@ -8,81 +17,193 @@ import javax.jms.JMSException;
  */
 public class MQConsumer {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 1414;
-    private static final String CHANNEL = "SYSTEM.DEF.SVRCONN";
-    private static final String QMGR = "MY.TEST.QMNGR";
-    private static final String QUEUE_NAME = "FIRST.TEST.QUEUE";
+    private static final Logger LOG = Logger.getLogger(MQConsumer.class);
+    private static final MQConfig CONFIG = MQConfig.load("consumer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("mq.queue");
+    private static final String TOPIC_NAME = CONFIG.getString("consumer.topic", null); // subscribe instead of reading the queue when set
+    private static final String SUBSCRIPTION_NAME = CONFIG.getString("consumer.subscription");
+    private static final long LAG_REPORT_INTERVAL_MS = CONFIG.getLong("consumer.lagReportIntervalMs"); // 0 disables lag reports
+    private static final int STATUS_PORT = CONFIG.getInt("status.port"); // 0 disables the status page
+    private static final String STATUS_BIND_ADDRESS = CONFIG.getString("status.bindAddress", null); // null listens on loopback only
+    private static final boolean TRACING_ENABLED = CONFIG.getBoolean("tracing.enabled");
+    private static final String READ_AHEAD = CONFIG.getString("consumer.readAhead", null); // null keeps the queue's setting
+    private static final String BACKOUT_QUEUE_NAME = CONFIG.getString("backout.queue");
+    private static final int BACKOUT_THRESHOLD = CONFIG.getInt("backout.threshold"); // failed deliveries before a message is backed out
+    private static final long RETRY_INTERVAL_MS = CONFIG.getLong("backout.retryIntervalMs"); // minimum spacing between redeliveries
+    private static final long MAX_RETRY_DELAY_MS = CONFIG.getLong("backout.maxRetryDelayMs");
+    private static final int DEDUP_BUCKETS = CONFIG.getInt("dedup.buckets");
+    private static final long DEDUP_BUCKET_WINDOW_MS = CONFIG.getLong("dedup.bucketWindowMs");
+    private static final int DEDUP_KEYS_PER_BUCKET = CONFIG.getInt("dedup.keysPerBucket");
+    private static final String DEDUP_FILE = CONFIG.getString("dedup.file", null); // null keeps the cache in memory only
+    private static final long DEDUP_SAVE_INTERVAL_MS = CONFIG.getLong("dedup.saveIntervalMs"); // 0 only saves on shutdown
+    private static final long DRAIN_TIMEOUT_MS = CONFIG.getLong("consumer.drainTimeoutMs"); // max wait for in-flight messages on shutdown
+    private static final String LANE_KEY = CONFIG.getString("consumer.laneKey");
+    private static final String PRIORITY_LANE = CONFIG.getString("consumer.priorityLane", null); // null shares the lanes
+    private static final int PROCESSING_LANES = CONFIG.getInt("tuning.consumer.lanes"); // 0 means serial processing
 
     public static void main(String[] args) {
+        Logger.configure(CONFIG);
         MQConnectionManager connectionManager = null;
         MQMessageListener messageListener = null;
+        ListenerLifecycleManager lifecycleManager = null;
 
         try {
-            System.out.println("\n╔═════════════════════════════════════════╗");
-            System.out.println("║   IBM MQ ASYNCHRONOUS MESSAGE LISTENER  ║");
-            System.out.println("╚═════════════════════════════════════════╝\n");
-
-            // Step 1: Create connection manager
-            connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+            LOG.info("╔═════════════════════════════════════════╗");
+            LOG.info("║   IBM MQ ASYNCHRONOUS MESSAGE LISTENER  ║");
+            LOG.info("╚═════════════════════════════════════════╝");
+
+            // Step 1: Create connection manager, lanes acknowledge in batches once messages are processed
+            connectionManager = PROCESSING_LANES > 0
+                    ? new MQConnectionManager(HOST, PORT, CHANNEL, QMGR, Session.CLIENT_ACKNOWLEDGE)
+                    : new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
             // Step 2: Connect to IBM MQ
             connectionManager.connect();
             // Step 3: Create and initialize message listener
             messageListener = new MQMessageListener(QUEUE_NAME);
+            if (PROCESSING_LANES > 0) {
+                messageListener.setPartitionedProcessing(PROCESSING_LANES, "JMSXGroupID".equals(LANE_KEY)
+                        ? PartitionedMessageExecutor.byGroupId()
+                        : PartitionedMessageExecutor.byProperty(LANE_KEY));
+                if (PRIORITY_LANE != null) {
+                    messageListener.setPriorityLane(Integer.parseInt(PRIORITY_LANE));
+                }
+            }
+            messageListener.setBackoutHandler(new BackoutHandler(
+                    BACKOUT_QUEUE_NAME, BACKOUT_THRESHOLD, RETRY_INTERVAL_MS, MAX_RETRY_DELAY_MS));
+            if (READ_AHEAD != null) {
+                messageListener.setReadAheadAllowed(Boolean.parseBoolean(READ_AHEAD));
+            }
+            messageListener.setDeduplicator(createDeduplicator());
+            final Tracer tracer = TRACING_ENABLED ? createTracer() : null;
+            messageListener.setTracer(tracer);
+            if (TOPIC_NAME != null) {
+                messageListener.setSharedSubscription(TOPIC_NAME, SUBSCRIPTION_NAME);
+            }
+            final SubscriptionLagMonitor lagMonitor = LAG_REPORT_INTERVAL_MS > 0
+                    ? new SubscriptionLagMonitor(TOPIC_NAME != null ? SUBSCRIPTION_NAME : QUEUE_NAME, 10000)
+                    : null;
+            messageListener.setLagMonitor(lagMonitor);
+            final StatusServer statusServer = STATUS_PORT > 0 ? createStatusServer(messageListener) : null;
             messageListener.initialize(connectionManager);
+            if (lagMonitor != null) {
+                lagMonitor.start(LAG_REPORT_INTERVAL_MS);
+            }
+            if (statusServer != null) {
+                statusServer.start();
+            }
+
+            // Lane count can be tuned live through the -Dmq.config file
+            final MQMessageListener tunedListener = messageListener;
+            CONFIG.onChange("tuning.consumer.lanes", value -> tunedListener.resizeLanes(Integer.parseInt(value)));
+            CONFIG.startWatching(CONFIG.getLong("config.reloadIntervalMs"));
 
-            // Step 4: Add shutdown hook for graceful shutdown
-            final MQConnectionManager finalConnectionManager = connectionManager;
+            // Step 4: Add shutdown hook that drains in-flight messages before closing
             final MQMessageListener finalMessageListener = messageListener;
+            final ListenerLifecycleManager finalLifecycleManager =
+                    new ListenerLifecycleManager(connectionManager, messageListener, DRAIN_TIMEOUT_MS);
+            lifecycleManager = finalLifecycleManager;
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("\n\n╔═════════════════════════════════════════╗");
-                System.out.println("║        SHUTDOWN SIGNAL RECEIVED         ║");
-                System.out.println("╚═════════════════════════════════════════╝");
-                System.out.println("\nTotal messages processed: " + finalMessageListener.getMessageCount());
-
-                // Clean up resources
-                if (finalMessageListener != null) {
-                    finalMessageListener.close();
+                LOG.info("╔═════════════════════════════════════════╗");
+                LOG.info("║        SHUTDOWN SIGNAL RECEIVED         ║");
+                LOG.info("╚═════════════════════════════════════════╝");
+
+                CONFIG.stopWatching();
+                if (lagMonitor != null) {
+                    lagMonitor.stop();
+                }
+                if (statusServer != null) {
+                    statusServer.stop();
                 }
-                if (finalConnectionManager != null) {
-                    finalConnectionManager.disconnect();
+                finalLifecycleManager.shutdown();
+                if (tracer != null) {
+                    tracer.close();
                 }
 
-                System.out.println("\n✓ Application terminated gracefully\n");
+                LOG.info("Total messages processed: {}", finalMessageListener.getMessageCount());
+                LOG.info("Duplicate messages skipped: {}", finalMessageListener.getDuplicateCount());
+                LOG.info("✓ Application terminated gracefully");
             }));
 
-            // Step 5: Keep the application running
+            // Step 5: Keep the application running until the lifecycle manager has shut down
             // The listener will automatically process messages as they arrive
-            keepAlive();
+            awaitShutdown(lifecycleManager);
 
         } catch (JMSException e) {
             handleError(e);
 
         } finally {
-            // This will only be reached if an exception occurs during initialization
-            // Normal shutdown is handled by the shutdown hook
-            if (messageListener != null && !Thread.currentThread().isInterrupted()) {
-                messageListener.close();
-            }
-            if (connectionManager != null && !Thread.currentThread().isInterrupted()) {
-                connectionManager.disconnect();
+            // Resources are only closed here if initialization failed or the wait was interrupted
+            // Normal shutdown is handled by the lifecycle manager from the shutdown hook
+            if (lifecycleManager != null) {
+                lifecycleManager.shutdown();
+            } else {
+                if (messageListener != null) {
+                    messageListener.close();
+                }
+                if (connectionManager != null) {
+                    connectionManager.disconnect();
+                }
             }
         }
     }
 
     /**
-     * Keep the application alive to continue listening for messages
+     * Deduplicate on JMSMessageID, keeping the cache in a local file across restarts if one is set
      */
-    private static void keepAlive() {
+    private static MessageDeduplicator createDeduplicator() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(DEDUP_BUCKETS, DEDUP_BUCKET_WINDOW_MS,
+                DEDUP_KEYS_PER_BUCKET, MessageDeduplicator.byMessageId());
+        if (DEDUP_FILE == null) {
+            return deduplicator;
+        }
+        try {
+            deduplicator.enablePersistence(Paths.get(DEDUP_FILE), DEDUP_SAVE_INTERVAL_MS);
+        } catch (IOException e) {
+            LOG.error("✗ Could not load dedup cache {}: {}", DEDUP_FILE, e.getMessage());
+        }
+        return deduplicator;
+    }
+
+    /**
+     * Serve the listener's live statistics over HTTP, the page stays off if the port is taken
+     */
+    private static StatusServer createStatusServer(MQMessageListener messageListener) {
+        ConsumerMetrics metrics = new ConsumerMetrics(TOPIC_NAME != null ? SUBSCRIPTION_NAME : QUEUE_NAME,
+                CONFIG.getLong("status.windowMs"), 10000);
+        messageListener.setMetrics(metrics);
+        try {
+            StatusServer statusServer = new StatusServer(STATUS_BIND_ADDRESS, STATUS_PORT);
+            statusServer.register(metrics);
+            return statusServer;
+        } catch (IOException e) {
+            LOG.error("✗ Could not open status page on port {}: {}", STATUS_PORT, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Continue traces sampled by the producer, the consumer makes no sampling decision of its own
+     */
+    private static Tracer createTracer() {
+        return new Tracer(new TraceSampler(0), new BatchingFileSpanExporter(
+                Paths.get(CONFIG.getString("tracing.file")), "mq-consumer",
+                CONFIG.getInt("tracing.batchSize"), CONFIG.getLong("tracing.flushIntervalMs")));
+    }
+
+    /**
+     * Block the main thread until the lifecycle manager has drained and closed the listener
+     */
+    private static void awaitShutdown(ListenerLifecycleManager lifecycleManager) {
         try {
-            // Keep the main thread alive
             // The JMS connection runs in separate threads
-            while (true) {
-                Thread.sleep(1000);
-            }
+            lifecycleManager.awaitTermination();
         } catch (InterruptedException e) {
-            System.out.println("\nApplication interrupted");
+            LOG.info("Application interrupted");
             Thread.currentThread().interrupt();
         }
     }
@@ -91,36 +212,41 @@ public class MQConsumer {
      * Handle JMS exceptions with detailed error information
      */
     private static void handleError(JMSException e) {
-        System.err.println("\n╔═════════════════════════════════════════╗");
-        System.err.println("║           ERROR OCCURRED                ║");
-        System.err.println("╚═════════════════════════════════════════╝");
-        System.err.println("\nError: " + e.getMessage());
-        System.err.println("Error Code: " + (e.getErrorCode() != null ? e.getErrorCode() : "N/A"));
+        LOG.error("╔═════════════════════════════════════════╗");
+        LOG.error("║           ERROR OCCURRED                ║");
+        LOG.error("╚═════════════════════════════════════════╝");
+        LOG.error("Error: {}", e.getMessage());
+        LOG.error("Error Code: {}", e.getErrorCode() != null ? e.getErrorCode() : "N/A");
 
         if (e.getLinkedException() != null) {
-            System.err.println("\nLinked Exception Details:");
-            e.getLinkedException().printStackTrace();
+            LOG.error("Linked Exception Details:", e.getLinkedException());
         }
 
-        System.err.println("\n=========================================");
-        System.err.println("TROUBLESHOOTING TIPS:");
-        System.err.println("=========================================");
-        System.err.println("1. Verify Queue Manager '" + QMGR + "' is running");
-        System.err.println("   Command: dspmq");
-        System.err.println("\n2. Check if queue '" + QUEUE_NAME + "' exists");
-        System.err.println("   Command: echo \"DISPLAY QUEUE(" + QUEUE_NAME + ")\" | runmqsc " + QMGR);
-        System.err.println("\n3. Confirm channel '" + CHANNEL + "' is configured");
-        System.err.println("   Command: echo \"DISPLAY CHANNEL(" + CHANNEL + ")\" | runmqsc " + QMGR);
-        System.err.println("\n4. Ensure MQ listener is active on port " + PORT);
-        System.err.println("   Command: echo \"DISPLAY LISTENER(*)\" | runmqsc " + QMGR);
-        System.err.println("\n5. Check authentication/authorization settings");
-        System.err.println("   To disable channel auth (dev only):");
-        System.err.println("   echo \"ALTER QMGR CHLAUTH(DISABLED)\" | runmqsc " + QMGR);
-        System.err.println("   echo \"REFRESH SECURITY TYPE(CONNAUTH)\" | runmqsc " + QMGR);
-        System.err.println("\n6. Verify GET permissions on the queue");
-        System.err.println("   Command: echo \"DISPLAY QSTATUS(" + QUEUE_NAME + ")\" | runmqsc " + QMGR);
-        System.err.println("\n7. Check MQ error logs");
-        System.err.println("   Location: /var/mqm/qmgrs/" + QMGR + "/errors/AMQERR01.LOG");
-        System.err.println("=========================================\n");
+        LOG.error("=========================================");
+        LOG.error("TROUBLESHOOTING TIPS:");
+        LOG.error("=========================================");
+        LOG.error("1. Verify Queue Manager '{}' is running", QMGR);
+        LOG.error("   Command: dspmq");
+        LOG.error("2. Check if queue '{}' exists", QUEUE_NAME);
+        LOG.error("   Command: echo \"DISPLAY QUEUE({})\" | runmqsc {}", QUEUE_NAME, QMGR);
+        LOG.error("3. Confirm channel '{}' is configured", CHANNEL);
+        LOG.error("   Command: echo \"DISPLAY CHANNEL({})\" | runmqsc {}", CHANNEL, QMGR);
+        LOG.error("4. Ensure MQ listener is active on port {}", PORT);
+        LOG.error("   Command: echo \"DISPLAY LISTENER(*)\" | runmqsc {}", QMGR);
+        LOG.error("5. Check authentication/authorization settings");
+        LOG.error("   To disable channel auth (dev only):");
+        LOG.error("   echo \"ALTER QMGR CHLAUTH(DISABLED)\" | runmqsc {}", QMGR);
+        LOG.error("   echo \"REFRESH SECURITY TYPE(CONNAUTH)\" | runmqsc {}", QMGR);
+        LOG.error("6. Verify GET permissions on the queue");
+        LOG.error("   Command: echo \"DISPLAY QSTATUS({})\" | runmqsc {}", QUEUE_NAME, QMGR);
+        LOG.error("7. Check MQ error logs");
+        LOG.error("   Location: /var/mqm/qmgrs/{}/errors/AMQERR01.LOG", QMGR);
+        LOG.error("8. Check backout queue '{}' exists", BACKOUT_QUEUE_NAME);
+        LOG.error("   Command: echo \"DEFINE QLOCAL({})\" | runmqsc {}", BACKOUT_QUEUE_NAME, QMGR);
+        if (TOPIC_NAME != null) {
+            LOG.error("9. Check SUB authority on topic string '{}'", TOPIC_NAME);
+            LOG.error("   Command: echo \"DISPLAY SUB({})\" | runmqsc {}", SUBSCRIPTION_NAME, QMGR);
+        }
+        LOG.error("=========================================");
     }
 }
@@ -1,15 +1,23 @@
 package net.mahtabalam.message.consumer;
 
+import com.ibm.mq.jms.MQDestination;
+import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.Span;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
-import javax.jms.Queue;
+import javax.jms.Destination;
 import javax.jms.DeliveryMode;
 import javax.jms.Message;
 import javax.jms.TextMessage;
 import javax.jms.BytesMessage;
 import javax.jms.ObjectMessage;
 import javax.jms.MapMessage;
+import javax.jms.Session;
+import javax.jms.Topic;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -20,38 +28,174 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class MQMessageListener implements MessageListener {
 
+    private static final Logger LOG = Logger.getLogger(MQMessageListener.class);
+    private static final Logger FAILURE_LOG = LOG.throttled(5000); // errors repeated per message
+    private static final int MAX_IN_FLIGHT_PER_LANE = 64;
+    private static final int ACK_BATCH_SIZE = 100;
+    private static final long LANE_SHUTDOWN_TIMEOUT_MS = 10000;
+
     private final String queueName;
     private final AtomicInteger messageCount;
+    private final AtomicInteger inFlightCount;
     private final DateTimeFormatter formatter;
     private MessageConsumer consumer;
+    private volatile Message lastProcessedMessage;
+    private BackoutHandler backoutHandler;
+    private int processingLanes = 1;
+    private PartitionedMessageExecutor.KeyExtractor laneKeyExtractor;
+    private int priorityLaneMinPriority = -1;
+    private PartitionedMessageExecutor partitionedExecutor;
+    private MessageDeduplicator deduplicator;
+    private final AtomicInteger duplicateCount = new AtomicInteger(0);
+    private Tracer tracer;
+    private int readAheadAllowed = WMQConstants.WMQ_READ_AHEAD_ALLOWED_AS_Q_DEF;
+    private String topicName;
+    private String subscriptionName;
+    private SubscriptionLagMonitor lagMonitor;
+    private ConsumerMetrics metrics;
 
     public MQMessageListener(String queueName) {
         this.queueName = queueName;
         this.messageCount = new AtomicInteger(0);
+        this.inFlightCount = new AtomicInteger(0);
         this.formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
     }
 
+    /**
+     * Route messages that keep failing to a backout queue instead of retrying them forever.
+     * Serial processing waits before each retry, processing lanes redeliver right away.
+     * Must be set before initialize().
+     */
+    public void setBackoutHandler(BackoutHandler backoutHandler) {
+        this.backoutHandler = backoutHandler;
+    }
+
+    /**
+     * Process messages on laneCount parallel lanes, keeping messages with the same key in order.
+     * Use a CLIENT_ACKNOWLEDGE connection so messages are acknowledged only once processed.
+     * Must be set before initialize().
+     */
+    public void setPartitionedProcessing(int laneCount, PartitionedMessageExecutor.KeyExtractor keyExtractor) {
+        this.processingLanes = laneCount;
+        this.laneKeyExtractor = keyExtractor;
+    }
+
+    /**
+     * Process messages with a JMSPriority of at least minPriority on a reserved lane,
+     * so they are not stuck behind a backlog of bulk messages. Needs partitioned
+     * processing. Must be set before initialize().
+     */
+    public void setPriorityLane(int minPriority) {
+        this.priorityLaneMinPriority = minPriority;
+    }
+
+    /**
+     * Skip messages whose key was already processed, e.g. redeliveries after a reconnect.
+     * Keys are recorded after successful processing, failed messages are retried.
+     */
+    public void setDeduplicator(MessageDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Continue the producer's trace for every message that carries a sampled traceparent
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Let the queue manager stream non-persistent messages ahead of delivery.
+     * Must be set before initialize(), otherwise the queue's DEFREADA setting applies.
+     */
+    public void setReadAheadAllowed(boolean readAhead) {
+        this.readAheadAllowed = readAhead
+                ? WMQConstants.WMQ_READ_AHEAD_ALLOWED_ENABLED
+                : WMQConstants.WMQ_READ_AHEAD_ALLOWED_DISABLED;
+    }
+
+    /**
+     * Consume from a shared durable subscription on a topic instead of the queue.
+     * Every listener opened with the same subscription name, in this JVM or another,
+     * gets a share of the subscription's messages. Must be set before initialize().
+     */
+    public void setSharedSubscription(String topicName, String subscriptionName) {
+        this.topicName = topicName;
+        this.subscriptionName = subscriptionName;
+    }
+
+    /**
+     * Record the delivery lag of every message
+     */
+    public void setLagMonitor(SubscriptionLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    /**
+     * Record receive rate, processing time and errors, e.g. for a StatusServer
+     */
+    public void setMetrics(ConsumerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Initialize the message listener
      */
     public void initialize(MQConnectionManager connectionManager) throws JMSException {
-        System.out.println("=========================================");
-        System.out.println("Initializing Message Listener");
-        System.out.println("=========================================");
-        System.out.println("Queue: " + queueName);
-        System.out.println("=========================================\n");
-        // Get the queue
-        Queue queue = connectionManager.getSession().createQueue(queueName);
-        // Create message consumer
-        consumer = connectionManager.getSession().createConsumer(queue);
+        LOG.info("=========================================");
+        LOG.info("Initializing Message Listener");
+        LOG.info("=========================================");
+        if (subscriptionName != null) {
+            LOG.info("Topic: {}", topicName);
+            LOG.info("Shared subscription: {}", subscriptionName);
+        } else {
+            LOG.info("Queue: {}", queueName);
+        }
+        LOG.info("=========================================");
+        if (priorityLaneMinPriority >= 0 && laneKeyExtractor == null) {
+            throw new IllegalStateException("A priority lane is only supported for partitioned processing.");
+        }
+        if (backoutHandler != null) {
+            backoutHandler.initialize(connectionManager.getSession());
+        }
+        if (laneKeyExtractor != null) {
+            partitionedExecutor = new PartitionedMessageExecutor(processingLanes, processingLanes * MAX_IN_FLIGHT_PER_LANE,
+                    ACK_BATCH_SIZE, laneKeyExtractor, message -> {
+                if (!handleMessage(message)) {
+                    // The executor recovers the session, which redelivers the message
+                    throw new IllegalStateException("Processing failed for message " + message.getJMSMessageID());
+                }
+                markProcessed(message);
+            });
+            partitionedExecutor.setBackoutHandler(backoutHandler);
+            partitionedExecutor.bind(connectionManager.getSession());
+            LOG.info("Processing lanes: {}", processingLanes);
+            if (priorityLaneMinPriority >= 0) {
+                partitionedExecutor.enablePriorityLane(priorityLaneMinPriority, MAX_IN_FLIGHT_PER_LANE);
+                LOG.info("Priority lane: JMSPriority {} and above", priorityLaneMinPriority);
+            }
+        }
+        // Get the queue, or the topic for a subscription
+        Session session = connectionManager.getSession();
+        Destination destination = subscriptionName != null
+                ? session.createTopic(topicName)
+                : session.createQueue(queueName);
+        if (destination instanceof MQDestination) {
+            ((MQDestination) destination).setReadAheadAllowed(readAheadAllowed);
+        }
+        // Create message consumer, a durable subscription keeps collecting messages while no listener is attached
+        consumer = subscriptionName != null
+                ? session.createSharedDurableConsumer((Topic) destination, subscriptionName)
+                : session.createConsumer(destination);
         // Set this as the message listener
         consumer.setMessageListener(this);
-        System.out.println("✓ Message Listener initialized successfully");
-        System.out.println("✓ Now listening for messages on queue: " + queueName);
-        System.out.println("\n=========================================");
-        System.out.println("WAITING FOR MESSAGES...");
-        System.out.println("=========================================");
-        System.out.println("Press Ctrl+C to stop listening\n");
+        LOG.info("✓ Message Listener initialized successfully");
+        LOG.info("✓ Now listening for messages on {}",
+                subscriptionName != null ? "subscription: " + subscriptionName : "queue: " + queueName);
+        LOG.info("=========================================");
+        LOG.info("WAITING FOR MESSAGES...");
+        LOG.info("=========================================");
+        LOG.info("Press Ctrl+C to stop listening");
     }
 
     /**
@@ -59,21 +203,127 @@ public class MQMessageListener implements MessageListener {
      */
     @Override
     public void onMessage(Message message) {
+        if (partitionedExecutor == null) {
+            deliver(message);
+            return;
+        }
+        partitionedExecutor.deliveryStarted();
+        try {
+            deliver(message);
+        } finally {
+            partitionedExecutor.deliveryDone();
+        }
+    }
+
+    private void deliver(Message message) {
+        if (lagMonitor != null) {
+            try {
+                lagMonitor.record(message);
+            } catch (JMSException e) {
+                FAILURE_LOG.error("✗ Error reading message timestamp: {}", e.getMessage());
+            }
+        }
+        if (metrics != null) {
+            metrics.messageReceived(message);
+        }
+        if (isDuplicate(message)) {
+            return;
+        }
+        if (partitionedExecutor != null) {
+            try {
+                partitionedExecutor.dispatch(message);
+            } catch (JMSException e) {
+                FAILURE_LOG.error("✗ Error dispatching message: {}", e.getMessage(), e);
+            }
+            return;
+        }
+
+        inFlightCount.incrementAndGet();
+        try {
+            if (handleMessage(message)) {
+                markProcessed(message);
+            }
+            lastProcessedMessage = message;
+        } finally {
+            inFlightCount.decrementAndGet();
+        }
+    }
+
+    private boolean isDuplicate(Message message) {
+        if (deduplicator == null) {
+            return false;
+        }
+        try {
+            if (deduplicator.isDuplicate(message)) {
+                duplicateCount.incrementAndGet();
+                lastProcessedMessage = message;
+                LOG.warn("⚠ Duplicate message skipped: {}", message.getJMSMessageID());
+                return true;
+            }
+        } catch (JMSException e) {
+            FAILURE_LOG.error("✗ Error reading deduplication key: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private void markProcessed(Message message) {
+        if (deduplicator == null) {
+            return;
+        }
+        try {
+            deduplicator.markProcessed(message);
+        } catch (JMSException e) {
+            FAILURE_LOG.error("✗ Error reading deduplication key: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return false if processing failed and the message is to be redelivered
+     */
+    private boolean handleMessage(Message message) {
+        Span span = null;
+        if (tracer != null) {
+            try {
+                span = tracer.startConsumerSpan(message, subscriptionName != null ? topicName : queueName);
+            } catch (JMSException e) {
+                FAILURE_LOG.error("✗ Error reading trace context: {}", e.getMessage());
+            }
+        }
+        long start = metrics != null ? metrics.processingStarted() : 0;
+        try {
+            return processMessage(message, span);
+        } finally {
+            if (metrics != null) {
+                metrics.processingFinished(start);
+            }
+            if (span != null) {
+                span.end();
+            }
+        }
+    }
+
+    private boolean processMessage(Message message, Span span) {
         int currentCount = messageCount.incrementAndGet();
         String timestamp = LocalDateTime.now().format(formatter);
 
         try {
-            System.out.println("\n┌─────────────────────────────────────────");
-            System.out.println("│ MESSAGE RECEIVED #" + currentCount);
-            System.out.println("├─────────────────────────────────────────");
-            System.out.println("│ Timestamp: " + timestamp);
-            System.out.println("│ Message ID: " + message.getJMSMessageID());
-            System.out.println("│ Correlation ID: " + (message.getJMSCorrelationID() != null ?
-                    message.getJMSCorrelationID() : "N/A"));
-            System.out.println("│ Priority: " + message.getJMSPriority());
-            System.out.println("│ Delivery Mode: " + (message.getJMSDeliveryMode() == DeliveryMode.PERSISTENT ?
-                    "PERSISTENT" : "NON_PERSISTENT"));
-            System.out.println("├─────────────────────────────────────────");
+            // Processing lanes check for poison messages on dispatch
+            if (partitionedExecutor == null && backoutHandler != null && backoutHandler.isPoison(message)) {
+                backoutHandler.backout(message);
+                return true;
+            }
+
+            LOG.info("┌─────────────────────────────────────────");
+            LOG.info("│ MESSAGE RECEIVED #{}", currentCount);
+            LOG.info("├─────────────────────────────────────────");
+            LOG.info("│ Timestamp: {}", timestamp);
+            LOG.info("│ Message ID: {}", message.getJMSMessageID());
+            LOG.info("│ Correlation ID: {}",
+                    message.getJMSCorrelationID() != null ? message.getJMSCorrelationID() : "N/A");
+            LOG.info("│ Priority: {}", message.getJMSPriority());
+            LOG.info("│ Delivery Mode: {}",
+                    message.getJMSDeliveryMode() == DeliveryMode.PERSISTENT ? "PERSISTENT" : "NON_PERSISTENT");
+            LOG.info("├─────────────────────────────────────────");
 
             // Process based on message type
             if (message instanceof TextMessage) {
@@ -85,20 +335,34 @@ public class MQMessageListener implements MessageListener {
             } else if (message instanceof MapMessage) {
                 processMapMessage((MapMessage) message);
             } else {
-                System.out.println("│ Message Type: " + message.getClass().getSimpleName());
-                System.out.println("│ Content: [Unsupported message type]");
+                LOG.info("│ Message Type: {}", message.getClass().getSimpleName());
+                LOG.info("│ Content: [Unsupported message type]");
             }
 
             // Display message properties if any
             displayMessageProperties(message);
 
-            System.out.println("└─────────────────────────────────────────");
-            System.out.println("✓ Message #" + currentCount + " processed successfully\n");
+            LOG.info("└─────────────────────────────────────────");
+            LOG.info("✓ Message #{} processed successfully", currentCount);
+            return true;
 
-        } catch (JMSException e) {
-            System.err.println("\n✗ Error processing message #" + currentCount);
-            System.err.println("Error: " + e.getMessage());
-            e.printStackTrace();
+        } catch (JMSException | RuntimeException e) {
+            if (span != null) {
+                span.setError(e);
+            }
+            if (metrics != null) {
+                metrics.recordError();
+            }
+            if (backoutHandler != null) {
+                FAILURE_LOG.error("✗ Error processing message #{}: {}", currentCount, e.getMessage());
+                if (partitionedExecutor == null) {
+                    // A backed out message is done with, like a processed one
+                    return backoutHandler.handleFailure(message, e);
+                }
+            } else {
+                FAILURE_LOG.error("✗ Error processing message #{}: {}", currentCount, e.getMessage(), e);
+            }
+            return false;
         }
     }
 
@@ -107,30 +371,30 @@ public class MQMessageListener implements MessageListener {
      */
     private void processTextMessage(TextMessage textMessage) throws JMSException {
         String text = textMessage.getText();
-        System.out.println("│ Message Type: TextMessage");
-        System.out.println("│ Content Length: " + (text != null ? text.length() : 0) + " characters");
-        System.out.println("├─────────────────────────────────────────");
-        System.out.println("│ MESSAGE CONTENT:");
-        System.out.println("├─────────────────────────────────────────");
+        LOG.info("│ Message Type: TextMessage");
+        LOG.info("│ Content Length: {} characters", text != null ? text.length() : 0);
+        LOG.info("├─────────────────────────────────────────");
+        LOG.info("│ MESSAGE CONTENT:");
+        LOG.info("├─────────────────────────────────────────");
 
         if (text != null && text.length() > 0) {
             // Split long messages into multiple lines
             String[] lines = text.split("\n");
             for (String line : lines) {
                 if (line.length() <= 70) {
-                    System.out.println("│ " + line);
+                    LOG.info("│ {}", line);
                 } else {
                     // Wrap long lines
                     int start = 0;
                     while (start < line.length()) {
                         int end = Math.min(start + 70, line.length());
-                        System.out.println("│ " + line.substring(start, end));
+                        LOG.info("│ {}", line.substring(start, end));
                         start = end;
                     }
                 }
             }
         } else {
-            System.out.println("│ [Empty message]");
+            LOG.info("│ [Empty message]");
         }
     }
 
@@ -139,13 +403,13 @@ public class MQMessageListener implements MessageListener {
      */
     private void processBytesMessage(BytesMessage bytesMessage) throws JMSException {
         long length = bytesMessage.getBodyLength();
-        System.out.println("│ Message Type: BytesMessage");
-        System.out.println("│ Content Length: " + length + " bytes");
+        LOG.info("│ Message Type: BytesMessage");
+        LOG.info("│ Content Length: {} bytes", length);
 
         if (length > 0 && length < 1024) {
             byte[] data = new byte[(int) length];
             bytesMessage.readBytes(data);
-            System.out.println("│ Content (hex): " + bytesToHex(data));
+            LOG.info("│ Content (hex): {}", bytesToHex(data));
         }
     }
 
@@ -154,23 +418,23 @@ public class MQMessageListener implements MessageListener {
      */
     private void processObjectMessage(ObjectMessage objectMessage) throws JMSException {
         Object object = objectMessage.getObject();
-        System.out.println("│ Message Type: ObjectMessage");
-        System.out.println("│ Object Type: " + (object != null ? object.getClass().getName() : "null"));
-        System.out.println("│ Content: " + object);
+        LOG.info("│ Message Type: ObjectMessage");
+        LOG.info("│ Object Type: {}", object != null ? object.getClass().getName() : "null");
+        LOG.info("│ Content: {}", object);
     }
 
     /**
      * Process MapMessage
      */
     private void processMapMessage(MapMessage mapMessage) throws JMSException {
-        System.out.println("│ Message Type: MapMessage");
-        System.out.println("│ Map Entries:");
+        LOG.info("│ Message Type: MapMessage");
+        LOG.info("│ Map Entries:");
 
         java.util.Enumeration<?> mapNames = mapMessage.getMapNames();
         while (mapNames.hasMoreElements()) {
             String name = (String) mapNames.nextElement();
             Object value = mapMessage.getObject(name);
-            System.out.println("│   " + name + " = " + value);
+            LOG.info("│   {} = {}", name, value);
         }
     }
 
@@ -181,13 +445,13 @@ public class MQMessageListener implements MessageListener {
         java.util.Enumeration<?> propertyNames = message.getPropertyNames();
 
         if (propertyNames.hasMoreElements()) {
-            System.out.println("├─────────────────────────────────────────");
-            System.out.println("│ CUSTOM PROPERTIES:");
+            LOG.info("├─────────────────────────────────────────");
+            LOG.info("│ CUSTOM PROPERTIES:");
 
             while (propertyNames.hasMoreElements()) {
                 String propertyName = (String) propertyNames.nextElement();
                 Object propertyValue = message.getObjectProperty(propertyName);
-                System.out.println("│   " + propertyName + " = " + propertyValue);
+                LOG.info("│   {} = {}", propertyName, propertyValue);
             }
         }
     }
@@ -210,14 +474,71 @@ public class MQMessageListener implements MessageListener {
      * Close the message consumer
      */
     public void close() {
+        if (backoutHandler != null) {
+            backoutHandler.close();
+        }
         try {
             if (consumer != null) {
                 consumer.close();
-                System.out.println("✓ Message Listener closed");
+                LOG.info("✓ Message Listener closed");
+            }
+            if (partitionedExecutor != null) {
+                partitionedExecutor.shutdown(LANE_SHUTDOWN_TIMEOUT_MS);
+            }
+            if (deduplicator != null) {
+                deduplicator.close();
+                LOG.info("✓ Dedup cache: {}", deduplicator.getStats());
             }
         } catch (JMSException e) {
-            System.err.println("✗ Error closing message consumer: " + e.getMessage());
+            LOG.error("✗ Error closing message consumer: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Change the number of processing lanes at runtime, only possible with partitioned processing
+     */
+    public void resizeLanes(int laneCount) {
+        if (partitionedExecutor == null) {
+            throw new IllegalStateException("Serial processing, restart with processing lanes to resize them.");
+        }
+        partitionedExecutor.resize(laneCount);
+    }
+
+    /**
+     * Acknowledge every message processed so far (CLIENT_ACKNOWLEDGE sessions only)
+     */
+    public void acknowledgeProcessed() throws JMSException {
+        if (partitionedExecutor != null) {
+            partitionedExecutor.acknowledgeCompleted();
+            return;
         }
+        Message message = lastProcessedMessage;
+        if (message != null) {
+            message.acknowledge();
+        }
+    }
+
+    /**
+     * Get the number of messages currently being processed
+     */
+    public int getInFlightCount() {
+        return inFlightCount.get() + (partitionedExecutor != null ? partitionedExecutor.getInFlightCount() : 0);
+    }
+
+    /**
+     * Wait until messages handed to processing lanes are done
+     *
+     * @return true if nothing is in flight anymore
+     */
+    public boolean awaitIdle(long timeoutMs) {
+        return partitionedExecutor == null || partitionedExecutor.awaitIdle(timeoutMs);
+    }
+
+    /**
+     * Get the number of duplicate messages skipped
+     */
+    public int getDuplicateCount() {
+        return duplicateCount.get();
     }
 
     /**
@@ -0,0 +1,304 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects redelivered and duplicate messages with a memory-bounded cache.
+ *
+ * Keys are hashed to 64 bits and kept in a ring of time buckets, each an
+ * open-addressing primitive long hash set. A new bucket is started when the
+ * current one fills up or its time window ends, dropping the oldest bucket,
+ * so keys are remembered for roughly bucketCount * bucketWindowMs and memory
+ * never exceeds bucketCount * maxEntriesPerBucket * 16 bytes.
+ *
+ * A key is only recorded by markProcessed(), once processing succeeded, so a
+ * message that failed and is redelivered for a retry is not taken for a duplicate.
+ *
+ * With persistence the cache is saved every saveIntervalMs and on close(). After a
+ * crash the keys recorded since the last save are lost, so a message processed in
+ * that window but not yet acknowledged is processed again when it is redelivered.
+ */
+public class MessageDeduplicator {
+
+    private static final Logger LOG = Logger.getLogger(MessageDeduplicator.class);
+    private static final Logger FAILURE_LOG = LOG.throttled(5000); // repeated on every save
+    private static final int FILE_MAGIC = 0x44445550; // "DDUP"
+    private static final long EMPTY = 0L;
+
+    private final PartitionedMessageExecutor.KeyExtractor keyExtractor;
+    private final long bucketWindowMs;
+    private final int maxEntriesPerBucket;
+    private final long[][] buckets;
+    private final int[] bucketSizes;
+    private final long[] bucketStartTimes;
+    private int currentBucket;
+    private long lookups;
+    private long hits;
+    private final Object fileLock = new Object();
+    private Path persistencePath;
+    private ScheduledExecutorService saver;
+    private long modifications; // keys recorded, to skip saves when nothing changed
+    private long savedModifications;
+
+    public MessageDeduplicator(int bucketCount, long bucketWindowMs, int maxEntriesPerBucket,
+                               PartitionedMessageExecutor.KeyExtractor keyExtractor) {
+        if (bucketCount < 1 || maxEntriesPerBucket < 1) {
+            throw new IllegalArgumentException("Bucket count and bucket capacity must be positive");
+        }
+        this.keyExtractor = keyExtractor;
+        this.bucketWindowMs = bucketWindowMs;
+        this.maxEntriesPerBucket = maxEntriesPerBucket;
+        // Load factor of at most 0.5 keeps probe sequences short
+        int tableSize = Integer.highestOneBit(maxEntriesPerBucket * 2 - 1) << 1;
+        this.buckets = new long[bucketCount][tableSize];
+        this.bucketSizes = new int[bucketCount];
+        this.bucketStartTimes = new long[bucketCount];
+        this.bucketStartTimes[0] = System.currentTimeMillis();
+    }
+
+    public static PartitionedMessageExecutor.KeyExtractor byMessageId() {
+        return Message::getJMSMessageID;
+    }
+
+    /**
+     * @return true if a message with the same key was processed within the retention window
+     */
+    public synchronized boolean isDuplicate(Message message) throws JMSException {
+        String key = keyExtractor.keyOf(message);
+        if (key == null) {
+            return false;
+        }
+        lookups++;
+        if (contains(hash(key))) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the key of a message that was processed, later deliveries of it are duplicates
+     */
+    public synchronized void markProcessed(Message message) throws JMSException {
+        String key = keyExtractor.keyOf(message);
+        if (key == null) {
+            return;
+        }
+        long hash = hash(key);
+        if (contains(hash)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (bucketSizes[currentBucket] >= maxEntriesPerBucket || now - bucketStartTimes[currentBucket] >= bucketWindowMs) {
+            rotate(now);
+        }
+        insert(buckets[currentBucket], hash);
+        bucketSizes[currentBucket]++;
+        modifications++;
+    }
+
+    private boolean contains(long hash) {
+        for (long[] table : buckets) {
+            if (contains(table, hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rotate(long now) {
+        currentBucket = (currentBucket + 1) % buckets.length;
+        Arrays.fill(buckets[currentBucket], EMPTY);
+        bucketSizes[currentBucket] = 0;
+        bucketStartTimes[currentBucket] = now;
+    }
+
+    private static boolean contains(long[] table, long hash) {
+        int mask = table.length - 1;
+        int index = (int) hash & mask;
+        while (true) {
+            long entry = table[index];
+            if (entry == hash) {
+                return true;
+            }
+            if (entry == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static void insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        int index = (int) hash & mask;
+        while (table[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        table[index] = hash;
+    }
+
+    /**
+     * 64 bit FNV-1a over the key's chars, finished with the MurmurHash3 mixer
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+
+    /**
+     * Keep the cache in a local file across restarts: loaded now if present, saved
+     * every saveIntervalMs while keys are recorded and on close()
+     *
+     * @param saveIntervalMs 0 only saves on close(), which a crash skips
+     */
+    public void enablePersistence(Path path, long saveIntervalMs) throws IOException {
+        load(path);
+        if (saveIntervalMs > 0) {
+            saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mq-dedup-save");
+                thread.setDaemon(true);
+                return thread;
+            });
+            saver.scheduleWithFixedDelay(this::saveQuietly, saveIntervalMs, saveIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void load(Path path) throws IOException {
+        this.persistencePath = path;
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != buckets.length || in.readInt() != buckets[0].length) {
+                LOG.error("✗ Dedup file {} does not match the cache layout, ignoring it", path);
+                return;
+            }
+            currentBucket = in.readInt();
+            for (int b = 0; b < buckets.length; b++) {
+                bucketStartTimes[b] = in.readLong();
+                bucketSizes[b] = in.readInt();
+                for (int i = 0; i < buckets[b].length; i++) {
+                    buckets[b][i] = in.readLong();
+                }
+            }
+        }
+        LOG.info("✓ Dedup cache loaded from {} ({} keys)", path, getEntryCount());
+    }
+
+    /**
+     * Write the cache to the persistence file if keys were recorded since the last save.
+     * The tables are copied under the cache lock and written outside it, so lookups
+     * are not held up by the disk.
+     */
+    public void save() throws IOException {
+        synchronized (fileLock) {
+            long[][] tables;
+            long[] startTimes;
+            int[] sizes;
+            int current;
+            long snapshotModifications;
+            synchronized (this) {
+                if (persistencePath == null || modifications == savedModifications) {
+                    return;
+                }
+                tables = new long[buckets.length][];
+                for (int b = 0; b < buckets.length; b++) {
+                    tables[b] = buckets[b].clone();
+                }
+                startTimes = bucketStartTimes.clone();
+                sizes = bucketSizes.clone();
+                current = currentBucket;
+                snapshotModifications = modifications;
+            }
+            Path temp = persistencePath.resolveSibling(persistencePath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(tables.length);
+                out.writeInt(tables[0].length);
+                out.writeInt(current);
+                for (int b = 0; b < tables.length; b++) {
+                    out.writeLong(startTimes[b]);
+                    out.writeInt(sizes[b]);
+                    for (long entry : tables[b]) {
+                        out.writeLong(entry);
+                    }
+                }
+            }
+            Files.move(temp, persistencePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                savedModifications = snapshotModifications;
+            }
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            FAILURE_LOG.error("✗ Error saving dedup cache: {}", e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (saver != null) {
+            saver.shutdown();
+        }
+        saveQuietly();
+    }
+
+    public synchronized long getLookupCount() {
+        return lookups;
+    }
+
+    public synchronized long getDuplicateCount() {
+        return hits;
+    }
+
+    public synchronized double getHitRate() {
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    public synchronized int getEntryCount() {
+        int total = 0;
+        for (int size : bucketSizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Bytes held by the hash tables
+     */
+    public long getMemoryFootprintBytes() {
+        return (long) buckets.length * buckets[0].length * Long.BYTES;
+    }
+
+    public synchronized String getStats() {
+        return String.format("lookups=%d, duplicates=%d, hit rate=%.2f%%, keys=%d, memory=%d KB",
+                lookups, hits, getHitRate() * 100, getEntryCount(), getMemoryFootprintBytes() / 1024);
+    }
+}
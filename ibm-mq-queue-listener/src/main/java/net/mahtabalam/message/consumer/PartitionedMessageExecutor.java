@@ -0,0 +1,402 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes messages on N single-threaded lanes chosen by hashing a message key.
+ * Messages with the same key stay in order, unrelated keys run in parallel.
+ *
+ * With a CLIENT_ACKNOWLEDGE session, acknowledge() covers every message the session
+ * has delivered, so acknowledgement is done in batches: after ackBatchSize dispatches
+ * the session thread waits until all earlier messages are done and then acknowledges
+ * them together. If any of them failed the session is recovered instead, which
+ * redelivers the whole batch. Under light traffic a batch is also acknowledged
+ * once ackIntervalMs has passed, by the session thread on the next dispatch or by
+ * a flush thread when the lanes are idle. The flush thread only touches the session
+ * between deliveries: the session thread calls deliveryStarted() before it does
+ * anything with a message, as acknowledge() would also cover a message that has
+ * not reached a lane yet. A failed batch is only recovered on the session thread. With a backout handler, a message that has failed too often is
+ * moved to the backout queue on dispatch instead of being redelivered forever.
+ *
+ * An optional priority lane takes every message at or above a JMSPriority, with
+ * its own in-flight limit, so urgent messages neither queue behind a bulk backlog
+ * on the keyed lanes nor wait for their in-flight slots. Priority messages are not
+ * kept in order with bulk messages of the same key. A batched acknowledgement still
+ * waits for the bulk lanes, so keep ackBatchSize small when priority latency matters.
+ */
+public class PartitionedMessageExecutor {
+
+    private static final Logger LOG = Logger.getLogger(PartitionedMessageExecutor.class);
+    private static final Logger FAILURE_LOG = LOG.throttled(5000); // errors repeated per message
+    private static final long DEFAULT_ACK_INTERVAL_MS = 1000;
+
+    /**
+     * Extracts the ordering key of a message, null means the message has no ordering constraint
+     */
+    public interface KeyExtractor {
+        String keyOf(Message message) throws JMSException;
+    }
+
+    public interface MessageHandler {
+        void handle(Message message) throws Exception;
+    }
+
+    public static KeyExtractor byGroupId() {
+        return message -> message.getStringProperty("JMSXGroupID");
+    }
+
+    public static KeyExtractor byProperty(String propertyName) {
+        return message -> message.propertyExists(propertyName)
+                ? String.valueOf(message.getObjectProperty(propertyName)) : null;
+    }
+
+    public static KeyExtractor byCorrelationId() {
+        return Message::getJMSCorrelationID;
+    }
+
+    private final KeyExtractor keyExtractor;
+    private final MessageHandler handler;
+    private final int ackBatchSize;
+    private final Semaphore inFlightPermits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final Object idleLock = new Object();
+    private final Object laneLock = new Object();
+    private final Object ackLock = new Object();
+    private volatile ExecutorService[] lanes;
+    private ExecutorService priorityLane;
+    private Semaphore priorityPermits;
+    private int minPriority = Integer.MAX_VALUE;
+    private final AtomicLong priorityCount = new AtomicLong();
+    private volatile boolean failedSinceAck;
+    private Session session;
+    private boolean clientAcknowledge;
+    private BackoutHandler backoutHandler;
+    private long ackIntervalMs = DEFAULT_ACK_INTERVAL_MS;
+    private ScheduledExecutorService ackFlusher;
+    // Guarded by ackLock
+    private boolean delivering;
+    private Message lastDispatched;
+    private int unacknowledged;
+    private long lastAckTime = System.currentTimeMillis();
+    private long roundRobin;
+
+    /**
+     * @param laneCount    number of single-threaded lanes
+     * @param maxInFlight  dispatched but unfinished messages before the session thread blocks
+     * @param ackBatchSize dispatched messages per acknowledgement (CLIENT_ACKNOWLEDGE only)
+     */
+    public PartitionedMessageExecutor(int laneCount, int maxInFlight, int ackBatchSize,
+                                      KeyExtractor keyExtractor, MessageHandler handler) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("Lane count must be at least 1: " + laneCount);
+        }
+        this.keyExtractor = keyExtractor;
+        this.handler = handler;
+        this.ackBatchSize = ackBatchSize;
+        this.inFlightPermits = new Semaphore(maxInFlight);
+        this.lanes = createLanes(laneCount);
+    }
+
+    private static ExecutorService[] createLanes(int laneCount) {
+        ExecutorService[] newLanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final String threadName = "mq-lane-" + i;
+            newLanes[i] = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, threadName));
+        }
+        return newLanes;
+    }
+
+    /**
+     * Reserve a lane for messages with a JMSPriority of at least minPriority.
+     * Must be called before the first dispatch.
+     *
+     * @param maxInFlight dispatched but unfinished priority messages before the session thread blocks
+     */
+    public void enablePriorityLane(int minPriority, int maxInFlight) {
+        this.minPriority = minPriority;
+        this.priorityPermits = new Semaphore(maxInFlight);
+        this.priorityLane = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "mq-lane-priority"));
+    }
+
+    /**
+     * Move messages over the backout threshold to the backout queue, the handler
+     * must be initialized on the session passed to bind(). Must be called before bind().
+     */
+    public void setBackoutHandler(BackoutHandler backoutHandler) {
+        this.backoutHandler = backoutHandler;
+    }
+
+    /**
+     * Longest time a processed message stays unacknowledged, 0 only acknowledges
+     * full batches. Must be called before bind().
+     */
+    public void setAckInterval(long ackIntervalMs) {
+        this.ackIntervalMs = ackIntervalMs;
+    }
+
+    /**
+     * Enable batched acknowledgement for the session the messages come from
+     */
+    public void bind(Session session) throws JMSException {
+        this.session = session;
+        this.clientAcknowledge = !session.getTransacted()
+                && session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE;
+        if (!clientAcknowledge) {
+            LOG.info("  Note: session is not CLIENT_ACKNOWLEDGE, messages are acknowledged on dispatch");
+        } else if (ackIntervalMs > 0) {
+            ackFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mq-ack-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ackFlusher.scheduleWithFixedDelay(this::flushIfIdle, ackIntervalMs, ackIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Called first thing when the session delivers a message, from then until
+     * deliveryDone() the flush thread leaves the session to the delivery thread
+     */
+    public void deliveryStarted() {
+        synchronized (ackLock) {
+            delivering = true;
+        }
+    }
+
+    /**
+     * Called when the session thread is done with a message, whether it was dispatched or not
+     */
+    public void deliveryDone() {
+        synchronized (ackLock) {
+            delivering = false;
+        }
+    }
+
+    /**
+     * Hand a message to its lane. Must be called from the session's delivery thread,
+     * between deliveryStarted() and deliveryDone().
+     */
+    public void dispatch(Message message) throws JMSException {
+        if (backoutHandler != null && backoutHandler.isPoison(message)) {
+            // backout() acknowledges the whole session, so earlier messages are settled first.
+            // After a recover this message comes back too and is backed out then.
+            if (settle()) {
+                backoutHandler.backout(message);
+            }
+            return;
+        }
+        boolean urgent = priorityLane != null && message.getJMSPriority() >= minPriority;
+        String key = urgent ? null : keyExtractor.keyOf(message);
+        Semaphore permits = urgent ? priorityPermits : inFlightPermits;
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for a free processing slot");
+        }
+        synchronized (laneLock) {
+            inFlight.incrementAndGet();
+            if (urgent) {
+                priorityCount.incrementAndGet();
+                priorityLane.execute(() -> process(message, permits));
+            } else {
+                ExecutorService[] current = lanes;
+                int lane = key != null
+                        ? Math.floorMod(key.hashCode(), current.length)
+                        : (int) (roundRobin++ % current.length);
+                current[lane].execute(() -> process(message, permits));
+            }
+        }
+
+        if (clientAcknowledge) {
+            boolean due;
+            synchronized (ackLock) {
+                lastDispatched = message;
+                due = ++unacknowledged >= ackBatchSize
+                        || (ackIntervalMs > 0 && System.currentTimeMillis() - lastAckTime >= ackIntervalMs);
+            }
+            if (due) {
+                acknowledgeCompleted();
+            }
+        }
+    }
+
+    private void process(Message message, Semaphore permits) {
+        try {
+            handler.handle(message);
+            completedCount.incrementAndGet();
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            failedSinceAck = true;
+            FAILURE_LOG.error("Error processing message on {}: {}", Thread.currentThread().getName(), e.getMessage());
+        } finally {
+            permits.release();
+            if (inFlight.decrementAndGet() == 0) {
+                synchronized (idleLock) {
+                    idleLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until every dispatched message is done, then acknowledge them all
+     * or recover the session if one of them failed
+     */
+    public void acknowledgeCompleted() throws JMSException {
+        settle();
+    }
+
+    /**
+     * @return false if the session was recovered, so every unacknowledged message is redelivered
+     */
+    private boolean settle() throws JMSException {
+        synchronized (ackLock) {
+            if (!clientAcknowledge || lastDispatched == null) {
+                return true;
+            }
+            awaitIdle(Long.MAX_VALUE);
+            boolean recovered = failedSinceAck;
+            if (recovered) {
+                failedSinceAck = false;
+                session.recover();
+            } else {
+                lastDispatched.acknowledge();
+            }
+            lastDispatched = null;
+            unacknowledged = 0;
+            lastAckTime = System.currentTimeMillis();
+            return !recovered;
+        }
+    }
+
+    /**
+     * Acknowledge a partial batch that has waited ackIntervalMs while the lanes are idle.
+     * Failed batches are left to the session thread, only it may recover the session.
+     */
+    private void flushIfIdle() {
+        synchronized (ackLock) {
+            // inFlight before failedSinceAck, a lane sets the flag before it leaves
+            if (delivering || lastDispatched == null || inFlight.get() > 0 || failedSinceAck
+                    || System.currentTimeMillis() - lastAckTime < ackIntervalMs) {
+                return;
+            }
+            try {
+                lastDispatched.acknowledge();
+                lastDispatched = null;
+                unacknowledged = 0;
+                lastAckTime = System.currentTimeMillis();
+            } catch (JMSException e) {
+                FAILURE_LOG.error("✗ Error acknowledging processed messages: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Wait until no message is in flight
+     *
+     * @return true if idle, false if the timeout elapsed first
+     */
+    public boolean awaitIdle(long timeoutMs) {
+        long deadline = timeoutMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMs;
+        synchronized (idleLock) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    idleLock.wait(Math.min(remaining, 1000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Change the number of lanes while messages are flowing.
+     * Dispatching pauses until the current lanes are idle, because a key maps
+     * to a different lane afterwards and must not overtake its earlier messages.
+     */
+    public void resize(int laneCount) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("Lane count must be at least 1: " + laneCount);
+        }
+        synchronized (laneLock) {
+            ExecutorService[] oldLanes = lanes;
+            if (oldLanes.length == laneCount) {
+                return;
+            }
+            awaitIdle(Long.MAX_VALUE);
+            lanes = createLanes(laneCount);
+            for (ExecutorService lane : oldLanes) {
+                lane.shutdown();
+            }
+            LOG.info("✓ Processing lanes resized from {} to {}", oldLanes.length, laneCount);
+        }
+    }
+
+    public void shutdown(long timeoutMs) {
+        if (ackFlusher != null) {
+            ackFlusher.shutdownNow();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        if (priorityLane != null) {
+            priorityLane.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            for (ExecutorService lane : lanes) {
+                lane.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+            if (priorityLane != null) {
+                priorityLane.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Messages dispatched to the priority lane so far
+     */
+    public long getPriorityCount() {
+        return priorityCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
@@ -0,0 +1,195 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of urgent messages while the consumer works through a bulk backlog.
+ *
+ * Each run first fills the queue with low priority bulk messages that take
+ * benchmark.bulkProcessingMs each to process, then starts the partitioned
+ * consumer and sends urgent priority 9 messages while the backlog drains. It runs
+ * once with urgent messages sharing the keyed lanes and once with a priority lane.
+ * Latency is put time to the end of processing, producer and consumer share the
+ * JVM clock. Define the queue with MSGDLVSQ(PRIORITY) so urgent messages are
+ * delivered ahead of the backlog, otherwise both runs queue behind it.
+ */
+public class PriorityLaneBenchmark {
+
+    private static final MQConfig CONFIG = MQConfig.load("consumer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("benchmark.priorityQueue");
+    private static final int BULK_MESSAGES = CONFIG.getInt("benchmark.bulkMessages");
+    private static final int URGENT_MESSAGES = CONFIG.getInt("benchmark.urgentMessages");
+    private static final long BULK_PROCESSING_MS = CONFIG.getLong("benchmark.bulkProcessingMs");
+    private static final int LANES = CONFIG.getInt("benchmark.lanes");
+    private static final int URGENT_PRIORITY = 9;
+    private static final int BULK_PRIORITY = 0;
+    private static final int MAX_IN_FLIGHT_PER_LANE = 64;
+    private static final long MESSAGE_TTL_MS = 600000; // benchmark messages expire instead of piling up
+    private static final long RUN_TIMEOUT_MS = 600000;
+
+    public static void main(String[] args) {
+        System.out.println("\n╔═════════════════════════════════════════╗");
+        System.out.println("║       PRIORITY LANE BENCHMARK           ║");
+        System.out.println("╚═════════════════════════════════════════╝\n");
+
+        MQConnectionManager connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+        List<Result> results = new ArrayList<>();
+        try {
+            connectionManager.connect();
+            drain(connectionManager); // left over messages would skew the backlog
+            results.add(run(connectionManager, false));
+            results.add(run(connectionManager, true));
+            printReport(results);
+        } catch (JMSException e) {
+            System.err.println("✗ Benchmark failed: " + e.getMessage());
+            if (e.getLinkedException() != null) {
+                System.err.println("  Linked exception: " + e.getLinkedException().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connectionManager.disconnect();
+        }
+    }
+
+    private static Result run(MQConnectionManager connectionManager, boolean priorityLane)
+            throws JMSException, InterruptedException {
+        String mode = priorityLane ? "priority lane" : "shared lanes";
+        System.out.println("Run with " + mode + ": loading " + BULK_MESSAGES + " bulk messages on " + QUEUE_NAME);
+        Session sendSession = connectionManager.getSession();
+        Queue queue = sendSession.createQueue(QUEUE_NAME);
+        MessageProducer producer = sendSession.createProducer(queue);
+        for (int i = 0; i < BULK_MESSAGES; i++) {
+            Message message = sendSession.createTextMessage("bulk " + i);
+            message.setStringProperty("BulkKey", "bulk-" + (i % (LANES * 4)));
+            producer.send(message, DeliveryMode.NON_PERSISTENT, BULK_PRIORITY, MESSAGE_TTL_MS);
+        }
+
+        long[] urgentLatencies = new long[URGENT_MESSAGES];
+        CountDownLatch remaining = new CountDownLatch(BULK_MESSAGES + URGENT_MESSAGES);
+        PartitionedMessageExecutor executor = new PartitionedMessageExecutor(LANES, LANES * MAX_IN_FLIGHT_PER_LANE,
+                Integer.MAX_VALUE, PartitionedMessageExecutor.byProperty("BulkKey"), message -> {
+            try {
+                if (message.getJMSPriority() >= URGENT_PRIORITY) {
+                    int index = message.getIntProperty("UrgentNumber");
+                    urgentLatencies[index] = System.currentTimeMillis() - message.getJMSTimestamp();
+                } else {
+                    Thread.sleep(BULK_PROCESSING_MS);
+                }
+            } finally {
+                remaining.countDown();
+            }
+        });
+        if (priorityLane) {
+            executor.enablePriorityLane(URGENT_PRIORITY, MAX_IN_FLIGHT_PER_LANE);
+        }
+
+        // The consumer gets its own session and delivery thread, acknowledging on dispatch
+        Session consumeSession = connectionManager.getConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+        executor.bind(consumeSession);
+        MessageConsumer consumer = consumeSession.createConsumer(consumeSession.createQueue(QUEUE_NAME));
+        long start = System.nanoTime();
+        consumer.setMessageListener(message -> {
+            try {
+                executor.dispatch(message);
+            } catch (JMSException e) {
+                System.err.println("✗ Error dispatching message: " + e.getMessage());
+            }
+        });
+
+        // Spread the urgent messages over most of the expected backlog drain time
+        long drainMs = BULK_MESSAGES * BULK_PROCESSING_MS / LANES;
+        long intervalMs = Math.max(1, drainMs * 8 / 10 / Math.max(1, URGENT_MESSAGES));
+        for (int i = 0; i < URGENT_MESSAGES; i++) {
+            Thread.sleep(intervalMs);
+            Message message = sendSession.createTextMessage("urgent " + i);
+            message.setIntProperty("UrgentNumber", i);
+            producer.send(message, DeliveryMode.NON_PERSISTENT, URGENT_PRIORITY, MESSAGE_TTL_MS);
+        }
+        producer.close();
+
+        boolean complete = remaining.await(RUN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        consumer.close();
+        executor.shutdown(RUN_TIMEOUT_MS);
+        consumeSession.close();
+        if (!complete) {
+            System.err.println("⚠ Timed out, " + remaining.getCount() + " messages were not processed");
+        }
+        System.out.println("✓ " + mode + " run done\n");
+        return new Result(mode, urgentLatencies, BULK_MESSAGES * 1_000_000_000.0 / elapsedNanos);
+    }
+
+    /**
+     * Remove whatever is on the queue before the first run
+     */
+    private static void drain(MQConnectionManager connectionManager) throws JMSException {
+        Session session = connectionManager.getSession();
+        MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE_NAME));
+        int drained = 0;
+        while (consumer.receive(500) != null) {
+            drained++;
+        }
+        consumer.close();
+        if (drained > 0) {
+            System.out.println("⚠ Removed " + drained + " messages left on " + QUEUE_NAME + "\n");
+        }
+    }
+
+    private static void printReport(List<Result> results) {
+        System.out.println("=========================================");
+        System.out.println("PRIORITY LANE BENCHMARK RESULTS");
+        System.out.println("=========================================");
+        System.out.println("Bulk: " + BULK_MESSAGES + " messages of " + BULK_PROCESSING_MS + " ms on " + LANES
+                + " lanes, urgent: " + URGENT_MESSAGES + " messages");
+        System.out.println(String.format("%-14s %9s %9s %9s %12s", "mode", "p50 ms", "p99 ms", "max ms", "bulk msgs/s"));
+        for (Result result : results) {
+            long[] sorted = result.urgentLatencies.clone();
+            Arrays.sort(sorted);
+            System.out.println(String.format("%-14s %9d %9d %9d %12.0f", result.mode, percentile(sorted, 0.50),
+                    percentile(sorted, 0.99), sorted.length > 0 ? sorted[sorted.length - 1] : 0,
+                    result.bulkRate));
+        }
+        System.out.println("=========================================");
+        System.out.println("Latency is put to end of processing of the urgent messages.");
+        System.out.println("=========================================\n");
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)];
+    }
+
+    private static class Result {
+
+        final String mode;
+        final long[] urgentLatencies;
+        final double bulkRate;
+
+        Result(String mode, long[] urgentLatencies, double bulkRate) {
+            this.mode = mode;
+            this.urgentLatencies = urgentLatencies;
+            this.bulkRate = bulkRate;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks how far a subscriber is behind its publisher.
+ *
+ * Lag is the time from the put (JMSTimestamp) to delivery, so publisher and
+ * subscriber clocks must be in sync for it to be meaningful. Every interval
+ * keeps a fixed size reservoir of lag samples, which keeps percentiles
+ * unbiased however many messages arrive.
+ */
+public class SubscriptionLagMonitor {
+
+    private static final Logger LOG = Logger.getLogger(SubscriptionLagMonitor.class);
+    private final String name;
+    private final long[] samples;
+    private int sampleCount;
+    private long intervalCount;
+    private long intervalMaxLag;
+    private long intervalStart = System.nanoTime();
+    private long totalCount;
+    private ScheduledExecutorService reporter;
+
+    /**
+     * @param name               subscription name shown in reports
+     * @param samplesPerInterval lag samples kept per interval for percentiles
+     */
+    public SubscriptionLagMonitor(String name, int samplesPerInterval) {
+        this.name = name;
+        this.samples = new long[samplesPerInterval];
+    }
+
+    /**
+     * Record the delivery of a message
+     */
+    public void record(Message message) throws JMSException {
+        long timestamp = message.getJMSTimestamp();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            intervalCount++;
+            totalCount++;
+            if (timestamp <= 0) {
+                return;
+            }
+            long lag = Math.max(0, now - timestamp);
+            intervalMaxLag = Math.max(intervalMaxLag, lag);
+            if (sampleCount < samples.length) {
+                samples[sampleCount++] = lag;
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(intervalCount);
+                if (slot < samples.length) {
+                    samples[(int) slot] = lag;
+                }
+            }
+        }
+    }
+
+    /**
+     * Statistics since the previous snapshot, starts a new interval
+     */
+    public synchronized Snapshot snapshot() {
+        long now = System.nanoTime();
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        Snapshot snapshot = new Snapshot(name, intervalCount, now - intervalStart, sorted, intervalMaxLag);
+        sampleCount = 0;
+        intervalCount = 0;
+        intervalMaxLag = 0;
+        intervalStart = now;
+        return snapshot;
+    }
+
+    /**
+     * Print a snapshot every intervalMs
+     */
+    public synchronized void start(long intervalMs) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mq-lag-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> LOG.info("⏱ {}", snapshot()),
+                intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static class Snapshot {
+
+        private final String name;
+        private final long count;
+        private final long durationNanos;
+        private final long[] sortedLags;
+        private final long maxLagMs;
+
+        Snapshot(String name, long count, long durationNanos, long[] sortedLags, long maxLagMs) {
+            this.name = name;
+            this.count = count;
+            this.durationNanos = durationNanos;
+            this.sortedLags = sortedLags;
+            this.maxLagMs = maxLagMs;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getRate() {
+            return durationNanos > 0 ? count * 1_000_000_000.0 / durationNanos : 0;
+        }
+
+        /**
+         * Lag percentile in milliseconds, 0 when no message carried a timestamp
+         */
+        public long getLagPercentile(double fraction) {
+            if (sortedLags.length == 0) {
+                return 0;
+            }
+            int index = Math.min(sortedLags.length - 1, (int) Math.ceil(fraction * sortedLags.length) - 1);
+            return sortedLags[Math.max(0, index)];
+        }
+
+        public long getMaxLagMs() {
+            return maxLagMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d msgs, %.0f msgs/sec, lag p50 %d ms, p99 %d ms, max %d ms",
+                    name, count, getRate(), getLagPercentile(0.50), getLagPercentile(0.99), maxLagMs);
+        }
+    }
+}
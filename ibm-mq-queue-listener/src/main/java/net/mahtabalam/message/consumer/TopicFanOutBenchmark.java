@@ -0,0 +1,278 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures broadcasting through one topic against putting a copy on every subscriber's queue.
+ *
+ * Topic mode publishes each message once to a topic with one shared durable
+ * subscription per subscriber, each consumed by several sessions the way several
+ * listener JVMs would share it. Queue mode, run only when benchmark.fanOutQueues
+ * is set, puts a copy of each message on each of those queues instead. The report
+ * shows publish throughput, total delivery (fan-out) throughput, lag percentiles
+ * per subscriber and how evenly a shared subscription spread over its consumers.
+ */
+public class TopicFanOutBenchmark {
+
+    private static final MQConfig CONFIG = MQConfig.load("consumer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String TOPIC_NAME = CONFIG.getString("benchmark.topic");
+    private static final int SUBSCRIPTIONS = CONFIG.getInt("benchmark.subscriptions");
+    private static final int CONSUMERS_PER_SUBSCRIPTION = CONFIG.getInt("benchmark.consumersPerSubscription");
+    private static final int MESSAGE_COUNT = CONFIG.getInt("benchmark.messages");
+    private static final String FAN_OUT_QUEUES = CONFIG.getString("benchmark.fanOutQueues", "");
+    private static final long DELIVERY_TIMEOUT_MS = 120000;
+    private static final long MESSAGE_TTL_MS = 60000; // benchmark messages expire instead of piling up
+    private static final String SUBSCRIPTION_PREFIX = "FANOUT.BENCH.";
+
+    public static void main(String[] args) {
+        System.out.println("\n╔═════════════════════════════════════════╗");
+        System.out.println("║       TOPIC FAN-OUT BENCHMARK           ║");
+        System.out.println("╚═════════════════════════════════════════╝\n");
+
+        MQConnectionManager connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+        List<Result> results = new ArrayList<>();
+        try {
+            connectionManager.connect();
+            results.add(runTopic(connectionManager));
+            if (!FAN_OUT_QUEUES.trim().isEmpty()) {
+                results.add(runQueues(connectionManager, Arrays.stream(FAN_OUT_QUEUES.split(","))
+                        .map(String::trim).toArray(String[]::new)));
+            }
+            printReport(results);
+        } catch (JMSException e) {
+            System.err.println("✗ Benchmark failed: " + e.getMessage());
+            if (e.getLinkedException() != null) {
+                System.err.println("  Linked exception: " + e.getLinkedException().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connectionManager.disconnect();
+        }
+    }
+
+    private static Result runTopic(MQConnectionManager connectionManager) throws JMSException, InterruptedException {
+        System.out.println("Publishing " + MESSAGE_COUNT + " messages to topic " + TOPIC_NAME + " with "
+                + SUBSCRIPTIONS + " shared subscriptions of " + CONSUMERS_PER_SUBSCRIPTION + " consumers");
+        Session publishSession = connectionManager.getSession();
+        Topic topic = publishSession.createTopic(TOPIC_NAME);
+        Subscribers subscribers = new Subscribers(SUBSCRIPTIONS, CONSUMERS_PER_SUBSCRIPTION, MESSAGE_COUNT);
+        for (int s = 0; s < SUBSCRIPTIONS; s++) {
+            String subscriptionName = SUBSCRIPTION_PREFIX + s;
+            removeSubscription(publishSession, subscriptionName); // left over messages would skew lag
+            for (int c = 0; c < CONSUMERS_PER_SUBSCRIPTION; c++) {
+                Session session = createSession(connectionManager);
+                subscribers.attach(s, c, session, session.createSharedDurableConsumer(topic, subscriptionName));
+            }
+        }
+        try {
+            return subscribers.measure("topic", publishSession, new Destination[]{topic});
+        } finally {
+            subscribers.close();
+            for (int s = 0; s < SUBSCRIPTIONS; s++) {
+                removeSubscription(publishSession, SUBSCRIPTION_PREFIX + s);
+            }
+        }
+    }
+
+    private static Result runQueues(MQConnectionManager connectionManager, String[] queueNames)
+            throws JMSException, InterruptedException {
+        System.out.println("Putting " + MESSAGE_COUNT + " messages on each of " + queueNames.length + " queues");
+        Session publishSession = connectionManager.getSession();
+        Subscribers subscribers = new Subscribers(queueNames.length, CONSUMERS_PER_SUBSCRIPTION, MESSAGE_COUNT);
+        Destination[] queues = new Destination[queueNames.length];
+        for (int q = 0; q < queueNames.length; q++) {
+            queues[q] = publishSession.createQueue(queueNames[q]);
+            for (int c = 0; c < CONSUMERS_PER_SUBSCRIPTION; c++) {
+                Session session = createSession(connectionManager);
+                subscribers.attach(q, c, session, session.createConsumer(queues[q]));
+            }
+        }
+        try {
+            return subscribers.measure("queues", publishSession, queues);
+        } finally {
+            subscribers.close();
+        }
+    }
+
+    /**
+     * Each consumer gets its own session, and so its own delivery thread, as a separate JVM would
+     */
+    private static Session createSession(MQConnectionManager connectionManager) throws JMSException {
+        return connectionManager.getConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    private static void removeSubscription(Session session, String subscriptionName) {
+        try {
+            session.unsubscribe(subscriptionName);
+        } catch (JMSException e) {
+            // The subscription did not exist
+        }
+    }
+
+    private static void printReport(List<Result> results) {
+        System.out.println("\n=========================================");
+        System.out.println("FAN-OUT BENCHMARK RESULTS");
+        System.out.println("=========================================");
+        System.out.println("Messages: " + MESSAGE_COUNT + ", consumers per subscriber: " + CONSUMERS_PER_SUBSCRIPTION);
+        for (Result result : results) {
+            System.out.println("\n" + result.mode + ": " + result.subscriberCount + " subscribers, "
+                    + result.delivered + "/" + result.expected + " delivered");
+            System.out.println(String.format("  Publish: %.0f msgs/sec (%d puts)",
+                    result.putCount * 1_000_000_000.0 / result.publishNanos, result.putCount));
+            System.out.println(String.format("  Fan-out: %.0f deliveries/sec",
+                    result.delivered * 1_000_000_000.0 / result.deliverNanos));
+            for (int s = 0; s < result.snapshots.size(); s++) {
+                SubscriptionLagMonitor.Snapshot snapshot = result.snapshots.get(s);
+                long[] counts = result.consumerCounts[s];
+                long min = Arrays.stream(counts).min().orElse(0);
+                long max = Arrays.stream(counts).max().orElse(0);
+                System.out.println(String.format("  %-18s lag p50 %5d ms, p99 %5d ms, max %5d ms, per consumer %d-%d",
+                        "subscriber " + s + ":", snapshot.getLagPercentile(0.50), snapshot.getLagPercentile(0.99),
+                        snapshot.getMaxLagMs(), min, max));
+            }
+        }
+        System.out.println("=========================================");
+        System.out.println("Lag is put time to delivery. Queue mode makes one put per subscriber,");
+        System.out.println("topic mode one publish that the queue manager copies to each subscription.");
+        System.out.println("=========================================\n");
+    }
+
+    /**
+     * Consumers grouped by subscriber, with a lag monitor per subscriber
+     */
+    private static class Subscribers {
+
+        private final SubscriptionLagMonitor[] monitors;
+        private final AtomicLong[][] consumerCounts;
+        private final List<Session> sessions = new ArrayList<>();
+        private final List<MessageConsumer> consumers = new ArrayList<>();
+        private final CountDownLatch delivered;
+        private final long expected;
+        private volatile long lastDeliveryNanos;
+
+        Subscribers(int subscriberCount, int consumersPerSubscriber, int messageCount) {
+            this.monitors = new SubscriptionLagMonitor[subscriberCount];
+            this.consumerCounts = new AtomicLong[subscriberCount][consumersPerSubscriber];
+            for (int s = 0; s < subscriberCount; s++) {
+                monitors[s] = new SubscriptionLagMonitor("subscriber " + s, 10000);
+                for (int c = 0; c < consumersPerSubscriber; c++) {
+                    consumerCounts[s][c] = new AtomicLong();
+                }
+            }
+            this.expected = (long) subscriberCount * messageCount;
+            this.delivered = new CountDownLatch((int) expected);
+        }
+
+        void attach(int subscriber, int consumerIndex, Session session, MessageConsumer consumer) throws JMSException {
+            sessions.add(session);
+            consumers.add(consumer);
+            SubscriptionLagMonitor monitor = monitors[subscriber];
+            AtomicLong count = consumerCounts[subscriber][consumerIndex];
+            consumer.setMessageListener(message -> {
+                try {
+                    monitor.record(message);
+                } catch (JMSException e) {
+                    System.err.println("✗ Error reading message timestamp: " + e.getMessage());
+                }
+                count.incrementAndGet();
+                lastDeliveryNanos = System.nanoTime();
+                delivered.countDown();
+            });
+        }
+
+        Result measure(String mode, Session publishSession, Destination[] destinations)
+                throws JMSException, InterruptedException {
+            for (SubscriptionLagMonitor monitor : monitors) {
+                monitor.snapshot(); // start the interval now
+            }
+            MessageProducer producer = publishSession.createProducer(null);
+            Message message = publishSession.createTextMessage("TopicFanOutBenchmark");
+            long start = System.nanoTime();
+            for (int m = 0; m < MESSAGE_COUNT; m++) {
+                for (Destination destination : destinations) {
+                    producer.send(destination, message, DeliveryMode.NON_PERSISTENT, Message.DEFAULT_PRIORITY,
+                            MESSAGE_TTL_MS);
+                }
+            }
+            long publishNanos = System.nanoTime() - start;
+            producer.close();
+            if (!delivered.await(DELIVERY_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.err.println("⚠ Timed out waiting for deliveries, " + delivered.getCount() + " missing");
+            }
+
+            List<SubscriptionLagMonitor.Snapshot> snapshots = new ArrayList<>();
+            long[][] counts = new long[monitors.length][];
+            for (int s = 0; s < monitors.length; s++) {
+                snapshots.add(monitors[s].snapshot());
+                counts[s] = Arrays.stream(consumerCounts[s]).mapToLong(AtomicLong::get).toArray();
+            }
+            return new Result(mode, monitors.length, (long) MESSAGE_COUNT * destinations.length, publishNanos,
+                    Math.max(1, lastDeliveryNanos - start), expected - delivered.getCount(), expected,
+                    snapshots, counts);
+        }
+
+        void close() {
+            for (MessageConsumer consumer : consumers) {
+                try {
+                    consumer.close();
+                } catch (JMSException e) {
+                    System.err.println("Error closing consumer: " + e.getMessage());
+                }
+            }
+            for (Session session : sessions) {
+                try {
+                    session.close();
+                } catch (JMSException e) {
+                    System.err.println("Error closing session: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static class Result {
+
+        final String mode;
+        final int subscriberCount;
+        final long putCount;
+        final long publishNanos;
+        final long deliverNanos;
+        final long delivered;
+        final long expected;
+        final List<SubscriptionLagMonitor.Snapshot> snapshots;
+        final long[][] consumerCounts;
+
+        Result(String mode, int subscriberCount, long putCount, long publishNanos, long deliverNanos,
+               long delivered, long expected, List<SubscriptionLagMonitor.Snapshot> snapshots,
+               long[][] consumerCounts) {
+            this.mode = mode;
+            this.subscriberCount = subscriberCount;
+            this.putCount = putCount;
+            this.publishNanos = publishNanos;
+            this.deliverNanos = deliverNanos;
+            this.delivered = delivered;
+            this.expected = expected;
+            this.snapshots = snapshots;
+            this.consumerCounts = consumerCounts;
+        }
+    }
+}
@@ -1,36 +1,71 @@
 package net.mahtabalam.message.producer;
 
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.Span;
+import net.mahtabalam.message.tracing.Tracer;
+
+import javax.jms.Destination;
 import javax.jms.MessageProducer;
-import javax.jms.Queue;
 import javax.jms.Session;
 import javax.jms.JMSException;
 import javax.jms.DeliveryMode;
+import javax.jms.Message;
 import javax.jms.TextMessage;
 import java.lang.IllegalStateException;
 
 public class MQMessageSender {
 
+    private static final Logger LOG = Logger.getLogger(MQMessageSender.class);
+
     private final MQConnectionManager connectionManager;
     private final String queueName;
     private MessageProducer messageProducer;
+    private Tracer tracer;
+    private boolean topic;
+    private int priority = Message.DEFAULT_PRIORITY;
 
     public MQMessageSender(MQConnectionManager connectionManager, String queueName) {
         this.connectionManager = connectionManager;
         this.queueName = queueName;
     }
 
+    /**
+     * Start a producer span for every sampled message and propagate it in the traceparent property
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Publish to the topic with this sender's name instead of putting to a queue, so every
+     * subscription gets its own copy. Must be set before initialize().
+     */
+    public void setTopic(boolean topic) {
+        this.topic = topic;
+    }
+
+    /**
+     * JMSPriority of the messages sent by sendMessages(), 0 (lowest) to 9 (highest)
+     */
+    public void setPriority(int priority) {
+        if (priority < 0 || priority > 9) {
+            throw new IllegalArgumentException("Priority must be between 0 and 9: " + priority);
+        }
+        this.priority = priority;
+    }
+
     public void initialize() throws JMSException {
         if (!connectionManager.isConnected()) {
             throw new IllegalStateException("Connection manager is not connected.");
         }
 
         Session session = connectionManager.getSession();
-        Queue queue = session.createQueue(queueName);
+        Destination destination = topic ? session.createTopic(queueName) : session.createQueue(queueName);
 
-        messageProducer = session.createProducer(queue);
+        messageProducer = session.createProducer(destination);
         messageProducer.setDeliveryMode(DeliveryMode.PERSISTENT);
 
-        System.out.println("✓ Message sender initialized for queue: " + queueName + "\n");
+        LOG.info("✓ Message sender initialized for {}", describeDestination());
     }
 
     public void sendMessages(int messageCount) throws JMSException {
@@ -38,13 +73,13 @@ public class MQMessageSender {
             throw new IllegalStateException("Message sender not initialized. Call initialize() first.");
         }
 
-        System.out.println("Sending " + messageCount + " messages to queue: " + queueName + "\n");
+        LOG.info("Sending {} messages to {}", messageCount, describeDestination());
         long startTime = System.currentTimeMillis();
 
         for (int i = 1; i <= messageCount; i++) {
             sendMessage(i);
             if (i % 10 == 0) {
-                System.out.println("  Sent " + i + " messages...");
+                LOG.info("  Sent {} messages...", i);
             }
         }
         long endTime = System.currentTimeMillis();
@@ -65,19 +100,53 @@ public class MQMessageSender {
         message.setIntProperty("MessageNumber", messageNumber);
         message.setStringProperty("MessageType", "TEST");
         message.setStringProperty("QueueName", queueName);
+        send(message, priority);
+    }
+
+    /**
+     * Send a single message with its own priority, e.g. an urgent control message during a bulk load
+     */
+    public void send(String text, int messagePriority) throws JMSException {
+        if (messageProducer == null) {
+            throw new IllegalStateException("Message sender not initialized. Call initialize() first.");
+        }
+        TextMessage message = connectionManager.getSession().createTextMessage(text);
+        message.setStringProperty("QueueName", queueName);
+        send(message, messagePriority);
+    }
 
-        messageProducer.send(message);
+    private void send(TextMessage message, int messagePriority) throws JMSException {
+        Span span = tracer != null ? tracer.startProducerSpan(message, queueName) : null;
+        try {
+            messageProducer.send(message, DeliveryMode.PERSISTENT, messagePriority, Message.DEFAULT_TIME_TO_LIVE);
+            if (span != null) {
+                span.setAttribute("messaging.message.id", message.getJMSMessageID());
+            }
+        } catch (JMSException e) {
+            if (span != null) {
+                span.setError(e);
+            }
+            throw e;
+        } finally {
+            if (span != null) {
+                span.end();
+            }
+        }
     }
 
     private void printSummary(int messageCount, long duration) {
-        System.out.println("\n=========================================");
-        System.out.println("✓ SUCCESS!");
-        System.out.println("=========================================");
-        System.out.println("Queue: " + queueName);
-        System.out.println("Total messages sent: " + messageCount);
-        System.out.println("Time taken: " + duration + " ms");
-        System.out.println("Average: " + String.format("%.2f", duration / (double) messageCount) + " ms per message");
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("✓ SUCCESS!");
+        LOG.info("=========================================");
+        LOG.info(topic ? "Topic: {}" : "Queue: {}", queueName);
+        LOG.info("Total messages sent: {}", messageCount);
+        LOG.info("Time taken: {} ms", duration);
+        LOG.info("Average: {} ms per message", String.format("%.2f", duration / (double) messageCount));
+        LOG.info("=========================================");
+    }
+
+    private String describeDestination() {
+        return (topic ? "topic: " : "queue: ") + queueName;
     }
 
     public void close() {
@@ -85,11 +154,10 @@ public class MQMessageSender {
             if (messageProducer != null) {
                 messageProducer.close();
                 messageProducer = null;
-                System.out.println("Message sender closed.");
+                LOG.info("Message sender closed.");
             }
         } catch (JMSException e) {
-            System.err.println("Error closing message sender:");
-            e.printStackTrace();
+            LOG.error("Error closing message sender:", e);
         }
     }
 
@@ -100,4 +168,12 @@ public class MQMessageSender {
     public String getQueueName() {
         return queueName;
     }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isTopic() {
+        return topic;
+    }
 }
\ No newline at end of file
@@ -1,18 +1,33 @@
 package net.mahtabalam.message.producer;
 
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.BatchingFileSpanExporter;
+import net.mahtabalam.message.tracing.TraceSampler;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
+import java.nio.file.Paths;
 
 public class MQProducer {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 1414;
-    private static final String CHANNEL = "SYSTEM.DEF.SVRCONN";
-    private static final String QMGR = "MY.TEST.QMNGR";
-    private static final String QUEUE_NAME = "FIRST.TEST.QUEUE";
+    private static final Logger LOG = Logger.getLogger(MQProducer.class);
+    private static final MQConfig CONFIG = MQConfig.load("producer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("mq.queue");
+    private static final String TOPIC_NAME = CONFIG.getString("mq.topic", null); // publish instead of put when set
+    private static final int MESSAGE_COUNT = CONFIG.getInt("producer.messageCount");
+    private static final int PRIORITY = CONFIG.getInt("producer.priority"); // JMSPriority 0-9
+    private static final double TRACE_SAMPLE_RATIO = CONFIG.getDouble("tracing.sampleRatio");
 
     public static void main(String[] args) {
+        Logger.configure(CONFIG);
         MQConnectionManager connectionManager = null;
         MQMessageSender messageSender = null;
+        Tracer tracer = null;
 
         try {
             // Step 1: Create connection manager
@@ -20,11 +35,21 @@ public class MQProducer {
             // Step 2: Connect to IBM MQ
             connectionManager.connect();
             // Step 3: Create message sender
-            messageSender = new MQMessageSender(connectionManager, QUEUE_NAME);
+            if (TOPIC_NAME != null) {
+                messageSender = new MQMessageSender(connectionManager, TOPIC_NAME);
+                messageSender.setTopic(true);
+            } else {
+                messageSender = new MQMessageSender(connectionManager, QUEUE_NAME);
+            }
+            tracer = new Tracer(new TraceSampler(TRACE_SAMPLE_RATIO), new BatchingFileSpanExporter(
+                    Paths.get(CONFIG.getString("tracing.file")), "mq-producer",
+                    CONFIG.getInt("tracing.batchSize"), CONFIG.getLong("tracing.flushIntervalMs")));
+            messageSender.setTracer(tracer);
+            messageSender.setPriority(PRIORITY);
             // Step 4: Initialize message sender
             messageSender.initialize();
-            // Step 5: Send 100 messages
-            messageSender.sendMessages(100);
+            // Step 5: Send the configured number of messages
+            messageSender.sendMessages(MESSAGE_COUNT);
         } catch (JMSException e) {
             handleError(e);
 
@@ -36,29 +61,35 @@ public class MQProducer {
             if (connectionManager != null) {
                 connectionManager.disconnect();
             }
+            if (tracer != null) {
+                tracer.close();
+            }
         }
     }
 
 
     private static void handleError(JMSException e) {
-        System.err.println("\n=========================================");
-        System.err.println("✗ ERROR OCCURRED");
-        System.err.println("=========================================");
-        System.err.println("Error: " + e.getMessage());
-        System.err.println("Error Code: " + (e.getErrorCode() != null ? e.getErrorCode() : "N/A"));
+        LOG.error("=========================================");
+        LOG.error("✗ ERROR OCCURRED");
+        LOG.error("=========================================");
+        LOG.error("Error: {}", e.getMessage());
+        LOG.error("Error Code: {}", e.getErrorCode() != null ? e.getErrorCode() : "N/A");
 
         if (e.getLinkedException() != null) {
-            System.err.println("\nLinked Exception Details:");
-            e.getLinkedException().printStackTrace();
+            LOG.error("Linked Exception Details:", e.getLinkedException());
         }
 
-        System.err.println("\nTroubleshooting Tips:");
-        System.err.println("1. Verify Queue Manager '" + QMGR + "' is running");
-        System.err.println("2. Check if queue '" + QUEUE_NAME + "' exists");
-        System.err.println("3. Confirm channel '" + CHANNEL + "' is configured");
-        System.err.println("4. Ensure MQ listener is active on port " + PORT);
-        System.err.println("5. Check authentication/authorization settings");
-        System.err.println("   Run: ALTER QMGR CHLAUTH(DISABLED)");
-        System.err.println("=========================================\n");
+        LOG.error("Troubleshooting Tips:");
+        LOG.error("1. Verify Queue Manager '{}' is running", QMGR);
+        if (TOPIC_NAME != null) {
+            LOG.error("2. Check PUB authority on topic string '{}'", TOPIC_NAME);
+        } else {
+            LOG.error("2. Check if queue '{}' exists", QUEUE_NAME);
+        }
+        LOG.error("3. Confirm channel '{}' is configured", CHANNEL);
+        LOG.error("4. Ensure MQ listener is active on port {}", PORT);
+        LOG.error("5. Check authentication/authorization settings");
+        LOG.error("   Run: ALTER QMGR CHLAUTH(DISABLED)");
+        LOG.error("=========================================");
     }
 }
\ No newline at end of file
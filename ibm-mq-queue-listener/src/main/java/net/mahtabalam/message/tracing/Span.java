@@ -0,0 +1,83 @@
+package net.mahtabalam.message.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation of a trace. Only sampled spans are ever created.
+ */
+public class Span {
+
+    public enum Kind { PRODUCER, CONSUMER }
+
+    private final String name;
+    private final Kind kind;
+    private final TraceContext context;
+    private final String parentSpanId;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private final SpanExporter exporter;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private long endEpochNanos;
+    private String error;
+
+    Span(String name, Kind kind, TraceContext context, String parentSpanId, SpanExporter exporter) {
+        this.name = name;
+        this.kind = kind;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.exporter = exporter;
+        this.startEpochNanos = System.currentTimeMillis() * 1_000_000L;
+        this.startNanoTime = System.nanoTime();
+    }
+
+    public Span setAttribute(String key, Object value) {
+        attributes.put(key, value);
+        return this;
+    }
+
+    public void setError(Throwable e) {
+        this.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    /**
+     * Stop the clock and hand the span to the exporter
+     */
+    public void end() {
+        // Wall clock start plus monotonic duration, so the duration is immune to clock adjustments
+        endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+        exporter.export(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public TraceContext getContext() {
+        return context;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,100 @@
+package net.mahtabalam.message.tracing;
+
+/**
+ * W3C trace context: trace id, span id and the sampled flag, carried between
+ * processes in the traceparent header "00-{32 hex trace id}-{16 hex span id}-{flags}"
+ */
+public class TraceContext {
+
+    private static final String VERSION = "00";
+    private static final int TRACEPARENT_LENGTH = 55;
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final boolean sampled;
+
+    public TraceContext(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Parse a traceparent header
+     *
+     * @return the context, or null if the header is missing or malformed
+     */
+    public static TraceContext parse(String traceparent) {
+        if (traceparent == null || traceparent.length() != TRACEPARENT_LENGTH
+                || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-'
+                || !isLowerHex(traceparent, 0, 2) || traceparent.startsWith("ff") || !isLowerHex(traceparent, 3, 35)
+                || !isLowerHex(traceparent, 36, 52) || !isLowerHex(traceparent, 53, 55)) {
+            return null;
+        }
+        try {
+            long high = Long.parseUnsignedLong(traceparent.substring(3, 19), 16);
+            long low = Long.parseUnsignedLong(traceparent.substring(19, 35), 16);
+            long span = Long.parseUnsignedLong(traceparent.substring(36, 52), 16);
+            int flags = Integer.parseInt(traceparent.substring(53, 55), 16);
+            if ((high == 0 && low == 0) || span == 0) {
+                return null;
+            }
+            return new TraceContext(high, low, span, (flags & 1) != 0);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The parse methods also take a sign and upper case digits, the header allows neither
+     */
+    private static boolean isLowerHex(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toTraceparent() {
+        return VERSION + '-' + getTraceId() + '-' + getSpanId() + (sampled ? "-01" : "-00");
+    }
+
+    public String getTraceId() {
+        return hex(traceIdHigh) + hex(traceIdLow);
+    }
+
+    public String getSpanId() {
+        return hex(spanId);
+    }
+
+    long getTraceIdHigh() {
+        return traceIdHigh;
+    }
+
+    long getTraceIdLow() {
+        return traceIdLow;
+    }
+
+    long getSpanIdValue() {
+        return spanId;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    static String hex(long value) {
+        String digits = Long.toHexString(value);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+}
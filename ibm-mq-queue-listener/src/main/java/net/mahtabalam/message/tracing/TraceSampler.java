@@ -0,0 +1,38 @@
+package net.mahtabalam.message.tracing;
+
+/**
+ * Head sampling on the trace id, so every service that sees a trace id makes the same decision
+ */
+public class TraceSampler {
+
+    private volatile long threshold;
+    private volatile double ratio;
+
+    /**
+     * @param ratio fraction of traces to record, 0 records none and 1 records all
+     */
+    public TraceSampler(double ratio) {
+        setRatio(ratio);
+    }
+
+    public boolean shouldSample(long traceIdLow) {
+        // The low 63 bits of a random trace id are uniform, compare them against the ratio
+        long bits = traceIdLow & Long.MAX_VALUE;
+        return bits < threshold || threshold == Long.MAX_VALUE;
+    }
+
+    /**
+     * Change the ratio, e.g. from a configuration reload
+     */
+    public void setRatio(double ratio) {
+        if (!(ratio >= 0 && ratio <= 1)) {
+            throw new IllegalArgumentException("Sample ratio must be between 0 and 1: " + ratio);
+        }
+        this.ratio = ratio;
+        this.threshold = ratio >= 1 ? Long.MAX_VALUE : (long) (ratio * Long.MAX_VALUE);
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+}
@@ -0,0 +1,84 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.consumer.JmsFakes.FakeMessage;
+import net.mahtabalam.message.consumer.JmsFakes.FakeSession;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackoutHandlerTest {
+
+    private static final int THRESHOLD = 3;
+
+    private BackoutHandler handler(FakeSession fake) throws JMSException {
+        BackoutHandler handler = new BackoutHandler("FIRST.TEST.QUEUE.BACKOUT", THRESHOLD, 1, 1);
+        handler.initialize(fake.session);
+        return handler;
+    }
+
+    @Test
+    void failureBelowThresholdRecoversClientAcknowledgedSession() throws JMSException {
+        FakeSession fake = new FakeSession(false, Session.CLIENT_ACKNOWLEDGE);
+        BackoutHandler handler = handler(fake);
+
+        handler.handleFailure(new FakeMessage(fake, "ID:1").message, new RuntimeException("boom"));
+
+        assertEquals(1, fake.count("recover"));
+        assertTrue(fake.sent.isEmpty());
+        assertEquals(1, handler.getRetryCount());
+    }
+
+    @Test
+    void failureAtThresholdBacksOutAndAcknowledgesOriginal() throws JMSException {
+        FakeSession fake = new FakeSession(false, Session.CLIENT_ACKNOWLEDGE);
+        BackoutHandler handler = handler(fake);
+        FakeMessage third = new FakeMessage(fake, "ID:1").redeliver().redeliver();
+
+        handler.handleFailure(third.message, new RuntimeException("boom"));
+
+        assertEquals(1, fake.sent.size());
+        assertSame(third.message, fake.sent.get(0));
+        // Without the acknowledgement a later recover() would back the message out again
+        assertEquals(1, fake.count("acknowledge"));
+        assertEquals(0, fake.count("recover"));
+        assertEquals(1, handler.getBackoutCount());
+    }
+
+    @Test
+    void backoutOnAutoAcknowledgeSessionLeavesAcknowledgementToProvider() throws JMSException {
+        FakeSession fake = new FakeSession(false, Session.AUTO_ACKNOWLEDGE);
+        BackoutHandler handler = handler(fake);
+
+        handler.backout(new FakeMessage(fake, "ID:1").message);
+
+        assertEquals(1, fake.sent.size());
+        assertEquals(0, fake.count("acknowledge"));
+        assertEquals(0, fake.count("commit"));
+    }
+
+    @Test
+    void autoAcknowledgeFailureThrowsForRedelivery() throws JMSException {
+        FakeSession fake = new FakeSession(false, Session.AUTO_ACKNOWLEDGE);
+        BackoutHandler handler = handler(fake);
+
+        assertThrows(IllegalStateException.class,
+                () -> handler.handleFailure(new FakeMessage(fake, "ID:1").message, new RuntimeException("boom")));
+    }
+
+    @Test
+    void messageIsPoisonOnlyAfterThresholdDeliveries() throws JMSException {
+        FakeSession fake = new FakeSession(false, Session.CLIENT_ACKNOWLEDGE);
+        BackoutHandler handler = handler(fake);
+        FakeMessage third = new FakeMessage(fake, "ID:1").redeliver().redeliver();
+
+        assertFalse(handler.isPoison(third.message));
+        assertTrue(handler.isPoison(third.redeliver().message));
+    }
+}
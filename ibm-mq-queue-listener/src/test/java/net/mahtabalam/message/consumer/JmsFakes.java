@@ -0,0 +1,178 @@
+package net.mahtabalam.message.consumer;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a JMS session and its messages to run consumer logic without a
+ * queue manager. Unmodelled methods return null, false or zero.
+ */
+final class JmsFakes {
+
+    private JmsFakes() {
+    }
+
+    /**
+     * Records the calls the code under test makes on the session and the messages it sends
+     */
+    static final class FakeSession {
+
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+        final Session session;
+
+        FakeSession(boolean transacted, int acknowledgeMode) {
+            this.session = proxy(Session.class, (method, args) -> {
+                calls.add(method.getName());
+                switch (method.getName()) {
+                    case "getTransacted":
+                        return transacted;
+                    case "getAcknowledgeMode":
+                        return transacted ? Session.SESSION_TRANSACTED : acknowledgeMode;
+                    case "createQueue":
+                        return proxy(Queue.class, (m, a) -> m.getName().equals("getQueueName") ? args[0] : null);
+                    case "createProducer":
+                        return proxy(MessageProducer.class, (m, a) -> {
+                            if (m.getName().equals("send")) {
+                                sent.add((Message) a[0]);
+                            }
+                            return null;
+                        });
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        int count(String methodName) {
+            synchronized (calls) {
+                return (int) calls.stream().filter(methodName::equals).count();
+            }
+        }
+    }
+
+    /**
+     * A delivery of a message, redeliver() returns the next delivery of the same message
+     */
+    static final class FakeMessage {
+
+        final String messageId;
+        final int deliveryCount;
+        final Map<String, Object> properties = new HashMap<>();
+        final Message message;
+        private final FakeSession owner;
+        private int priority = Message.DEFAULT_PRIORITY;
+        private boolean failing;
+
+        FakeMessage(FakeSession owner, String messageId) {
+            this(owner, messageId, 1);
+        }
+
+        private FakeMessage(FakeSession owner, String messageId, int deliveryCount) {
+            this.owner = owner;
+            this.messageId = messageId;
+            this.deliveryCount = deliveryCount;
+            this.message = proxy(Message.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "getJMSMessageID":
+                        return messageId;
+                    case "getJMSRedelivered":
+                        return deliveryCount > 1;
+                    case "getJMSDeliveryMode":
+                        return DeliveryMode.PERSISTENT;
+                    case "getJMSPriority":
+                        return priority;
+                    case "propertyExists":
+                        return "JMSXDeliveryCount".equals(args[0]) || properties.containsKey(args[0]);
+                    case "getIntProperty":
+                        return "JMSXDeliveryCount".equals(args[0]) ? deliveryCount : properties.get(args[0]);
+                    case "getStringProperty":
+                    case "getObjectProperty":
+                        return properties.get(args[0]);
+                    case "getPropertyNames":
+                        if (failing) {
+                            throw new JMSException("Processing failed for " + messageId);
+                        }
+                        return Collections.enumeration(properties.keySet());
+                    case "acknowledge":
+                        owner.calls.add("acknowledge");
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        /**
+         * Make processing of this delivery fail
+         */
+        FakeMessage failing() {
+            this.failing = true;
+            return this;
+        }
+
+        FakeMessage withPriority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        FakeMessage withProperty(String name, Object value) {
+            properties.put(name, value);
+            return this;
+        }
+
+        FakeMessage redeliver() {
+            FakeMessage next = new FakeMessage(owner, messageId, deliveryCount + 1);
+            next.properties.putAll(properties);
+            next.priority = priority;
+            next.failing = failing;
+            return next;
+        }
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object fake = Proxy.newProxyInstance(JmsFakes.class.getClassLoader(), new Class<?>[]{type},
+                (self, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(self);
+                        case "equals":
+                            return self == args[0];
+                        case "toString":
+                            return "Fake" + type.getSimpleName();
+                        default:
+                            Object result = handler.invoke(method, args);
+                            return result != null ? result : defaultValue(method.getReturnType());
+                    }
+                });
+        return type.cast(fake);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
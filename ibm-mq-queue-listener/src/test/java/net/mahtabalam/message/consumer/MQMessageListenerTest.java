@@ -0,0 +1,75 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.consumer.JmsFakes.FakeMessage;
+import net.mahtabalam.message.consumer.JmsFakes.FakeSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Serial processing with deduplication and backout, as MQConsumer sets them up
+ */
+class MQMessageListenerTest {
+
+    private static final int BACKOUT_THRESHOLD = 3;
+
+    private final FakeSession fake = new FakeSession(false, Session.CLIENT_ACKNOWLEDGE);
+    private final MQMessageListener listener = new MQMessageListener("FIRST.TEST.QUEUE");
+    private BackoutHandler backoutHandler;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        backoutHandler = new BackoutHandler("FIRST.TEST.QUEUE.BACKOUT", BACKOUT_THRESHOLD, 1, 1);
+        backoutHandler.initialize(fake.session);
+        listener.setBackoutHandler(backoutHandler);
+        listener.setDeduplicator(new MessageDeduplicator(2, 60_000, 100, MessageDeduplicator.byMessageId()));
+    }
+
+    @Test
+    void failedMessageIsRetriedAndBackedOutInsteadOfSkippedAsDuplicate() {
+        FakeMessage delivery = new FakeMessage(fake, "ID:poison").failing();
+
+        // Every recover() redelivers the message with the same JMSMessageID
+        for (int i = 1; i <= BACKOUT_THRESHOLD; i++) {
+            listener.onMessage(delivery.message);
+            delivery = delivery.redeliver();
+        }
+
+        assertEquals(0, listener.getDuplicateCount());
+        assertEquals(BACKOUT_THRESHOLD, listener.getMessageCount());
+        assertEquals(BACKOUT_THRESHOLD - 1, fake.count("recover"));
+        assertEquals(1, backoutHandler.getBackoutCount());
+        assertEquals(1, fake.sent.size());
+    }
+
+    @Test
+    void redeliveryOfProcessedMessageIsSkipped() {
+        FakeMessage delivery = new FakeMessage(fake, "ID:1");
+
+        listener.onMessage(delivery.message);
+        listener.onMessage(delivery.redeliver().message);
+
+        assertEquals(1, listener.getMessageCount());
+        assertEquals(1, listener.getDuplicateCount());
+        assertEquals(0, fake.count("recover"));
+    }
+
+    @Test
+    void backedOutMessageIsNotBackedOutAgain() {
+        FakeMessage delivery = new FakeMessage(fake, "ID:poison").failing();
+        for (int i = 1; i <= BACKOUT_THRESHOLD; i++) {
+            listener.onMessage(delivery.message);
+            delivery = delivery.redeliver();
+        }
+
+        // Delivered once more, e.g. after a reconnect before the acknowledgement reached the queue manager
+        listener.onMessage(delivery.message);
+
+        assertEquals(1, listener.getDuplicateCount());
+        assertEquals(1, fake.sent.size());
+    }
+}
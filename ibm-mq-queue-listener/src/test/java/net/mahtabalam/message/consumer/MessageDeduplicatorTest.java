@@ -0,0 +1,129 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.consumer.JmsFakes.FakeMessage;
+import net.mahtabalam.message.consumer.JmsFakes.FakeSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageDeduplicatorTest {
+
+    private static final long HOUR_MS = 3_600_000;
+
+    private final FakeSession fake = new FakeSession(false, Session.CLIENT_ACKNOWLEDGE);
+
+    @TempDir
+    Path directory;
+
+    private Message message(String messageId) {
+        return new FakeMessage(fake, messageId).message;
+    }
+
+    @Test
+    void onlyProcessedKeysAreDuplicates() throws JMSException {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(2, HOUR_MS, 100, MessageDeduplicator.byMessageId());
+
+        assertFalse(deduplicator.isDuplicate(message("ID:1")));
+        // Not marked, e.g. processing failed: the redelivery is processed again
+        assertFalse(deduplicator.isDuplicate(message("ID:1")));
+
+        deduplicator.markProcessed(message("ID:1"));
+        assertTrue(deduplicator.isDuplicate(message("ID:1")));
+        assertFalse(deduplicator.isDuplicate(message("ID:2")));
+        assertEquals(1, deduplicator.getDuplicateCount());
+        assertEquals(4, deduplicator.getLookupCount());
+    }
+
+    @Test
+    void oldestBucketIsForgottenWhenBucketsFillUp() throws JMSException {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(2, HOUR_MS, 2, MessageDeduplicator.byMessageId());
+        for (String id : new String[]{"ID:a", "ID:b", "ID:c", "ID:d"}) {
+            deduplicator.markProcessed(message(id));
+        }
+        assertTrue(deduplicator.isDuplicate(message("ID:a")));
+
+        // Third bucket's worth of keys reuses the bucket holding a and b
+        deduplicator.markProcessed(message("ID:e"));
+
+        assertFalse(deduplicator.isDuplicate(message("ID:a")));
+        assertFalse(deduplicator.isDuplicate(message("ID:b")));
+        assertTrue(deduplicator.isDuplicate(message("ID:c")));
+        assertTrue(deduplicator.isDuplicate(message("ID:e")));
+        assertEquals(3, deduplicator.getEntryCount());
+    }
+
+    @Test
+    void messagesWithoutKeyAreNeverDuplicates() throws JMSException {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(2, HOUR_MS, 10,
+                PartitionedMessageExecutor.byProperty("OrderId"));
+
+        deduplicator.markProcessed(message("ID:1"));
+
+        assertFalse(deduplicator.isDuplicate(message("ID:1")));
+        assertEquals(0, deduplicator.getEntryCount());
+    }
+
+    @Test
+    void cacheSurvivesRestart() throws JMSException, IOException {
+        Path file = directory.resolve("mq-dedup.bin");
+        MessageDeduplicator deduplicator = new MessageDeduplicator(3, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+        deduplicator.enablePersistence(file, 0);
+        for (int i = 0; i < 120; i++) {
+            deduplicator.markProcessed(message("ID:" + i));
+        }
+        deduplicator.close();
+
+        MessageDeduplicator restarted = new MessageDeduplicator(3, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+        restarted.enablePersistence(file, 0);
+
+        assertEquals(120, restarted.getEntryCount());
+        assertTrue(restarted.isDuplicate(message("ID:0")));
+        assertTrue(restarted.isDuplicate(message("ID:119")));
+        assertFalse(restarted.isDuplicate(message("ID:120")));
+    }
+
+    @Test
+    void keysSurviveACrashAfterThePeriodicSave() throws Exception {
+        Path file = directory.resolve("mq-dedup.bin");
+        MessageDeduplicator deduplicator = new MessageDeduplicator(3, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+        deduplicator.enablePersistence(file, 20);
+        deduplicator.markProcessed(message("ID:1"));
+        deduplicator.markProcessed(message("ID:2"));
+
+        // Never closed, as after a kill -9
+        MessageDeduplicator restarted = new MessageDeduplicator(3, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (restarted.getEntryCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            restarted = new MessageDeduplicator(3, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+            restarted.enablePersistence(file, 0);
+        }
+
+        assertTrue(restarted.isDuplicate(message("ID:1")));
+        assertTrue(restarted.isDuplicate(message("ID:2")));
+    }
+
+    @Test
+    void fileWithAnotherLayoutIsIgnored() throws JMSException, IOException {
+        Path file = directory.resolve("mq-dedup.bin");
+        MessageDeduplicator deduplicator = new MessageDeduplicator(3, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+        deduplicator.enablePersistence(file, 0);
+        deduplicator.markProcessed(message("ID:1"));
+        deduplicator.close();
+
+        MessageDeduplicator resized = new MessageDeduplicator(4, HOUR_MS, 50, MessageDeduplicator.byMessageId());
+        resized.enablePersistence(file, 0);
+
+        assertEquals(0, resized.getEntryCount());
+        assertFalse(resized.isDuplicate(message("ID:1")));
+    }
+}
@@ -0,0 +1,157 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.consumer.JmsFakes.FakeMessage;
+import net.mahtabalam.message.consumer.JmsFakes.FakeSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedMessageExecutorTest {
+
+    private final FakeSession fake = new FakeSession(false, Session.CLIENT_ACKNOWLEDGE);
+    private PartitionedMessageExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown(1000);
+        }
+    }
+
+    @Test
+    void messagesWithTheSameKeyStayInOrder() throws JMSException {
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        executor = new PartitionedMessageExecutor(4, 64, 100, PartitionedMessageExecutor.byProperty("Key"),
+                message -> seen.computeIfAbsent(message.getStringProperty("Key"), k -> new ArrayList<>())
+                        .add(message.getIntProperty("Sequence")));
+        executor.setAckInterval(0);
+        executor.bind(fake.session);
+
+        for (int i = 0; i < 400; i++) {
+            executor.dispatch(new FakeMessage(fake, "ID:" + i)
+                    .withProperty("Key", "key-" + i % 8).withProperty("Sequence", i).message);
+        }
+        executor.acknowledgeCompleted();
+
+        assertEquals(8, seen.size());
+        for (List<Integer> sequences : seen.values()) {
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i - 1) < sequences.get(i), "out of order: " + sequences);
+            }
+        }
+        assertEquals(400, executor.getCompletedCount());
+        assertEquals(4, fake.count("acknowledge"));
+    }
+
+    @Test
+    void partialBatchIsAcknowledgedAfterTheInterval() throws Exception {
+        executor = new PartitionedMessageExecutor(2, 64, 100, PartitionedMessageExecutor.byCorrelationId(),
+                message -> { });
+        executor.setAckInterval(50);
+        executor.bind(fake.session);
+
+        for (int i = 0; i < 3; i++) {
+            executor.dispatch(new FakeMessage(fake, "ID:" + i).message);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fake.count("acknowledge") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, fake.count("acknowledge"));
+        assertEquals(0, fake.count("recover"));
+    }
+
+    @Test
+    void flushWaitsWhileAMessageIsBeingDelivered() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        executor = new PartitionedMessageExecutor(2, 64, 100, PartitionedMessageExecutor.byCorrelationId(),
+                message -> {
+                    if ("ID:bad".equals(message.getJMSMessageID()) && failing.get()) {
+                        throw new IllegalStateException("boom");
+                    }
+                });
+        executor.setAckInterval(100);
+        executor.bind(fake.session);
+        executor.deliveryStarted();
+        executor.dispatch(new FakeMessage(fake, "ID:good").message);
+        executor.deliveryDone();
+
+        // The session delivers the next message, the flush timer fires before it reaches a lane
+        FakeMessage bad = new FakeMessage(fake, "ID:bad");
+        executor.deliveryStarted();
+        Thread.sleep(500);
+        assertEquals(0, fake.count("acknowledge"), "acknowledged a message still being delivered");
+        executor.dispatch(bad.message);
+        executor.deliveryDone();
+
+        assertEquals(1, fake.count("recover"));
+        assertEquals(0, fake.count("acknowledge"));
+
+        failing.set(false);
+        executor.deliveryStarted();
+        executor.dispatch(bad.redeliver().message);
+        executor.deliveryDone();
+        executor.acknowledgeCompleted();
+
+        assertEquals(1, fake.count("acknowledge"));
+        assertEquals(2, executor.getCompletedCount());
+    }
+
+    @Test
+    void failedBatchIsRecoveredInsteadOfAcknowledged() throws JMSException {
+        executor = new PartitionedMessageExecutor(2, 64, 2, PartitionedMessageExecutor.byCorrelationId(),
+                message -> {
+                    if ("ID:bad".equals(message.getJMSMessageID())) {
+                        throw new IllegalStateException("boom");
+                    }
+                });
+        executor.setAckInterval(0);
+        executor.bind(fake.session);
+
+        executor.dispatch(new FakeMessage(fake, "ID:good").message);
+        executor.dispatch(new FakeMessage(fake, "ID:bad").message);
+
+        assertEquals(1, fake.count("recover"));
+        assertEquals(0, fake.count("acknowledge"));
+        assertEquals(1, executor.getFailedCount());
+    }
+
+    @Test
+    void messageThatAlwaysFailsEndsOnTheBackoutQueue() throws JMSException {
+        AtomicInteger attempts = new AtomicInteger();
+        executor = new PartitionedMessageExecutor(2, 64, 1, PartitionedMessageExecutor.byCorrelationId(),
+                message -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("boom");
+                });
+        BackoutHandler backoutHandler = new BackoutHandler("FIRST.TEST.QUEUE.BACKOUT", 3, 1, 1);
+        backoutHandler.initialize(fake.session);
+        executor.setBackoutHandler(backoutHandler);
+        executor.bind(fake.session);
+
+        // Every recover redelivers the message, as the queue manager would
+        FakeMessage delivery = new FakeMessage(fake, "ID:poison");
+        for (int i = 0; i < 10 && fake.sent.isEmpty(); i++) {
+            executor.dispatch(delivery.message);
+            delivery = delivery.redeliver();
+        }
+
+        assertEquals(3, attempts.get());
+        assertEquals(3, fake.count("recover"));
+        assertEquals(1, fake.sent.size());
+        assertEquals("ID:poison", fake.sent.get(0).getJMSMessageID());
+        assertEquals(1, fake.count("acknowledge"));
+    }
+}
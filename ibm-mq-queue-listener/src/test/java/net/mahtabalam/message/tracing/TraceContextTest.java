@@ -0,0 +1,84 @@
+package net.mahtabalam.message.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceContextTest {
+
+    private static final String SAMPLED = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    void parsesTheFieldsAtTheirOffsets() {
+        TraceContext context = TraceContext.parse(SAMPLED);
+
+        assertNotNull(context);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals(0x4bf92f3577b34da6L, context.getTraceIdHigh());
+        assertEquals(0xa3ce929d0e0e4736L, context.getTraceIdLow());
+        assertEquals("00f067aa0ba902b7", context.getSpanId());
+        assertTrue(context.isSampled());
+    }
+
+    @Test
+    void roundTripsThroughTheHeader() {
+        TraceContext context = new TraceContext(-1L, 1L, 0x8000000000000000L, false);
+
+        String header = context.toTraceparent();
+
+        assertEquals("00-ffffffffffffffff0000000000000001-8000000000000000-00", header);
+        TraceContext parsed = TraceContext.parse(header);
+        assertEquals(header, parsed.toTraceparent());
+        assertEquals(-1L, parsed.getTraceIdHigh());
+        assertEquals(1L, parsed.getTraceIdLow());
+        assertEquals(0x8000000000000000L, parsed.getSpanIdValue());
+        assertEquals(SAMPLED, TraceContext.parse(SAMPLED).toTraceparent());
+    }
+
+    @Test
+    void sampledFlagIsTheLowestBit() {
+        assertFalse(TraceContext.parse(withFlags("00")).isSampled());
+        assertTrue(TraceContext.parse(withFlags("01")).isSampled());
+        assertFalse(TraceContext.parse(withFlags("02")).isSampled());
+        assertTrue(TraceContext.parse(withFlags("03")).isSampled());
+        assertTrue(TraceContext.parse(withFlags("ff")).isSampled());
+    }
+
+    @Test
+    void rejectsAllZeroIds() {
+        assertNull(TraceContext.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01"));
+        // Only the whole trace id must be non-zero, either half may be zero
+        assertNotNull(TraceContext.parse("00-00000000000000000000000000000001-00f067aa0ba902b7-01"));
+        assertNotNull(TraceContext.parse("00-10000000000000000000000000000000-00f067aa0ba902b7-01"));
+    }
+
+    @Test
+    void rejectsMalformedHeaders() {
+        assertNull(TraceContext.parse(null));
+        assertNull(TraceContext.parse(""));
+        assertNull(TraceContext.parse(SAMPLED.substring(1)));
+        assertNull(TraceContext.parse(SAMPLED + "-"));
+        // Separators moved by one on either side of offsets 2, 35 and 52
+        assertNull(TraceContext.parse("000-4bf92f3577b34da6a3ce929d0e0e4736-0f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e473-600f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b-701"));
+        assertNull(TraceContext.parse(SAMPLED.replace('-', '_')));
+        // Digits the parse methods would take but the header does not allow
+        assertNull(TraceContext.parse("00-+bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6+3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-+0f067aa0ba902b7-01"));
+        assertNull(TraceContext.parse(withFlags("-1")));
+        assertNull(TraceContext.parse(SAMPLED.toUpperCase()));
+        assertNull(TraceContext.parse(SAMPLED.replace('a', 'g')));
+        assertNull(TraceContext.parse("ff" + SAMPLED.substring(2)));
+    }
+
+    private static String withFlags(String flags) {
+        return SAMPLED.substring(0, 53) + flags;
+    }
+}
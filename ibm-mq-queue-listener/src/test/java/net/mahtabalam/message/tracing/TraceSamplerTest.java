@@ -0,0 +1,63 @@
+package net.mahtabalam.message.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceSamplerTest {
+
+    @Test
+    void ratioZeroSamplesNothingAndOneSamplesEverything() {
+        TraceSampler none = new TraceSampler(0);
+        TraceSampler all = new TraceSampler(1);
+
+        for (long id : new long[]{0, 1, Long.MAX_VALUE, Long.MIN_VALUE, -1}) {
+            assertFalse(none.shouldSample(id), Long.toHexString(id));
+            assertTrue(all.shouldSample(id), Long.toHexString(id));
+        }
+    }
+
+    @Test
+    void thresholdSplitsTheLow63Bits() {
+        TraceSampler half = new TraceSampler(0.5);
+        long threshold = (long) (0.5 * Long.MAX_VALUE);
+
+        assertTrue(half.shouldSample(threshold - 1));
+        assertFalse(half.shouldSample(threshold));
+        // The sign bit is ignored, so ids that only differ in it get the same decision
+        assertTrue(half.shouldSample((threshold - 1) | Long.MIN_VALUE));
+        assertFalse(half.shouldSample(threshold | Long.MIN_VALUE));
+    }
+
+    @Test
+    void sampledFractionFollowsTheRatio() {
+        Random random = new Random(42);
+        TraceSampler sampler = new TraceSampler(0.1);
+        int sampled = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (sampler.shouldSample(random.nextLong())) {
+                sampled++;
+            }
+        }
+        assertEquals(10_000, sampled, 500);
+    }
+
+    @Test
+    void setRatioChangesTheDecisionAndRejectsOutOfRange() {
+        TraceSampler sampler = new TraceSampler(0);
+        assertFalse(sampler.shouldSample(1));
+
+        sampler.setRatio(1);
+
+        assertTrue(sampler.shouldSample(1));
+        assertEquals(1, sampler.getRatio());
+        assertThrows(IllegalArgumentException.class, () -> sampler.setRatio(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> sampler.setRatio(1.1));
+        assertThrows(IllegalArgumentException.class, () -> new TraceSampler(Double.NaN));
+    }
+}
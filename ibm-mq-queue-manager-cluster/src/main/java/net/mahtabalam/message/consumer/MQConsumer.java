@@ -1,74 +1,65 @@
 package net.mahtabalam.message.consumer;
 
-import javax.jms.JMSException;
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+
+import java.util.List;
 
 /**
  * IBM MQ Consumer with Asynchronous Message Listener
- * Continuously listens for and consumes messages from the queue
+ * Continuously listens for and consumes messages from every instance of the cluster queue
  */
 public class MQConsumer {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 1415;
-    private static final String CHANNEL = "SYSTEM.DEF.SVRCONN";
-    private static final String CLUSTER_QMGR = "QMNGR1";  // Any cluster queue manager
-    private static final String CLUSTER_QUEUE_NAME = "MY.APP.QUEUE";  // Cluster queue
+    private static final Logger LOG = Logger.getLogger(MQConsumer.class);
+    private static final MQConfig CONFIG = MQConfig.load("consumer.properties");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String CLUSTER_QUEUE_NAME = CONFIG.getString("mq.queue");  // Cluster queue
+    private static final List<ClusterMember> CLUSTER_MEMBERS =
+            ClusterMember.parseList(CONFIG.getString("tuning.cluster.members"), CHANNEL);
+    private static final String CLUSTER_QMGR = CLUSTER_MEMBERS.get(0).getQueueManager();  // Any cluster queue manager
+    private static final int PORT = CLUSTER_MEMBERS.get(0).getPort();
+    private static final long REBALANCE_INTERVAL_MS = CONFIG.getLong("consumer.rebalanceIntervalMs");  // reattach lost or new members this often
 
     public static void main(String[] args) {
-        MQConnectionManager connectionManager = null;
-        MQMessageListener messageListener = null;
-
-        try {
-            System.out.println("\n╔═════════════════════════════════════════╗");
-            System.out.println("║   IBM MQ ASYNCHRONOUS MESSAGE LISTENER  ║");
-            System.out.println("╚═════════════════════════════════════════╝\n");
-
-            // Step 1: Create connection manager
-            connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, CLUSTER_QMGR);
-            // Step 2: Connect to IBM MQ
-            connectionManager.connect();
-            // Step 3: Create and initialize message listener
-            messageListener = new MQMessageListener(CLUSTER_QUEUE_NAME);
-            messageListener.initialize(connectionManager);
-
-            // Step 4: Add shutdown hook for graceful shutdown
-            final MQConnectionManager finalConnectionManager = connectionManager;
-            final MQMessageListener finalMessageListener = messageListener;
-
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("\n\n╔═════════════════════════════════════════╗");
-                System.out.println("║        SHUTDOWN SIGNAL RECEIVED         ║");
-                System.out.println("╚═════════════════════════════════════════╝");
-                System.out.println("\nTotal messages processed: " + finalMessageListener.getMessageCount());
-
-                // Clean up resources
-                if (finalMessageListener != null) {
-                    finalMessageListener.close();
-                }
-                if (finalConnectionManager != null) {
-                    finalConnectionManager.disconnect();
-                }
-
-                System.out.println("\n✓ Application terminated gracefully\n");
-            }));
-
-            // Step 5: Keep the application running
-            // The listener will automatically process messages as they arrive
-            keepAlive();
-
-        } catch (JMSException e) {
-            handleError(e);
-
-        } finally {
-            // This will only be reached if an exception occurs during initialization
-            // Normal shutdown is handled by the shutdown hook
-            if (messageListener != null && !Thread.currentThread().isInterrupted()) {
-                messageListener.close();
-            }
-            if (connectionManager != null && !Thread.currentThread().isInterrupted()) {
-                connectionManager.disconnect();
-            }
+        Logger.configure(CONFIG);
+        LOG.info("╔═════════════════════════════════════════╗");
+        LOG.info("║   IBM MQ ASYNCHRONOUS MESSAGE LISTENER  ║");
+        LOG.info("╚═════════════════════════════════════════╝");
+
+        // Step 1: Create the message listener that handles messages from all members
+        final MQMessageListener messageListener = new MQMessageListener(CLUSTER_QUEUE_NAME);
+        // Step 2: Attach to the local instance of the cluster queue on every member
+        final MultiQueueManagerConsumer clusterConsumer = new MultiQueueManagerConsumer(
+                CLUSTER_QUEUE_NAME, CLUSTER_MEMBERS, messageListener, REBALANCE_INTERVAL_MS);
+        clusterConsumer.start();
+        if (clusterConsumer.getAttachedCount() == 0) {
+            handleError(CLUSTER_MEMBERS.size() + " cluster member(s) unreachable");
         }
+        // Members can join or leave through the -Dmq.config file
+        CONFIG.onChange("tuning.cluster.members", value -> {
+            clusterConsumer.setMembers(ClusterMember.parseList(value, CHANNEL));
+            clusterConsumer.rebalance();
+        });
+        CONFIG.startWatching(CONFIG.getLong("config.reloadIntervalMs"));
+
+        // Step 3: Add shutdown hook for graceful shutdown
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOG.info("╔═════════════════════════════════════════╗");
+            LOG.info("║        SHUTDOWN SIGNAL RECEIVED         ║");
+            LOG.info("╚═════════════════════════════════════════╝");
+            clusterConsumer.printMetrics();
+
+            // Clean up resources
+            CONFIG.stopWatching();
+            clusterConsumer.stop();
+
+            LOG.info("✓ Application terminated gracefully");
+        }));
+
+        // Step 4: Keep the application running
+        // The listeners will automatically process messages as they arrive
+        keepAlive();
     }
 
     /**
@@ -82,45 +73,40 @@ public class MQConsumer {
                 Thread.sleep(1000);
             }
         } catch (InterruptedException e) {
-            System.out.println("\nApplication interrupted");
+            LOG.info("Application interrupted");
             Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Handle JMS exceptions with detailed error information
+     * Print troubleshooting information when no cluster member could be reached
      */
-    private static void handleError(JMSException e) {
-        System.err.println("\n╔═════════════════════════════════════════╗");
-        System.err.println("║           ERROR OCCURRED                ║");
-        System.err.println("╚═════════════════════════════════════════╝");
-        System.err.println("\nError: " + e.getMessage());
-        System.err.println("Error Code: " + (e.getErrorCode() != null ? e.getErrorCode() : "N/A"));
-
-        if (e.getLinkedException() != null) {
-            System.err.println("\nLinked Exception Details:");
-            e.getLinkedException().printStackTrace();
-        }
-
-        System.err.println("\n=========================================");
-        System.err.println("TROUBLESHOOTING TIPS:");
-        System.err.println("=========================================");
-        System.err.println("1. Verify Queue Manager '" + CLUSTER_QMGR + "' is running");
-        System.err.println("   Command: dspmq");
-        System.err.println("\n2. Check if queue '" + CLUSTER_QUEUE_NAME + "' exists");
-        System.err.println("   Command: echo \"DISPLAY QUEUE(" + CLUSTER_QUEUE_NAME + ")\" | runmqsc " + CLUSTER_QMGR);
-        System.err.println("\n3. Confirm channel '" + CHANNEL + "' is configured");
-        System.err.println("   Command: echo \"DISPLAY CHANNEL(" + CHANNEL + ")\" | runmqsc " + CLUSTER_QMGR);
-        System.err.println("\n4. Ensure MQ listener is active on port " + PORT);
-        System.err.println("   Command: echo \"DISPLAY LISTENER(*)\" | runmqsc " + CLUSTER_QMGR);
-        System.err.println("\n5. Check authentication/authorization settings");
-        System.err.println("   To disable channel auth (dev only):");
-        System.err.println("   echo \"ALTER QMGR CHLAUTH(DISABLED)\" | runmqsc " + CLUSTER_QMGR);
-        System.err.println("   echo \"REFRESH SECURITY TYPE(CONNAUTH)\" | runmqsc " + CLUSTER_QMGR);
-        System.err.println("\n6. Verify GET permissions on the queue");
-        System.err.println("   Command: echo \"DISPLAY QSTATUS(" + CLUSTER_QUEUE_NAME + ")\" | runmqsc " + CLUSTER_QMGR);
-        System.err.println("\n7. Check MQ error logs");
-        System.err.println("   Location: /var/mqm/qmgrs/" + CLUSTER_QMGR + "/errors/AMQERR01.LOG");
-        System.err.println("=========================================\n");
+    private static void handleError(String error) {
+        LOG.error("╔═════════════════════════════════════════╗");
+        LOG.error("║           ERROR OCCURRED                ║");
+        LOG.error("╚═════════════════════════════════════════╝");
+        LOG.error("Error: {}", error);
+        LOG.error("Members are retried every {} ms, see the connection errors above", REBALANCE_INTERVAL_MS);
+
+        LOG.error("=========================================");
+        LOG.error("TROUBLESHOOTING TIPS:");
+        LOG.error("=========================================");
+        LOG.error("1. Verify Queue Manager '{}' is running", CLUSTER_QMGR);
+        LOG.error("   Command: dspmq");
+        LOG.error("2. Check if queue '{}' exists", CLUSTER_QUEUE_NAME);
+        LOG.error("   Command: echo \"DISPLAY QUEUE({})\" | runmqsc {}", CLUSTER_QUEUE_NAME, CLUSTER_QMGR);
+        LOG.error("3. Confirm channel '{}' is configured", CHANNEL);
+        LOG.error("   Command: echo \"DISPLAY CHANNEL({})\" | runmqsc {}", CHANNEL, CLUSTER_QMGR);
+        LOG.error("4. Ensure MQ listener is active on port {}", PORT);
+        LOG.error("   Command: echo \"DISPLAY LISTENER(*)\" | runmqsc {}", CLUSTER_QMGR);
+        LOG.error("5. Check authentication/authorization settings");
+        LOG.error("   To disable channel auth (dev only):");
+        LOG.error("   echo \"ALTER QMGR CHLAUTH(DISABLED)\" | runmqsc {}", CLUSTER_QMGR);
+        LOG.error("   echo \"REFRESH SECURITY TYPE(CONNAUTH)\" | runmqsc {}", CLUSTER_QMGR);
+        LOG.error("6. Verify GET permissions on the queue");
+        LOG.error("   Command: echo \"DISPLAY QSTATUS({})\" | runmqsc {}", CLUSTER_QUEUE_NAME, CLUSTER_QMGR);
+        LOG.error("7. Check MQ error logs");
+        LOG.error("   Location: /var/mqm/qmgrs/{}/errors/AMQERR01.LOG", CLUSTER_QMGR);
+        LOG.error("=========================================");
     }
 }
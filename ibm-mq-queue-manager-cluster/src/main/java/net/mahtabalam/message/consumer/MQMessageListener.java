@@ -1,5 +1,7 @@
 package net.mahtabalam.message.consumer;
 
+import net.mahtabalam.message.logging.Logger;
+
 import javax.jms.JMSException;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
@@ -20,6 +22,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class MQMessageListener implements MessageListener {
 
+    private static final Logger LOG = Logger.getLogger(MQMessageListener.class);
+    private static final Logger FAILURE_LOG = LOG.throttled(5000); // errors repeated per message
+
     private final String queueName;
     private final AtomicInteger messageCount;
     private final DateTimeFormatter formatter;
@@ -35,23 +40,23 @@ public class MQMessageListener implements MessageListener {
      * Initialize the message listener
      */
     public void initialize(MQConnectionManager connectionManager) throws JMSException {
-        System.out.println("=========================================");
-        System.out.println("Initializing Message Listener");
-        System.out.println("=========================================");
-        System.out.println("Queue: " + queueName);
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("Initializing Message Listener");
+        LOG.info("=========================================");
+        LOG.info("Queue: {}", queueName);
+        LOG.info("=========================================");
         // Get the queue
         Queue queue = connectionManager.getSession().createQueue(queueName);
         // Create message consumer
         consumer = connectionManager.getSession().createConsumer(queue);
         // Set this as the message listener
         consumer.setMessageListener(this);
-        System.out.println("✓ Message Listener initialized successfully");
-        System.out.println("✓ Now listening for messages on queue: " + queueName);
-        System.out.println("\n=========================================");
-        System.out.println("WAITING FOR MESSAGES...");
-        System.out.println("=========================================");
-        System.out.println("Press Ctrl+C to stop listening\n");
+        LOG.info("✓ Message Listener initialized successfully");
+        LOG.info("✓ Now listening for messages on queue: {}", queueName);
+        LOG.info("=========================================");
+        LOG.info("WAITING FOR MESSAGES...");
+        LOG.info("=========================================");
+        LOG.info("Press Ctrl+C to stop listening");
     }
 
     /**
@@ -63,17 +68,17 @@ public class MQMessageListener implements MessageListener {
         String timestamp = LocalDateTime.now().format(formatter);
 
         try {
-            System.out.println("\n┌─────────────────────────────────────────");
-            System.out.println("│ MESSAGE RECEIVED #" + currentCount);
-            System.out.println("├─────────────────────────────────────────");
-            System.out.println("│ Timestamp: " + timestamp);
-            System.out.println("│ Message ID: " + message.getJMSMessageID());
-            System.out.println("│ Correlation ID: " + (message.getJMSCorrelationID() != null ?
-                    message.getJMSCorrelationID() : "N/A"));
-            System.out.println("│ Priority: " + message.getJMSPriority());
-            System.out.println("│ Delivery Mode: " + (message.getJMSDeliveryMode() == DeliveryMode.PERSISTENT ?
-                    "PERSISTENT" : "NON_PERSISTENT"));
-            System.out.println("├─────────────────────────────────────────");
+            LOG.info("┌─────────────────────────────────────────");
+            LOG.info("│ MESSAGE RECEIVED #{}", currentCount);
+            LOG.info("├─────────────────────────────────────────");
+            LOG.info("│ Timestamp: {}", timestamp);
+            LOG.info("│ Message ID: {}", message.getJMSMessageID());
+            LOG.info("│ Correlation ID: {}",
+                    message.getJMSCorrelationID() != null ? message.getJMSCorrelationID() : "N/A");
+            LOG.info("│ Priority: {}", message.getJMSPriority());
+            LOG.info("│ Delivery Mode: {}",
+                    message.getJMSDeliveryMode() == DeliveryMode.PERSISTENT ? "PERSISTENT" : "NON_PERSISTENT");
+            LOG.info("├─────────────────────────────────────────");
 
             // Process based on message type
             if (message instanceof TextMessage) {
@@ -85,20 +90,18 @@ public class MQMessageListener implements MessageListener {
             } else if (message instanceof MapMessage) {
                 processMapMessage((MapMessage) message);
             } else {
-                System.out.println("│ Message Type: " + message.getClass().getSimpleName());
-                System.out.println("│ Content: [Unsupported message type]");
+                LOG.info("│ Message Type: {}", message.getClass().getSimpleName());
+                LOG.info("│ Content: [Unsupported message type]");
             }
 
             // Display message properties if any
             displayMessageProperties(message);
 
-            System.out.println("└─────────────────────────────────────────");
-            System.out.println("✓ Message #" + currentCount + " processed successfully\n");
+            LOG.info("└─────────────────────────────────────────");
+            LOG.info("✓ Message #{} processed successfully", currentCount);
 
         } catch (JMSException e) {
-            System.err.println("\n✗ Error processing message #" + currentCount);
-            System.err.println("Error: " + e.getMessage());
-            e.printStackTrace();
+            FAILURE_LOG.error("✗ Error processing message #{}: {}", currentCount, e.getMessage(), e);
         }
     }
 
@@ -107,30 +110,30 @@ public class MQMessageListener implements MessageListener {
      */
     private void processTextMessage(TextMessage textMessage) throws JMSException {
         String text = textMessage.getText();
-        System.out.println("│ Message Type: TextMessage");
-        System.out.println("│ Content Length: " + (text != null ? text.length() : 0) + " characters");
-        System.out.println("├─────────────────────────────────────────");
-        System.out.println("│ MESSAGE CONTENT:");
-        System.out.println("├─────────────────────────────────────────");
+        LOG.info("│ Message Type: TextMessage");
+        LOG.info("│ Content Length: {} characters", text != null ? text.length() : 0);
+        LOG.info("├─────────────────────────────────────────");
+        LOG.info("│ MESSAGE CONTENT:");
+        LOG.info("├─────────────────────────────────────────");
 
         if (text != null && text.length() > 0) {
             // Split long messages into multiple lines
             String[] lines = text.split("\n");
             for (String line : lines) {
                 if (line.length() <= 70) {
-                    System.out.println("│ " + line);
+                    LOG.info("│ {}", line);
                 } else {
                     // Wrap long lines
                     int start = 0;
                     while (start < line.length()) {
                         int end = Math.min(start + 70, line.length());
-                        System.out.println("│ " + line.substring(start, end));
+                        LOG.info("│ {}", line.substring(start, end));
                         start = end;
                     }
                 }
             }
         } else {
-            System.out.println("│ [Empty message]");
+            LOG.info("│ [Empty message]");
         }
     }
 
@@ -139,13 +142,13 @@ public class MQMessageListener implements MessageListener {
      */
     private void processBytesMessage(BytesMessage bytesMessage) throws JMSException {
         long length = bytesMessage.getBodyLength();
-        System.out.println("│ Message Type: BytesMessage");
-        System.out.println("│ Content Length: " + length + " bytes");
+        LOG.info("│ Message Type: BytesMessage");
+        LOG.info("│ Content Length: {} bytes", length);
 
         if (length > 0 && length < 1024) {
             byte[] data = new byte[(int) length];
             bytesMessage.readBytes(data);
-            System.out.println("│ Content (hex): " + bytesToHex(data));
+            LOG.info("│ Content (hex): {}", bytesToHex(data));
         }
     }
 
@@ -154,23 +157,23 @@ public class MQMessageListener implements MessageListener {
      */
     private void processObjectMessage(ObjectMessage objectMessage) throws JMSException {
         Object object = objectMessage.getObject();
-        System.out.println("│ Message Type: ObjectMessage");
-        System.out.println("│ Object Type: " + (object != null ? object.getClass().getName() : "null"));
-        System.out.println("│ Content: " + object);
+        LOG.info("│ Message Type: ObjectMessage");
+        LOG.info("│ Object Type: {}", object != null ? object.getClass().getName() : "null");
+        LOG.info("│ Content: {}", object);
     }
 
     /**
      * Process MapMessage
      */
     private void processMapMessage(MapMessage mapMessage) throws JMSException {
-        System.out.println("│ Message Type: MapMessage");
-        System.out.println("│ Map Entries:");
+        LOG.info("│ Message Type: MapMessage");
+        LOG.info("│ Map Entries:");
 
         java.util.Enumeration<?> mapNames = mapMessage.getMapNames();
         while (mapNames.hasMoreElements()) {
             String name = (String) mapNames.nextElement();
             Object value = mapMessage.getObject(name);
-            System.out.println("│   " + name + " = " + value);
+            LOG.info("│   {} = {}", name, value);
         }
     }
 
@@ -181,13 +184,13 @@ public class MQMessageListener implements MessageListener {
         java.util.Enumeration<?> propertyNames = message.getPropertyNames();
 
         if (propertyNames.hasMoreElements()) {
-            System.out.println("├─────────────────────────────────────────");
-            System.out.println("│ CUSTOM PROPERTIES:");
+            LOG.info("├─────────────────────────────────────────");
+            LOG.info("│ CUSTOM PROPERTIES:");
 
             while (propertyNames.hasMoreElements()) {
                 String propertyName = (String) propertyNames.nextElement();
                 Object propertyValue = message.getObjectProperty(propertyName);
-                System.out.println("│   " + propertyName + " = " + propertyValue);
+                LOG.info("│   {} = {}", propertyName, propertyValue);
             }
         }
     }
@@ -213,10 +216,10 @@ public class MQMessageListener implements MessageListener {
         try {
             if (consumer != null) {
                 consumer.close();
-                System.out.println("✓ Message Listener closed");
+                LOG.info("✓ Message Listener closed");
             }
         } catch (JMSException e) {
-            System.err.println("✗ Error closing message consumer: " + e.getMessage());
+            LOG.error("✗ Error closing message consumer: {}", e.getMessage());
         }
     }
 
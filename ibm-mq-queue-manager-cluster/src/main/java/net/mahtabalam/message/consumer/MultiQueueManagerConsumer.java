@@ -0,0 +1,188 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes a cluster queue from every member's local instance.
+ *
+ * Cluster workload balancing spreads messages over all instances of the queue,
+ * so a client attached to one queue manager only sees part of them. This class
+ * attaches one consumer per member, merges all streams into one handler and
+ * periodically rebalances: members that joined or whose connection broke are
+ * (re)attached, members that left are detached.
+ */
+public class MultiQueueManagerConsumer {
+
+    private static final Logger LOG = Logger.getLogger(MultiQueueManagerConsumer.class);
+
+    private final String queueName;
+    private final MessageListener handler;
+    private final long rebalanceIntervalMs;
+    private final Set<ClusterMember> members = new LinkedHashSet<>();
+    private final Map<ClusterMember, Attachment> attachments = new LinkedHashMap<>();
+    private final AtomicLong totalCount = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private long startTime;
+
+    public MultiQueueManagerConsumer(String queueName, List<ClusterMember> members,
+                                     MessageListener handler, long rebalanceIntervalMs) {
+        this.queueName = queueName;
+        this.handler = handler;
+        this.rebalanceIntervalMs = rebalanceIntervalMs;
+        this.members.addAll(members);
+    }
+
+    /**
+     * Attach to every reachable member now and keep rebalancing in the background
+     */
+    public void start() {
+        startTime = System.currentTimeMillis();
+        rebalance();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mq-cluster-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebalance, rebalanceIntervalMs, rebalanceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void addMember(ClusterMember member) {
+        members.add(member);
+    }
+
+    public synchronized void removeMember(ClusterMember member) {
+        members.remove(member);
+    }
+
+    /**
+     * Replace the member list, e.g. after reading DISPLAY CLUSQMGR(*) output
+     */
+    public synchronized void setMembers(List<ClusterMember> newMembers) {
+        members.clear();
+        members.addAll(newMembers);
+    }
+
+    /**
+     * Bring the attached consumers in line with the member list
+     */
+    public synchronized void rebalance() {
+        for (ClusterMember member : new ArrayList<>(attachments.keySet())) {
+            Attachment attachment = attachments.get(member);
+            if (!members.contains(member) || attachment.failed) {
+                if (attachment.failed) {
+                    LOG.warn("⚠ Connection lost to {}", member);
+                } else {
+                    LOG.info("Member left cluster: {}", member);
+                }
+                detach(member);
+            }
+        }
+        for (ClusterMember member : members) {
+            if (!attachments.containsKey(member)) {
+                attach(member);
+            }
+        }
+    }
+
+    private void attach(ClusterMember member) {
+        MQConnectionManager connectionManager = member.createConnectionManager();
+        try {
+            connectionManager.connect();
+            Session session = connectionManager.getSession();
+            Queue queue = session.createQueue(queueName);
+            MessageConsumer consumer = session.createConsumer(queue);
+
+            Attachment attachment = new Attachment(connectionManager, consumer);
+            connectionManager.getConnection().setExceptionListener(e -> {
+                attachment.failed = true;
+                LOG.error("✗ Connection error on {}: {}", member, e.getMessage());
+            });
+            consumer.setMessageListener(message -> {
+                attachment.messageCount.incrementAndGet();
+                totalCount.incrementAndGet();
+                handler.onMessage(message);
+            });
+            attachments.put(member, attachment);
+            LOG.info("✓ Attached to {} on {}", queueName, member);
+        } catch (JMSException e) {
+            LOG.error("✗ Could not attach to {}, retrying in {} ms: {}", member, rebalanceIntervalMs, e.getMessage());
+            connectionManager.disconnect();
+        }
+    }
+
+    private void detach(ClusterMember member) {
+        Attachment attachment = attachments.remove(member);
+        if (attachment == null) {
+            return;
+        }
+        try {
+            attachment.consumer.close();
+        } catch (JMSException e) {
+            LOG.error("✗ Error closing consumer on {}: {}", member, e.getMessage());
+        }
+        attachment.connectionManager.disconnect();
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        synchronized (this) {
+            for (ClusterMember member : new ArrayList<>(attachments.keySet())) {
+                detach(member);
+            }
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public synchronized int getAttachedCount() {
+        return attachments.size();
+    }
+
+    /**
+     * Combined and per-member message counts and rates
+     */
+    public synchronized void printMetrics() {
+        double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        LOG.info("Cluster consumer metrics for {}:", queueName);
+        LOG.info("  Total: {} messages, {} msgs/sec", totalCount.get(),
+                String.format("%.1f", totalCount.get() / seconds));
+        for (Map.Entry<ClusterMember, Attachment> entry : attachments.entrySet()) {
+            long count = entry.getValue().messageCount.get();
+            LOG.info("  {}: {} messages, {} msgs/sec{}", entry.getKey(), count, String.format("%.1f", count / seconds),
+                    entry.getValue().failed ? " (connection lost)" : "");
+        }
+    }
+
+    private static class Attachment {
+
+        private final MQConnectionManager connectionManager;
+        private final MessageConsumer consumer;
+        private final AtomicLong messageCount = new AtomicLong();
+        private volatile boolean failed;
+
+        Attachment(MQConnectionManager connectionManager, MessageConsumer consumer) {
+            this.connectionManager = connectionManager;
+            this.consumer = consumer;
+        }
+    }
+}
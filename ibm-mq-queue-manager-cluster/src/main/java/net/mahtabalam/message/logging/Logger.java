@@ -0,0 +1,197 @@
+package net.mahtabalam.message.logging;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Leveled logger handing events to an AsyncAppender.
+ *
+ * Messages use {} placeholders that are filled in on the writer thread, so a
+ * disabled level costs a comparison and an enabled one no string building on the
+ * calling thread for String and boxed primitive arguments. The one and two argument methods avoid the varargs array,
+ * guard calls with more arguments by isDebugEnabled() on hot paths. Supplier
+ * messages are only built when the level is enabled. A throttled() logger writes
+ * a repeated message at most once per interval and reports how many it suppressed.
+ */
+public final class Logger {
+
+    private static volatile Level level = Level.INFO;
+
+    private final String name;
+    private final AsyncAppender appender;
+    private final long throttleMs;
+    private final ConcurrentHashMap<String, long[]> throttleState; // message -> [last written ms, suppressed]
+
+    Logger(String name, AsyncAppender appender, long throttleMs) {
+        this.name = name;
+        this.appender = appender;
+        this.throttleMs = throttleMs;
+        this.throttleState = throttleMs > 0 ? new ConcurrentHashMap<>() : null;
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName(), AsyncAppender.getDefault(), 0);
+    }
+
+    /**
+     * A logger writing to the given appender instead of the default one
+     */
+    public static Logger getLogger(Class<?> type, AsyncAppender appender) {
+        return new Logger(type.getSimpleName(), appender, 0);
+    }
+
+    /**
+     * Apply logging.level (DEBUG, INFO, WARN, ERROR or OFF) and logging.format
+     * (text or json), both default to the current setting
+     */
+    public static void configure(MQConfig config) {
+        String configuredLevel = config.getString("logging.level", null);
+        if (configuredLevel != null) {
+            setLevel(Level.valueOf(configuredLevel.trim().toUpperCase(Locale.ROOT)));
+        }
+        String configuredFormat = config.getString("logging.format", null);
+        if (configuredFormat != null) {
+            AsyncAppender.getDefault().setFormat(
+                    AsyncAppender.Format.valueOf(configuredFormat.trim().toUpperCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Minimum level written by all loggers
+     */
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * A logger with the same name that writes each distinct message at most once per interval
+     */
+    public Logger throttled(long intervalMs) {
+        return new Logger(name, appender, intervalMs);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled(Level eventLevel) {
+        return eventLevel.compareTo(level) >= 0 && eventLevel != Level.OFF;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null, null, 0, null);
+    }
+
+    public void debug(String message, Object arg) {
+        log(Level.DEBUG, message, arg, null, null, 1, null);
+    }
+
+    public void debug(String message, Object arg1, Object arg2) {
+        log(Level.DEBUG, message, arg1, arg2, null, 2, null);
+    }
+
+    public void debug(String message, Object... args) {
+        log(Level.DEBUG, message, null, null, args, args.length, null);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message.get(), null, null, null, 0, null);
+        }
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, null, 0, null);
+    }
+
+    public void info(String message, Object arg) {
+        log(Level.INFO, message, arg, null, null, 1, null);
+    }
+
+    public void info(String message, Object arg1, Object arg2) {
+        log(Level.INFO, message, arg1, arg2, null, 2, null);
+    }
+
+    public void info(String message, Object... args) {
+        log(Level.INFO, message, null, null, args, args.length, null);
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message.get(), null, null, null, 0, null);
+        }
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null, null, null, 0, null);
+    }
+
+    public void warn(String message, Object arg) {
+        log(Level.WARN, message, arg, null, null, 1, null);
+    }
+
+    public void warn(String message, Object arg1, Object arg2) {
+        log(Level.WARN, message, arg1, arg2, null, 2, null);
+    }
+
+    public void warn(String message, Object... args) {
+        log(Level.WARN, message, null, null, args, args.length, null);
+    }
+
+    public void warn(String message, Throwable error) {
+        log(Level.WARN, message, null, null, null, 0, error);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, null, null, null, 0, null);
+    }
+
+    public void error(String message, Object arg) {
+        log(Level.ERROR, message, arg, null, null, 1, null);
+    }
+
+    public void error(String message, Object arg1, Object arg2) {
+        log(Level.ERROR, message, arg1, arg2, null, 2, null);
+    }
+
+    public void error(String message, Object... args) {
+        log(Level.ERROR, message, null, null, args, args.length, null);
+    }
+
+    public void error(String message, Throwable error) {
+        log(Level.ERROR, message, null, null, null, 0, error);
+    }
+
+    private void log(Level eventLevel, String message, Object arg1, Object arg2, Object[] args, int argCount,
+                     Throwable error) {
+        if (!isEnabled(eventLevel)) {
+            return;
+        }
+        long suppressed = 0;
+        if (throttleState != null) {
+            long[] state = throttleState.computeIfAbsent(message, key -> new long[2]);
+            synchronized (state) {
+                long now = System.currentTimeMillis();
+                if (state[0] != 0 && now - state[0] < throttleMs) {
+                    state[1]++;
+                    return;
+                }
+                suppressed = state[1];
+                state[0] = now;
+                state[1] = 0;
+            }
+        }
+        appender.append(eventLevel, name, message, arg1, arg2, args, argCount, error, suppressed);
+    }
+}
@@ -0,0 +1,238 @@
+package net.mahtabalam.message.producer;
+
+import com.ibm.mq.jms.MQQueueConnectionFactory;
+import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically probes every cluster queue manager: connects, puts a small
+ * non-persistent probe message and measures both latencies.
+ * A member is unhealthy after a failed probe, and degraded when its put latency
+ * is well above the fastest healthy member's. Members are probed in parallel, so
+ * an unreachable member stuck in a TCP connect does not hold up the others, and
+ * is not probed again until its last probe has returned.
+ */
+public class ClusterHealthProber {
+
+    private static final Logger LOG = Logger.getLogger(ClusterHealthProber.class);
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final long PROBE_MESSAGE_TTL_MS = 5000;
+
+    private final List<ClusterMember> members;
+    private final String probeQueueName;
+    private final long probeIntervalMs;
+    private final double degradationFactor;
+    private final Map<ClusterMember, MemberHealth> health = new LinkedHashMap<>();
+    private final ExecutorService probePool;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param probeQueueName    local queue on every member that receives probe messages
+     * @param degradationFactor a member is degraded once its put latency exceeds this multiple of the fastest member's
+     */
+    public ClusterHealthProber(List<ClusterMember> members, String probeQueueName,
+                               long probeIntervalMs, double degradationFactor) {
+        this.members = new ArrayList<>(members);
+        this.probeQueueName = probeQueueName;
+        this.probeIntervalMs = probeIntervalMs;
+        this.degradationFactor = degradationFactor;
+        for (ClusterMember member : members) {
+            health.put(member, new MemberHealth());
+        }
+        this.probePool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mq-cluster-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mq-cluster-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probeAll, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        probePool.shutdownNow();
+    }
+
+    /**
+     * Probe every member once, in parallel. Returns when all probes are done or after
+     * probeIntervalMs, a probe still running then records its result when it returns.
+     */
+    public void probeAll() {
+        List<Future<?>> probes = new ArrayList<>();
+        for (ClusterMember member : members) {
+            MemberHealth memberHealth = health.get(member);
+            if (memberHealth.probing.compareAndSet(false, true)) {
+                probes.add(probePool.submit(() -> {
+                    try {
+                        probe(member);
+                    } finally {
+                        memberHealth.probing.set(false);
+                    }
+                }));
+            }
+        }
+        long deadline = System.currentTimeMillis() + probeIntervalMs;
+        for (Future<?> probe : probes) {
+            try {
+                probe.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still connecting, the other members' results are in already
+            } catch (ExecutionException e) {
+                LOG.error("✗ Health probe failed: {}", e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void probe(ClusterMember member) {
+        MemberHealth memberHealth = health.get(member);
+        Connection connection = null;
+        try {
+            long connectStart = System.nanoTime();
+            connection = createConnectionFactory(member).createConnection();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            long connectNanos = System.nanoTime() - connectStart;
+
+            MessageProducer producer = session.createProducer(session.createQueue(probeQueueName));
+            Message probe = session.createTextMessage("probe");
+            long putStart = System.nanoTime();
+            producer.send(probe, DeliveryMode.NON_PERSISTENT, Message.DEFAULT_PRIORITY, PROBE_MESSAGE_TTL_MS);
+            long putNanos = System.nanoTime() - putStart;
+
+            memberHealth.recordSuccess(connectNanos / 1_000_000.0, putNanos / 1_000_000.0);
+        } catch (JMSException e) {
+            if (memberHealth.recordFailure() == 1) {
+                LOG.error("✗ Health probe failed for {}: {}", member, e.getMessage());
+            }
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (JMSException e) {
+                    // Probe connection, nothing to clean up beyond this
+                }
+            }
+        }
+    }
+
+    private MQQueueConnectionFactory createConnectionFactory(ClusterMember member) throws JMSException {
+        MQQueueConnectionFactory cf = new MQQueueConnectionFactory();
+        cf.setHostName(member.getHost());
+        cf.setPort(member.getPort());
+        cf.setChannel(member.getChannel());
+        cf.setQueueManager(member.getQueueManager());
+        cf.setTransportType(WMQConstants.WMQ_CM_CLIENT);
+        cf.setCCSID(1208); // UTF-8 encoding
+        return cf;
+    }
+
+    /**
+     * The healthy member with the lowest put latency, or null if no member is healthy
+     */
+    public ClusterMember selectMember() {
+        ClusterMember best = null;
+        double bestLatency = Double.MAX_VALUE;
+        for (ClusterMember member : members) {
+            MemberHealth memberHealth = health.get(member);
+            if (memberHealth.isHealthy() && memberHealth.putLatencyMs < bestLatency) {
+                best = member;
+                bestLatency = memberHealth.putLatencyMs;
+            }
+        }
+        return best;
+    }
+
+    public boolean isHealthy(ClusterMember member) {
+        MemberHealth memberHealth = health.get(member);
+        return memberHealth != null && memberHealth.isHealthy();
+    }
+
+    /**
+     * True if the member failed its last probe or is much slower than the fastest healthy member
+     */
+    public boolean isDegraded(ClusterMember member) {
+        if (!isHealthy(member)) {
+            return true;
+        }
+        ClusterMember best = selectMember();
+        return best != null && !best.equals(member)
+                && health.get(member).putLatencyMs > degradationFactor * health.get(best).putLatencyMs;
+    }
+
+    public List<ClusterMember> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    public void printStatus() {
+        LOG.info("Cluster member health:");
+        for (ClusterMember member : members) {
+            MemberHealth memberHealth = health.get(member);
+            LOG.info("  {}: {}{}, consecutive failures {}", member, memberHealth.isHealthy() ? "HEALTHY" : "UNHEALTHY",
+                    String.format(", connect %.1f ms, put %.2f ms", memberHealth.connectLatencyMs, memberHealth.putLatencyMs),
+                    memberHealth.consecutiveFailures);
+        }
+    }
+
+    /**
+     * Latencies are exponentially weighted moving averages of the probe results
+     */
+    private static class MemberHealth {
+
+        private volatile double connectLatencyMs;
+        private volatile double putLatencyMs;
+        private volatile int consecutiveFailures;
+        private volatile boolean probed;
+        private final AtomicBoolean probing = new AtomicBoolean();
+
+        void recordSuccess(double connectMs, double putMs) {
+            connectLatencyMs = probed ? ewma(connectLatencyMs, connectMs) : connectMs;
+            putLatencyMs = probed ? ewma(putLatencyMs, putMs) : putMs;
+            consecutiveFailures = 0;
+            probed = true;
+        }
+
+        int recordFailure() {
+            probed = true;
+            return ++consecutiveFailures;
+        }
+
+        boolean isHealthy() {
+            return probed && consecutiveFailures == 0;
+        }
+
+        private static double ewma(double average, double sample) {
+            return average + EWMA_WEIGHT * (sample - average);
+        }
+    }
+}
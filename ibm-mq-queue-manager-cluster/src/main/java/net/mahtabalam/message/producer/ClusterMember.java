@@ -0,0 +1,87 @@
+package net.mahtabalam.message.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Connection details of one queue manager in the cluster
+ */
+public class ClusterMember {
+
+    private final String host;
+    private final int port;
+    private final String channel;
+    private final String queueManager;
+
+    public ClusterMember(String host, int port, String channel, String queueManager) {
+        this.host = host;
+        this.port = port;
+        this.channel = channel;
+        this.queueManager = queueManager;
+    }
+
+    /**
+     * Parse a comma separated list of QMGR@host:port entries, e.g. QMNGR1@localhost:1415,QMNGR2@localhost:1416
+     */
+    public static List<ClusterMember> parseList(String spec, String channel) {
+        List<ClusterMember> members = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            int at = entry.indexOf('@');
+            int colon = entry.lastIndexOf(':');
+            if (entry.isEmpty()) {
+                continue;
+            }
+            if (at < 1 || colon < at) {
+                throw new IllegalArgumentException("Expected QMGR@host:port but got: " + entry);
+            }
+            members.add(new ClusterMember(entry.substring(at + 1, colon),
+                    Integer.parseInt(entry.substring(colon + 1)), channel, entry.substring(0, at)));
+        }
+        return members;
+    }
+
+    public MQConnectionManager createConnectionManager() {
+        return new MQConnectionManager(host, port, channel, queueManager);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getQueueManager() {
+        return queueManager;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClusterMember)) {
+            return false;
+        }
+        ClusterMember other = (ClusterMember) o;
+        return port == other.port && host.equals(other.host)
+                && channel.equals(other.channel) && queueManager.equals(other.queueManager);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, channel, queueManager);
+    }
+
+    @Override
+    public String toString() {
+        return queueManager + " (" + host + ":" + port + ")";
+    }
+}
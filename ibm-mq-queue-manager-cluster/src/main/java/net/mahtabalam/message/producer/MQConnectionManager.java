@@ -2,6 +2,7 @@ package net.mahtabalam.message.producer;
 
 import com.ibm.mq.jms.MQQueueConnectionFactory;
 import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
 import javax.jms.Connection;
 import javax.jms.JMSException;
 import javax.jms.Session;
@@ -10,6 +11,8 @@ import java.lang.IllegalStateException;
 
 public class MQConnectionManager {
 
+    private static final Logger LOG = Logger.getLogger(MQConnectionManager.class);
+
     private final String host;
     private final int port;
     private final String channel;
@@ -25,23 +28,23 @@ public class MQConnectionManager {
     }
 
     public void connect() throws JMSException {
-        System.out.println("=========================================");
-        System.out.println("Connecting to IBM MQ");
-        System.out.println("=========================================");
-        System.out.println("Queue Manager: " + queueManager);
-        System.out.println("Host: " + host + ":" + port);
-        System.out.println("Channel: " + channel);
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("Connecting to IBM MQ");
+        LOG.info("=========================================");
+        LOG.info("Queue Manager: {}", queueManager);
+        LOG.info("Host: {}:{}", host, port);
+        LOG.info("Channel: {}", channel);
+        LOG.info("=========================================");
 
         MQQueueConnectionFactory cf = createConnectionFactory();
 
-        System.out.println("Establishing connection...");
+        LOG.info("Establishing connection...");
         connection = cf.createConnection();
         connection.start();
 
         session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
 
-        System.out.println("✓ Connected successfully!\n");
+        LOG.info("✓ Connected successfully!");
     }
 
 
@@ -84,11 +87,10 @@ public class MQConnectionManager {
             if (connection != null) {
                 connection.close();
                 connection = null;
-                System.out.println("Connection closed gracefully.");
+                LOG.info("Connection closed gracefully.");
             }
         } catch (JMSException e) {
-            System.err.println("Error while closing connection:");
-            e.printStackTrace();
+            LOG.error("Error while closing connection:", e);
         }
     }
 }
\ No newline at end of file
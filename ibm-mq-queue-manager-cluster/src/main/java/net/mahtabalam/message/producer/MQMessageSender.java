@@ -1,5 +1,7 @@
 package net.mahtabalam.message.producer;
 
+import net.mahtabalam.message.logging.Logger;
+
 import javax.jms.MessageProducer;
 import javax.jms.Queue;
 import javax.jms.Session;
@@ -10,15 +12,40 @@ import java.lang.IllegalStateException;
 
 public class MQMessageSender {
 
-    private final MQConnectionManager connectionManager;
+    private static final Logger LOG = Logger.getLogger(MQMessageSender.class);
+    private static final int ROUTE_CHECK_INTERVAL = 10; // messages between health checks of the current member
+
+    private MQConnectionManager connectionManager;
     private final String queueName;
     private MessageProducer messageProducer;
+    private ClusterHealthProber healthProber;
+    private ClusterMember currentMember;
+    private WarmStandby warmStandby;
+    private int failoverCount;
 
     public MQMessageSender(MQConnectionManager connectionManager, String queueName) {
         this.connectionManager = connectionManager;
         this.queueName = queueName;
     }
 
+    /**
+     * Move to the fastest healthy cluster member whenever the current one degrades
+     *
+     * @param currentMember the member connectionManager is connected to
+     */
+    public void enableHealthRouting(ClusterHealthProber healthProber, ClusterMember currentMember) {
+        this.healthProber = healthProber;
+        this.currentMember = currentMember;
+    }
+
+    /**
+     * On a failed send, switch to the standby's open connection instead of connecting from scratch.
+     * The standby must have been started with the current member.
+     */
+    public void enableWarmStandby(WarmStandby warmStandby) {
+        this.warmStandby = warmStandby;
+    }
+
     public void initialize() throws JMSException {
         if (!connectionManager.isConnected()) {
             throw new IllegalStateException("Connection manager is not connected.");
@@ -30,7 +57,7 @@ public class MQMessageSender {
         messageProducer = session.createProducer(queue);
         messageProducer.setDeliveryMode(DeliveryMode.PERSISTENT);
 
-        System.out.println("✓ Message sender initialized for queue: " + queueName + "\n");
+        LOG.info("✓ Message sender initialized for queue: {}", queueName);
     }
 
     public void sendMessages(int messageCount) throws JMSException {
@@ -38,13 +65,23 @@ public class MQMessageSender {
             throw new IllegalStateException("Message sender not initialized. Call initialize() first.");
         }
 
-        System.out.println("Sending " + messageCount + " messages to queue: " + queueName + "\n");
+        LOG.info("Sending {} messages to queue: {}", messageCount, queueName);
         long startTime = System.currentTimeMillis();
 
         for (int i = 1; i <= messageCount; i++) {
-            sendMessage(i);
+            if (healthProber != null && i % ROUTE_CHECK_INTERVAL == 1 && healthProber.isDegraded(currentMember)) {
+                reroute();
+            }
+            try {
+                sendMessage(i);
+            } catch (JMSException e) {
+                if (!failover() && (healthProber == null || !reroute())) {
+                    throw e;
+                }
+                sendMessage(i);
+            }
             if (i % 10 == 0) {
-                System.out.println("  Sent " + i + " messages...");
+                LOG.info("  Sent {} messages...", i);
             }
         }
         long endTime = System.currentTimeMillis();
@@ -69,15 +106,76 @@ public class MQMessageSender {
         messageProducer.send(message);
     }
 
+    /**
+     * Reconnect to the best healthy member if it is not the current one
+     *
+     * @return true if the sender now uses a different member
+     */
+    private boolean reroute() throws JMSException {
+        ClusterMember best = healthProber.selectMember();
+        if (best == null || best.equals(currentMember)) {
+            return false;
+        }
+        LOG.warn("⚠ Queue manager {} is degraded, switching to {}", currentMember, best);
+        if (warmStandby != null && best.equals(warmStandby.getStandbyMember()) && failover()) {
+            return true;
+        }
+        close();
+        connectionManager.disconnect();
+
+        connectionManager = best.createConnectionManager();
+        connectionManager.connect();
+        currentMember = best;
+        initialize();
+        if (warmStandby != null) {
+            warmStandby.setActiveMember(best);
+        }
+        return true;
+    }
+
+    /**
+     * Swap in the warm standby connection, the old one is closed in the background
+     * because closing a broken connection can block until the socket times out
+     *
+     * @return true if the sender now uses the standby connection
+     */
+    private boolean failover() {
+        if (warmStandby == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        WarmStandby.StandbyConnection standby = warmStandby.takeOver();
+        if (standby == null) {
+            LOG.error("✗ No warm standby connection ready");
+            return false;
+        }
+        final MQConnectionManager failedConnectionManager = connectionManager;
+        ClusterMember failedMember = currentMember;
+        connectionManager = standby.getConnectionManager();
+        messageProducer = standby.getProducer();
+        currentMember = standby.getMember();
+        failoverCount++;
+        long swapMicros = (System.nanoTime() - start) / 1000;
+        LOG.warn("⚠ Failed over from {} to standby {} in {} µs", failedMember, currentMember, swapMicros);
+
+        Thread closer = new Thread(failedConnectionManager::disconnect, "mq-close-failed");
+        closer.setDaemon(true);
+        closer.start();
+        return true;
+    }
+
     private void printSummary(int messageCount, long duration) {
-        System.out.println("\n=========================================");
-        System.out.println("✓ SUCCESS!");
-        System.out.println("=========================================");
-        System.out.println("Queue: " + queueName);
-        System.out.println("Total messages sent: " + messageCount);
-        System.out.println("Time taken: " + duration + " ms");
-        System.out.println("Average: " + String.format("%.2f", duration / (double) messageCount) + " ms per message");
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("✓ SUCCESS!");
+        LOG.info("=========================================");
+        LOG.info("Queue: {}", queueName);
+        LOG.info("Total messages sent: {}", messageCount);
+        LOG.info("Time taken: {} ms", duration);
+        LOG.info("Average: {} ms per message", String.format("%.2f", duration / (double) messageCount));
+        if (warmStandby != null) {
+            LOG.info("Failovers to warm standby: {}", failoverCount);
+        }
+        LOG.info("=========================================");
     }
 
     public void close() {
@@ -85,11 +183,10 @@ public class MQMessageSender {
             if (messageProducer != null) {
                 messageProducer.close();
                 messageProducer = null;
-                System.out.println("Message sender closed.");
+                LOG.info("Message sender closed.");
             }
         } catch (JMSException e) {
-            System.err.println("Error closing message sender:");
-            e.printStackTrace();
+            LOG.error("Error closing message sender:", e);
         }
     }
 
@@ -97,6 +194,18 @@ public class MQMessageSender {
         return messageProducer != null;
     }
 
+    public int getFailoverCount() {
+        return failoverCount;
+    }
+
+    public ClusterMember getCurrentMember() {
+        return currentMember;
+    }
+
+    public MQConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
     public String getQueueName() {
         return queueName;
     }
@@ -1,36 +1,78 @@
 package net.mahtabalam.message.producer;
 
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+
 import javax.jms.JMSException;
+import java.util.List;
 
 public class MQProducer {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 1416;
-    private static final String CHANNEL = "SYSTEM.DEF.SVRCONN";
-    private static final String CLUSTER_QMGR = "QMNGR2";  // Any cluster queue manager
-    private static final String CLUSTER_QUEUE_NAME = "MY.APP.QUEUE";  // Cluster queue
+    private static final Logger LOG = Logger.getLogger(MQProducer.class);
+    private static final MQConfig CONFIG = MQConfig.load("producer.properties");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String CLUSTER_QUEUE_NAME = CONFIG.getString("mq.queue");  // Cluster queue
+    private static final List<ClusterMember> CLUSTER_MEMBERS =
+            ClusterMember.parseList(CONFIG.getString("cluster.members"), CHANNEL);
+    private static final ClusterMember FALLBACK_MEMBER =
+            CLUSTER_MEMBERS.get(CLUSTER_MEMBERS.size() - 1);  // Any cluster queue manager
+    private static final int PORT = FALLBACK_MEMBER.getPort();
+    private static final int MESSAGE_COUNT = CONFIG.getInt("producer.messageCount");
+    private static final String PROBE_QUEUE_NAME = CONFIG.getString("probe.queue");  // Local queue on every member
+    private static final long PROBE_INTERVAL_MS = CONFIG.getLong("probe.intervalMs");
+    private static final double DEGRADATION_FACTOR = CONFIG.getDouble("probe.degradationFactor");
+    private static final boolean STANDBY_ENABLED = CONFIG.getBoolean("standby.enabled");
+    private static final long STANDBY_CHECK_INTERVAL_MS = CONFIG.getLong("standby.checkIntervalMs");
 
     public static void main(String[] args) {
+        Logger.configure(CONFIG);
         MQConnectionManager connectionManager = null;
         MQMessageSender messageSender = null;
+        ClusterHealthProber healthProber = null;
+        WarmStandby warmStandby = null;
 
         try {
-            // Step 1: Create connection manager with cluster-aware configuration
-            connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, CLUSTER_QMGR);
-            // Step 2: Connect to IBM MQ (can connect to any cluster member)
+            // Step 1: Probe the cluster members and pick the fastest healthy one
+            healthProber = new ClusterHealthProber(CLUSTER_MEMBERS, PROBE_QUEUE_NAME,
+                    PROBE_INTERVAL_MS, DEGRADATION_FACTOR);
+            healthProber.probeAll();
+            healthProber.printStatus();
+            ClusterMember member = healthProber.selectMember();
+            if (member == null) {
+                member = FALLBACK_MEMBER;
+            }
+            healthProber.start();
+            // Step 2: Create connection manager with cluster-aware configuration
+            connectionManager = member.createConnectionManager();
+            // Step 3: Connect to IBM MQ (can connect to any cluster member)
             connectionManager.connect();
-            // Step 3: Create message sender for cluster queue
+            // Step 4: Create message sender for cluster queue, routing away from degraded members
             messageSender = new MQMessageSender(connectionManager, CLUSTER_QUEUE_NAME);
-            // Step 4: Initialize message sender
+            messageSender.enableHealthRouting(healthProber, member);
+            // Keep a second member connected so a failure costs a reference swap, not a connect
+            if (STANDBY_ENABLED && CLUSTER_MEMBERS.size() > 1) {
+                warmStandby = new WarmStandby(CLUSTER_MEMBERS, CLUSTER_QUEUE_NAME, healthProber, STANDBY_CHECK_INTERVAL_MS);
+                warmStandby.start(member);
+                messageSender.enableWarmStandby(warmStandby);
+            }
+            // Step 5: Initialize message sender
             messageSender.initialize();
-            // Step 5: Send 100 messages (automatically distributed across cluster)
-            messageSender.sendMessages(100);
+            // Step 6: Send the configured number of messages (automatically distributed across cluster)
+            messageSender.sendMessages(MESSAGE_COUNT);
         } catch (JMSException e) {
             handleError(e);
         } finally {
             // Clean up resources
+            if (healthProber != null) {
+                healthProber.stop();
+            }
+            if (warmStandby != null) {
+                warmStandby.stop();
+            }
             if (messageSender != null) {
                 messageSender.close();
+                // The sender may have moved to another member
+                connectionManager = messageSender.getConnectionManager();
             }
             if (connectionManager != null) {
                 connectionManager.disconnect();
@@ -39,27 +81,28 @@ public class MQProducer {
     }
 
     private static void handleError(JMSException e) {
-        System.err.println("\n=========================================");
-        System.err.println("✗ ERROR OCCURRED");
-        System.err.println("=========================================");
-        System.err.println("Error: " + e.getMessage());
-        System.err.println("Error Code: " + (e.getErrorCode() != null ? e.getErrorCode() : "N/A"));
+        LOG.error("=========================================");
+        LOG.error("✗ ERROR OCCURRED");
+        LOG.error("=========================================");
+        LOG.error("Error: {}", e.getMessage());
+        LOG.error("Error Code: {}", e.getErrorCode() != null ? e.getErrorCode() : "N/A");
 
         if (e.getLinkedException() != null) {
-            System.err.println("\nLinked Exception Details:");
-            e.getLinkedException().printStackTrace();
+            LOG.error("Linked Exception Details:", e.getLinkedException());
         }
 
-        System.err.println("\nTroubleshooting Tips:");
-        System.err.println("1. Verify at least one cluster queue manager is running");
-        System.err.println("2. Check if cluster queue '" + CLUSTER_QUEUE_NAME + "' exists");
-        System.err.println("3. Confirm cluster queue is properly defined:");
-        System.err.println("   DEFINE QLOCAL('" + CLUSTER_QUEUE_NAME + "') CLUSTER('MY.CLUSTER')");
-        System.err.println("4. Verify cluster is active:");
-        System.err.println("   DISPLAY CLUSQMGR(*) ALL");
-        System.err.println("5. Ensure MQ listener is active on port " + PORT);
-        System.err.println("6. Check cluster channel status:");
-        System.err.println("   DISPLAY CHSTATUS(*) WHERE(CHLTYPE EQ CLUSSDR)");
-        System.err.println("=========================================\n");
+        LOG.error("Troubleshooting Tips:");
+        LOG.error("1. Verify at least one cluster queue manager is running");
+        LOG.error("2. Check if cluster queue '{}' exists", CLUSTER_QUEUE_NAME);
+        LOG.error("3. Confirm cluster queue is properly defined:");
+        LOG.error("   DEFINE QLOCAL('{}') CLUSTER('MY.CLUSTER')", CLUSTER_QUEUE_NAME);
+        LOG.error("4. Verify cluster is active:");
+        LOG.error("   DISPLAY CLUSQMGR(*) ALL");
+        LOG.error("5. Ensure MQ listener is active on port {}", PORT);
+        LOG.error("6. Check cluster channel status:");
+        LOG.error("   DISPLAY CHSTATUS(*) WHERE(CHLTYPE EQ CLUSSDR)");
+        LOG.error("7. Check probe queue '{}' exists on every member:", PROBE_QUEUE_NAME);
+        LOG.error("   DEFINE QLOCAL('{}') MAXDEPTH(1000)", PROBE_QUEUE_NAME);
+        LOG.error("=========================================");
     }
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a connected, ready-to-send producer open on a second cluster member.
+ *
+ * A background thread connects to a member other than the active one and creates
+ * the session and producer up front, so failing over is a reference swap instead
+ * of a full connect. The standby connection is watched with an exception listener
+ * and replaced when it breaks, when its member turns unhealthy, or after it was
+ * taken over.
+ */
+public class WarmStandby {
+
+    private static final Logger LOG = Logger.getLogger(WarmStandby.class);
+    private static final long STOP_TIMEOUT_MS = 5000;
+
+    /**
+     * An open connection with its producer, owned by the sender once taken over
+     */
+    public static class StandbyConnection {
+
+        private final ClusterMember member;
+        private final MQConnectionManager connectionManager;
+        private final MessageProducer producer;
+        private volatile boolean broken;
+
+        StandbyConnection(ClusterMember member, MQConnectionManager connectionManager, MessageProducer producer) {
+            this.member = member;
+            this.connectionManager = connectionManager;
+            this.producer = producer;
+        }
+
+        public ClusterMember getMember() {
+            return member;
+        }
+
+        public MQConnectionManager getConnectionManager() {
+            return connectionManager;
+        }
+
+        public MessageProducer getProducer() {
+            return producer;
+        }
+    }
+
+    private final List<ClusterMember> members;
+    private final String queueName;
+    private final ClusterHealthProber healthProber;
+    private final long checkIntervalMs;
+    private final AtomicReference<StandbyConnection> ready = new AtomicReference<>();
+    private volatile ClusterMember activeMember;
+    private volatile boolean stopped;
+    private ScheduledExecutorService maintainer;
+
+    /**
+     * @param healthProber optional, standby members are picked among the healthy ones when set
+     */
+    public WarmStandby(List<ClusterMember> members, String queueName, ClusterHealthProber healthProber,
+                       long checkIntervalMs) {
+        this.members = new ArrayList<>(members);
+        this.queueName = queueName;
+        this.healthProber = healthProber;
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    /**
+     * Start keeping a standby connection to any member except the active one
+     */
+    public void start(ClusterMember activeMember) {
+        this.activeMember = activeMember;
+        maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mq-warm-standby");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintainer.scheduleWithFixedDelay(this::maintain, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close the standby connection, waiting for a connect in progress so it does not outlive the stop
+     */
+    public void stop() {
+        stopped = true;
+        if (maintainer != null) {
+            maintainer.shutdownNow();
+            try {
+                if (!maintainer.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    LOG.warn("⚠ Standby connect still running after {} ms, it closes itself when done",
+                            STOP_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        StandbyConnection standby = ready.getAndSet(null);
+        if (standby != null) {
+            standby.connectionManager.disconnect();
+        }
+    }
+
+    /**
+     * Hand the standby connection over to the caller, a new standby is opened in the background
+     *
+     * @return the connection, or null if no working standby is ready
+     */
+    public StandbyConnection takeOver() {
+        StandbyConnection standby = ready.getAndSet(null);
+        if (standby == null || standby.broken) {
+            if (standby != null) {
+                standby.connectionManager.disconnect();
+                maintainSoon();
+            }
+            return null;
+        }
+        activeMember = standby.member;
+        maintainSoon();
+        return standby;
+    }
+
+    /**
+     * Tell the standby which member the sender moved to without taking it over
+     */
+    public void setActiveMember(ClusterMember member) {
+        this.activeMember = member;
+        maintainSoon();
+    }
+
+    /**
+     * Member of the ready standby connection, null if none is ready
+     */
+    public ClusterMember getStandbyMember() {
+        StandbyConnection standby = ready.get();
+        return standby != null && !standby.broken ? standby.member : null;
+    }
+
+    private void maintainSoon() {
+        if (stopped || maintainer == null) {
+            return;
+        }
+        try {
+            maintainer.execute(this::maintain);
+        } catch (RejectedExecutionException e) {
+            // stop() shut the maintainer down after the check, nothing left to maintain
+        }
+    }
+
+    private void maintain() {
+        StandbyConnection standby = ready.get();
+        if (standby != null && (standby.broken || standby.member.equals(activeMember)
+                || (healthProber != null && !healthProber.isHealthy(standby.member)))) {
+            if (ready.compareAndSet(standby, null)) {
+                LOG.warn("⚠ Replacing standby connection to {}", standby.member);
+                standby.connectionManager.disconnect();
+            }
+        }
+        if (ready.get() == null) {
+            open();
+        }
+    }
+
+    private void open() {
+        for (ClusterMember member : candidates()) {
+            if (stopped) {
+                return;
+            }
+            MQConnectionManager connectionManager = member.createConnectionManager();
+            try {
+                connectionManager.connect();
+                Session session = connectionManager.getSession();
+                MessageProducer producer = session.createProducer(session.createQueue(queueName));
+                producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+                StandbyConnection standby = new StandbyConnection(member, connectionManager, producer);
+                connectionManager.getConnection().setExceptionListener(e -> standby.broken = true);
+                ready.set(standby);
+                if (stopped) {
+                    // stop() gave up waiting for this connect, close what it could not see
+                    if (ready.compareAndSet(standby, null)) {
+                        connectionManager.disconnect();
+                    }
+                    return;
+                }
+                LOG.info("✓ Warm standby ready on {}", member);
+                return;
+            } catch (JMSException e) {
+                LOG.error("✗ Could not open standby connection to {}: {}", member, e.getMessage());
+                connectionManager.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Members other than the active one, healthy ones first
+     */
+    private List<ClusterMember> candidates() {
+        List<ClusterMember> healthy = new ArrayList<>();
+        List<ClusterMember> others = new ArrayList<>();
+        for (ClusterMember member : members) {
+            if (member.equals(activeMember)) {
+                continue;
+            }
+            if (healthProber == null || healthProber.isHealthy(member)) {
+                healthy.add(member);
+            } else {
+                others.add(member);
+            }
+        }
+        healthy.addAll(others);
+        return healthy;
+    }
+}
@@ -0,0 +1,173 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Poison message handling for consumers.
+ * Tracks the delivery count of each message (IBM MQ maps the MQMD BackoutCount
+ * to JMSXDeliveryCount) and moves a message to the backout queue once it has
+ * failed backoutThreshold times. Retries below the threshold are rate limited
+ * so a single bad message cannot spin the consumer. The retry wait runs on the
+ * session's delivery thread and holds up every other message of the session,
+ * so keep maxRetryDelayMs short.
+ */
+public class BackoutHandler {
+
+    private static final Logger LOG = Logger.getLogger(BackoutHandler.class);
+    private static final String DELIVERY_COUNT_PROPERTY = "JMSXDeliveryCount";
+
+    private final String backoutQueueName;
+    private final int backoutThreshold;
+    private final long retryIntervalMs;
+    private final long maxRetryDelayMs;
+    private final AtomicLong nextRetrySlot = new AtomicLong(0);
+    private final AtomicLong retryCount = new AtomicLong(0);
+    private final AtomicLong backoutCount = new AtomicLong(0);
+    private Session session;
+    private MessageProducer backoutProducer;
+
+    /**
+     * @param backoutQueueName queue that receives messages over the threshold
+     * @param backoutThreshold number of failed deliveries before a message is backed out
+     * @param retryIntervalMs  minimum spacing between two retries, and base of the per-message backoff
+     * @param maxRetryDelayMs  upper bound of the per-message backoff, the session delivers nothing else meanwhile
+     */
+    public BackoutHandler(String backoutQueueName, int backoutThreshold, long retryIntervalMs, long maxRetryDelayMs) {
+        if (backoutThreshold < 1) {
+            throw new IllegalArgumentException("Backout threshold must be at least 1: " + backoutThreshold);
+        }
+        this.backoutQueueName = backoutQueueName;
+        this.backoutThreshold = backoutThreshold;
+        this.retryIntervalMs = retryIntervalMs;
+        this.maxRetryDelayMs = maxRetryDelayMs;
+    }
+
+    /**
+     * Create the backout queue producer on the consumer's session. The session is
+     * not transacted, so the put to the backout queue and the acknowledgement of
+     * the original are two steps: a crash between them redelivers the message and
+     * it is backed out a second time.
+     */
+    public void initialize(Session session) throws JMSException {
+        this.session = session;
+        Queue backoutQueue = session.createQueue(backoutQueueName);
+        backoutProducer = session.createProducer(backoutQueue);
+        LOG.info("✓ Backout handler initialized (threshold: {}, backout queue: {})", backoutThreshold,
+                backoutQueueName);
+    }
+
+    /**
+     * Number of times the message has been delivered, including this delivery
+     */
+    public static int getDeliveryCount(Message message) throws JMSException {
+        if (message.propertyExists(DELIVERY_COUNT_PROPERTY)) {
+            return message.getIntProperty(DELIVERY_COUNT_PROPERTY);
+        }
+        return message.getJMSRedelivered() ? 2 : 1;
+    }
+
+    /**
+     * True if the message already failed backoutThreshold times and must not be processed again
+     */
+    public boolean isPoison(Message message) throws JMSException {
+        return getDeliveryCount(message) > backoutThreshold;
+    }
+
+    /**
+     * Called when processing failed. Backs the message out once the threshold is reached,
+     * otherwise waits for a retry slot and hands the message back for redelivery.
+     *
+     * @return true if the message was backed out, false if it will be redelivered
+     */
+    public boolean handleFailure(Message message, Exception cause) {
+        try {
+            int deliveryCount = getDeliveryCount(message);
+            if (deliveryCount >= backoutThreshold) {
+                backout(message);
+                return true;
+            }
+            awaitRetrySlot(deliveryCount);
+            retryCount.incrementAndGet();
+            LOG.error("✗ Delivery {} of {} failed for message {}, scheduling redelivery", deliveryCount,
+                    backoutThreshold, message.getJMSMessageID());
+        } catch (JMSException e) {
+            LOG.error("✗ Error handling failed message: {}", e.getMessage());
+        }
+        requestRedelivery(cause);
+        return false;
+    }
+
+    /**
+     * Move the message to the backout queue and remove the original, so a later
+     * recover() cannot deliver and back it out a second time
+     */
+    public void backout(Message message) throws JMSException {
+        if (backoutProducer == null) {
+            throw new IllegalStateException("Backout handler not initialized. Call initialize() first.");
+        }
+        backoutProducer.send(message, message.getJMSDeliveryMode(), message.getJMSPriority(), Message.DEFAULT_TIME_TO_LIVE);
+        if (session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+            message.acknowledge();
+        }
+        backoutCount.incrementAndGet();
+        LOG.error("✗ Message {} moved to backout queue {} after {} deliveries", message.getJMSMessageID(),
+                backoutQueueName, getDeliveryCount(message));
+    }
+
+    /**
+     * Exponential backoff per message, plus a shared minimum spacing between retries
+     */
+    private void awaitRetrySlot(int deliveryCount) {
+        long backoff = Math.min(maxRetryDelayMs, retryIntervalMs << Math.min(deliveryCount - 1, 20));
+        long now = System.currentTimeMillis();
+        long slot = nextRetrySlot.accumulateAndGet(now, (previous, current) -> Math.max(previous + retryIntervalMs, current));
+        long waitMs = Math.max(slot - now, backoff);
+        try {
+            Thread.sleep(waitMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the message to the queue: recover a client-acknowledged session, and
+     * throw for auto-acknowledge so the provider redelivers
+     */
+    private void requestRedelivery(Exception cause) {
+        try {
+            if (session != null && session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+                session.recover();
+                return;
+            }
+        } catch (JMSException e) {
+            LOG.error("✗ Error requesting redelivery: {}", e.getMessage());
+        }
+        throw new IllegalStateException("Message processing failed, requesting redelivery", cause);
+    }
+
+    public void close() {
+        try {
+            if (backoutProducer != null) {
+                backoutProducer.close();
+                backoutProducer = null;
+            }
+        } catch (JMSException e) {
+            LOG.error("✗ Error closing backout producer: {}", e.getMessage());
+        }
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getBackoutCount() {
+        return backoutCount.get();
+    }
+}
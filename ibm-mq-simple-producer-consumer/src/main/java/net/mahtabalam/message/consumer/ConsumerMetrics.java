@@ -0,0 +1,252 @@
+package net.mahtabalam.message.consumer;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Live receive and processing statistics of one consumer, for the StatusServer.
+ *
+ * Rate, processing time percentiles and errors are reported for the last complete
+ * window, so a reader sees current behaviour rather than an average since startup,
+ * and any number of readers see the same figures. Processing times are kept in a
+ * fixed size reservoir per window, which keeps percentiles unbiased however many
+ * messages arrive.
+ */
+public class ConsumerMetrics {
+
+    private final String name;
+    private final long windowNanos;
+    private final long[] samples;
+    private int sampleCount;
+    private long windowReceived;
+    private long windowProcessed;
+    private long windowErrors;
+    private long windowMaxMicros;
+    private long windowStart = System.nanoTime();
+    private long lastDurationNanos;
+    private long lastReceived;
+    private long lastProcessed;
+    private long lastErrors;
+    private long[] lastSorted = new long[0];
+    private long lastMaxMicros;
+    private long totalReceived;
+    private long totalErrors;
+    private int inFlight;
+    private long lastTimestamp;
+    private long lastReceivedAt;
+
+    /**
+     * @param name              consumer name shown on the status page, e.g. the queue
+     * @param windowMs          length of the window statistics are reported for
+     * @param samplesPerWindow  processing time samples kept per window for percentiles
+     */
+    public ConsumerMetrics(String name, long windowMs, int samplesPerWindow) {
+        this.name = name;
+        this.windowNanos = windowMs * 1_000_000;
+        this.samples = new long[samplesPerWindow];
+    }
+
+    /**
+     * Record the delivery of a message, before it is queued for or handed to processing
+     */
+    public void messageReceived(Message message) {
+        long timestamp;
+        try {
+            timestamp = message.getJMSTimestamp();
+        } catch (JMSException e) {
+            timestamp = 0;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            rotate(System.nanoTime());
+            windowReceived++;
+            totalReceived++;
+            lastReceivedAt = now;
+            if (timestamp > 0) {
+                lastTimestamp = timestamp;
+            }
+        }
+    }
+
+    /**
+     * @return the start time to pass to processingFinished()
+     */
+    public synchronized long processingStarted() {
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    public void processingFinished(long startNanos) {
+        long now = System.nanoTime();
+        long micros = (now - startNanos) / 1000;
+        synchronized (this) {
+            inFlight--;
+            rotate(now);
+            windowProcessed++;
+            windowMaxMicros = Math.max(windowMaxMicros, micros);
+            if (sampleCount < samples.length) {
+                samples[sampleCount++] = micros;
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(windowProcessed);
+                if (slot < samples.length) {
+                    samples[(int) slot] = micros;
+                }
+            }
+        }
+    }
+
+    /**
+     * Record a message that failed processing, call processingFinished() for it as well
+     */
+    public synchronized void recordError() {
+        rotate(System.nanoTime());
+        windowErrors++;
+        totalErrors++;
+    }
+
+    /**
+     * Statistics of the last complete window with the current in-flight count and message age
+     */
+    public synchronized Snapshot snapshot() {
+        rotate(System.nanoTime());
+        long now = System.currentTimeMillis();
+        return new Snapshot(name, lastDurationNanos, lastReceived, lastProcessed, lastErrors, lastSorted,
+                lastMaxMicros, inFlight, lastTimestamp > 0 ? Math.max(0, now - lastTimestamp) : -1,
+                lastReceivedAt > 0 ? now - lastReceivedAt : -1, totalReceived, totalErrors);
+    }
+
+    /**
+     * Close the current window once it is complete, a window without traffic reports zeros
+     */
+    private void rotate(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < windowNanos) {
+            return;
+        }
+        if (elapsed >= 2 * windowNanos) {
+            // Idle for more than a whole window, the last window had no traffic
+            lastDurationNanos = windowNanos;
+            lastReceived = 0;
+            lastProcessed = 0;
+            lastErrors = 0;
+            lastSorted = new long[0];
+            lastMaxMicros = 0;
+        } else {
+            lastDurationNanos = elapsed;
+            lastReceived = windowReceived;
+            lastProcessed = windowProcessed;
+            lastErrors = windowErrors;
+            lastSorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(lastSorted);
+            lastMaxMicros = windowMaxMicros;
+        }
+        sampleCount = 0;
+        windowReceived = 0;
+        windowProcessed = 0;
+        windowErrors = 0;
+        windowMaxMicros = 0;
+        windowStart = now;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static class Snapshot {
+
+        private final String name;
+        private final long durationNanos;
+        private final long received;
+        private final long processed;
+        private final long errors;
+        private final long[] sortedMicros;
+        private final long maxMicros;
+        private final int inFlight;
+        private final long lastMessageAgeMs;
+        private final long idleMs;
+        private final long totalReceived;
+        private final long totalErrors;
+
+        Snapshot(String name, long durationNanos, long received, long processed, long errors, long[] sortedMicros,
+                 long maxMicros, int inFlight, long lastMessageAgeMs, long idleMs, long totalReceived,
+                 long totalErrors) {
+            this.name = name;
+            this.durationNanos = durationNanos;
+            this.received = received;
+            this.processed = processed;
+            this.errors = errors;
+            this.sortedMicros = sortedMicros;
+            this.maxMicros = maxMicros;
+            this.inFlight = inFlight;
+            this.lastMessageAgeMs = lastMessageAgeMs;
+            this.idleMs = idleMs;
+            this.totalReceived = totalReceived;
+            this.totalErrors = totalErrors;
+        }
+
+        public double getReceiveRate() {
+            return durationNanos > 0 ? received * 1_000_000_000.0 / durationNanos : 0;
+        }
+
+        /**
+         * Processing time percentile in milliseconds, 0 when nothing was processed
+         */
+        public double getProcessingPercentileMs(double fraction) {
+            if (sortedMicros.length == 0) {
+                return 0;
+            }
+            int index = Math.min(sortedMicros.length - 1, (int) Math.ceil(fraction * sortedMicros.length) - 1);
+            return sortedMicros[Math.max(0, index)] / 1000.0;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Milliseconds from the put of the newest message received to now, -1 before the first one
+         */
+        public long getLastMessageAgeMs() {
+            return lastMessageAgeMs;
+        }
+
+        public long getTotalReceived() {
+            return totalReceived;
+        }
+
+        public long getTotalErrors() {
+            return totalErrors;
+        }
+
+        public String toJson() {
+            return String.format(Locale.ROOT, "{\"name\":\"%s\",\"windowMs\":%d,\"receiveRate\":%.1f,"
+                            + "\"processed\":%d,\"processingMs\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f},"
+                            + "\"inFlight\":%d,\"lastMessageAgeMs\":%d,\"idleMs\":%d,\"errors\":%d,"
+                            + "\"totalReceived\":%d,\"totalErrors\":%d}",
+                    name.replace("\\", "\\\\").replace("\"", "\\\""), durationNanos / 1_000_000, getReceiveRate(),
+                    processed, getProcessingPercentileMs(0.50), getProcessingPercentileMs(0.90),
+                    getProcessingPercentileMs(0.99), maxMicros / 1000.0, inFlight, lastMessageAgeMs, idleMs,
+                    errors, totalReceived, totalErrors);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.0f msgs/sec, processing p50 %.3f ms, p99 %.3f ms, max %.3f ms, "
+                            + "in flight %d, last message age %s, errors %d (%d total), %d received",
+                    name, getReceiveRate(), getProcessingPercentileMs(0.50), getProcessingPercentileMs(0.99),
+                    maxMicros / 1000.0, inFlight, lastMessageAgeMs >= 0 ? lastMessageAgeMs + " ms" : "n/a",
+                    errors, totalErrors, totalReceived);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package net.mahtabalam.message.consumer;
 
 import com.ibm.mq.jms.MQQueueConnectionFactory;
 import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
 import javax.jms.Connection;
 import javax.jms.JMSException;
 import javax.jms.Session;
@@ -9,38 +10,58 @@ import java.lang.IllegalStateException;
 
 public class MQConnectionManager {
 
+    private static final Logger LOG = Logger.getLogger(MQConnectionManager.class);
+
     private final String host;
     private final int port;
     private final String channel;
     private final String queueManager;
+    private final int acknowledgeMode;
+    private Integer shareConvAllowed;
     private Connection connection;
     private Session session;
 
     public MQConnectionManager(String host, int port, String channel, String queueManager) {
+        this(host, port, channel, queueManager, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    public MQConnectionManager(String host, int port, String channel, String queueManager, int acknowledgeMode) {
         this.host = host;
         this.port = port;
         this.channel = channel;
         this.queueManager = queueManager;
+        this.acknowledgeMode = acknowledgeMode;
+    }
+
+    /**
+     * Whether sessions of this connection may share one TCP socket (channel instance),
+     * up to the channel's SHARECNV limit. Unset uses the client default, which shares.
+     * Must be called before connect().
+     */
+    public void setShareConversations(boolean share) {
+        this.shareConvAllowed = share
+                ? WMQConstants.WMQ_SHARE_CONV_ALLOWED_YES
+                : WMQConstants.WMQ_SHARE_CONV_ALLOWED_NO;
     }
 
     public void connect() throws JMSException {
-        System.out.println("=========================================");
-        System.out.println("Connecting to IBM MQ (Consumer)");
-        System.out.println("=========================================");
-        System.out.println("Queue Manager: " + queueManager);
-        System.out.println("Host: " + host + ":" + port);
-        System.out.println("Channel: " + channel);
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("Connecting to IBM MQ (Consumer)");
+        LOG.info("=========================================");
+        LOG.info("Queue Manager: {}", queueManager);
+        LOG.info("Host: {}:{}", host, port);
+        LOG.info("Channel: {}", channel);
+        LOG.info("=========================================");
 
         MQQueueConnectionFactory cf = createConnectionFactory();
 
-        System.out.println("Establishing connection...");
+        LOG.info("Establishing connection...");
         connection = cf.createConnection();
         connection.start();
 
-        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        session = connection.createSession(false, acknowledgeMode);
 
-        System.out.println("✓ Connected successfully!\n");
+        LOG.info("✓ Connected successfully!");
     }
 
     private MQQueueConnectionFactory createConnectionFactory() throws JMSException {
@@ -51,9 +72,19 @@ public class MQConnectionManager {
         cf.setQueueManager(queueManager);
         cf.setTransportType(WMQConstants.WMQ_CM_CLIENT);
         cf.setCCSID(1208); // UTF-8 encoding
+        if (shareConvAllowed != null) {
+            cf.setShareConvAllowed(shareConvAllowed);
+        }
         return cf;
     }
 
+    /**
+     * Open another session on this connection, each session is its own conversation with the queue manager
+     */
+    public Session createSession() throws JMSException {
+        return getConnection().createSession(false, acknowledgeMode);
+    }
+
     public Session getSession() {
         if (session == null) {
             throw new IllegalStateException("Not connected. Call connect() first.");
@@ -81,11 +112,10 @@ public class MQConnectionManager {
             if (connection != null) {
                 connection.close();
                 connection = null;
-                System.out.println("Connection closed gracefully.");
+                LOG.info("Connection closed gracefully.");
             }
         } catch (JMSException e) {
-            System.err.println("Error while closing connection:");
-            e.printStackTrace();
+            LOG.error("Error while closing connection:", e);
         }
     }
 }
\ No newline at end of file
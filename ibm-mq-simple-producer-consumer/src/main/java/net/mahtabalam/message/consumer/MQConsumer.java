@@ -1,29 +1,72 @@
 package net.mahtabalam.message.consumer;
 
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.BatchingFileSpanExporter;
+import net.mahtabalam.message.tracing.TraceSampler;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class MQConsumer {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 1414;
-    private static final String CHANNEL = "SYSTEM.DEF.SVRCONN";
-    private static final String QMGR = "MY.TEST.QMNGR";
-    private static final String QUEUE_NAME = "FIRST.TEST.QUEUE";
-    private static final int TIMEOUT_MS = 5000; // 5 seconds timeout for receiving messages
+    private static final Logger LOG = Logger.getLogger(MQConsumer.class);
+    private static final MQConfig CONFIG = MQConfig.load("consumer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("mq.queue");
+    private static final String SHARE_CONVERSATIONS = CONFIG.getString("mq.shareConversations", null); // null keeps the client default
+    private static final int TIMEOUT_MS = CONFIG.getInt("consumer.timeoutMs"); // timeout for receiving messages
+    private static final boolean TRACING_ENABLED = CONFIG.getBoolean("tracing.enabled");
+    private static final int STATUS_PORT = CONFIG.getInt("status.port"); // 0 disables the status page
+    private static final String STATUS_BIND_ADDRESS = CONFIG.getString("status.bindAddress", null); // null listens on loopback only
+    private static final String READ_AHEAD = CONFIG.getString("consumer.readAhead", null); // null keeps the queue's setting
+    private static final boolean SKIP_STALE = CONFIG.getBoolean("consumer.skipStale");
+    private static final long MAX_AGE_MS = CONFIG.getLong("consumer.maxAgeMs"); // 0 only checks JMSExpiration
+    private static final String STALE_QUEUE = CONFIG.getString("consumer.staleQueue", null); // null discards stale messages
 
     public static void main(String[] args) {
+        Logger.configure(CONFIG);
         MQConnectionManager connectionManager = null;
         MQMessageReceiver messageReceiver = null;
+        Tracer tracer = null;
+        StatusServer statusServer = null;
 
         try {
             // Step 1: Create connection manager
             connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+            if (SHARE_CONVERSATIONS != null) {
+                connectionManager.setShareConversations(Boolean.parseBoolean(SHARE_CONVERSATIONS));
+            }
             // Step 2: Connect to IBM MQ
             connectionManager.connect();
             // Step 3: Create message receiver
             messageReceiver = new MQMessageReceiver(connectionManager, QUEUE_NAME);
+            if (READ_AHEAD != null) {
+                messageReceiver.setReadAheadAllowed(Boolean.parseBoolean(READ_AHEAD));
+            }
+            if (SKIP_STALE) {
+                messageReceiver.setStalenessFilter(new StalenessFilter(MAX_AGE_MS, STALE_QUEUE));
+            }
+            if (TRACING_ENABLED) {
+                // Sampling was decided by the producer, the consumer only continues sampled traces
+                tracer = new Tracer(new TraceSampler(0), new BatchingFileSpanExporter(
+                        Paths.get(CONFIG.getString("tracing.file")), "mq-consumer",
+                        CONFIG.getInt("tracing.batchSize"), CONFIG.getLong("tracing.flushIntervalMs")));
+                messageReceiver.setTracer(tracer);
+            }
+            if (STATUS_PORT > 0) {
+                statusServer = createStatusServer(messageReceiver);
+            }
             // Step 4: Initialize message receiver
             messageReceiver.initialize();
+            if (statusServer != null) {
+                statusServer.start();
+            }
             // Step 5: Receive messages (will continue until no more messages or timeout)
             messageReceiver.receiveMessages(TIMEOUT_MS);
 
@@ -38,29 +81,50 @@ public class MQConsumer {
             if (connectionManager != null) {
                 connectionManager.disconnect();
             }
+            if (tracer != null) {
+                tracer.close();
+            }
+            if (statusServer != null) {
+                statusServer.stop();
+            }
+        }
+    }
+
+    /**
+     * Serve the receiver's live statistics over HTTP, the page stays off if the port is taken
+     */
+    private static StatusServer createStatusServer(MQMessageReceiver messageReceiver) {
+        ConsumerMetrics metrics = new ConsumerMetrics(QUEUE_NAME, CONFIG.getLong("status.windowMs"), 10000);
+        messageReceiver.setMetrics(metrics);
+        try {
+            StatusServer statusServer = new StatusServer(STATUS_BIND_ADDRESS, STATUS_PORT);
+            statusServer.register(metrics);
+            return statusServer;
+        } catch (IOException e) {
+            LOG.error("✗ Could not open status page on port {}: {}", STATUS_PORT, e.getMessage());
+            return null;
         }
     }
 
     private static void handleError(JMSException e) {
-        System.err.println("\n=========================================");
-        System.err.println("✗ ERROR OCCURRED");
-        System.err.println("=========================================");
-        System.err.println("Error: " + e.getMessage());
-        System.err.println("Error Code: " + (e.getErrorCode() != null ? e.getErrorCode() : "N/A"));
+        LOG.error("=========================================");
+        LOG.error("✗ ERROR OCCURRED");
+        LOG.error("=========================================");
+        LOG.error("Error: {}", e.getMessage());
+        LOG.error("Error Code: {}", e.getErrorCode() != null ? e.getErrorCode() : "N/A");
 
         if (e.getLinkedException() != null) {
-            System.err.println("\nLinked Exception Details:");
-            e.getLinkedException().printStackTrace();
+            LOG.error("Linked Exception Details:", e.getLinkedException());
         }
 
-        System.err.println("\nTroubleshooting Tips:");
-        System.err.println("1. Verify Queue Manager '" + QMGR + "' is running");
-        System.err.println("2. Check if queue '" + QUEUE_NAME + "' exists");
-        System.err.println("3. Confirm channel '" + CHANNEL + "' is configured");
-        System.err.println("4. Ensure MQ listener is active on port " + PORT);
-        System.err.println("5. Check authentication/authorization settings");
-        System.err.println("   Run: ALTER QMGR CHLAUTH(DISABLED)");
-        System.err.println("6. Verify GET permissions on the queue");
-        System.err.println("=========================================\n");
+        LOG.error("Troubleshooting Tips:");
+        LOG.error("1. Verify Queue Manager '{}' is running", QMGR);
+        LOG.error("2. Check if queue '{}' exists", QUEUE_NAME);
+        LOG.error("3. Confirm channel '{}' is configured", CHANNEL);
+        LOG.error("4. Ensure MQ listener is active on port {}", PORT);
+        LOG.error("5. Check authentication/authorization settings");
+        LOG.error("   Run: ALTER QMGR CHLAUTH(DISABLED)");
+        LOG.error("6. Verify GET permissions on the queue");
+        LOG.error("=========================================");
     }
 }
\ No newline at end of file
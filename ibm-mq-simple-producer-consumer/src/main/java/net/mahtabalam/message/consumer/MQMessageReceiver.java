@@ -1,5 +1,11 @@
 package net.mahtabalam.message.consumer;
 
+import com.ibm.mq.jms.MQDestination;
+import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.Span;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
 import javax.jms.MessageConsumer;
 import javax.jms.Queue;
@@ -7,18 +13,71 @@ import javax.jms.Session;
 import javax.jms.Message;
 import javax.jms.TextMessage;
 import java.lang.IllegalStateException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MQMessageReceiver {
 
+    private static final Logger LOG = Logger.getLogger(MQMessageReceiver.class);
+    private static final Logger FAILURE_LOG = LOG.throttled(5000); // errors repeated per message
+    private static final int MAX_IN_FLIGHT_PER_LANE = 64;
+    private static final int ACK_BATCH_SIZE = 100;
+    private static final long LANE_SHUTDOWN_TIMEOUT_MS = 10000;
+
     private final MQConnectionManager connectionManager;
     private final String queueName;
     private MessageConsumer messageConsumer;
+    private BackoutHandler backoutHandler;
+    private PartitionedMessageExecutor partitionedExecutor;
+    private Tracer tracer;
+    private ConsumerMetrics metrics;
+    private StalenessFilter stalenessFilter;
+    private int readAheadAllowed = WMQConstants.WMQ_READ_AHEAD_ALLOWED_AS_Q_DEF;
 
     public MQMessageReceiver(MQConnectionManager connectionManager, String queueName) {
         this.connectionManager = connectionManager;
         this.queueName = queueName;
     }
 
+    /**
+     * Route messages that keep failing in the async listeners to a backout queue.
+     * Must be set before initialize().
+     */
+    public void setBackoutHandler(BackoutHandler backoutHandler) {
+        this.backoutHandler = backoutHandler;
+    }
+
+    /**
+     * Let the queue manager stream non-persistent messages ahead of receive() calls.
+     * Must be set before initialize(), otherwise the queue's DEFREADA setting applies.
+     */
+    public void setReadAheadAllowed(boolean readAhead) {
+        this.readAheadAllowed = readAhead
+                ? WMQConstants.WMQ_READ_AHEAD_ALLOWED_ENABLED
+                : WMQConstants.WMQ_READ_AHEAD_ALLOWED_DISABLED;
+    }
+
+    /**
+     * Continue the producer's trace for every message that carries a sampled traceparent
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Record receive rate, processing time and errors, e.g. for a StatusServer
+     */
+    public void setMetrics(ConsumerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Skip messages past their expiry or maximum age before decoding them.
+     * Must be set before initialize().
+     */
+    public void setStalenessFilter(StalenessFilter stalenessFilter) {
+        this.stalenessFilter = stalenessFilter;
+    }
+
     public void initialize() throws JMSException {
         if (!connectionManager.isConnected()) {
             throw new IllegalStateException("Connection manager is not connected.");
@@ -26,10 +85,19 @@ public class MQMessageReceiver {
 
         Session session = connectionManager.getSession();
         Queue queue = session.createQueue(queueName);
+        if (queue instanceof MQDestination) {
+            ((MQDestination) queue).setReadAheadAllowed(readAheadAllowed);
+        }
 
         messageConsumer = session.createConsumer(queue);
+        if (backoutHandler != null) {
+            backoutHandler.initialize(session);
+        }
+        if (stalenessFilter != null) {
+            stalenessFilter.initialize(session);
+        }
 
-        System.out.println("✓ Message receiver initialized for queue: " + queueName + "\n");
+        LOG.info("✓ Message receiver initialized for queue: {}", queueName);
     }
 
     /**
@@ -40,22 +108,26 @@ public class MQMessageReceiver {
             throw new IllegalStateException("Message receiver not initialized. Call initialize() first.");
         }
 
-        System.out.println("Starting to receive messages from queue: " + queueName);
-        System.out.println("Timeout: " + timeoutMs + " ms\n");
+        LOG.info("Starting to receive messages from queue: {}", queueName);
+        LOG.info("Timeout: {} ms", timeoutMs);
         long startTime = System.currentTimeMillis();
         int messageCount = 0;
 
         while (true) {
             Message message = messageConsumer.receive(timeoutMs);
             if (message == null) {
-                System.out.println("\nNo more messages available (timeout reached).");
+                LOG.info("No more messages available (timeout reached).");
                 break;
             }
+            recordReceived(message);
+            if (isStale(message)) {
+                continue;
+            }
             messageCount++;
             processMessage(message, messageCount);
 
             if (messageCount % 10 == 0) {
-                System.out.println("  Received " + messageCount + " messages...");
+                LOG.info("  Received {} messages...", messageCount);
             }
         }
         long endTime = System.currentTimeMillis();
@@ -71,8 +143,8 @@ public class MQMessageReceiver {
             throw new IllegalStateException("Message receiver not initialized. Call initialize() first.");
         }
 
-        System.out.println("Receiving up to " + messageCount + " messages from queue: " + queueName);
-        System.out.println("Timeout per message: " + timeoutMs + " ms\n");
+        LOG.info("Receiving up to {} messages from queue: {}", messageCount, queueName);
+        LOG.info("Timeout per message: {} ms", timeoutMs);
 
         long startTime = System.currentTimeMillis();
         int receivedCount = 0;
@@ -81,15 +153,19 @@ public class MQMessageReceiver {
             Message message = messageConsumer.receive(timeoutMs);
 
             if (message == null) {
-                System.out.println("\nNo more messages available after " + receivedCount + " messages.");
+                LOG.info("No more messages available after {} messages.", receivedCount);
                 break;
             }
 
+            recordReceived(message);
+            if (isStale(message)) {
+                continue;
+            }
             receivedCount++;
             processMessage(message, receivedCount);
 
             if (receivedCount % 10 == 0) {
-                System.out.println("  Received " + receivedCount + " messages...");
+                LOG.info("  Received {} messages...", receivedCount);
             }
         }
 
@@ -98,7 +174,52 @@ public class MQMessageReceiver {
         printSummary(receivedCount, duration);
     }
 
+    /**
+     * Receive the next message without processing it, for tools that handle messages themselves
+     *
+     * @return the message, or null if none arrived within the timeout
+     */
+    public Message receive(long timeoutMs) throws JMSException {
+        if (messageConsumer == null) {
+            throw new IllegalStateException("Message receiver not initialized. Call initialize() first.");
+        }
+        return messageConsumer.receive(timeoutMs);
+    }
+
     private void processMessage(Message message, int messageNumber) throws JMSException {
+        Span span = tracer != null ? tracer.startConsumerSpan(message, queueName) : null;
+        long start = metrics != null ? metrics.processingStarted() : 0;
+        try {
+            displayMessage(message, messageNumber);
+        } catch (JMSException | RuntimeException e) {
+            if (span != null) {
+                span.setError(e);
+            }
+            if (metrics != null) {
+                metrics.recordError();
+            }
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.processingFinished(start);
+            }
+            if (span != null) {
+                span.end();
+            }
+        }
+    }
+
+    private boolean isStale(Message message) throws JMSException {
+        return stalenessFilter != null && stalenessFilter.filter(message);
+    }
+
+    private void recordReceived(Message message) {
+        if (metrics != null) {
+            metrics.messageReceived(message);
+        }
+    }
+
+    private void displayMessage(Message message, int messageNumber) throws JMSException {
         if (message instanceof TextMessage) {
             TextMessage textMessage = (TextMessage) message;
             String text = textMessage.getText();
@@ -112,32 +233,37 @@ public class MQMessageReceiver {
                     ? message.getStringProperty("QueueName") : "UNKNOWN";
 
             // Display received message details
-            System.out.println("─────────────────────────────────────────");
-            System.out.println("Message #" + messageNumber + " received:");
-            System.out.println("  Content: " + text);
-            System.out.println("  Message Number: " + msgNumber);
-            System.out.println("  Message Type: " + msgType);
-            System.out.println("  Queue Name: " + qName);
-            System.out.println("  JMS Message ID: " + message.getJMSMessageID());
-            System.out.println("  JMS Timestamp: " + message.getJMSTimestamp());
-            System.out.println("─────────────────────────────────────────\n");
+            LOG.info("─────────────────────────────────────────");
+            LOG.info("Message #{} received:", messageNumber);
+            LOG.info("  Content: {}", text);
+            LOG.info("  Message Number: {}", msgNumber);
+            LOG.info("  Message Type: {}", msgType);
+            LOG.info("  Queue Name: {}", qName);
+            LOG.info("  JMS Message ID: {}", message.getJMSMessageID());
+            LOG.info("  JMS Timestamp: {}", message.getJMSTimestamp());
+            LOG.info("─────────────────────────────────────────");
 
         } else {
-            System.out.println("Received non-text message: " + message.getClass().getName());
+            LOG.info("Received non-text message: {}", message.getClass().getName());
         }
     }
 
     private void printSummary(int messageCount, long duration) {
-        System.out.println("\n=========================================");
-        System.out.println("✓ RECEIVING COMPLETE!");
-        System.out.println("=========================================");
-        System.out.println("Queue: " + queueName);
-        System.out.println("Total messages received: " + messageCount);
-        System.out.println("Time taken: " + duration + " ms");
+        LOG.info("=========================================");
+        LOG.info("✓ RECEIVING COMPLETE!");
+        LOG.info("=========================================");
+        LOG.info("Queue: {}", queueName);
+        LOG.info("Total messages received: {}", messageCount);
+        LOG.info("Time taken: {} ms", duration);
         if (messageCount > 0) {
-            System.out.println("Average: " + String.format("%.2f", duration / (double) messageCount) + " ms per message");
+            LOG.info("Average: {} ms per message", String.format("%.2f", duration / (double) messageCount));
         }
-        System.out.println("=========================================\n");
+        if (stalenessFilter != null) {
+            LOG.info("Stale messages skipped: {} ({} expired, {} too old, {} diverted)",
+                    stalenessFilter.getStaleCount(), stalenessFilter.getExpiredCount(),
+                    stalenessFilter.getTooOldCount(), stalenessFilter.getDivertedCount());
+        }
+        LOG.info("=========================================");
     }
 
     /**
@@ -148,38 +274,105 @@ public class MQMessageReceiver {
             throw new IllegalStateException("Message receiver not initialized. Call initialize() first.");
         }
 
-        System.out.println("Setting up asynchronous message listener for queue: " + queueName + "\n");
+        LOG.info("Setting up asynchronous message listener for queue: {}", queueName);
 
         final int[] messageCount = {0};
         final long startTime = System.currentTimeMillis();
 
         messageConsumer.setMessageListener(message -> {
+            recordReceived(message);
             try {
+                if (isStale(message)) {
+                    return;
+                }
+                if (backoutHandler != null && backoutHandler.isPoison(message)) {
+                    backoutHandler.backout(message);
+                    return;
+                }
                 messageCount[0]++;
                 processMessage(message, messageCount[0]);
+            } catch (JMSException | RuntimeException e) {
+                if (backoutHandler != null) {
+                    FAILURE_LOG.error("Error processing message: {}", e.getMessage());
+                    backoutHandler.handleFailure(message, e);
+                } else {
+                    FAILURE_LOG.error("Error processing message: {}", e.getMessage(), e);
+                }
+            }
+        });
+
+        LOG.info("✓ Async listener activated. Messages will be processed as they arrive.");
+        LOG.info("Press Ctrl+C to stop...");
+    }
+
+    /**
+     * Receive messages asynchronously on laneCount parallel lanes.
+     * Messages with the same key are processed in order, use a CLIENT_ACKNOWLEDGE
+     * connection so a message is only acknowledged once all earlier ones are done.
+     */
+    public void receiveMessagesAsync(int laneCount, PartitionedMessageExecutor.KeyExtractor keyExtractor)
+            throws JMSException {
+        if (messageConsumer == null) {
+            throw new IllegalStateException("Message receiver not initialized. Call initialize() first.");
+        }
+
+        LOG.info("Setting up partitioned message listener for queue: {}", queueName);
+        LOG.info("Processing lanes: {}", laneCount);
+
+        final AtomicInteger messageCount = new AtomicInteger();
+        partitionedExecutor = new PartitionedMessageExecutor(laneCount, laneCount * MAX_IN_FLIGHT_PER_LANE,
+                ACK_BATCH_SIZE, keyExtractor, message -> processMessage(message, messageCount.incrementAndGet()));
+        partitionedExecutor.setBackoutHandler(backoutHandler);
+        partitionedExecutor.bind(connectionManager.getSession());
+
+        messageConsumer.setMessageListener(message -> {
+            partitionedExecutor.deliveryStarted();
+            recordReceived(message);
+            try {
+                // Filtered on the session thread, so stale messages never take a lane slot,
+                // the next batched acknowledge covers them
+                if (isStale(message)) {
+                    return;
+                }
+                partitionedExecutor.dispatch(message);
             } catch (JMSException e) {
-                System.err.println("Error processing message: " + e.getMessage());
-                e.printStackTrace();
+                FAILURE_LOG.error("Error dispatching message: {}", e.getMessage(), e);
+            } finally {
+                partitionedExecutor.deliveryDone();
             }
         });
 
-        System.out.println("✓ Async listener activated. Messages will be processed as they arrive.");
-        System.out.println("Press Ctrl+C to stop...\n");
+        LOG.info("✓ Partitioned listener activated. Messages will be processed as they arrive.");
+        LOG.info("Press Ctrl+C to stop...");
     }
 
     public void close() {
+        if (backoutHandler != null) {
+            backoutHandler.close();
+        }
+        if (stalenessFilter != null) {
+            stalenessFilter.close();
+        }
         try {
             if (messageConsumer != null) {
+                // Closing the consumer waits for a running onMessage(), so no dispatch races the final ack
                 messageConsumer.close();
                 messageConsumer = null;
-                System.out.println("Message receiver closed.");
+                LOG.info("Message receiver closed.");
+            }
+            if (partitionedExecutor != null) {
+                partitionedExecutor.shutdown(LANE_SHUTDOWN_TIMEOUT_MS);
+                partitionedExecutor.acknowledgeCompleted();
             }
         } catch (JMSException e) {
-            System.err.println("Error closing message receiver:");
-            e.printStackTrace();
+            LOG.error("Error closing message receiver:", e);
         }
     }
 
+    public PartitionedMessageExecutor getPartitionedExecutor() {
+        return partitionedExecutor;
+    }
+
     public boolean isInitialized() {
         return messageConsumer != null;
     }
@@ -0,0 +1,242 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.lang.IllegalStateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Non-destructive view of a queue, for looking at a backlog without draining it.
+ *
+ * A cursor streams messages from a JMS QueueBrowser and holds one message at
+ * a time, so even a queue with millions of messages is read in constant memory.
+ * Pages are taken from the same cursor one after another, so moving to the next
+ * page does not browse the earlier ones again.
+ */
+public class MQQueueBrowser {
+
+    private static final Logger LOG = Logger.getLogger(MQQueueBrowser.class);
+    private static final int BODY_PREVIEW_LENGTH = 200;
+
+    private final MQConnectionManager connectionManager;
+    private final String queueName;
+
+    public MQQueueBrowser(MQConnectionManager connectionManager, String queueName) {
+        this.connectionManager = connectionManager;
+        this.queueName = queueName;
+    }
+
+    /**
+     * Open a cursor over the messages matching the selector
+     *
+     * @param selector       JMS message selector, null for every message
+     * @param propertiesOnly skip body decoding and keep only the header and properties
+     */
+    public Cursor browse(String selector, boolean propertiesOnly) throws JMSException {
+        if (!connectionManager.isConnected()) {
+            throw new IllegalStateException("Connection manager is not connected.");
+        }
+        Session session = connectionManager.getSession();
+        QueueBrowser browser = session.createBrowser(session.createQueue(queueName), selector);
+        return new Cursor(browser, propertiesOnly);
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    /**
+     * Streaming position in the queue. Close it to release the browse cursor on the queue manager.
+     */
+    public static class Cursor implements AutoCloseable {
+
+        private final QueueBrowser browser;
+        private final Enumeration<?> enumeration;
+        private final boolean propertiesOnly;
+        private long position;
+
+        private Cursor(QueueBrowser browser, boolean propertiesOnly) throws JMSException {
+            this.browser = browser;
+            this.enumeration = browser.getEnumeration();
+            this.propertiesOnly = propertiesOnly;
+        }
+
+        public boolean hasNext() {
+            return enumeration.hasMoreElements();
+        }
+
+        public BrowsedMessage next() throws JMSException {
+            if (!enumeration.hasMoreElements()) {
+                throw new NoSuchElementException("No more messages on the queue");
+            }
+            position++;
+            return new BrowsedMessage(position, (Message) enumeration.nextElement(), propertiesOnly);
+        }
+
+        /**
+         * The next pageSize messages, fewer if the end of the queue is reached
+         */
+        public Page nextPage(int pageSize) throws JMSException {
+            long firstPosition = position + 1;
+            List<BrowsedMessage> messages = new ArrayList<>(pageSize);
+            while (messages.size() < pageSize && hasNext()) {
+                messages.add(next());
+            }
+            return new Page(firstPosition, messages, hasNext());
+        }
+
+        /**
+         * Number of messages browsed so far
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+            try {
+                browser.close();
+            } catch (JMSException e) {
+                LOG.error("Error closing queue browser: {}", e.getMessage());
+            }
+        }
+    }
+
+    public static class Page {
+
+        private final long firstPosition;
+        private final List<BrowsedMessage> messages;
+        private final boolean more;
+
+        Page(long firstPosition, List<BrowsedMessage> messages, boolean more) {
+            this.firstPosition = firstPosition;
+            this.messages = Collections.unmodifiableList(messages);
+            this.more = more;
+        }
+
+        public long getFirstPosition() {
+            return firstPosition;
+        }
+
+        public List<BrowsedMessage> getMessages() {
+            return messages;
+        }
+
+        public boolean hasMore() {
+            return more;
+        }
+    }
+
+    /**
+     * Snapshot of a browsed message, detached from the JMS message so nothing else is retained
+     */
+    public static class BrowsedMessage {
+
+        private final long position;
+        private final String messageId;
+        private final String correlationId;
+        private final long timestamp;
+        private final long expiration;
+        private final int priority;
+        private final int deliveryMode;
+        private final int deliveryCount;
+        private final String messageType;
+        private final Map<String, Object> properties = new LinkedHashMap<>();
+        private final String bodyPreview;
+
+        BrowsedMessage(long position, Message message, boolean propertiesOnly) throws JMSException {
+            this.position = position;
+            this.messageId = message.getJMSMessageID();
+            this.correlationId = message.getJMSCorrelationID();
+            this.timestamp = message.getJMSTimestamp();
+            this.expiration = message.getJMSExpiration();
+            this.priority = message.getJMSPriority();
+            this.deliveryMode = message.getJMSDeliveryMode();
+            this.deliveryCount = BackoutHandler.getDeliveryCount(message);
+            this.messageType = message.getClass().getSimpleName();
+            Enumeration<?> names = message.getPropertyNames();
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
+                properties.put(name, message.getObjectProperty(name));
+            }
+            this.bodyPreview = propertiesOnly ? null : preview(message);
+        }
+
+        private static String preview(Message message) throws JMSException {
+            if (message instanceof TextMessage) {
+                String text = ((TextMessage) message).getText();
+                if (text == null) {
+                    return "";
+                }
+                return text.length() > BODY_PREVIEW_LENGTH ? text.substring(0, BODY_PREVIEW_LENGTH) + "..." : text;
+            }
+            if (message instanceof BytesMessage) {
+                return "[" + ((BytesMessage) message).getBodyLength() + " bytes]";
+            }
+            if (message instanceof MapMessage) {
+                return "[map message]";
+            }
+            return "[" + message.getClass().getSimpleName() + "]";
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public String getMessageId() {
+            return messageId;
+        }
+
+        public String getCorrelationId() {
+            return correlationId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getExpiration() {
+            return expiration;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public int getDeliveryMode() {
+            return deliveryMode;
+        }
+
+        public int getDeliveryCount() {
+            return deliveryCount;
+        }
+
+        public String getMessageType() {
+            return messageType;
+        }
+
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+
+        /**
+         * Start of the body, null in properties-only mode
+         */
+        public String getBodyPreview() {
+            return bodyPreview;
+        }
+    }
+}
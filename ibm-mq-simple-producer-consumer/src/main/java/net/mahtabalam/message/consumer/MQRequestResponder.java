@@ -0,0 +1,96 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.lang.IllegalStateException;
+import java.util.function.Function;
+
+/**
+ * Server side of request/reply: answers each request on its JMSReplyTo queue and
+ * copies the request's correlation ID onto the reply
+ */
+public class MQRequestResponder {
+
+    private static final Logger LOG = Logger.getLogger(MQRequestResponder.class);
+
+    private final MQConnectionManager connectionManager;
+    private final String requestQueueName;
+    private final Function<String, String> handler;
+    private MessageConsumer requestConsumer;
+    private MessageProducer replyProducer;
+    private int repliedCount;
+
+    public MQRequestResponder(MQConnectionManager connectionManager, String requestQueueName,
+                              Function<String, String> handler) {
+        this.connectionManager = connectionManager;
+        this.requestQueueName = requestQueueName;
+        this.handler = handler;
+    }
+
+    public void initialize() throws JMSException {
+        if (!connectionManager.isConnected()) {
+            throw new IllegalStateException("Connection manager is not connected.");
+        }
+
+        Session session = connectionManager.getSession();
+        requestConsumer = session.createConsumer(session.createQueue(requestQueueName));
+        // Anonymous producer, the destination comes from each request's JMSReplyTo
+        replyProducer = session.createProducer(null);
+        requestConsumer.setMessageListener(this::onRequest);
+
+        LOG.info("✓ Request responder listening on queue: {}", requestQueueName);
+    }
+
+    private void onRequest(Message request) {
+        try {
+            Destination replyTo = request.getJMSReplyTo();
+            if (replyTo == null) {
+                LOG.error("Request {} has no JMSReplyTo, ignoring", request.getJMSMessageID());
+                return;
+            }
+            String body = request instanceof TextMessage ? ((TextMessage) request).getText() : null;
+
+            TextMessage reply = connectionManager.getSession().createTextMessage(handler.apply(body));
+            String correlationId = request.getJMSCorrelationID();
+            reply.setJMSCorrelationID(correlationId != null ? correlationId : request.getJMSMessageID());
+
+            long expiration = request.getJMSExpiration();
+            long timeToLive = expiration > 0 ? Math.max(1, expiration - System.currentTimeMillis()) : Message.DEFAULT_TIME_TO_LIVE;
+            replyProducer.send(replyTo, reply, request.getJMSDeliveryMode(), request.getJMSPriority(), timeToLive);
+            repliedCount++;
+        } catch (JMSException e) {
+            LOG.error("Error replying to request: {}", e.getMessage(), e);
+        }
+    }
+
+    public void close() {
+        try {
+            if (requestConsumer != null) {
+                requestConsumer.close();
+                requestConsumer = null;
+            }
+            if (replyProducer != null) {
+                replyProducer.close();
+                replyProducer = null;
+                LOG.info("Request responder closed.");
+            }
+        } catch (JMSException e) {
+            LOG.error("Error closing request responder:", e);
+        }
+    }
+
+    public int getRepliedCount() {
+        return repliedCount;
+    }
+
+    public String getRequestQueueName() {
+        return requestQueueName;
+    }
+}
@@ -0,0 +1,159 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Command line tool that pages through a queue without consuming it
+ *
+ * Usage: QueueBrowserTool [--queue NAME] [--selector "EXPR"] [--page-size N] [--pages N] [--properties-only]
+ *
+ * --pages limits how many pages are printed, the summary always covers the whole
+ * queue (or every message matching the selector).
+ */
+public class QueueBrowserTool {
+
+    private static final MQConfig CONFIG = MQConfig.load("consumer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int DEFAULT_PAGES = 1;
+
+    public static void main(String[] args) {
+        String queueName = CONFIG.getString("mq.queue");
+        String selector = null;
+        int pageSize = DEFAULT_PAGE_SIZE;
+        int pages = DEFAULT_PAGES;
+        boolean propertiesOnly = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--queue":
+                    queueName = args[++i];
+                    break;
+                case "--selector":
+                    selector = args[++i];
+                    break;
+                case "--page-size":
+                    pageSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--pages":
+                    pages = Integer.parseInt(args[++i]);
+                    break;
+                case "--properties-only":
+                    propertiesOnly = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println("Usage: QueueBrowserTool [--queue NAME] [--selector \"EXPR\"] "
+                            + "[--page-size N] [--pages N] [--properties-only]");
+                    return;
+            }
+        }
+
+        MQConnectionManager connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+        try {
+            connectionManager.connect();
+            MQQueueBrowser queueBrowser = new MQQueueBrowser(connectionManager, queueName);
+            System.out.println("Browsing queue: " + queueName + (selector != null ? " where " + selector : ""));
+            System.out.println("Page size: " + pageSize + ", pages shown: " + pages
+                    + (propertiesOnly ? ", properties only" : "") + "\n");
+
+            BacklogSummary summary = new BacklogSummary();
+            try (MQQueueBrowser.Cursor cursor = queueBrowser.browse(selector, propertiesOnly)) {
+                for (int page = 1; page <= pages && cursor.hasNext(); page++) {
+                    MQQueueBrowser.Page result = cursor.nextPage(pageSize);
+                    printPage(page, result);
+                    result.getMessages().forEach(summary::add);
+                }
+                // Keep streaming for the summary, one message in memory at a time
+                while (cursor.hasNext()) {
+                    summary.add(cursor.next());
+                }
+            }
+            summary.print(queueName);
+
+        } catch (JMSException e) {
+            System.err.println("✗ Error browsing queue " + queueName + ": " + e.getMessage());
+            if (e.getLinkedException() != null) {
+                System.err.println("  Linked exception: " + e.getLinkedException().getMessage());
+            }
+            System.err.println("  Check the queue exists and BROWSE permission is granted");
+        } finally {
+            connectionManager.disconnect();
+        }
+    }
+
+    private static void printPage(int pageNumber, MQQueueBrowser.Page page) {
+        System.out.println("─────────────────────────────────────────");
+        System.out.println("Page " + pageNumber + " (messages " + page.getFirstPosition() + " to "
+                + (page.getFirstPosition() + page.getMessages().size() - 1) + ")");
+        System.out.println("─────────────────────────────────────────");
+        for (MQQueueBrowser.BrowsedMessage message : page.getMessages()) {
+            System.out.println("#" + message.getPosition() + " " + message.getMessageId());
+            System.out.println("  Put: " + message.getTimestamp() + ", priority " + message.getPriority()
+                    + ", " + (message.getDeliveryMode() == DeliveryMode.PERSISTENT ? "PERSISTENT" : "NON_PERSISTENT")
+                    + ", delivery count " + message.getDeliveryCount());
+            if (message.getCorrelationId() != null) {
+                System.out.println("  Correlation ID: " + message.getCorrelationId());
+            }
+            System.out.println("  Properties: " + message.getProperties());
+            if (message.getBodyPreview() != null) {
+                System.out.println("  Body: " + message.getBodyPreview());
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Aggregates over every browsed message, so deep queues can be diagnosed without printing them
+     */
+    private static class BacklogSummary {
+
+        private final Map<String, Long> countByType = new TreeMap<>();
+        private final Map<Integer, Long> countByPriority = new TreeMap<>();
+        private long total;
+        private long redelivered;
+        private long expiring;
+        private long oldestTimestamp = Long.MAX_VALUE;
+
+        void add(MQQueueBrowser.BrowsedMessage message) {
+            total++;
+            Object type = message.getProperties().get("MessageType");
+            countByType.merge(type != null ? type.toString() : "(none)", 1L, Long::sum);
+            countByPriority.merge(message.getPriority(), 1L, Long::sum);
+            if (message.getDeliveryCount() > 1) {
+                redelivered++;
+            }
+            if (message.getExpiration() > 0) {
+                expiring++;
+            }
+            if (message.getTimestamp() > 0) {
+                oldestTimestamp = Math.min(oldestTimestamp, message.getTimestamp());
+            }
+        }
+
+        void print(String queueName) {
+            System.out.println("=========================================");
+            System.out.println("BACKLOG SUMMARY");
+            System.out.println("=========================================");
+            System.out.println("Queue: " + queueName);
+            System.out.println("Messages browsed: " + total);
+            if (total > 0) {
+                if (oldestTimestamp != Long.MAX_VALUE) {
+                    System.out.println("Oldest message age: "
+                            + (System.currentTimeMillis() - oldestTimestamp) / 1000 + " s");
+                }
+                System.out.println("Redelivered: " + redelivered + ", with expiry: " + expiring);
+                System.out.println("By MessageType: " + countByType);
+                System.out.println("By priority: " + countByPriority);
+            }
+            System.out.println("=========================================\n");
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * Moves the messages of a queue into a compressed archive file.
+ *
+ * File layout: [int magic "MQAR"][int version], then blocks of
+ * [int record count][int raw length][int compressed length][int crc32c][deflated records].
+ * Each record is [int length][body type][timestamp][expiration][priority][delivery mode]
+ * [correlation id][JMS type][properties][body], strings as [int UTF-8 length, -1 for null][bytes].
+ * Records are compressed per block rather than one by one, which is what makes
+ * the file compact: messages on one queue tend to repeat the same property names
+ * and body structure.
+ *
+ * Messages are acknowledged only after the block holding them is forced to disk,
+ * so with a CLIENT_ACKNOWLEDGE session a crash leaves them on the queue
+ * (at-least-once, a rerun may export some messages twice).
+ */
+public class QueueExporter implements AutoCloseable {
+
+    static final int MAGIC = 0x4D514152; // "MQAR"
+    static final int VERSION = 1;
+    static final byte BODY_NONE = 'N';
+    static final byte BODY_TEXT = 'T';
+    static final byte BODY_BYTES = 'B';
+
+    private final String name;
+    private final WritableByteChannel channel;
+    private final int blockSize;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer header = ByteBuffer.allocate(16);
+    private ByteBuffer block;
+    private ByteBuffer compressed;
+    private int blockRecords;
+    private long exportedCount;
+    private long rawBytes;
+    private long fileBytes;
+
+    /**
+     * @param blockSize raw bytes of records compressed together
+     */
+    public QueueExporter(Path file, int blockSize) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), file.toString(), blockSize);
+    }
+
+    /**
+     * Write the archive to any channel, which close() closes. Blocks are only
+     * forced to disk when the channel is a FileChannel.
+     *
+     * @param name      shown in the progress output
+     * @param blockSize raw bytes of records compressed together
+     */
+    public QueueExporter(WritableByteChannel channel, String name, int blockSize) throws IOException {
+        this.name = name;
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.block = ByteBuffer.allocate(blockSize);
+        this.compressed = ByteBuffer.allocate(blockSize + blockSize / 8 + 64);
+        ByteBuffer fileHeader = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        fileHeader.flip();
+        writeFully(fileHeader);
+    }
+
+    /**
+     * Receive and archive messages until the queue stays empty for idleTimeoutMs
+     *
+     * @param maxMessages stop after this many messages, 0 for no limit
+     * @return number of messages exported
+     */
+    public long exportFrom(MQMessageReceiver receiver, int idleTimeoutMs, long maxMessages)
+            throws JMSException, IOException {
+        System.out.println("Exporting queue " + receiver.getQueueName() + " to " + name);
+        long startTime = System.currentTimeMillis();
+        long count = 0;
+        Message lastUnacknowledged = null;
+        while (maxMessages == 0 || count < maxMessages) {
+            Message message = receiver.receive(idleTimeoutMs);
+            if (message == null) {
+                break;
+            }
+            write(message);
+            count++;
+            // Acknowledging covers every message the session received, so only do it once all are on disk
+            if (isFlushed()) {
+                message.acknowledge();
+                lastUnacknowledged = null;
+            } else {
+                lastUnacknowledged = message;
+            }
+            if (count % 100000 == 0) {
+                System.out.println("  Exported " + count + " messages...");
+            }
+        }
+        flush();
+        if (lastUnacknowledged != null) {
+            lastUnacknowledged.acknowledge();
+        }
+        printSummary(count, System.currentTimeMillis() - startTime);
+        return count;
+    }
+
+    /**
+     * Append one message to the current block, the block is written to disk once it is full
+     */
+    public void write(Message message) throws JMSException, IOException {
+        while (!tryEncode(message)) {
+            if (blockRecords > 0) {
+                flush();
+            } else {
+                // A single record larger than the block size gets a larger block
+                block = ByteBuffer.allocate(block.capacity() * 2);
+            }
+        }
+        blockRecords++;
+        exportedCount++;
+        if (block.position() >= blockSize) {
+            flush();
+        }
+    }
+
+    private boolean tryEncode(Message message) throws JMSException {
+        int start = block.position();
+        try {
+            encode(message);
+            return true;
+        } catch (BufferOverflowException e) {
+            block.position(start);
+            return false;
+        }
+    }
+
+    /**
+     * True when every message written so far is on disk
+     */
+    public boolean isFlushed() {
+        return blockRecords == 0;
+    }
+
+    private void encode(Message message) throws JMSException {
+        int lengthPosition = block.position();
+        block.putInt(0);
+        if (message instanceof TextMessage) {
+            block.put(BODY_TEXT);
+        } else if (message instanceof BytesMessage) {
+            block.put(BODY_BYTES);
+        } else {
+            block.put(BODY_NONE);
+        }
+        block.putLong(message.getJMSTimestamp());
+        block.putLong(message.getJMSExpiration());
+        block.put((byte) message.getJMSPriority());
+        block.put((byte) message.getJMSDeliveryMode());
+        putString(message.getJMSCorrelationID());
+        putString(message.getJMSType());
+
+        int countPosition = block.position();
+        block.putInt(0);
+        int propertyCount = 0;
+        Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            if (name.startsWith("JMS_IBM") || (name.startsWith("JMSX") && !name.startsWith("JMSXGroup"))) {
+                // Set by the queue manager on delivery, only message groups come from the application
+                continue;
+            }
+            if (putProperty(name, message.getObjectProperty(name))) {
+                propertyCount++;
+            }
+        }
+        block.putInt(countPosition, propertyCount);
+
+        if (message instanceof TextMessage textMessage) {
+            putString(textMessage.getText());
+        } else if (message instanceof BytesMessage bytesMessage) {
+            bytesMessage.reset();
+            byte[] body = new byte[Math.toIntExact(bytesMessage.getBodyLength())];
+            bytesMessage.readBytes(body);
+            block.putInt(body.length).put(body);
+        }
+        block.putInt(lengthPosition, block.position() - lengthPosition - 4);
+    }
+
+    private boolean putProperty(String name, Object value) {
+        byte tag;
+        if (value instanceof String) {
+            tag = 'S';
+        } else if (value instanceof Integer) {
+            tag = 'I';
+        } else if (value instanceof Long) {
+            tag = 'L';
+        } else if (value instanceof Boolean) {
+            tag = 'Z';
+        } else if (value instanceof Double) {
+            tag = 'D';
+        } else if (value instanceof Float) {
+            tag = 'F';
+        } else if (value instanceof Short) {
+            tag = 'H';
+        } else if (value instanceof Byte) {
+            tag = 'Y';
+        } else {
+            return false;
+        }
+        putString(name);
+        block.put(tag);
+        switch (tag) {
+            case 'S': putString((String) value); break;
+            case 'I': block.putInt((Integer) value); break;
+            case 'L': block.putLong((Long) value); break;
+            case 'Z': block.put((byte) ((Boolean) value ? 1 : 0)); break;
+            case 'D': block.putDouble((Double) value); break;
+            case 'F': block.putFloat((Float) value); break;
+            case 'H': block.putShort((Short) value); break;
+            default: block.put((Byte) value); break;
+        }
+        return true;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            block.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        block.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Compress the current block and force it to disk
+     */
+    public void flush() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        block.flip();
+        int rawLength = block.remaining();
+        deflater.reset();
+        deflater.setInput(block);
+        deflater.finish();
+        if (compressed.capacity() < rawLength + rawLength / 8 + 64) {
+            compressed = ByteBuffer.allocate(rawLength + rawLength / 8 + 64);
+        }
+        compressed.clear();
+        while (!deflater.finished()) {
+            if (!compressed.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(compressed.capacity() * 2);
+                compressed.flip();
+                compressed = larger.put(compressed);
+            }
+            deflater.deflate(compressed);
+        }
+        compressed.flip();
+        crc.reset();
+        crc.update(compressed.duplicate());
+
+        header.clear();
+        header.putInt(blockRecords).putInt(rawLength).putInt(compressed.remaining()).putInt((int) crc.getValue());
+        header.flip();
+        writeFully(header);
+        writeFully(compressed);
+        if (channel instanceof FileChannel fileChannel) {
+            fileChannel.force(false);
+        }
+
+        rawBytes += rawLength;
+        blockRecords = 0;
+        block.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            fileBytes += channel.write(buffer);
+        }
+    }
+
+    private void printSummary(long count, long duration) {
+        System.out.println("\n=========================================");
+        System.out.println("✓ EXPORT COMPLETE!");
+        System.out.println("=========================================");
+        System.out.println("File: " + name);
+        System.out.println("Messages exported: " + count);
+        System.out.println("Time taken: " + duration + " ms");
+        if (duration > 0) {
+            System.out.println("Throughput: " + String.format("%.0f", count * 1000.0 / duration) + " msgs/sec");
+        }
+        System.out.println("Size: " + rawBytes / 1024 + " KB raw, " + fileBytes / 1024 + " KB compressed");
+        System.out.println("=========================================\n");
+    }
+
+    public long getExportedCount() {
+        return exportedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        deflater.end();
+    }
+
+    /**
+     * Usage: QueueExporter FILE [MAX_MESSAGES]
+     * Drains the configured queue into FILE
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: QueueExporter FILE [MAX_MESSAGES]");
+            return;
+        }
+        MQConfig config = MQConfig.load("consumer.properties");
+        long maxMessages = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        // Client acknowledge, so messages leave the queue only once they are safely in the file
+        MQConnectionManager connectionManager = new MQConnectionManager(config.getString("mq.host"),
+                config.getInt("mq.port"), config.getString("mq.channel"), config.getString("mq.queueManager"),
+                Session.CLIENT_ACKNOWLEDGE);
+        MQMessageReceiver receiver = null;
+        try (QueueExporter exporter = new QueueExporter(Paths.get(args[0]), config.getInt("archive.blockSize"))) {
+            connectionManager.connect();
+            receiver = new MQMessageReceiver(connectionManager, config.getString("mq.queue"));
+            receiver.initialize();
+            exporter.exportFrom(receiver, config.getInt("consumer.timeoutMs"), maxMessages);
+        } catch (JMSException e) {
+            System.err.println("✗ Export failed: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("✗ Could not write " + args[0] + ": " + e.getMessage());
+        } finally {
+            if (receiver != null) {
+                receiver.close();
+            }
+            connectionManager.disconnect();
+        }
+    }
+}
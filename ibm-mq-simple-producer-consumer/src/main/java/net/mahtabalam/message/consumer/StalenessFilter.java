@@ -0,0 +1,123 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skips messages whose deadline has passed before their body is decoded.
+ *
+ * A message is stale once its JMSExpiration has passed, which the queue manager
+ * only enforces at get time and not for messages already streamed to the client,
+ * or once it is older than maxAgeMs by its JMSTimestamp. Only header fields are
+ * read, so a stale message costs no body decoding and no processing. Stale
+ * messages are discarded, or moved to a divert queue when one is set. Ages rely
+ * on producer and consumer clocks being in sync. Skips are logged at most once
+ * per STALE_LOG_INTERVAL_MS, a backlog of stale messages would flood the log.
+ */
+public class StalenessFilter {
+
+    private static final Logger LOG = Logger.getLogger(StalenessFilter.class);
+    private static final long STALE_LOG_INTERVAL_MS = 5000;
+
+    private final long maxAgeMs;
+    private final String divertQueueName;
+    private final Logger staleLog;
+    private final AtomicLong expiredCount = new AtomicLong(0);
+    private final AtomicLong tooOldCount = new AtomicLong(0);
+    private final AtomicLong divertedCount = new AtomicLong(0);
+    private MessageProducer divertProducer;
+
+    /**
+     * @param maxAgeMs        maximum time since the put, 0 only checks JMSExpiration
+     * @param divertQueueName queue that receives stale messages, null discards them
+     */
+    public StalenessFilter(long maxAgeMs, String divertQueueName) {
+        this(maxAgeMs, divertQueueName, LOG.throttled(STALE_LOG_INTERVAL_MS));
+    }
+
+    StalenessFilter(long maxAgeMs, String divertQueueName, Logger staleLog) {
+        this.maxAgeMs = maxAgeMs;
+        this.divertQueueName = divertQueueName;
+        this.staleLog = staleLog;
+    }
+
+    /**
+     * Create the divert producer on the consumer's session. The put to the divert
+     * queue and the acknowledgement of the original are two steps, a crash
+     * between them diverts the message a second time on redelivery.
+     */
+    public void initialize(Session session) throws JMSException {
+        if (divertQueueName != null) {
+            divertProducer = session.createProducer(session.createQueue(divertQueueName));
+        }
+        LOG.info("✓ Staleness filter initialized (max age: {}, stale messages {})",
+                maxAgeMs > 0 ? maxAgeMs + " ms" : "expiry only",
+                divertQueueName != null ? "moved to " + divertQueueName : "discarded");
+    }
+
+    /**
+     * Discard or divert the message if it is stale
+     *
+     * @return true if the message was stale and must not be processed
+     */
+    public boolean filter(Message message) throws JMSException {
+        long now = System.currentTimeMillis();
+        long expiration = message.getJMSExpiration();
+        long lateMs;
+        if (expiration > 0 && now >= expiration) {
+            expiredCount.incrementAndGet();
+            lateMs = now - expiration;
+        } else if (maxAgeMs > 0 && message.getJMSTimestamp() > 0 && now - message.getJMSTimestamp() > maxAgeMs) {
+            tooOldCount.incrementAndGet();
+            lateMs = now - message.getJMSTimestamp() - maxAgeMs;
+        } else {
+            return false;
+        }
+        staleLog.warn("⚠ Skipped stale message {}, {} ms past its deadline", message.getJMSMessageID(), lateMs);
+        if (divertProducer != null) {
+            // No expiry on the divert queue, the message is kept for inspection
+            divertProducer.send(message, message.getJMSDeliveryMode(), message.getJMSPriority(),
+                    Message.DEFAULT_TIME_TO_LIVE);
+            divertedCount.incrementAndGet();
+        }
+        return true;
+    }
+
+    public void close() {
+        try {
+            if (divertProducer != null) {
+                divertProducer.close();
+                divertProducer = null;
+            }
+        } catch (JMSException e) {
+            LOG.error("✗ Error closing divert producer: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Messages skipped because their JMSExpiration had passed
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * Messages skipped because they were older than the maximum age
+     */
+    public long getTooOldCount() {
+        return tooOldCount.get();
+    }
+
+    public long getDivertedCount() {
+        return divertedCount.get();
+    }
+
+    public long getStaleCount() {
+        return expiredCount.get() + tooOldCount.get();
+    }
+}
@@ -0,0 +1,101 @@
+package net.mahtabalam.message.consumer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.mahtabalam.message.logging.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP status page for the consumers of this JVM, on the JDK's HttpServer.
+ *
+ * GET /status returns the ConsumerMetrics snapshot of every registered consumer
+ * as JSON, any other path a plain text line per consumer, e.g. for watch curl.
+ * Requests are served on a single daemon thread, so a slow reader never takes
+ * threads from message processing. The page has no authentication and listens
+ * on the loopback interface unless a bind address is given.
+ */
+public class StatusServer {
+
+    private static final Logger LOG = Logger.getLogger(StatusServer.class);
+
+    private final HttpServer server;
+    private final List<ConsumerMetrics> consumers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param bindAddress host name or address to listen on, null for loopback only
+     */
+    public StatusServer(String bindAddress, int port) throws IOException {
+        InetSocketAddress address = bindAddress != null
+                ? new InetSocketAddress(bindAddress, port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        server = HttpServer.create(address, 0);
+        server.createContext("/status", exchange -> respond(exchange, "application/json", json()));
+        server.createContext("/", exchange -> respond(exchange, "text/plain; charset=utf-8", text()));
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mq-status-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public void register(ConsumerMetrics metrics) {
+        consumers.add(metrics);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("✓ Status page at http://{}:{}/status", server.getAddress().getHostString(), getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private String json() {
+        StringBuilder json = new StringBuilder("{\"consumers\":[");
+        for (int i = 0; i < consumers.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(consumers.get(i).snapshot().toJson());
+        }
+        return json.append("]}\n").toString();
+    }
+
+    private String text() {
+        StringBuilder text = new StringBuilder();
+        for (ConsumerMetrics metrics : consumers) {
+            text.append(metrics.snapshot()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package net.mahtabalam.message.logging;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+/**
+ * Writes log events on a background thread, DEBUG and INFO to one stream, WARN
+ * and ERROR to another.
+ *
+ * Events go into a ring of preallocated slots, so logging only copies references
+ * on the calling thread. Immutable arguments (String, boxed primitives, enums,
+ * UUID) are formatted on the writer thread; any other argument is turned into a
+ * String on the calling thread, so a value changed after the call is logged as
+ * it was. The writer is only woken for WARN and ERROR or a quarter full ring,
+ * otherwise it picks up events every FLUSH_INTERVAL_MS. The writer formats into a
+ * reused buffer and encodes into a reused byte array with the output stream's
+ * charset, so steady-state logging allocates nothing for String and boxed number
+ * arguments. When the ring is full, DEBUG and INFO events
+ * are dropped and counted while WARN and ERROR wait for space. After close(),
+ * events are written on the calling thread so late shutdown messages still appear.
+ */
+public class AsyncAppender implements Runnable {
+
+    /**
+     * TEXT writes "timestamp LEVEL [thread] logger - message", JSON one object per line
+     */
+    public enum Format { TEXT, JSON }
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long CLOSE_TIMEOUT_MS = 2000;
+    private static final long FLUSH_INTERVAL_MS = 20;
+    private static final DateTimeFormatter TEXT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter JSON_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final AsyncAppender DEFAULT = createDefault();
+
+    static final class Event {
+        Level level;
+        String logger;
+        String thread;
+        long timestamp;
+        String message;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+        int argCount;
+        Throwable error;
+        long suppressed;
+
+        Object arg(int index) {
+            return args != null ? args[index] : index == 0 ? arg1 : arg2;
+        }
+
+        void clear() {
+            message = null;
+            arg1 = null;
+            arg2 = null;
+            args = null;
+            error = null;
+        }
+    }
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Event[] ring;
+    private final int mask;
+    private final Object lock = new Object();
+    private final Object writeLock = new Object();
+    private final Event directEvent = new Event();
+    private final Thread thread;
+    private long head;
+    private long tail;
+    private long droppedCount;
+    private long totalDroppedCount;
+    private boolean writerWaiting;
+    private volatile boolean running = true;
+    private volatile Format format = Format.TEXT;
+
+    // Writer state, guarded by writeLock
+    private final StringBuilder line = new StringBuilder(512);
+    private final CharsetEncoder encoder;
+    private char[] chars = new char[512];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private ByteBuffer bytes = ByteBuffer.allocate(2048);
+    private long cachedSecond = Long.MIN_VALUE;
+    private Format cachedFormat;
+    private String cachedTime;
+
+    /**
+     * @param capacity events buffered before INFO is dropped, rounded up to a power of two
+     */
+    public AsyncAppender(PrintStream out, PrintStream err, int capacity) {
+        this.out = out;
+        this.err = err;
+        this.encoder = out.charset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Event[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Event();
+        }
+        this.thread = new Thread(this, "mq-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static AsyncAppender createDefault() {
+        AsyncAppender appender = new AsyncAppender(System.out, System.err, DEFAULT_CAPACITY);
+        Runtime.getRuntime().addShutdownHook(new Thread(appender::close, "mq-log-shutdown"));
+        return appender;
+    }
+
+    /**
+     * The appender behind Logger.getLogger(), writing to System.out and System.err
+     */
+    public static AsyncAppender getDefault() {
+        return DEFAULT;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    void append(Level level, String logger, String message, Object arg1, Object arg2, Object[] args, int argCount,
+                Throwable error, long suppressed) {
+        long timestamp = System.currentTimeMillis();
+        String threadName = Thread.currentThread().getName();
+        arg1 = capture(arg1);
+        arg2 = capture(arg2);
+        args = capture(args, argCount);
+        synchronized (lock) {
+            while (running && tail - head == ring.length) {
+                if (level.compareTo(Level.WARN) < 0 || Thread.currentThread() == thread) {
+                    droppedCount++;
+                    totalDroppedCount++;
+                    return;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount++;
+                    totalDroppedCount++;
+                    return;
+                }
+            }
+            if (running) {
+                fill(ring[(int) (tail & mask)], level, logger, threadName, timestamp, message, arg1, arg2, args,
+                        argCount, error, suppressed);
+                tail++;
+                if (writerWaiting && (level.compareTo(Level.WARN) >= 0 || tail - head >= ring.length / 4)) {
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+        synchronized (writeLock) {
+            fill(directEvent, level, logger, threadName, timestamp, message, arg1, arg2, args, argCount, error,
+                    suppressed);
+            write(directEvent);
+            directEvent.clear();
+            out.flush();
+            err.flush();
+        }
+    }
+
+    /**
+     * The argument itself if it cannot change before the writer formats it,
+     * otherwise its current String form. Throwables are kept for the stack trace.
+     */
+    private static Object capture(Object arg) {
+        if (arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+                || arg instanceof Double || arg instanceof Boolean || arg instanceof Character
+                || arg instanceof Short || arg instanceof Byte || arg instanceof Float
+                || arg instanceof Enum || arg instanceof UUID || arg instanceof Throwable) {
+            return arg;
+        }
+        return String.valueOf(arg);
+    }
+
+    /**
+     * Copies the array only when an argument has to be captured
+     */
+    private static Object[] capture(Object[] args, int argCount) {
+        if (args == null) {
+            return null;
+        }
+        Object[] captured = args;
+        for (int i = 0; i < argCount; i++) {
+            Object arg = capture(args[i]);
+            if (arg != args[i]) {
+                if (captured == args) {
+                    captured = args.clone();
+                }
+                captured[i] = arg;
+            }
+        }
+        return captured;
+    }
+
+    private static void fill(Event event, Level level, String logger, String thread, long timestamp, String message,
+                             Object arg1, Object arg2, Object[] args, int argCount, Throwable error,
+                             long suppressed) {
+        event.level = level;
+        event.logger = logger;
+        event.thread = thread;
+        event.timestamp = timestamp;
+        event.message = message;
+        event.arg1 = arg1;
+        event.arg2 = arg2;
+        event.args = args;
+        event.argCount = argCount;
+        event.error = error;
+        event.suppressed = suppressed;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long available;
+            long dropped;
+            synchronized (lock) {
+                if (running && head == tail) {
+                    writerWaiting = true;
+                    try {
+                        lock.wait(FLUSH_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                    writerWaiting = false;
+                }
+                if (running && head == tail) {
+                    continue;
+                }
+                if (head == tail) {
+                    return;
+                }
+                available = tail;
+                dropped = droppedCount;
+                droppedCount = 0;
+            }
+            synchronized (writeLock) {
+                if (dropped > 0) {
+                    reportDropped(dropped);
+                }
+                // Slots up to available are not reused until head moves past them
+                for (long sequence = head; sequence < available; sequence++) {
+                    Event event = ring[(int) (sequence & mask)];
+                    write(event);
+                    event.clear();
+                }
+                out.flush();
+                err.flush();
+            }
+            synchronized (lock) {
+                head = available;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void reportDropped(long dropped) {
+        fill(directEvent, Level.WARN, "AsyncAppender", thread.getName(), System.currentTimeMillis(),
+                "⚠ {} log events dropped, buffer full", dropped, null, null, 1, null, 0);
+        write(directEvent);
+        directEvent.clear();
+    }
+
+    /**
+     * Write everything buffered and switch to writing on the calling thread
+     */
+    public void close() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Events dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return totalDroppedCount;
+        }
+    }
+
+    boolean isIdle() {
+        synchronized (lock) {
+            return head == tail;
+        }
+    }
+
+    Thread getWriterThread() {
+        return thread;
+    }
+
+    private void write(Event event) {
+        line.setLength(0);
+        if (format == Format.JSON) {
+            formatJson(event);
+        } else {
+            formatText(event);
+        }
+        line.append('\n');
+        PrintStream stream = event.level.compareTo(Level.WARN) >= 0 ? err : out;
+        encode();
+        stream.write(bytes.array(), 0, bytes.position());
+    }
+
+    private void formatText(Event event) {
+        appendTime(event.timestamp, Format.TEXT);
+        line.append(' ').append(event.level.name());
+        if (event.level.name().length() == 4) {
+            line.append(' ');
+        }
+        line.append(" [").append(event.thread).append("] ").append(event.logger).append(" - ");
+        Throwable error = appendMessage(event);
+        if (event.suppressed > 0) {
+            line.append(" (").append(event.suppressed).append(" similar messages suppressed)");
+        }
+        if (error != null) {
+            line.append('\n').append(stackTrace(error));
+        }
+    }
+
+    private void formatJson(Event event) {
+        line.append("{\"ts\":\"");
+        appendTime(event.timestamp, Format.JSON);
+        line.append("\",\"level\":\"").append(event.level.name()).append("\",\"thread\":\"");
+        appendEscaped(event.thread);
+        line.append("\",\"logger\":\"");
+        appendEscaped(event.logger);
+        line.append("\",\"message\":\"");
+        int start = line.length();
+        Throwable error = appendMessage(event);
+        escapeFrom(start);
+        line.append('"');
+        if (event.suppressed > 0) {
+            line.append(",\"suppressed\":").append(event.suppressed);
+        }
+        if (error != null) {
+            line.append(",\"error\":\"");
+            appendEscaped(stackTrace(error));
+            line.append('"');
+        }
+        line.append('}');
+    }
+
+    /**
+     * Replace {} placeholders with the arguments, a Throwable left over after the
+     * last placeholder is logged as the event's error
+     *
+     * @return the error to print with the message, or null
+     */
+    private Throwable appendMessage(Event event) {
+        String message = event.message;
+        int argIndex = 0;
+        int from = 0;
+        if (message == null) {
+            line.append("null");
+        } else {
+            int placeholder;
+            while (argIndex < event.argCount && (placeholder = message.indexOf("{}", from)) >= 0) {
+                line.append(message, from, placeholder);
+                appendArg(event.arg(argIndex++));
+                from = placeholder + 2;
+            }
+            line.append(message, from, message.length());
+        }
+        if (event.error == null && argIndex < event.argCount && event.arg(event.argCount - 1) instanceof Throwable) {
+            return (Throwable) event.arg(event.argCount - 1);
+        }
+        return event.error;
+    }
+
+    private void appendArg(Object arg) {
+        if (arg instanceof String) {
+            line.append((String) arg);
+        } else if (arg instanceof Integer) {
+            line.append(((Integer) arg).intValue());
+        } else if (arg instanceof Long) {
+            line.append(((Long) arg).longValue());
+        } else if (arg instanceof Double) {
+            line.append(((Double) arg).doubleValue());
+        } else if (arg instanceof Boolean) {
+            line.append(((Boolean) arg).booleanValue());
+        } else {
+            line.append(arg);
+        }
+    }
+
+    /**
+     * Time to the second is cached, only the milliseconds are formatted per event
+     */
+    private void appendTime(long timestamp, Format timeFormat) {
+        long second = Math.floorDiv(timestamp, 1000);
+        if (second != cachedSecond || timeFormat != cachedFormat) {
+            Instant instant = Instant.ofEpochSecond(second);
+            cachedTime = timeFormat == Format.JSON
+                    ? JSON_TIME.format(instant.atZone(ZoneOffset.UTC))
+                    : TEXT_TIME.format(instant.atZone(ZoneId.systemDefault()));
+            cachedSecond = second;
+            cachedFormat = timeFormat;
+        }
+        int millis = Math.floorMod(timestamp, 1000);
+        line.append(cachedTime).append('.');
+        if (millis < 100) {
+            line.append('0');
+        }
+        if (millis < 10) {
+            line.append('0');
+        }
+        line.append(millis);
+        if (timeFormat == Format.JSON) {
+            line.append('Z');
+        }
+    }
+
+    private void appendEscaped(String value) {
+        int start = line.length();
+        line.append(value);
+        escapeFrom(start);
+    }
+
+    /**
+     * JSON-escape the end of the line buffer in place, from start
+     */
+    private void escapeFrom(int start) {
+        for (int i = start; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.insert(i++, '\\');
+            } else if (c == '\n') {
+                line.setCharAt(i, 'n');
+                line.insert(i++, '\\');
+            } else if (c == '\t') {
+                line.setCharAt(i, 't');
+                line.insert(i++, '\\');
+            } else if (c < 0x20) {
+                line.setCharAt(i, '\\');
+                line.insert(i + 1, "u00").insert(i + 4, Character.forDigit(c >> 4, 16))
+                        .insert(i + 5, Character.forDigit(c & 0xF, 16));
+                i += 5;
+            }
+        }
+    }
+
+    private static String stackTrace(Throwable error) {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        return trace.toString().stripTrailing();
+    }
+
+    /**
+     * Encode the line buffer with the output stream's charset into the reused byte buffer
+     */
+    private void encode() {
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        line.getChars(0, length, chars, 0);
+        charBuffer.clear().limit(length);
+        bytes.clear();
+        encoder.reset();
+        while (encoder.encode(charBuffer, bytes, true).isOverflow()) {
+            grow();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+        bytes.flip();
+        larger.put(bytes);
+        bytes = larger;
+    }
+}
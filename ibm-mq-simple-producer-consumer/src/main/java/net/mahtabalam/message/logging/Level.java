@@ -0,0 +1,12 @@
+package net.mahtabalam.message.logging;
+
+/**
+ * Log levels in increasing severity, OFF disables logging
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
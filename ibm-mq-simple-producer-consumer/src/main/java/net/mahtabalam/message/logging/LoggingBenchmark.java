@@ -0,0 +1,137 @@
+package net.mahtabalam.message.logging;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of a log call on the calling thread, compared with the
+ * System.out.println and string concatenation it replaces.
+ *
+ * Output goes to a stream that discards it, so only formatting and hand-off are
+ * measured, not the console. Every case runs a warm-up pass first, then reports
+ * nanoseconds and bytes allocated per call on the calling thread. Calls are made
+ * in chunks of half the ring with the writer catching up in between, untimed, so
+ * the hand-off is measured without dropping events. For the enabled logger the
+ * writer thread's allocations per written event are reported too.
+ *
+ * Usage: LoggingBenchmark [ITERATIONS]
+ */
+public class LoggingBenchmark {
+
+    private static final String QUEUE_NAME = "FIRST.TEST.QUEUE";
+    private static final int RING_CAPACITY = 8192;
+    private static final int CHUNK = RING_CAPACITY / 2;
+    private static final long THROTTLE_MS = 1000;
+
+    private interface Case {
+        void run(int i);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        System.out.println("\n╔═════════════════════════════════════════╗");
+        System.out.println("║          LOGGING BENCHMARK              ║");
+        System.out.println("╚═════════════════════════════════════════╝\n");
+
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        AsyncAppender appender = new AsyncAppender(discard, discard, RING_CAPACITY);
+        Logger logger = new Logger("LoggingBenchmark", appender, 0);
+        Logger throttled = logger.throttled(THROTTLE_MS);
+        Logger.setLevel(Level.INFO);
+
+        List<Result> results = new ArrayList<>();
+        results.add(measure("println + concat", iterations, appender,
+                i -> discard.println("Received message #" + i + " from " + QUEUE_NAME)));
+        results.add(measure("info, 2 args", iterations, appender,
+                i -> logger.info("Received message #{} from {}", i, QUEUE_NAME)));
+        results.add(measure("debug off, 2 args", iterations, appender,
+                i -> logger.debug("Received message #{} from {}", i, QUEUE_NAME)));
+        results.add(measure("debug off, lambda", iterations, appender,
+                i -> logger.debug(() -> "Received message #" + i + " from " + QUEUE_NAME)));
+        results.add(measure("throttled error", iterations, appender,
+                i -> throttled.error("✗ Error processing message: {}", QUEUE_NAME)));
+        appender.close();
+
+        System.out.println("=========================================");
+        System.out.println("LOGGING BENCHMARK RESULTS");
+        System.out.println("=========================================");
+        System.out.println("Iterations per case: " + iterations + ", ring capacity: " + RING_CAPACITY);
+        System.out.println(String.format("%-20s %9s %12s %12s %10s", "case", "ns/call", "bytes/call",
+                "writer B/ev", "dropped"));
+        for (Result result : results) {
+            System.out.println(String.format("%-20s %9.1f %12.1f %12s %10d", result.name, result.nanosPerCall,
+                    result.bytesPerCall, result.writerBytesPerEvent >= 0
+                            ? String.format("%.1f", result.writerBytesPerEvent) : "-", result.dropped));
+        }
+        System.out.println("=========================================");
+        System.out.println("Boxing the int argument allocates above 127, String arguments do not.");
+        System.out.println("=========================================\n");
+    }
+
+    private static Result measure(String name, int iterations, AsyncAppender appender, Case benchmarkCase)
+            throws InterruptedException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        run(benchmarkCase, iterations, appender);
+
+        long callerThread = Thread.currentThread().threadId();
+        long writerThread = appender.getWriterThread().threadId();
+        long droppedBefore = appender.getDroppedCount();
+        long writerBytesBefore = threads.getThreadAllocatedBytes(writerThread);
+        long bytesBefore = threads.getThreadAllocatedBytes(callerThread);
+        long elapsed = run(benchmarkCase, iterations, appender);
+        long bytes = threads.getThreadAllocatedBytes(callerThread) - bytesBefore;
+        long writerBytes = threads.getThreadAllocatedBytes(writerThread) - writerBytesBefore;
+        long dropped = appender.getDroppedCount() - droppedBefore;
+
+        System.out.println("✓ " + name + " done");
+        long written = name.startsWith("info") ? iterations - dropped : 0;
+        return new Result(name, elapsed / (double) iterations, bytes / (double) iterations,
+                written > 0 ? writerBytes / (double) written : -1, dropped);
+    }
+
+    /**
+     * @return nanoseconds spent in the calls, without the waits for the writer
+     */
+    private static long run(Case benchmarkCase, int iterations, AsyncAppender appender)
+            throws InterruptedException {
+        long elapsed = 0;
+        for (int chunkStart = 0; chunkStart < iterations; chunkStart += CHUNK) {
+            int chunkEnd = Math.min(iterations, chunkStart + CHUNK);
+            long start = System.nanoTime();
+            for (int i = chunkStart; i < chunkEnd; i++) {
+                benchmarkCase.run(i);
+            }
+            elapsed += System.nanoTime() - start;
+            awaitIdle(appender);
+        }
+        return elapsed;
+    }
+
+    private static void awaitIdle(AsyncAppender appender) throws InterruptedException {
+        while (!appender.isIdle()) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static class Result {
+
+        final String name;
+        final double nanosPerCall;
+        final double bytesPerCall;
+        final double writerBytesPerEvent;
+        final long dropped;
+
+        Result(String name, double nanosPerCall, double bytesPerCall, double writerBytesPerEvent, long dropped) {
+            this.name = name;
+            this.nanosPerCall = nanosPerCall;
+            this.bytesPerCall = bytesPerCall;
+            this.writerBytesPerEvent = writerBytesPerEvent;
+            this.dropped = dropped;
+        }
+    }
+}
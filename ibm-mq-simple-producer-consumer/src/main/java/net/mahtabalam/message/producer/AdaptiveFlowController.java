@@ -0,0 +1,139 @@
+package net.mahtabalam.message.producer;
+
+import com.ibm.mq.MQException;
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+
+/**
+ * Adjusts a rate limiter with additive-increase/multiplicative-decrease (AIMD).
+ *
+ * The rate is halved when a put fails because the queue is full, or when the
+ * average put latency rises well above the best latency seen, which is how a
+ * queue manager under pressure shows up before the queue fills. While puts are
+ * fast the rate grows by a fixed step every second until it reaches maxRate.
+ */
+public class AdaptiveFlowController {
+
+    private static final Logger LOG = Logger.getLogger(AdaptiveFlowController.class);
+    private static final int MQRC_Q_FULL = 2053;
+    private static final int MQRC_Q_SPACE_NOT_AVAILABLE = 2056;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_FRACTION = 0.05; // of maxRate, per increase interval
+    private static final long INCREASE_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long DECREASE_COOLDOWN_NANOS = 500_000_000L; // one decrease per burst of bad news
+    private static final double LATENCY_FACTOR = 2.0; // latency above this multiple of the baseline means back off
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+    private static final double BASELINE_DRIFT = 0.001; // lets the baseline follow a permanently slower queue manager
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final double minRate;
+    private volatile double maxRate;
+    private double currentRate;
+    private double latencyEwmaNanos;
+    private double baselineLatencyNanos;
+    private long lastIncreaseNanos;
+    private long lastDecreaseNanos;
+    private long queueFullCount;
+    private long decreaseCount;
+
+    /**
+     * Starts at maxRate, the first queue-full or latency signal brings it down
+     */
+    public AdaptiveFlowController(TokenBucketRateLimiter rateLimiter, double minRate, double maxRate) {
+        if (minRate <= 0 || maxRate < minRate) {
+            throw new IllegalArgumentException("Rates must satisfy 0 < minRate <= maxRate: " + minRate + ", " + maxRate);
+        }
+        this.rateLimiter = rateLimiter;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.currentRate = maxRate;
+        this.lastIncreaseNanos = System.nanoTime();
+        this.lastDecreaseNanos = lastIncreaseNanos - DECREASE_COOLDOWN_NANOS;
+        rateLimiter.setRate(maxRate);
+    }
+
+    /**
+     * True if the put failed because the queue is at MAXDEPTH or out of space
+     */
+    public static boolean isQueueFull(JMSException e) {
+        Throwable cause = e.getLinkedException() != null ? e.getLinkedException() : e.getCause();
+        while (cause != null) {
+            if (cause instanceof MQException) {
+                int reason = ((MQException) cause).getReason();
+                return reason == MQRC_Q_FULL || reason == MQRC_Q_SPACE_NOT_AVAILABLE;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess(long putLatencyNanos) {
+        long now = System.nanoTime();
+        if (latencyEwmaNanos == 0) {
+            latencyEwmaNanos = putLatencyNanos;
+            baselineLatencyNanos = putLatencyNanos;
+        } else {
+            latencyEwmaNanos += LATENCY_EWMA_WEIGHT * (putLatencyNanos - latencyEwmaNanos);
+            baselineLatencyNanos = Math.min(latencyEwmaNanos,
+                    baselineLatencyNanos + BASELINE_DRIFT * (latencyEwmaNanos - baselineLatencyNanos));
+        }
+
+        if (latencyEwmaNanos > LATENCY_FACTOR * baselineLatencyNanos) {
+            decrease(now, String.format("put latency %.2f ms", latencyEwmaNanos / 1_000_000.0));
+        } else if (now - lastIncreaseNanos >= INCREASE_INTERVAL_NANOS && currentRate < maxRate) {
+            setCurrentRate(currentRate + INCREASE_FRACTION * maxRate);
+            lastIncreaseNanos = now;
+        }
+    }
+
+    public synchronized void onQueueFull() {
+        queueFullCount++;
+        decrease(System.nanoTime(), "queue full");
+    }
+
+    private void decrease(long now, String reason) {
+        if (now - lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+            return;
+        }
+        double previous = currentRate;
+        setCurrentRate(currentRate * DECREASE_FACTOR);
+        // No burst at the old rate after backing off
+        rateLimiter.clearBurst();
+        lastDecreaseNanos = now;
+        lastIncreaseNanos = now;
+        decreaseCount++;
+        LOG.warn("⚠ Flow control: {}, rate {} -> {} msgs/sec", reason, Math.round(previous), Math.round(currentRate));
+    }
+
+    private void setCurrentRate(double rate) {
+        currentRate = Math.max(minRate, Math.min(maxRate, rate));
+        rateLimiter.setRate(currentRate);
+    }
+
+    /**
+     * Change the ceiling, e.g. from a configuration reload
+     */
+    public synchronized void setMaxRate(double maxRate) {
+        this.maxRate = Math.max(minRate, maxRate);
+        if (currentRate > this.maxRate) {
+            setCurrentRate(this.maxRate);
+        }
+    }
+
+    public TokenBucketRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public synchronized double getCurrentRate() {
+        return currentRate;
+    }
+
+    public synchronized long getQueueFullCount() {
+        return queueFullCount;
+    }
+
+    public synchronized long getDecreaseCount() {
+        return decreaseCount;
+    }
+}
@@ -0,0 +1,144 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.BatchingFileSpanExporter;
+import net.mahtabalam.message.tracing.TraceSampler;
+import net.mahtabalam.message.tracing.Tracer;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Startup-optimized producer for short-lived batch jobs.
+ *
+ * The connection to the queue manager, which loads most of the MQ client, is
+ * opened on a background thread while the main thread sets up the sender. Optional
+ * features are only created when configured (tracing, rate limiting) or needed
+ * (the spool, once the queue manager turns out to be unreachable), so their
+ * classes are never loaded otherwise. Run it with the class data sharing archive
+ * built by the appcds Maven profile to skip most class loading as well.
+ *
+ * Usage: BatchProducer [MESSAGE_COUNT]
+ *        BatchProducer --train   exercise startup without sending, for the CDS archive
+ */
+public class BatchProducer {
+
+    private static final Logger LOG = Logger.getLogger(BatchProducer.class);
+    private static final MQConfig CONFIG = MQConfig.load("producer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("mq.queue");
+    private static final long CONNECT_TIMEOUT_MS = CONFIG.getLong("batch.connectTimeoutMs");
+    private static final double TRACE_SAMPLE_RATIO = CONFIG.getDouble("batch.traceSampleRatio"); // 0 never loads tracing
+    private static final double MAX_RATE = CONFIG.getDouble("batch.maxRate"); // 0 never loads rate limiting
+    private static final long SPOOL_DRAIN_WAIT_MS = CONFIG.getLong("spool.drainWaitMs");
+
+    public static void main(String[] args) {
+        Logger.configure(CONFIG);
+        boolean training = args.length > 0 && args[0].equals("--train");
+        int messageCount = args.length > 0 && !training ? Integer.parseInt(args[0]) : CONFIG.getInt("batch.messageCount");
+
+        // Step 1: Start connecting right away, the main thread keeps initializing meanwhile
+        MQConnectionManager connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+        FutureTask<Void> connecting = new FutureTask<>(() -> {
+            connectionManager.connect();
+            return null;
+        });
+        Thread connectThread = new Thread(connecting, "mq-connect");
+        connectThread.setDaemon(true);
+        connectThread.start();
+
+        MQMessageSender messageSender = null;
+        Tracer tracer = null;
+        try {
+            // Step 2: Create the message sender with only the features that are configured
+            messageSender = new MQMessageSender(connectionManager, QUEUE_NAME);
+            if (MAX_RATE > 0) {
+                messageSender.setRateLimiter(new TokenBucketRateLimiter(MAX_RATE, (int) Math.max(1, MAX_RATE / 10)));
+            }
+            if (TRACE_SAMPLE_RATIO > 0) {
+                tracer = new Tracer(new TraceSampler(TRACE_SAMPLE_RATIO), new BatchingFileSpanExporter(
+                        Paths.get(CONFIG.getString("tracing.file")), "mq-batch-producer",
+                        CONFIG.getInt("tracing.batchSize"), CONFIG.getLong("tracing.flushIntervalMs")));
+                messageSender.setTracer(tracer);
+            }
+            // Step 3: Wait for the connection, spool instead if the queue manager is unreachable
+            if (!awaitConnection(connecting)) {
+                if (training) {
+                    LOG.info("Training run without a queue manager, only the connect path is archived");
+                    return;
+                }
+                messageSender.enableStoreAndForward(openSpool(), CONFIG.getInt("tuning.spool.batchSize"));
+            }
+            // Step 4: Initialize message sender
+            messageSender.initialize();
+            if (training) {
+                // Load the message classes without putting anything
+                connectionManager.getSession().createTextMessage("training");
+                return;
+            }
+            // Step 5: Send the first message on its own, its put marks the end of startup
+            messageSender.sendMessages(1);
+            LOG.info("⏱ Startup: {}{} ms after JVM start",
+                    connectionManager.isConnected() ? "first put " : "first message spooled ", sinceJvmStart());
+            // Step 6: Send the rest of the batch
+            if (messageCount > 1) {
+                messageSender.sendMessages(messageCount - 1);
+            }
+            if (!messageSender.awaitSpoolDrained(SPOOL_DRAIN_WAIT_MS)) {
+                LOG.info("Spooled messages remain, they will be sent on the next run");
+            }
+        } catch (JMSException e) {
+            LOG.error("✗ Batch failed: {}", e.getMessage());
+        } catch (IOException e) {
+            LOG.error("✗ Could not open spool directory: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (messageSender != null) {
+                messageSender.close();
+            }
+            connectionManager.disconnect();
+            if (tracer != null) {
+                tracer.close();
+            }
+        }
+    }
+
+    /**
+     * @return false if connecting failed or took longer than the connect timeout
+     */
+    private static boolean awaitConnection(FutureTask<Void> connecting) throws InterruptedException {
+        try {
+            connecting.get(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            LOG.error("✗ Could not connect to {}: {}", QMGR, e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            connecting.cancel(true);
+            LOG.error("✗ No connection to {} within {} ms", QMGR, CONNECT_TIMEOUT_MS);
+        }
+        return false;
+    }
+
+    private static MessageSpool openSpool() throws IOException {
+        return new MessageSpool(Paths.get(CONFIG.getString("spool.dir")), CONFIG.getInt("spool.segmentSize"),
+                MessageSpool.FsyncPolicy.EVERY_N_RECORDS, CONFIG.getInt("spool.fsyncInterval"));
+    }
+
+    private static long sinceJvmStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+}
@@ -0,0 +1,353 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Client-side scheduled delivery for queue managers without JMS 2.0 delivery delay.
+ *
+ * Pending messages wait in a TimingWheel, so scheduling and expiry stay O(1)
+ * with millions pending, and are journaled to a local file so they survive a
+ * restart. Journal records use the spool's [int length][int crc32c][payload]
+ * framing; a payload is either a scheduled message or the id of a delivered one.
+ * On restart the journal is replayed and overdue messages are sent right away.
+ * Once delivered records outnumber pending ones the journal is rewritten with the
+ * pending messages only. Due messages are delivered in batches like spooled ones,
+ * a failed batch is retried as a whole (at-least-once delivery).
+ */
+public class DelayedMessageScheduler implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(DelayedMessageScheduler.class);
+
+    /**
+     * Puts a batch of due messages, MQMessageSender.forward() in practice
+     */
+    public interface Delivery {
+        void deliver(List<SpooledMessage> messages) throws JMSException;
+    }
+
+    private static final byte RECORD_SCHEDULED = 'S';
+    private static final byte RECORD_DELIVERED = 'D';
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_LEVELS = 4;
+    private static final long IDLE_WAIT_MS = 1000;
+    private static final long MIN_RETRY_DELAY_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+    private static final int MIN_COMPACTION_RECORDS = 10000;
+
+    private static final class Scheduled {
+        final long id;
+        final long deliverAt;
+        final byte[] message;
+
+        Scheduled(long id, long deliverAt, byte[] message) {
+            this.id = id;
+            this.deliverAt = deliverAt;
+            this.message = message;
+        }
+    }
+
+    private final Path journalPath;
+    private final MessageSpool.FsyncPolicy fsyncPolicy;
+    private final int fsyncInterval;
+    private final int batchSize;
+    private final Object lock = new Object();
+    private final CRC32C crc = new CRC32C();
+    private final TimingWheel<Scheduled> wheel;
+    private FileChannel journal;
+    private int unsyncedRecords;
+    private long nextId;
+    private long deliveredSinceCompaction;
+    private long scheduledCount;
+    private long deliveredCount;
+    private volatile boolean running;
+    private Delivery delivery;
+    private Thread thread;
+
+    /**
+     * @param tickMs    scheduling resolution, messages are delivered up to one tick late
+     * @param batchSize due messages put per delivery
+     */
+    public DelayedMessageScheduler(Path journalPath, long tickMs, int batchSize,
+                                   MessageSpool.FsyncPolicy fsyncPolicy, int fsyncInterval) throws IOException {
+        this.journalPath = journalPath;
+        this.batchSize = batchSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = Math.max(1, fsyncInterval);
+        this.wheel = new TimingWheel<>(tickMs, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+        recover();
+    }
+
+    /**
+     * Replay the journal, dropping a torn record at its end
+     */
+    private void recover() throws IOException {
+        Map<Long, Scheduled> pending = new LinkedHashMap<>();
+        long validLength = 0;
+        long delivered = 0;
+        if (Files.exists(journalPath)) {
+            try (InputStream file = Files.newInputStream(journalPath);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+                while (true) {
+                    byte[] payload;
+                    try {
+                        int length = in.readInt();
+                        int checksum = in.readInt();
+                        if (length <= 0) {
+                            break;
+                        }
+                        payload = new byte[length];
+                        in.readFully(payload);
+                        crc.reset();
+                        crc.update(payload);
+                        if ((int) crc.getValue() != checksum) {
+                            break;
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    ByteBuffer record = ByteBuffer.wrap(payload);
+                    byte type = record.get();
+                    long id = record.getLong();
+                    if (type == RECORD_SCHEDULED) {
+                        long deliverAt = record.getLong();
+                        byte[] message = new byte[record.remaining()];
+                        record.get(message);
+                        pending.put(id, new Scheduled(id, deliverAt, message));
+                    } else {
+                        pending.remove(id);
+                        delivered++;
+                    }
+                    nextId = Math.max(nextId, id + 1);
+                    validLength += RECORD_HEADER_BYTES + payload.length;
+                }
+            }
+        }
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        journal.truncate(validLength);
+        journal.position(validLength);
+        for (Scheduled scheduled : pending.values()) {
+            wheel.add(scheduled, scheduled.deliverAt);
+        }
+        deliveredSinceCompaction = delivered;
+        if (!pending.isEmpty()) {
+            LOG.info("✓ Scheduler recovered {} pending message(s) from {}", pending.size(), journalPath);
+        }
+    }
+
+    public void start(Delivery delivery) {
+        this.delivery = delivery;
+        running = true;
+        thread = new Thread(this, "mq-delayed-delivery");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Journal a message and deliver it at deliverAtMillis, a time in the past delivers it right away
+     */
+    public void schedule(SpooledMessage message, long deliverAtMillis) throws IOException {
+        byte[] encoded = message.encode();
+        synchronized (lock) {
+            Scheduled scheduled = new Scheduled(nextId++, deliverAtMillis, encoded);
+            ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + encoded.length)
+                    .put(RECORD_SCHEDULED).putLong(scheduled.id).putLong(deliverAtMillis).put(encoded);
+            append(payload.array());
+            sync(1);
+            wheel.add(scheduled, deliverAtMillis);
+            scheduledCount++;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        long retryDelay = MIN_RETRY_DELAY_MS;
+        while (running) {
+            List<Scheduled> due = new ArrayList<>();
+            try {
+                synchronized (lock) {
+                    wheel.advance(System.currentTimeMillis(), due::add);
+                    if (due.isEmpty()) {
+                        lock.wait(wheel.isEmpty() ? IDLE_WAIT_MS : wheel.getTickMs());
+                        continue;
+                    }
+                }
+                for (int start = 0; start < due.size(); start += batchSize) {
+                    List<Scheduled> batch = due.subList(start, Math.min(due.size(), start + batchSize));
+                    try {
+                        deliver(batch);
+                        retryDelay = MIN_RETRY_DELAY_MS;
+                    } catch (JMSException e) {
+                        LOG.error("✗ Scheduled delivery failed, retrying in {} ms: {}", retryDelay, e.getMessage());
+                        reschedule(due.subList(start, due.size()), System.currentTimeMillis() + retryDelay);
+                        retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS);
+                        break;
+                    }
+                }
+                compactIfNeeded();
+            } catch (IOException e) {
+                LOG.error("✗ Error writing scheduler journal {}: {}", journalPath, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void deliver(List<Scheduled> batch) throws JMSException, IOException {
+        List<SpooledMessage> messages = new ArrayList<>(batch.size());
+        for (Scheduled scheduled : batch) {
+            messages.add(SpooledMessage.decode(scheduled.message));
+        }
+        delivery.deliver(messages);
+        synchronized (lock) {
+            for (Scheduled scheduled : batch) {
+                append(ByteBuffer.allocate(1 + 8).put(RECORD_DELIVERED).putLong(scheduled.id).array());
+            }
+            sync(batch.size());
+            deliveredCount += batch.size();
+            deliveredSinceCompaction += batch.size();
+        }
+    }
+
+    /**
+     * Put failed messages back on the wheel, the journal keeps their original time
+     */
+    private void reschedule(List<Scheduled> failed, long retryAt) {
+        synchronized (lock) {
+            for (Scheduled scheduled : failed) {
+                wheel.add(scheduled, retryAt);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the journal with pending messages only, once delivered records outnumber them
+     */
+    private void compactIfNeeded() throws IOException {
+        synchronized (lock) {
+            if (deliveredSinceCompaction < Math.max(MIN_COMPACTION_RECORDS, wheel.size())) {
+                return;
+            }
+            Path compacted = journalPath.resolveSibling(journalPath.getFileName() + ".compact");
+            FileChannel oldJournal = journal;
+            journal = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            IOException[] failure = new IOException[1];
+            wheel.forEach(scheduled -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    append(ByteBuffer.allocate(1 + 8 + 8 + scheduled.message.length).put(RECORD_SCHEDULED)
+                            .putLong(scheduled.id).putLong(scheduled.deliverAt).put(scheduled.message).array());
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                journal.close();
+                journal = oldJournal;
+                throw failure[0];
+            }
+            journal.force(false);
+            Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            oldJournal.close();
+            deliveredSinceCompaction = 0;
+            unsyncedRecords = 0;
+        }
+    }
+
+    private void append(byte[] payload) throws IOException {
+        crc.reset();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            journal.write(record);
+        }
+    }
+
+    private void sync(int records) throws IOException {
+        if (fsyncPolicy == MessageSpool.FsyncPolicy.EVERY_RECORD) {
+            journal.force(false);
+        } else if (fsyncPolicy == MessageSpool.FsyncPolicy.EVERY_N_RECORDS) {
+            unsyncedRecords += records;
+            if (unsyncedRecords >= fsyncInterval) {
+                journal.force(false);
+                unsyncedRecords = 0;
+            }
+        }
+    }
+
+    /**
+     * Stop delivering, pending messages stay in the journal for the next start
+     */
+    public void stop() {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                // Not interrupted, an interrupt would close the journal channel mid-write
+                thread.join(IDLE_WAIT_MS * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            try {
+                journal.force(false);
+                journal.close();
+            } catch (IOException e) {
+                LOG.error("✗ Error closing scheduler journal {}: {}", journalPath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Messages waiting for their delivery time
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return wheel.size();
+        }
+    }
+
+    public long getScheduledCount() {
+        synchronized (lock) {
+            return scheduledCount;
+        }
+    }
+
+    public long getDeliveredCount() {
+        synchronized (lock) {
+            return deliveredCount;
+        }
+    }
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+}
@@ -0,0 +1,94 @@
+package net.mahtabalam.message.producer;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+
+/**
+ * Describes how messages are put to a queue: persistence, async put,
+ * priority and time-to-live
+ */
+public class DeliveryPolicy {
+
+    private final String name;
+    private final int deliveryMode;
+    private final boolean asyncPut;
+    private final int priority;
+    private final long timeToLive;
+
+    public DeliveryPolicy(String name, int deliveryMode, boolean asyncPut, int priority, long timeToLive) {
+        if (deliveryMode != DeliveryMode.PERSISTENT && deliveryMode != DeliveryMode.NON_PERSISTENT) {
+            throw new IllegalArgumentException("Unknown delivery mode: " + deliveryMode);
+        }
+        if (asyncPut && deliveryMode == DeliveryMode.PERSISTENT) {
+            throw new IllegalArgumentException("Async put is only supported for non-persistent delivery");
+        }
+        if (priority < 0 || priority > 9) {
+            throw new IllegalArgumentException("Priority must be between 0 and 9: " + priority);
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("Time to live must not be negative: " + timeToLive);
+        }
+        this.name = name;
+        this.deliveryMode = deliveryMode;
+        this.asyncPut = asyncPut;
+        this.priority = priority;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Persistent delivery, the previous hard-coded behaviour of MQMessageSender
+     */
+    public static DeliveryPolicy persistent() {
+        return new DeliveryPolicy("PERSISTENT", DeliveryMode.PERSISTENT, false,
+                Message.DEFAULT_PRIORITY, Message.DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Non-persistent delivery, messages are lost if the queue manager restarts
+     */
+    public static DeliveryPolicy nonPersistent(long timeToLive) {
+        return new DeliveryPolicy("NON_PERSISTENT", DeliveryMode.NON_PERSISTENT, false,
+                Message.DEFAULT_PRIORITY, timeToLive);
+    }
+
+    /**
+     * Non-persistent delivery where the put does not wait for the queue manager's reply
+     */
+    public static DeliveryPolicy nonPersistentAsync(long timeToLive) {
+        return new DeliveryPolicy("NON_PERSISTENT_ASYNC", DeliveryMode.NON_PERSISTENT, true,
+                Message.DEFAULT_PRIORITY, timeToLive);
+    }
+
+    public DeliveryPolicy withPriority(int priority) {
+        return new DeliveryPolicy(name, deliveryMode, asyncPut, priority, timeToLive);
+    }
+
+    public DeliveryPolicy withTimeToLive(long timeToLive) {
+        return new DeliveryPolicy(name, deliveryMode, asyncPut, priority, timeToLive);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public boolean isAsyncPut() {
+        return asyncPut;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (priority=" + priority + ", ttl=" + timeToLive + " ms)";
+    }
+}
@@ -0,0 +1,58 @@
+package net.mahtabalam.message.producer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the delivery policy for a message.
+ * A policy registered for the message class (MessageType property) wins over
+ * a policy registered for the queue, which wins over the default policy.
+ */
+public class DeliveryPolicyResolver {
+
+    private final Map<String, DeliveryPolicy> queuePolicies = new ConcurrentHashMap<>();
+    private final Map<String, DeliveryPolicy> messageTypePolicies = new ConcurrentHashMap<>();
+    private volatile DeliveryPolicy defaultPolicy;
+
+    public DeliveryPolicyResolver() {
+        this(DeliveryPolicy.persistent());
+    }
+
+    public DeliveryPolicyResolver(DeliveryPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public DeliveryPolicyResolver forQueue(String queueName, DeliveryPolicy policy) {
+        queuePolicies.put(queueName, policy);
+        return this;
+    }
+
+    public DeliveryPolicyResolver forMessageType(String messageType, DeliveryPolicy policy) {
+        messageTypePolicies.put(messageType, policy);
+        return this;
+    }
+
+    public void setDefaultPolicy(DeliveryPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * Policy used to configure the producer of a queue
+     */
+    public DeliveryPolicy resolve(String queueName) {
+        return queuePolicies.getOrDefault(queueName, defaultPolicy);
+    }
+
+    /**
+     * Policy used for a single message of the given class sent to the queue
+     */
+    public DeliveryPolicy resolve(String queueName, String messageType) {
+        if (messageType != null) {
+            DeliveryPolicy policy = messageTypePolicies.get(messageType);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        return resolve(queueName);
+    }
+}
@@ -2,7 +2,9 @@ package net.mahtabalam.message.producer;
 
 import com.ibm.mq.jms.MQQueueConnectionFactory;
 import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
 import javax.jms.Connection;
+import javax.jms.JMSContext;
 import javax.jms.JMSException;
 import javax.jms.Session;
 import java.lang.IllegalStateException;
@@ -10,12 +12,15 @@ import java.lang.IllegalStateException;
 
 public class MQConnectionManager {
 
+    private static final Logger LOG = Logger.getLogger(MQConnectionManager.class);
+
     private final String host;
     private final int port;
     private final String channel;
     private final String queueManager;
-    private Connection connection;
-    private Session session;
+    private Integer shareConvAllowed;
+    private volatile Connection connection;
+    private volatile Session session;
 
     public MQConnectionManager(String host, int port, String channel, String queueManager) {
         this.host = host;
@@ -24,25 +29,43 @@ public class MQConnectionManager {
         this.queueManager = queueManager;
     }
 
+    /**
+     * Whether sessions of this connection may share one TCP socket (channel instance),
+     * up to the channel's SHARECNV limit. Unset uses the client default, which shares.
+     * Must be called before connect().
+     */
+    public void setShareConversations(boolean share) {
+        this.shareConvAllowed = share
+                ? WMQConstants.WMQ_SHARE_CONV_ALLOWED_YES
+                : WMQConstants.WMQ_SHARE_CONV_ALLOWED_NO;
+    }
+
     public void connect() throws JMSException {
-        System.out.println("=========================================");
-        System.out.println("Connecting to IBM MQ");
-        System.out.println("=========================================");
-        System.out.println("Queue Manager: " + queueManager);
-        System.out.println("Host: " + host + ":" + port);
-        System.out.println("Channel: " + channel);
-        System.out.println("=========================================\n");
+        LOG.info("=========================================");
+        LOG.info("Connecting to IBM MQ");
+        LOG.info("=========================================");
+        LOG.info("Queue Manager: {}", queueManager);
+        LOG.info("Host: {}:{}", host, port);
+        LOG.info("Channel: {}", channel);
+        LOG.info("=========================================");
 
         MQQueueConnectionFactory cf = createConnectionFactory();
-        System.out.println("Establishing connection...");
+        LOG.info("Establishing connection...");
         connection = cf.createConnection();
         connection.start();
 
         session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
 
-        System.out.println("✓ Connected successfully!\n");
+        LOG.info("✓ Connected successfully!");
     }
 
+    /**
+     * Open a JMS 2.0 context on a connection of its own, independent of connect()
+     */
+    public JMSContext createContext() throws JMSException {
+        LOG.info("Opening JMS context on {} at {}:{}", queueManager, host, port);
+        return createConnectionFactory().createContext(JMSContext.AUTO_ACKNOWLEDGE);
+    }
 
     private MQQueueConnectionFactory createConnectionFactory() throws JMSException {
         MQQueueConnectionFactory cf = new MQQueueConnectionFactory();
@@ -52,9 +75,26 @@ public class MQConnectionManager {
         cf.setQueueManager(queueManager);
         cf.setTransportType(WMQConstants.WMQ_CM_CLIENT);
         cf.setCCSID(1208); // UTF-8 encoding
+        if (shareConvAllowed != null) {
+            cf.setShareConvAllowed(shareConvAllowed);
+        }
         return cf;
     }
 
+    /**
+     * Open another session on this connection, each session is its own conversation with the queue manager
+     */
+    public Session createSession() throws JMSException {
+        return getConnection().createSession(false, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    /**
+     * Open a transacted session, puts on it become visible only on commit()
+     */
+    public Session createTransactedSession() throws JMSException {
+        return getConnection().createSession(true, Session.SESSION_TRANSACTED);
+    }
+
     public Session getSession() {
         if (session == null) {
             throw new IllegalStateException("Not connected. Call connect() first.");
@@ -73,20 +113,22 @@ public class MQConnectionManager {
         return connection != null && session != null;
     }
 
+    /**
+     * Close the connection. It is dropped even if closing fails, as it does on a
+     * broken connection, so isConnected() turns false and connect() starts afresh.
+     */
     public void disconnect() {
         try {
-            if (session != null) {
-                session.close();
-                session = null;
-            }
             if (connection != null) {
+                // Closes the session as well
                 connection.close();
-                connection = null;
-                System.out.println("Connection closed gracefully.");
+                LOG.info("Connection closed gracefully.");
             }
         } catch (JMSException e) {
-            System.err.println("Error while closing connection:");
-            e.printStackTrace();
+            LOG.error("Error while closing connection:", e);
+        } finally {
+            session = null;
+            connection = null;
         }
     }
 }
\ No newline at end of file
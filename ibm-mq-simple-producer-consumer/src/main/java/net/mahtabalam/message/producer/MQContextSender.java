@@ -0,0 +1,151 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.JMSRuntimeException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.TextMessage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends to any number of queues through one JMS 2.0 JMSContext.
+ *
+ * The resolved Queue and a configured JMSProducer are cached per queue name, so
+ * after the first send to a queue a send is just producer.send(): no destination
+ * lookup and no producer creation. Like a Session, a JMSContext must only be used
+ * by one thread at a time; give other threads their own sender with
+ * createSibling(), which shares the connection and the destination cache.
+ */
+public class MQContextSender implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(MQContextSender.class);
+
+    private final JMSContext context;
+    private final ConcurrentMap<String, Queue> destinations;
+    private final ConcurrentMap<String, JMSProducer> producers = new ConcurrentHashMap<>();
+    private final AtomicLong sentCount = new AtomicLong();
+    private int deliveryMode = DeliveryMode.PERSISTENT;
+    private int priority = Message.DEFAULT_PRIORITY;
+    private long timeToLive = Message.DEFAULT_TIME_TO_LIVE;
+
+    public MQContextSender(MQConnectionManager connectionManager) throws JMSException {
+        this(connectionManager.createContext(), new ConcurrentHashMap<>());
+    }
+
+    private MQContextSender(JMSContext context, ConcurrentMap<String, Queue> destinations) {
+        this.context = context;
+        this.destinations = destinations;
+    }
+
+    /**
+     * Another sender on the same connection for use by another thread, with its own session
+     */
+    public MQContextSender createSibling() {
+        MQContextSender sibling = new MQContextSender(context.createContext(JMSContext.AUTO_ACKNOWLEDGE), destinations);
+        sibling.setDefaults(deliveryMode, priority, timeToLive);
+        return sibling;
+    }
+
+    /**
+     * Delivery mode, priority and time to live of producers created from now on
+     */
+    public void setDefaults(int deliveryMode, int priority, long timeToLive) {
+        this.deliveryMode = deliveryMode;
+        this.priority = priority;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Override the defaults for one queue
+     */
+    public void configure(String queueName, int deliveryMode, int priority, long timeToLive) {
+        producer(queueName)
+                .setDeliveryMode(deliveryMode)
+                .setPriority(priority)
+                .setTimeToLive(timeToLive);
+    }
+
+    public void send(String queueName, String text) throws JMSException {
+        try {
+            producer(queueName).send(destination(queueName), text);
+        } catch (JMSRuntimeException e) {
+            throw toJMSException(e);
+        }
+        sentCount.incrementAndGet();
+    }
+
+    /**
+     * Send a message built with createTextMessage(), for messages that carry properties
+     */
+    public void send(String queueName, Message message) throws JMSException {
+        try {
+            producer(queueName).send(destination(queueName), message);
+        } catch (JMSRuntimeException e) {
+            throw toJMSException(e);
+        }
+        sentCount.incrementAndGet();
+    }
+
+    public TextMessage createTextMessage(String text) {
+        return context.createTextMessage(text);
+    }
+
+    private Queue destination(String queueName) {
+        Queue queue = destinations.get(queueName);
+        return queue != null ? queue : destinations.computeIfAbsent(queueName, context::createQueue);
+    }
+
+    private JMSProducer producer(String queueName) {
+        JMSProducer producer = producers.get(queueName);
+        if (producer != null) {
+            return producer;
+        }
+        return producers.computeIfAbsent(queueName, name -> context.createProducer()
+                .setDeliveryMode(deliveryMode)
+                .setPriority(priority)
+                .setTimeToLive(timeToLive));
+    }
+
+    /**
+     * The classic API's checked exception, so callers handle both APIs the same way
+     */
+    private static JMSException toJMSException(JMSRuntimeException e) {
+        JMSException jmsException = new JMSException(e.getMessage(), e.getErrorCode());
+        if (e.getCause() instanceof Exception cause) {
+            jmsException.setLinkedException(cause);
+        }
+        jmsException.initCause(e);
+        return jmsException;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Number of queues resolved so far, shared with siblings
+     */
+    public int getDestinationCount() {
+        return destinations.size();
+    }
+
+    /**
+     * Close this sender's session, closing the first sender also closes the connection of its siblings
+     */
+    @Override
+    public void close() {
+        try {
+            context.close();
+        } catch (JMSRuntimeException e) {
+            LOG.error("Error closing JMS context: {}", e.getMessage());
+        }
+        producers.clear();
+    }
+}
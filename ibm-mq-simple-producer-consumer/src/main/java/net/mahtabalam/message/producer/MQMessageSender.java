@@ -1,93 +1,491 @@
 package net.mahtabalam.message.producer;
 
+import com.ibm.mq.jms.MQDestination;
+import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.Span;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
 import javax.jms.MessageProducer;
 import javax.jms.Queue;
 import javax.jms.Session;
-import javax.jms.DeliveryMode;
 import javax.jms.TextMessage;
+import java.io.IOException;
 import java.lang.IllegalStateException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class MQMessageSender {
 
+    private static final Logger LOG = Logger.getLogger(MQMessageSender.class);
+    private static final Logger FAILURE_LOG = LOG.throttled(5000); // errors repeated per message
+    private static final String DEFAULT_MESSAGE_TYPE = "TEST";
+    private static final int MAX_QUEUE_FULL_RETRIES = 10;
+    private static final long MIN_QUEUE_FULL_DELAY_MS = 100;
+    private static final long MAX_QUEUE_FULL_DELAY_MS = 5000;
+
     private final MQConnectionManager connectionManager;
     private final String queueName;
+    private final DeliveryPolicyResolver policyResolver;
+    private final Map<String, long[]> policyStats = new LinkedHashMap<>(); // guarded by itself
     private MessageProducer messageProducer;
+    private MessageProducer alternateProducer; // the async put setting the queue policy does not use
+    private MessageProducer delayProducer;
+    private DeliveryPolicy queuePolicy;
+    private final Object sendLock = new Object();
+    private final Object connectLock = new Object();
+    private volatile boolean directPuts; // connected and nothing spooled, checked without sendLock
+    private MessageSpool spool;
+    private SpoolForwarder spoolForwarder;
+    private long spooledCount;
+    private TokenBucketRateLimiter rateLimiter;
+    private AdaptiveFlowController flowController;
+    private Tracer tracer;
+    private DelayedMessageScheduler scheduler;
 
     public MQMessageSender(MQConnectionManager connectionManager, String queueName) {
+        this(connectionManager, queueName, new DeliveryPolicyResolver());
+    }
+
+    public MQMessageSender(MQConnectionManager connectionManager, String queueName,
+                           DeliveryPolicyResolver policyResolver) {
         this.connectionManager = connectionManager;
         this.queueName = queueName;
+        this.policyResolver = policyResolver;
+    }
+
+    /**
+     * Store-and-forward mode: messages that cannot be put right away go to the local
+     * spool and a background forwarder drains it once the queue manager is reachable.
+     * Must be called before initialize().
+     */
+    public void enableStoreAndForward(MessageSpool spool, int forwardBatchSize) {
+        this.spool = spool;
+        this.spoolForwarder = new SpoolForwarder(spool, this, forwardBatchSize);
+        spoolForwarder.start();
+        LOG.info("✓ Store-and-forward enabled, spool: {}", spool.getDirectory());
+    }
+
+    /**
+     * Hold delayed messages in a local journaled scheduler instead of using the queue
+     * manager's delivery delay, for queue managers without JMS 2.0 delivery delay.
+     * Due messages are put like spooled ones, reconnecting if needed.
+     */
+    public void enableClientScheduling(DelayedMessageScheduler scheduler) {
+        this.scheduler = scheduler;
+        scheduler.start(this::deliverScheduled);
+        LOG.info("✓ Client-side scheduling enabled, journal: {}", scheduler.getJournalPath());
+    }
+
+    /**
+     * Cap the put rate, spool forwarding included
+     */
+    public void setRateLimiter(TokenBucketRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Adapt the put rate to the queue manager: back off on queue-full errors or rising
+     * put latency and ramp up again while puts are fast. Queue-full puts are retried.
+     */
+    public void setFlowController(AdaptiveFlowController flowController) {
+        this.flowController = flowController;
+        this.rateLimiter = flowController.getRateLimiter();
+    }
+
+    /**
+     * Start a producer span for every sampled message and propagate it in the traceparent property
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
     }
 
     public void initialize() throws JMSException {
+        queuePolicy = policyResolver.resolve(queueName);
         if (!connectionManager.isConnected()) {
+            if (spool != null) {
+                LOG.info("Queue manager unavailable, messages for {} will be spooled", queueName);
+                return;
+            }
             throw new IllegalStateException("Connection manager is not connected.");
         }
 
-        Session session = connectionManager.getSession();
-        Queue queue = session.createQueue(queueName);
+        synchronized (sendLock) {
+            createProducers();
+            directPuts = true;
+        }
+        LOG.info("✓ Message sender initialized for queue: {}", queueName);
+        LOG.info("  Delivery policy: {}", queuePolicy);
+    }
 
-        messageProducer = session.createProducer(queue);
-        messageProducer.setDeliveryMode(DeliveryMode.PERSISTENT);
+    private void createProducers() throws JMSException {
+        queuePolicy = policyResolver.resolve(queueName);
+        messageProducer = createProducer(queuePolicy.isAsyncPut());
+        messageProducer.setDeliveryMode(queuePolicy.getDeliveryMode());
+        messageProducer.setPriority(queuePolicy.getPriority());
+        messageProducer.setTimeToLive(queuePolicy.getTimeToLive());
+    }
 
-        System.out.println("✓ Message sender initialized for queue: " + queueName + "\n");
+    private MessageProducer createProducer(boolean asyncPut) throws JMSException {
+        Session session = connectionManager.getSession();
+        Queue queue = session.createQueue(queueName);
+        if (queue instanceof MQDestination) {
+            // Async put lets the client continue without waiting for the queue manager's reply
+            ((MQDestination) queue).setPutAsyncAllowed(asyncPut
+                    ? WMQConstants.WMQ_PUT_ASYNC_ALLOWED_ENABLED
+                    : WMQConstants.WMQ_PUT_ASYNC_ALLOWED_DISABLED);
+        }
+        return session.createProducer(queue);
     }
 
     public void sendMessages(int messageCount) throws JMSException {
-        if (messageProducer == null) {
+        sendMessages(messageCount, DEFAULT_MESSAGE_TYPE);
+    }
+
+    /**
+     * Send messages of the given class, the class selects the delivery policy
+     */
+    public void sendMessages(int messageCount, String messageType) throws JMSException {
+        if (queuePolicy == null || (messageProducer == null && spool == null)) {
             throw new IllegalStateException("Message sender not initialized. Call initialize() first.");
         }
 
-        System.out.println("Sending " + messageCount + " messages to queue: " + queueName + "\n");
+        DeliveryPolicy policy = policyResolver.resolve(queueName, messageType);
+        LOG.info("Sending {} {} messages to queue: {}", messageCount, messageType, queueName);
+        LOG.info("Delivery policy: {}", policy);
         long startTime = System.currentTimeMillis();
 
         for (int i = 1; i <= messageCount; i++) {
-            sendMessage(i);
+            sendMessage(i, messageType, policy);
             if (i % 10 == 0) {
-                System.out.println("  Sent " + i + " messages...");
+                LOG.info("  Sent {} messages...", i);
             }
         }
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
-        printSummary(messageCount, duration);
+        printSummary(messageCount, duration, policy);
     }
 
-    private void sendMessage(int messageNumber) throws JMSException {
-        Session session = connectionManager.getSession();
-        TextMessage message = session.createTextMessage();
-
+    private void sendMessage(int messageNumber, String messageType, DeliveryPolicy policy) throws JMSException {
         String messageText = String.format(
                 "Message #%d | Timestamp: %d | Status: Delivered",
                 messageNumber, System.currentTimeMillis()
         );
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("MessageNumber", messageNumber);
+        properties.put("MessageType", messageType);
+        properties.put("QueueName", queueName);
+
+        if (spool == null) {
+            synchronized (sendLock) {
+                put(messageText, properties, policy);
+            }
+            return;
+        }
+
+        // Decided without sendLock, so producers never wait for the forwarder's reconnects or batches.
+        // Anything already spooled goes first, so direct puts would overtake it.
+        if (directPuts && spool.isEmpty()) {
+            synchronized (sendLock) {
+                if (directPuts && messageProducer != null && spool.isEmpty()) {
+                    try {
+                        put(messageText, properties, policy);
+                        return;
+                    } catch (JMSException e) {
+                        FAILURE_LOG.error("✗ Put failed, spooling message #{}: {}", messageNumber, e.getMessage());
+                        connectionLost();
+                    }
+                }
+            }
+        }
+        spool(new SpooledMessage(queueName, messageText, properties));
+    }
+
+    /**
+     * Send a message that only becomes available to consumers after delayMs.
+     * The time to live of its delivery policy counts from the send with JMS delivery
+     * delay, but from the delayed put with client-side scheduling.
+     */
+    public void sendDelayed(String messageText, Map<String, Object> properties, long delayMs) throws JMSException {
+        if (queuePolicy == null) {
+            throw new IllegalStateException("Message sender not initialized. Call initialize() first.");
+        }
+        Map<String, Object> messageProperties = new LinkedHashMap<>(properties);
+        messageProperties.putIfAbsent("QueueName", queueName);
+        if (scheduler != null) {
+            try {
+                scheduler.schedule(new SpooledMessage(queueName, messageText, messageProperties),
+                        System.currentTimeMillis() + delayMs);
+            } catch (IOException e) {
+                JMSException jmsException = new JMSException("Could not journal scheduled message: " + e.getMessage());
+                jmsException.setLinkedException(e);
+                throw jmsException;
+            }
+            return;
+        }
+        synchronized (sendLock) {
+            if (messageProducer == null) {
+                throw new JMSException("Queue manager unavailable, delayed messages need a connection "
+                        + "unless client-side scheduling is enabled");
+            }
+            if (delayProducer == null) {
+                delayProducer = createProducer(false);
+            }
+            Object messageType = messageProperties.get("MessageType");
+            DeliveryPolicy policy = policyResolver.resolve(queueName, messageType != null ? messageType.toString() : null);
+            TextMessage message = connectionManager.getSession().createTextMessage(messageText);
+            for (Map.Entry<String, Object> property : messageProperties.entrySet()) {
+                message.setObjectProperty(property.getKey(), property.getValue());
+            }
+            // The queue manager holds the message until the delay has passed (MQ 8 and later)
+            delayProducer.setDeliveryDelay(delayMs);
+            long sendStart = System.nanoTime();
+            delayProducer.send(message, policy.getDeliveryMode(), policy.getPriority(), policy.getTimeToLive());
+            recordSend(policy, System.nanoTime() - sendStart);
+        }
+    }
+
+    /**
+     * Put messages whose scheduled time has come. Called by the client-side scheduler.
+     */
+    private void deliverScheduled(List<SpooledMessage> messages) throws JMSException {
+        try {
+            forward(messages);
+        } catch (JMSException e) {
+            connectionLost();
+            throw e;
+        }
+    }
+
+    private void put(String messageText, Map<String, Object> properties, DeliveryPolicy policy) throws JMSException {
+        Session session = connectionManager.getSession();
+        TextMessage message = session.createTextMessage();
         message.setText(messageText);
-        message.setIntProperty("MessageNumber", messageNumber);
-        message.setStringProperty("MessageType", "TEST");
-        message.setStringProperty("QueueName", queueName);
-        messageProducer.send(message);
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            message.setObjectProperty(property.getKey(), property.getValue());
+        }
+
+        Span span = tracer != null ? tracer.startProducerSpan(message, queueName) : null;
+        try {
+            send(message, policy);
+            if (span != null) {
+                span.setAttribute("messaging.message.id", message.getJMSMessageID());
+            }
+        } catch (JMSException e) {
+            if (span != null) {
+                span.setError(e);
+            }
+            throw e;
+        } finally {
+            if (span != null) {
+                span.end();
+            }
+        }
+    }
+
+    private void send(TextMessage message, DeliveryPolicy policy) throws JMSException {
+        MessageProducer producer = producerFor(policy);
+        long retryDelay = MIN_QUEUE_FULL_DELAY_MS;
+        for (int attempt = 1; ; attempt++) {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            try {
+                long sendStart = System.nanoTime();
+                producer.send(message, policy.getDeliveryMode(), policy.getPriority(), policy.getTimeToLive());
+                long elapsed = System.nanoTime() - sendStart;
+                recordSend(policy, elapsed);
+                if (flowController != null) {
+                    flowController.onSuccess(elapsed);
+                }
+                return;
+            } catch (JMSException e) {
+                if (flowController == null || attempt >= MAX_QUEUE_FULL_RETRIES || !AdaptiveFlowController.isQueueFull(e)) {
+                    throw e;
+                }
+                // The reduced rate paces the retry's acquire
+                flowController.onQueueFull();
+                retryDelay = waitBeforeRetry(retryDelay);
+            }
+        }
+    }
+
+    /**
+     * Give consumers time to make room on the queue. Called with sendLock held, waiting
+     * on it releases it, so other producers and the spool forwarder are not held up.
+     */
+    private long waitBeforeRetry(long delay) throws JMSException {
+        long deadline = System.currentTimeMillis() + delay;
+        try {
+            for (long remaining = delay; remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+                sendLock.wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for room on queue " + queueName);
+        }
+        return Math.min(delay * 2, MAX_QUEUE_FULL_DELAY_MS);
+    }
+
+    private void spool(SpooledMessage message) throws JMSException {
+        try {
+            spool.append(message);
+            spooledCount++;
+        } catch (IOException e) {
+            JMSException jmsException = new JMSException("Could not spool message: " + e.getMessage());
+            jmsException.setLinkedException(e);
+            throw jmsException;
+        }
     }
 
-    private void printSummary(int messageCount, long duration) {
-        System.out.println("\n=========================================");
-        System.out.println("✓ SUCCESS!");
-        System.out.println("=========================================");
-        System.out.println("Queue: " + queueName);
-        System.out.println("Total messages sent: " + messageCount);
-        System.out.println("Time taken: " + duration + " ms");
-        System.out.println("Average: " + String.format("%.2f", duration / (double) messageCount) + " ms per message");
-        System.out.println("=========================================\n");
+    /**
+     * Put spooled messages, reconnecting first if needed. Called by the spool forwarder.
+     */
+    void forward(List<SpooledMessage> messages) throws JMSException {
+        // Outside sendLock, a connect attempt can take up to the TCP timeout
+        synchronized (connectLock) {
+            if (!connectionManager.isConnected()) {
+                connectionManager.connect();
+            }
+        }
+        synchronized (sendLock) {
+            if (!connectionManager.isConnected()) {
+                throw new JMSException("Connection to the queue manager was lost");
+            }
+            if (messageProducer == null) {
+                createProducers();
+            }
+            for (SpooledMessage spooled : messages) {
+                Object messageType = spooled.getProperties().get("MessageType");
+                DeliveryPolicy policy = policyResolver.resolve(spooled.getQueueName(),
+                        messageType != null ? messageType.toString() : null);
+                put(spooled.getText(), spooled.getProperties(), policy);
+            }
+        }
+    }
+
+    /**
+     * Resume direct puts once the spool forwarder has emptied the spool on a live connection
+     */
+    void spoolDrained() {
+        if (!directPuts && connectionManager.isConnected()) {
+            synchronized (sendLock) {
+                directPuts = messageProducer != null;
+            }
+        }
+    }
+
+    /**
+     * Drop the broken connection, the spool forwarder reconnects on its next attempt
+     */
+    void connectionLost() {
+        directPuts = false;
+        synchronized (sendLock) {
+            messageProducer = null;
+            alternateProducer = null;
+            delayProducer = null;
+        }
+        synchronized (connectLock) {
+            connectionManager.disconnect();
+        }
+    }
+
+    /**
+     * Wait until the spool forwarder has put every spooled message
+     */
+    public boolean awaitSpoolDrained(long timeoutMs) throws InterruptedException {
+        return spool == null || spool.awaitEmpty(timeoutMs);
+    }
+
+    /**
+     * Async put is a property of the destination, so a message class that needs a different
+     * setting than the queue policy gets its own producer
+     */
+    private MessageProducer producerFor(DeliveryPolicy policy) throws JMSException {
+        if (policy.isAsyncPut() == queuePolicy.isAsyncPut()) {
+            return messageProducer;
+        }
+        if (alternateProducer == null) {
+            alternateProducer = createProducer(policy.isAsyncPut());
+        }
+        return alternateProducer;
+    }
+
+    private void recordSend(DeliveryPolicy policy, long elapsedNanos) {
+        synchronized (policyStats) {
+            long[] stats = policyStats.computeIfAbsent(policy.getName(), k -> new long[2]);
+            stats[0]++;
+            stats[1] += elapsedNanos;
+        }
+    }
+
+    private void printSummary(int messageCount, long duration, DeliveryPolicy policy) {
+        LOG.info("=========================================");
+        LOG.info("✓ SUCCESS!");
+        LOG.info("=========================================");
+        LOG.info("Queue: {}", queueName);
+        LOG.info("Delivery policy: {}", policy.getName());
+        LOG.info("Total messages sent: {}", messageCount);
+        LOG.info("Time taken: {} ms", duration);
+        LOG.info("Average: {} ms per message", String.format("%.2f", duration / (double) messageCount));
+        if (spool != null) {
+            LOG.info("Spooled for later delivery: {}", spooledCount);
+        }
+        if (flowController != null) {
+            LOG.info("Flow control: {} msgs/sec, {} back-offs, {} queue-full errors",
+                    String.format("%.0f", flowController.getCurrentRate()), flowController.getDecreaseCount(),
+                    flowController.getQueueFullCount());
+        }
+        printThroughputByPolicy();
+        LOG.info("=========================================");
+    }
+
+    /**
+     * Put throughput per delivery policy since the sender was created
+     */
+    public void printThroughputByPolicy() {
+        LOG.info("Put throughput by delivery policy:");
+        synchronized (policyStats) {
+            for (Map.Entry<String, long[]> entry : policyStats.entrySet()) {
+                long count = entry.getValue()[0];
+                long nanos = entry.getValue()[1];
+                double perSecond = nanos > 0 ? count * 1_000_000_000.0 / nanos : 0;
+                LOG.info("  {}: {} messages, {} msgs/sec, {} ms per put", entry.getKey(), count,
+                        String.format("%.0f", perSecond), String.format("%.3f", nanos / 1_000_000.0 / count));
+            }
+        }
     }
 
     public void close() {
+        if (spoolForwarder != null) {
+            spoolForwarder.stop();
+            spool.close();
+        }
+        if (scheduler != null) {
+            scheduler.stop();
+            if (scheduler.getPendingCount() > 0) {
+                LOG.info("{} scheduled messages remain in {}, they will be sent on the next run",
+                        scheduler.getPendingCount(), scheduler.getJournalPath());
+            }
+        }
         try {
+            if (delayProducer != null) {
+                delayProducer.close();
+                delayProducer = null;
+            }
+            if (alternateProducer != null) {
+                alternateProducer.close();
+                alternateProducer = null;
+            }
             if (messageProducer != null) {
                 messageProducer.close();
                 messageProducer = null;
-                System.out.println("Message sender closed.");
+                LOG.info("Message sender closed.");
             }
         } catch (JMSException e) {
-            System.err.println("Error closing message sender:");
-            e.printStackTrace();
+            LOG.error("Error closing message sender:", e);
         }
     }
 
@@ -98,4 +496,20 @@ public class MQMessageSender {
     public String getQueueName() {
         return queueName;
     }
-}
\ No newline at end of file
+
+    public SpoolForwarder getSpoolForwarder() {
+        return spoolForwarder;
+    }
+
+    public MQConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public DelayedMessageScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public TokenBucketRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+}
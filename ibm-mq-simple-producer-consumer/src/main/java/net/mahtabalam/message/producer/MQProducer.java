@@ -1,64 +1,156 @@
 package net.mahtabalam.message.producer;
 
+import net.mahtabalam.message.config.MQConfig;
+import net.mahtabalam.message.logging.Logger;
+import net.mahtabalam.message.tracing.BatchingFileSpanExporter;
+import net.mahtabalam.message.tracing.TraceSampler;
+import net.mahtabalam.message.tracing.Tracer;
+
 import javax.jms.JMSException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class MQProducer {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 1414;
-    private static final String CHANNEL = "SYSTEM.DEF.SVRCONN";
-    private static final String QMGR = "MY.TEST.QMNGR";
-    private static final String QUEUE_NAME = "FIRST.TEST.QUEUE";
+    private static final Logger LOG = Logger.getLogger(MQProducer.class);
+    private static final MQConfig CONFIG = MQConfig.load("producer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("mq.queue");
+    private static final String SHARE_CONVERSATIONS = CONFIG.getString("mq.shareConversations", null); // null keeps the client default
+    private static final int MESSAGE_COUNT = CONFIG.getInt("producer.messageCount");
+    private static final long TELEMETRY_TTL_MS = CONFIG.getLong("producer.telemetryTtlMs"); // telemetry is worthless after a minute
+    private static final String SPOOL_DIR = CONFIG.getString("spool.dir");
+    private static final int SPOOL_SEGMENT_SIZE = CONFIG.getInt("spool.segmentSize");
+    private static final int SPOOL_FSYNC_INTERVAL = CONFIG.getInt("spool.fsyncInterval"); // records between forced writes
+    private static final int FORWARD_BATCH_SIZE = CONFIG.getInt("tuning.spool.batchSize");
+    private static final double MIN_RATE = CONFIG.getDouble("producer.flowControl.minRate");
+    private static final int RATE_BURST = CONFIG.getInt("producer.flowControl.burst"); // puts allowed back to back after a pause
+    private static final double MAX_RATE = CONFIG.getDouble("tuning.producer.maxRate");
+    private static final String TRACE_FILE = CONFIG.getString("tracing.file");
+    private static final double TRACE_SAMPLE_RATIO = CONFIG.getDouble("tuning.tracing.sampleRatio");
+    private static final int DELAYED_COUNT = CONFIG.getInt("producer.delayedCount");
+    private static final long DELIVERY_DELAY_MS = CONFIG.getLong("producer.deliveryDelayMs");
+    private static final boolean CLIENT_SCHEDULING = CONFIG.getBoolean("scheduler.clientSide"); // for queue managers without delivery delay
+    private static final long SPOOL_DRAIN_WAIT_MS = CONFIG.getLong("spool.drainWaitMs"); // spooled messages left after this are sent on the next run
 
     public static void main(String[] args) {
+        Logger.configure(CONFIG);
         MQConnectionManager connectionManager = null;
         MQMessageSender messageSender = null;
+        Tracer tracer = null;
 
         try {
             // Step 1: Create connection manager
             connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
-            // Step 2: Connect to IBM MQ
-            connectionManager.connect();
-            // Step 3: Create message sender
-            messageSender = new MQMessageSender(connectionManager, QUEUE_NAME);
-            // Step 4: Initialize message sender
+            if (SHARE_CONVERSATIONS != null) {
+                connectionManager.setShareConversations(Boolean.parseBoolean(SHARE_CONVERSATIONS));
+            }
+            // Step 2: Create message sender, telemetry skips the persistence cost
+            DeliveryPolicyResolver policyResolver = new DeliveryPolicyResolver()
+                    .forMessageType("TELEMETRY", DeliveryPolicy.nonPersistentAsync(TELEMETRY_TTL_MS));
+            messageSender = new MQMessageSender(connectionManager, QUEUE_NAME, policyResolver);
+            // Step 3: Spool to local disk whenever the queue manager is unreachable
+            messageSender.enableStoreAndForward(new MessageSpool(Paths.get(SPOOL_DIR), SPOOL_SEGMENT_SIZE,
+                    MessageSpool.FsyncPolicy.EVERY_N_RECORDS, SPOOL_FSYNC_INTERVAL), FORWARD_BATCH_SIZE);
+            // Back off when the queue fills up or puts slow down
+            final AdaptiveFlowController flowController = new AdaptiveFlowController(
+                    new TokenBucketRateLimiter(MAX_RATE, RATE_BURST), MIN_RATE, MAX_RATE);
+            messageSender.setFlowController(flowController);
+            if (CLIENT_SCHEDULING) {
+                messageSender.enableClientScheduling(new DelayedMessageScheduler(
+                        Paths.get(CONFIG.getString("scheduler.journal")), CONFIG.getLong("scheduler.tickMs"),
+                        FORWARD_BATCH_SIZE, MessageSpool.FsyncPolicy.EVERY_N_RECORDS, SPOOL_FSYNC_INTERVAL));
+            }
+            // Trace a sample of the messages end to end
+            tracer = new Tracer(new TraceSampler(TRACE_SAMPLE_RATIO), new BatchingFileSpanExporter(Paths.get(TRACE_FILE),
+                    "mq-producer", CONFIG.getInt("tracing.batchSize"), CONFIG.getLong("tracing.flushIntervalMs")));
+            messageSender.setTracer(tracer);
+            final TraceSampler sampler = tracer.getSampler();
+            // Forward batch size and rate cap can be tuned live through the -Dmq.config file
+            final SpoolForwarder forwarder = messageSender.getSpoolForwarder();
+            CONFIG.onChange("tuning.spool.batchSize", value -> forwarder.setBatchSize(Integer.parseInt(value)));
+            CONFIG.onChange("tuning.producer.maxRate", value -> flowController.setMaxRate(Double.parseDouble(value)));
+            CONFIG.onChange("tuning.tracing.sampleRatio", value -> sampler.setRatio(Double.parseDouble(value)));
+            CONFIG.startWatching(CONFIG.getLong("config.reloadIntervalMs"));
+            // Step 4: Connect to IBM MQ, a failure is not fatal in store-and-forward mode
+            try {
+                connectionManager.connect();
+            } catch (JMSException e) {
+                handleError(e);
+            }
+            // Step 5: Initialize message sender
             messageSender.initialize();
-            // Step 5: Send 100 messages
-            messageSender.sendMessages(100);
+            // Step 6: Send the configured number of messages
+            messageSender.sendMessages(MESSAGE_COUNT);
+            // Step 7: Send as many telemetry messages
+            messageSender.sendMessages(MESSAGE_COUNT, "TELEMETRY");
+            // Step 8: Schedule messages for later delivery
+            sendDelayedMessages(messageSender);
+            // Step 9: Give the forwarder a chance to drain the spool before exiting
+            if (!messageSender.awaitSpoolDrained(SPOOL_DRAIN_WAIT_MS)) {
+                LOG.info("Spooled messages remain in {}, they will be sent on the next run", SPOOL_DIR);
+            }
         } catch (JMSException e) {
             handleError(e);
 
+        } catch (IOException e) {
+            LOG.error("✗ Could not open spool directory or scheduler journal: {}", e.getMessage());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
         } finally {
             // Clean up resources
+            CONFIG.stopWatching();
             if (messageSender != null) {
                 messageSender.close();
             }
             if (connectionManager != null) {
                 connectionManager.disconnect();
             }
+            if (tracer != null) {
+                tracer.close();
+            }
         }
     }
 
+    private static void sendDelayedMessages(MQMessageSender messageSender) throws JMSException {
+        for (int i = 1; i <= DELAYED_COUNT; i++) {
+            Map<String, Object> properties = new LinkedHashMap<>();
+            properties.put("MessageNumber", i);
+            properties.put("MessageType", "DELAYED");
+            messageSender.sendDelayed("Delayed message #" + i + " | Scheduled: " + System.currentTimeMillis(),
+                    properties, DELIVERY_DELAY_MS);
+        }
+        if (DELAYED_COUNT > 0) {
+            LOG.info("✓ Scheduled {} messages for delivery in {} ms{}", DELAYED_COUNT, DELIVERY_DELAY_MS,
+                    CLIENT_SCHEDULING ? " (client-side)" : "");
+        }
+    }
 
     private static void handleError(JMSException e) {
-        System.err.println("\n=========================================");
-        System.err.println("✗ ERROR OCCURRED");
-        System.err.println("=========================================");
-        System.err.println("Error: " + e.getMessage());
-        System.err.println("Error Code: " + (e.getErrorCode() != null ? e.getErrorCode() : "N/A"));
+        LOG.error("=========================================");
+        LOG.error("✗ ERROR OCCURRED");
+        LOG.error("=========================================");
+        LOG.error("Error: {}", e.getMessage());
+        LOG.error("Error Code: {}", e.getErrorCode() != null ? e.getErrorCode() : "N/A");
 
         if (e.getLinkedException() != null) {
-            System.err.println("\nLinked Exception Details:");
-            e.getLinkedException().printStackTrace();
+            LOG.error("Linked Exception Details:", e.getLinkedException());
         }
 
-        System.err.println("\nTroubleshooting Tips:");
-        System.err.println("1. Verify Queue Manager '" + QMGR + "' is running");
-        System.err.println("2. Check if queue '" + QUEUE_NAME + "' exists");
-        System.err.println("3. Confirm channel '" + CHANNEL + "' is configured");
-        System.err.println("4. Ensure MQ listener is active on port " + PORT);
-        System.err.println("5. Check authentication/authorization settings");
-        System.err.println("   Run: ALTER QMGR CHLAUTH(DISABLED)");
-        System.err.println("=========================================\n");
+        LOG.error("Troubleshooting Tips:");
+        LOG.error("1. Verify Queue Manager '{}' is running", QMGR);
+        LOG.error("2. Check if queue '{}' exists", QUEUE_NAME);
+        LOG.error("3. Confirm channel '{}' is configured", CHANNEL);
+        LOG.error("4. Ensure MQ listener is active on port {}", PORT);
+        LOG.error("5. Check authentication/authorization settings");
+        LOG.error("   Run: ALTER QMGR CHLAUTH(DISABLED)");
+        LOG.error("=========================================");
     }
 }
\ No newline at end of file
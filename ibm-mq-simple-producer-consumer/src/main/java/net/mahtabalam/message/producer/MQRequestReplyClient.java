@@ -0,0 +1,207 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.lang.IllegalStateException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request/reply client on top of one MQ connection.
+ * All replies arrive on a single long-lived reply queue (a temporary queue unless a
+ * reply queue name is given) and are matched to their request through a
+ * correlation ID to future map, so thousands of requests can be outstanding at once.
+ */
+public class MQRequestReplyClient {
+
+    private static final Logger LOG = Logger.getLogger(MQRequestReplyClient.class);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int CORRELATION_ID_BYTES = 24; // size of the MQMD CorrelId
+
+    private final MQConnectionManager connectionManager;
+    private final String requestQueueName;
+    private final String replyQueueName;
+    private final Map<String, CompletableFuture<Message>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong lateReplies = new AtomicLong();
+    private final byte[] clientId = new byte[12];
+    private final Object sendLock = new Object();
+    private Session requestSession;
+    private Session replySession;
+    private MessageProducer requestProducer;
+    private MessageConsumer replyConsumer;
+    private Queue replyQueue;
+
+    public MQRequestReplyClient(MQConnectionManager connectionManager, String requestQueueName) {
+        this(connectionManager, requestQueueName, null);
+    }
+
+    /**
+     * @param replyQueueName queue dedicated to this client's replies, or null for a temporary queue
+     */
+    public MQRequestReplyClient(MQConnectionManager connectionManager, String requestQueueName, String replyQueueName) {
+        this.connectionManager = connectionManager;
+        this.requestQueueName = requestQueueName;
+        this.replyQueueName = replyQueueName;
+        new SecureRandom().nextBytes(clientId);
+    }
+
+    public void initialize() throws JMSException {
+        if (!connectionManager.isConnected()) {
+            throw new IllegalStateException("Connection manager is not connected.");
+        }
+
+        // Sessions are single threaded: one for sending requests, one owned by the reply listener
+        Connection connection = connectionManager.getConnection();
+        requestSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        replySession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        requestProducer = requestSession.createProducer(requestSession.createQueue(requestQueueName));
+        replyQueue = replyQueueName != null
+                ? replySession.createQueue(replyQueueName)
+                : replySession.createTemporaryQueue();
+        replyConsumer = replySession.createConsumer(replyQueue);
+        replyConsumer.setMessageListener(this::onReply);
+
+        LOG.info("✓ Request/reply client initialized for queue: {}", requestQueueName);
+        LOG.info("  Reply queue: {}", replyQueue.getQueueName());
+    }
+
+    /**
+     * Send a request and complete the returned future with the reply, or with a
+     * TimeoutException if no reply arrives within timeoutMs
+     */
+    public CompletableFuture<Message> request(String text, long timeoutMs) {
+        if (requestProducer == null) {
+            throw new IllegalStateException("Request/reply client not initialized. Call initialize() first.");
+        }
+
+        String correlationId = nextCorrelationId();
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        pendingRequests.put(correlationId, future);
+        future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((reply, error) -> pendingRequests.remove(correlationId, future));
+
+        try {
+            synchronized (sendLock) {
+                TextMessage message = requestSession.createTextMessage(text);
+                message.setJMSCorrelationID(correlationId);
+                message.setJMSReplyTo(replyQueue);
+                // A request nobody answers in time is useless, let it expire on the queue
+                requestProducer.send(message, DeliveryMode.NON_PERSISTENT, Message.DEFAULT_PRIORITY, timeoutMs);
+            }
+        } catch (JMSException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Blocking variant of request()
+     */
+    public Message requestAndWait(String text, long timeoutMs) throws JMSException, InterruptedException {
+        try {
+            return request(text, timeoutMs).get();
+        } catch (ExecutionException e) {
+            JMSException jmsException = new JMSException("Request failed: " + e.getCause());
+            if (e.getCause() instanceof Exception) {
+                jmsException.setLinkedException((Exception) e.getCause());
+            }
+            throw jmsException;
+        }
+    }
+
+    private void onReply(Message reply) {
+        try {
+            String correlationId = reply.getJMSCorrelationID();
+            CompletableFuture<Message> future = correlationId != null ? pendingRequests.remove(correlationId) : null;
+            if (future == null && correlationId != null) {
+                future = pendingRequests.remove(correlationId.toLowerCase());
+            }
+            if (future != null) {
+                future.complete(reply);
+            } else {
+                lateReplies.incrementAndGet();
+            }
+        } catch (JMSException e) {
+            LOG.error("Error reading reply correlation ID: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 24 byte correlation ID in the "ID:" hex form, so it survives the round trip
+     * through the MQMD unchanged: 12 random client bytes, an 8 byte sequence, 4 zero bytes
+     */
+    private String nextCorrelationId() {
+        long seq = sequence.incrementAndGet();
+        char[] chars = new char[3 + CORRELATION_ID_BYTES * 2];
+        chars[0] = 'I';
+        chars[1] = 'D';
+        chars[2] = ':';
+        int pos = 3;
+        for (byte b : clientId) {
+            chars[pos++] = HEX[(b >> 4) & 0xF];
+            chars[pos++] = HEX[b & 0xF];
+        }
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            chars[pos++] = HEX[(int) (seq >>> shift) & 0xF];
+        }
+        while (pos < chars.length) {
+            chars[pos++] = '0';
+        }
+        return new String(chars);
+    }
+
+    public int getOutstandingRequests() {
+        return pendingRequests.size();
+    }
+
+    public long getLateReplies() {
+        return lateReplies.get();
+    }
+
+    public void close() {
+        pendingRequests.values().forEach(future ->
+                future.completeExceptionally(new IllegalStateException("Request/reply client closed")));
+        pendingRequests.clear();
+        try {
+            if (replyConsumer != null) {
+                replyConsumer.close();
+                replyConsumer = null;
+            }
+            if (requestProducer != null) {
+                requestProducer.close();
+                requestProducer = null;
+            }
+            if (replySession != null) {
+                replySession.close();
+                replySession = null;
+            }
+            if (requestSession != null) {
+                requestSession.close();
+                requestSession = null;
+            }
+            LOG.info("Request/reply client closed.");
+        } catch (JMSException e) {
+            LOG.error("Error closing request/reply client:", e);
+        }
+    }
+
+    public String getRequestQueueName() {
+        return requestQueueName;
+    }
+}
@@ -0,0 +1,343 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped local log of messages that could not be put to MQ yet.
+ *
+ * The log is split into fixed size segment files. Each record is
+ * [int length][int crc32c][payload]; a zero length marks the end of the written
+ * part of a segment. The read position is kept in a checkpoint file, fully
+ * forwarded segments are deleted.
+ */
+public class MessageSpool {
+
+    private static final Logger LOG = Logger.getLogger(MessageSpool.class);
+
+    /**
+     * When appended records are forced to disk
+     */
+    public enum FsyncPolicy {
+        /** force after every record, survives a machine crash */
+        EVERY_RECORD,
+        /** force every fsyncInterval records */
+        EVERY_N_RECORDS,
+        /** leave it to the OS page cache, survives a process crash only */
+        OS_DEFAULT
+    }
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncInterval;
+    private final Object lock = new Object();
+    private final CRC32C crc = new CRC32C();
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private int writePosition;
+    private int unsyncedRecords;
+
+    private long readSegment;
+    private int readOffset;
+    private long mappedReadSegment = -1;
+    private MappedByteBuffer readBuffer;
+
+    private long appendedCount;
+    private long committedCount;
+
+    public MessageSpool(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, int fsyncInterval) throws IOException {
+        if (segmentSize <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = Math.max(1, fsyncInterval);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Reopen existing segments: the read position comes from the checkpoint,
+     * the write position is found by scanning the newest segment for the last valid record
+     */
+    private void recover() throws IOException {
+        List<Long> segments = listSegments();
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint) && !segments.isEmpty()) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+            readSegment = data.getLong();
+            readOffset = data.getInt();
+        } else {
+            readSegment = segments.isEmpty() ? 0 : segments.get(0);
+            readOffset = 0;
+        }
+
+        writeSegment = segments.isEmpty() ? readSegment : segments.get(segments.size() - 1);
+        writeBuffer = map(writeSegment, FileChannel.MapMode.READ_WRITE);
+        writePosition = 0;
+        while (true) {
+            int length = recordLength(writeBuffer, writePosition);
+            if (length <= 0 || !validRecord(writeBuffer, writePosition, length)) {
+                break;
+            }
+            writePosition += RECORD_HEADER_BYTES + length;
+        }
+
+        if (!segments.isEmpty()) {
+            LOG.info("✓ Spool recovered from {} ({} segment(s))", directory, segments.size());
+        }
+    }
+
+    /**
+     * Append a message. Never blocks on MQ, only on the configured fsync.
+     */
+    public void append(SpooledMessage message) throws IOException {
+        byte[] payload = message.encode();
+        int recordSize = RECORD_HEADER_BYTES + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes does not fit a spool segment");
+        }
+
+        synchronized (lock) {
+            if (writePosition + recordSize > segmentSize) {
+                rollSegment();
+            }
+            crc.reset();
+            crc.update(payload);
+            writeBuffer.putInt(writePosition + 4, (int) crc.getValue());
+            writeBuffer.put(writePosition + RECORD_HEADER_BYTES, payload);
+            // Length last, so a record is only visible once it is complete
+            writeBuffer.putInt(writePosition, payload.length);
+            int recordStart = writePosition;
+            writePosition += recordSize;
+            appendedCount++;
+
+            if (fsyncPolicy == FsyncPolicy.EVERY_RECORD) {
+                writeBuffer.force(recordStart, recordSize);
+            } else if (fsyncPolicy == FsyncPolicy.EVERY_N_RECORDS && ++unsyncedRecords >= fsyncInterval) {
+                writeBuffer.force();
+                unsyncedRecords = 0;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        writeBuffer.force();
+        writeSegment++;
+        writeBuffer = map(writeSegment, FileChannel.MapMode.READ_WRITE);
+        writePosition = 0;
+        unsyncedRecords = 0;
+    }
+
+    /**
+     * Read up to maxMessages records after the committed read position.
+     * The position only moves once the batch is passed to commit().
+     */
+    public Batch readBatch(int maxMessages) throws IOException {
+        synchronized (lock) {
+            List<SpooledMessage> messages = new ArrayList<>();
+            int offset = readOffset;
+            while (messages.size() < maxMessages) {
+                MappedByteBuffer buffer = readBuffer();
+                int length = recordLength(buffer, offset);
+                if (length <= 0 || !validRecord(buffer, offset, length)) {
+                    if (length > 0 && readSegment == writeSegment) {
+                        break;
+                    }
+                    if (length > 0) {
+                        LOG.error("✗ Corrupt spool record in segment {} at offset {}, skipping rest of segment",
+                                readSegment, offset);
+                    }
+                    if (readSegment < writeSegment && messages.isEmpty()) {
+                        // Segment fully forwarded, move on to the next one
+                        Files.deleteIfExists(segmentPath(readSegment));
+                        readSegment++;
+                        readOffset = 0;
+                        offset = 0;
+                        writeCheckpoint();
+                        continue;
+                    }
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(offset + RECORD_HEADER_BYTES, payload);
+                messages.add(SpooledMessage.decode(payload));
+                offset += RECORD_HEADER_BYTES + length;
+            }
+            return new Batch(messages, readSegment, offset);
+        }
+    }
+
+    /**
+     * Mark a batch returned by readBatch() as forwarded
+     */
+    public void commit(Batch batch) throws IOException {
+        synchronized (lock) {
+            readSegment = batch.segment;
+            readOffset = batch.endOffset;
+            committedCount += batch.messages.size();
+            writeCheckpoint();
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return readSegment == writeSegment && readOffset >= writePosition;
+        }
+    }
+
+    /**
+     * Wait until a record is appended or the timeout elapses
+     */
+    public void awaitData(long timeoutMs) throws InterruptedException {
+        synchronized (lock) {
+            if (isEmpty()) {
+                lock.wait(timeoutMs);
+            }
+        }
+    }
+
+    /**
+     * Wait until everything appended so far has been forwarded
+     */
+    public boolean awaitEmpty(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            while (!isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    public void close() {
+        synchronized (lock) {
+            writeBuffer.force();
+        }
+    }
+
+    public long getAppendedCount() {
+        return appendedCount;
+    }
+
+    public long getCommittedCount() {
+        return committedCount;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private MappedByteBuffer readBuffer() throws IOException {
+        if (readSegment == writeSegment) {
+            return writeBuffer;
+        }
+        if (mappedReadSegment != readSegment) {
+            readBuffer = map(readSegment, FileChannel.MapMode.READ_ONLY);
+            mappedReadSegment = readSegment;
+        }
+        return readBuffer;
+    }
+
+    private int recordLength(ByteBuffer buffer, int offset) {
+        if (offset + RECORD_HEADER_BYTES > segmentSize) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        return offset + RECORD_HEADER_BYTES + length > segmentSize ? -1 : length;
+    }
+
+    private boolean validRecord(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset + RECORD_HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(offset + 4);
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), options)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(mode, 0, segmentSize);
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(12).putLong(readSegment).putInt(readOffset);
+        data.flip();
+        try (FileChannel channel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(data);
+            if (fsyncPolicy != FsyncPolicy.OS_DEFAULT) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Records read from the spool, committed as a unit once forwarded
+     */
+    public static class Batch {
+
+        private final List<SpooledMessage> messages;
+        private final long segment;
+        private final int endOffset;
+
+        private Batch(List<SpooledMessage> messages, long segment, int endOffset) {
+            this.messages = messages;
+            this.segment = segment;
+            this.endOffset = endOffset;
+        }
+
+        public List<SpooledMessage> getMessages() {
+            return messages;
+        }
+
+        public boolean isEmpty() {
+            return messages.isEmpty();
+        }
+    }
+}
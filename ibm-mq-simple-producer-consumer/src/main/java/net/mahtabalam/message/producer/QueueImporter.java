@@ -0,0 +1,328 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Replays an archive written by QueueExporter onto the sender's queue.
+ *
+ * Puts are grouped into transactions of batchSize messages, which saves a
+ * queue manager log force per message, and are paced by the sender's rate
+ * limiter when it has one. Messages that expired while archived are skipped,
+ * the others keep their remaining time to live.
+ */
+public class QueueImporter {
+
+    private static final int MAGIC = 0x4D514152; // "MQAR"
+    private static final int VERSION = 1;
+    private static final byte BODY_TEXT = 'T';
+    private static final byte BODY_BYTES = 'B';
+
+    private final MQMessageSender sender;
+    private final int batchSize;
+    private final CRC32C crc = new CRC32C();
+    private final Inflater inflater = new Inflater(true);
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(16);
+    private ByteBuffer compressed = ByteBuffer.allocate(0);
+    private ByteBuffer block = ByteBuffer.allocate(0);
+    private long offset;
+    private long importedCount;
+    private long expiredCount;
+
+    public QueueImporter(MQMessageSender sender, int batchSize) {
+        this.sender = sender;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Put every message of the archive, committing after each batch
+     *
+     * @param maxMessages stop after this many messages, 0 for no limit
+     * @return number of messages put
+     */
+    public long importFrom(Path file, long maxMessages) throws JMSException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return importFrom(channel, file.toString(), maxMessages);
+        }
+    }
+
+    /**
+     * Put every message of an archive read from any channel, committing after each batch
+     *
+     * @param name        shown in the progress output
+     * @param maxMessages stop after this many messages, 0 for no limit
+     * @return number of messages put
+     */
+    public long importFrom(ReadableByteChannel channel, String name, long maxMessages)
+            throws JMSException, IOException {
+        System.out.println("Importing " + name + " into queue " + sender.getQueueName());
+        long startTime = System.currentTimeMillis();
+        Session session = sender.getConnectionManager().createTransactedSession();
+        TokenBucketRateLimiter rateLimiter = sender.getRateLimiter();
+        int uncommitted = 0;
+        try {
+            MessageProducer producer = session.createProducer(session.createQueue(sender.getQueueName()));
+            readFileHeader(channel);
+            while ((maxMessages == 0 || importedCount < maxMessages) && readBlock(channel)) {
+                while (block.hasRemaining() && (maxMessages == 0 || importedCount < maxMessages)) {
+                    if (rateLimiter != null) {
+                        rateLimiter.acquire();
+                    }
+                    if (!putRecord(session, producer)) {
+                        continue;
+                    }
+                    if (++uncommitted >= batchSize) {
+                        session.commit();
+                        uncommitted = 0;
+                    }
+                    if (importedCount % 100000 == 0) {
+                        System.out.println("  Imported " + importedCount + " messages...");
+                    }
+                }
+            }
+            session.commit();
+            producer.close();
+        } catch (JMSException | IOException | RuntimeException e) {
+            // The open batch is rolled back, a rerun from the start may duplicate earlier batches
+            session.rollback();
+            importedCount -= uncommitted;
+            throw e;
+        } finally {
+            session.close();
+            inflater.end();
+        }
+        printSummary(name, System.currentTimeMillis() - startTime);
+        return importedCount;
+    }
+
+    private void readFileHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(channel, header);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a queue archive");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive version " + version);
+        }
+    }
+
+    /**
+     * Read, verify and inflate the next block
+     *
+     * @return false at the end of the file
+     */
+    private boolean readBlock(ReadableByteChannel channel) throws IOException {
+        long blockOffset = offset;
+        blockHeader.clear();
+        if (channel.read(blockHeader) <= 0) {
+            return false;
+        }
+        offset += blockHeader.position();
+        readFully(channel, blockHeader);
+        blockHeader.flip();
+        blockHeader.getInt(); // record count, records are self-delimiting
+        int rawLength = blockHeader.getInt();
+        int compressedLength = blockHeader.getInt();
+        int checksum = blockHeader.getInt();
+
+        if (compressed.capacity() < compressedLength) {
+            compressed = ByteBuffer.allocate(compressedLength);
+        }
+        compressed.clear().limit(compressedLength);
+        readFully(channel, compressed);
+        compressed.flip();
+        crc.reset();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Corrupt block at offset " + blockOffset);
+        }
+
+        if (block.capacity() < rawLength) {
+            block = ByteBuffer.allocate(rawLength);
+        }
+        block.clear().limit(rawLength);
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            while (block.hasRemaining() && !inflater.finished()) {
+                inflater.inflate(block);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block: " + e.getMessage(), e);
+        }
+        block.flip();
+        return true;
+    }
+
+    private void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                throw new EOFException("Archive ends in the middle of a block");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Decode the next record and put it
+     *
+     * @return false if the message expired and was skipped
+     */
+    private boolean putRecord(Session session, MessageProducer producer) throws JMSException {
+        int length = block.getInt();
+        int end = block.position() + length;
+        byte bodyType = block.get();
+        block.getLong(); // original put timestamp, the queue manager sets a new one
+        long expiration = block.getLong();
+        int priority = block.get();
+        int deliveryMode = block.get();
+
+        long timeToLive = 0;
+        if (expiration > 0) {
+            timeToLive = expiration - System.currentTimeMillis();
+            if (timeToLive <= 0) {
+                expiredCount++;
+                block.position(end);
+                return false;
+            }
+        }
+
+        String correlationId = getString();
+        String jmsType = getString();
+        // Properties come before the body in the record, the message can only be created once the body is read
+        Object[] properties = readProperties(block.getInt());
+        Message message;
+        if (bodyType == BODY_TEXT) {
+            message = session.createTextMessage(getString());
+        } else if (bodyType == BODY_BYTES) {
+            BytesMessage bytesMessage = session.createBytesMessage();
+            byte[] body = new byte[block.getInt()];
+            block.get(body);
+            bytesMessage.writeBytes(body);
+            message = bytesMessage;
+        } else {
+            message = session.createMessage();
+        }
+        setProperties(message, properties);
+        if (correlationId != null) {
+            message.setJMSCorrelationID(correlationId);
+        }
+        if (jmsType != null) {
+            message.setJMSType(jmsType);
+        }
+        block.position(end);
+
+        producer.send(message, deliveryMode, priority, timeToLive);
+        importedCount++;
+        return true;
+    }
+
+    private Object[] readProperties(int count) {
+        Object[] properties = new Object[count * 2];
+        for (int i = 0; i < count; i++) {
+            properties[i * 2] = getString();
+            byte tag = block.get();
+            switch (tag) {
+                case 'S': properties[i * 2 + 1] = getString(); break;
+                case 'I': properties[i * 2 + 1] = block.getInt(); break;
+                case 'L': properties[i * 2 + 1] = block.getLong(); break;
+                case 'Z': properties[i * 2 + 1] = block.get() != 0; break;
+                case 'D': properties[i * 2 + 1] = block.getDouble(); break;
+                case 'F': properties[i * 2 + 1] = block.getFloat(); break;
+                case 'H': properties[i * 2 + 1] = block.getShort(); break;
+                case 'Y': properties[i * 2 + 1] = block.get(); break;
+                default: throw new IllegalStateException("Unknown property type '" + (char) tag + "' in archive");
+            }
+        }
+        return properties;
+    }
+
+    private static void setProperties(Message message, Object[] properties) throws JMSException {
+        for (int i = 0; i < properties.length; i += 2) {
+            message.setObjectProperty((String) properties[i], properties[i + 1]);
+        }
+    }
+
+    private String getString() {
+        int length = block.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(block.array(), block.arrayOffset() + block.position(), length, StandardCharsets.UTF_8);
+        block.position(block.position() + length);
+        return value;
+    }
+
+    private void printSummary(String name, long duration) {
+        System.out.println("\n=========================================");
+        System.out.println("✓ IMPORT COMPLETE!");
+        System.out.println("=========================================");
+        System.out.println("File: " + name);
+        System.out.println("Queue: " + sender.getQueueName());
+        System.out.println("Messages imported: " + importedCount);
+        System.out.println("Expired and skipped: " + expiredCount);
+        System.out.println("Time taken: " + duration + " ms");
+        if (duration > 0) {
+            System.out.println("Throughput: " + String.format("%.0f", importedCount * 1000.0 / duration) + " msgs/sec");
+        }
+        System.out.println("=========================================\n");
+    }
+
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Usage: QueueImporter FILE [MAX_MESSAGES]
+     * Replays FILE onto the configured queue
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: QueueImporter FILE [MAX_MESSAGES]");
+            return;
+        }
+        MQConfig config = MQConfig.load("producer.properties");
+        long maxMessages = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        MQConnectionManager connectionManager = new MQConnectionManager(config.getString("mq.host"),
+                config.getInt("mq.port"), config.getString("mq.channel"), config.getString("mq.queueManager"));
+        try {
+            connectionManager.connect();
+            MQMessageSender sender = new MQMessageSender(connectionManager, config.getString("mq.queue"));
+            double rate = config.getDouble("archive.importRate");
+            if (rate > 0) {
+                sender.setRateLimiter(new TokenBucketRateLimiter(rate, config.getInt("archive.batchSize")));
+            }
+            new QueueImporter(sender, config.getInt("archive.batchSize")).importFrom(Paths.get(args[0]), maxMessages);
+        } catch (JMSException e) {
+            System.err.println("✗ Import failed: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("✗ Could not read " + args[0] + ": " + e.getMessage());
+        } finally {
+            connectionManager.disconnect();
+        }
+    }
+}
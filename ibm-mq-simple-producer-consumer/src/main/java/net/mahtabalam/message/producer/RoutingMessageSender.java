@@ -0,0 +1,185 @@
+package net.mahtabalam.message.producer;
+
+import com.ibm.mq.jms.MQDestination;
+import com.ibm.msg.client.wmq.WMQConstants;
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.TextMessage;
+import java.lang.IllegalStateException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends each message to a queue chosen per message, through one anonymous producer.
+ *
+ * The router picks the queue name, a header rule or any function. Resolved Queue
+ * objects are kept in an LRU cache bounded to maxCachedQueues, so routing to
+ * hundreds of queues needs neither a sender nor a producer per queue. Delivery
+ * mode, priority and time to live come from the DeliveryPolicyResolver like in
+ * MQMessageSender; async put is taken from the queue policy because it is set
+ * on the cached Queue object. Like the session it sends on, a routing sender is
+ * used from one thread.
+ */
+public class RoutingMessageSender {
+
+    private static final Logger LOG = Logger.getLogger(RoutingMessageSender.class);
+
+    /**
+     * Picks the queue for a message, null sends it to the default queue
+     */
+    public interface Router {
+        String route(Message message) throws JMSException;
+    }
+
+    /**
+     * Route to queuePrefix + the value of a message property, e.g. ORDERS. + region
+     */
+    public static Router byProperty(String propertyName, String queuePrefix) {
+        return message -> message.propertyExists(propertyName)
+                ? queuePrefix + message.getObjectProperty(propertyName) : null;
+    }
+
+    /**
+     * Route by looking up the value of a message property in a table of queue names
+     */
+    public static Router byPropertyTable(String propertyName, Map<String, String> queueByValue) {
+        return message -> message.propertyExists(propertyName)
+                ? queueByValue.get(String.valueOf(message.getObjectProperty(propertyName))) : null;
+    }
+
+    private final MQConnectionManager connectionManager;
+    private final Router router;
+    private final String defaultQueueName;
+    private final DeliveryPolicyResolver policyResolver;
+    private final Map<String, Queue> queueCache;
+    private final Map<String, long[]> destinationStats = new LinkedHashMap<>();
+    private MessageProducer messageProducer;
+    private long cacheHits;
+    private long cacheMisses;
+
+    public RoutingMessageSender(MQConnectionManager connectionManager, Router router, String defaultQueueName,
+                                int maxCachedQueues) {
+        this(connectionManager, router, defaultQueueName, maxCachedQueues, new DeliveryPolicyResolver());
+    }
+
+    public RoutingMessageSender(MQConnectionManager connectionManager, Router router, String defaultQueueName,
+                                int maxCachedQueues, DeliveryPolicyResolver policyResolver) {
+        this.connectionManager = connectionManager;
+        this.router = router;
+        this.defaultQueueName = defaultQueueName;
+        this.policyResolver = policyResolver;
+        this.queueCache = new LinkedHashMap<String, Queue>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Queue> eldest) {
+                return size() > maxCachedQueues;
+            }
+        };
+    }
+
+    public void initialize() throws JMSException {
+        if (!connectionManager.isConnected()) {
+            throw new IllegalStateException("Connection manager is not connected.");
+        }
+        // No destination, every send names its queue
+        messageProducer = connectionManager.getSession().createProducer(null);
+        LOG.info("✓ Routing sender initialized, default queue: {}", defaultQueueName);
+    }
+
+    public TextMessage createTextMessage(String text) throws JMSException {
+        return connectionManager.getSession().createTextMessage(text);
+    }
+
+    /**
+     * Send the message to the queue the router picks
+     *
+     * @return the queue name the message was sent to
+     */
+    public String send(Message message) throws JMSException {
+        if (messageProducer == null) {
+            throw new IllegalStateException("Routing sender not initialized. Call initialize() first.");
+        }
+        String queueName = router.route(message);
+        if (queueName == null) {
+            queueName = defaultQueueName;
+        }
+        DeliveryPolicy policy = policyResolver.resolve(queueName, message.getStringProperty("MessageType"));
+        long start = System.nanoTime();
+        messageProducer.send(queueFor(queueName), message, policy.getDeliveryMode(), policy.getPriority(),
+                policy.getTimeToLive());
+        long[] stats = destinationStats.computeIfAbsent(queueName, k -> new long[2]);
+        stats[0]++;
+        stats[1] += System.nanoTime() - start;
+        return queueName;
+    }
+
+    private Queue queueFor(String queueName) throws JMSException {
+        Queue queue = queueCache.get(queueName);
+        if (queue != null) {
+            cacheHits++;
+            return queue;
+        }
+        cacheMisses++;
+        queue = connectionManager.getSession().createQueue(queueName);
+        if (queue instanceof MQDestination) {
+            ((MQDestination) queue).setPutAsyncAllowed(policyResolver.resolve(queueName).isAsyncPut()
+                    ? WMQConstants.WMQ_PUT_ASYNC_ALLOWED_ENABLED
+                    : WMQConstants.WMQ_PUT_ASYNC_ALLOWED_DISABLED);
+        }
+        queueCache.put(queueName, queue);
+        return queue;
+    }
+
+    /**
+     * Put count and throughput per destination, busiest first
+     *
+     * @param limit maximum number of destinations listed
+     */
+    public void printThroughputByDestination(int limit) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(destinationStats.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        LOG.info("Put throughput by destination ({} queues, cache {} hits / {} misses):", entries.size(), cacheHits,
+                cacheMisses);
+        for (Map.Entry<String, long[]> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            long count = entry.getValue()[0];
+            long nanos = entry.getValue()[1];
+            double perSecond = nanos > 0 ? count * 1_000_000_000.0 / nanos : 0;
+            LOG.info("  {}: {} messages, {} msgs/sec, {} ms per put", entry.getKey(), count,
+                    String.format("%.0f", perSecond), String.format("%.3f", nanos / 1_000_000.0 / count));
+        }
+    }
+
+    /**
+     * Messages sent to a queue so far
+     */
+    public long getSentCount(String queueName) {
+        long[] stats = destinationStats.get(queueName);
+        return stats != null ? stats[0] : 0;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public void close() {
+        try {
+            if (messageProducer != null) {
+                messageProducer.close();
+                messageProducer = null;
+                LOG.info("Routing sender closed.");
+            }
+        } catch (JMSException e) {
+            LOG.error("Error closing routing sender:", e);
+        }
+        queueCache.clear();
+    }
+}
@@ -0,0 +1,185 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.config.MQConfig;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures many sessions multiplexed over shared TCP sockets against one socket per session.
+ *
+ * For every session count in the matrix, one connection opens that many sessions,
+ * first with conversation sharing allowed and then with it disabled. Every session
+ * puts messages from its own thread. The report shows setup time, throughput and
+ * put latency percentiles per configuration, plus the channel instances each
+ * configuration needs, to compare against the channel's MAXINST and the
+ * queue manager's MAXCHANNELS.
+ */
+public class ShareConvBenchmark {
+
+    private static final MQConfig CONFIG = MQConfig.load("producer.properties");
+    private static final String HOST = CONFIG.getString("mq.host");
+    private static final int PORT = CONFIG.getInt("mq.port");
+    private static final String CHANNEL = CONFIG.getString("mq.channel");
+    private static final String QMGR = CONFIG.getString("mq.queueManager");
+    private static final String QUEUE_NAME = CONFIG.getString("benchmark.queue");
+    private static final int[] SESSION_COUNTS = Arrays.stream(CONFIG.getString("benchmark.sessionCounts").split(","))
+            .mapToInt(count -> Integer.parseInt(count.trim())).toArray();
+    private static final int MESSAGES_PER_SESSION = CONFIG.getInt("benchmark.messagesPerSession");
+    private static final int CHANNEL_SHARECNV = CONFIG.getInt("benchmark.channelShareCnv"); // SHARECNV of the SVRCONN channel
+    private static final long MESSAGE_TTL_MS = 60000; // benchmark messages expire instead of piling up
+
+    public static void main(String[] args) {
+        System.out.println("\n╔═════════════════════════════════════════╗");
+        System.out.println("║     SHARED CONVERSATIONS BENCHMARK      ║");
+        System.out.println("╚═════════════════════════════════════════╝\n");
+
+        List<Result> results = new ArrayList<>();
+        for (int sessionCount : SESSION_COUNTS) {
+            for (boolean share : new boolean[]{true, false}) {
+                try {
+                    results.add(run(sessionCount, share));
+                } catch (JMSException e) {
+                    System.err.println("✗ " + sessionCount + " sessions, sharing " + (share ? "on" : "off")
+                            + " failed: " + e.getMessage());
+                    System.err.println("  Check MAXINST on channel " + CHANNEL + " and MAXCHANNELS on " + QMGR);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        printReport(results);
+    }
+
+    private static Result run(int sessionCount, boolean share) throws JMSException, InterruptedException {
+        System.out.println("Running " + sessionCount + " sessions, conversation sharing " + (share ? "on" : "off"));
+        MQConnectionManager connectionManager = new MQConnectionManager(HOST, PORT, CHANNEL, QMGR);
+        connectionManager.setShareConversations(share);
+        long setupStart = System.nanoTime();
+        connectionManager.connect();
+        try {
+            List<Session> sessions = new ArrayList<>();
+            sessions.add(connectionManager.getSession());
+            while (sessions.size() < sessionCount) {
+                sessions.add(connectionManager.createSession());
+            }
+            long setupNanos = System.nanoTime() - setupStart;
+
+            long[][] latencies = new long[sessionCount][MESSAGES_PER_SESSION];
+            JMSException[] failure = new JMSException[1];
+            CountDownLatch ready = new CountDownLatch(sessionCount);
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(sessionCount);
+            for (int i = 0; i < sessionCount; i++) {
+                final Session session = sessions.get(i);
+                final long[] sessionLatencies = latencies[i];
+                new Thread(() -> {
+                    try {
+                        MessageProducer producer = session.createProducer(session.createQueue(QUEUE_NAME));
+                        Message message = session.createTextMessage("ShareConvBenchmark");
+                        ready.countDown();
+                        start.await();
+                        for (int m = 0; m < MESSAGES_PER_SESSION; m++) {
+                            long putStart = System.nanoTime();
+                            producer.send(message, DeliveryMode.NON_PERSISTENT, Message.DEFAULT_PRIORITY, MESSAGE_TTL_MS);
+                            sessionLatencies[m] = System.nanoTime() - putStart;
+                        }
+                        producer.close();
+                    } catch (JMSException e) {
+                        failure[0] = e;
+                        ready.countDown();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "mq-bench-" + i).start();
+            }
+            ready.await();
+            long runStart = System.nanoTime();
+            start.countDown();
+            done.await();
+            long runNanos = System.nanoTime() - runStart;
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            for (int i = 1; i < sessions.size(); i++) {
+                sessions.get(i).close();
+            }
+            return new Result(sessionCount, share, setupNanos, runNanos, latencies);
+        } finally {
+            connectionManager.disconnect();
+        }
+    }
+
+    private static void printReport(List<Result> results) {
+        System.out.println("\n=========================================");
+        System.out.println("SHARECNV BENCHMARK RESULTS");
+        System.out.println("=========================================");
+        System.out.println("Messages per session: " + MESSAGES_PER_SESSION + ", channel SHARECNV: " + CHANNEL_SHARECNV);
+        System.out.println(String.format("%8s %7s %9s %10s %12s %9s %9s %9s",
+                "sessions", "sharing", "instances", "setup ms", "msgs/sec", "p50 ms", "p99 ms", "max ms"));
+        for (Result result : results) {
+            long[] sorted = result.sortedLatencies();
+            System.out.println(String.format("%8d %7s %9d %10.1f %12.0f %9.3f %9.3f %9.3f",
+                    result.sessionCount, result.share ? "on" : "off", result.channelInstances(),
+                    result.setupNanos / 1_000_000.0, result.throughput(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1_000_000.0));
+        }
+        System.out.println("=========================================");
+        System.out.println("Channel instances count the connection plus every session, at most");
+        System.out.println("SHARECNV conversations per instance when sharing is on.");
+        System.out.println("=========================================\n");
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static class Result {
+
+        private final int sessionCount;
+        private final boolean share;
+        private final long setupNanos;
+        private final long runNanos;
+        private final long[][] latencies;
+
+        Result(int sessionCount, boolean share, long setupNanos, long runNanos, long[][] latencies) {
+            this.sessionCount = sessionCount;
+            this.share = share;
+            this.setupNanos = setupNanos;
+            this.runNanos = runNanos;
+            this.latencies = latencies;
+        }
+
+        int channelInstances() {
+            // The connection is a conversation of its own, followed by one per session
+            int conversations = sessionCount + 1;
+            int perInstance = share ? Math.max(1, CHANNEL_SHARECNV) : 1;
+            return (conversations + perInstance - 1) / perInstance;
+        }
+
+        double throughput() {
+            return (double) sessionCount * MESSAGES_PER_SESSION * 1_000_000_000L / runNanos;
+        }
+
+        long[] sortedLatencies() {
+            long[] all = new long[sessionCount * MESSAGES_PER_SESSION];
+            for (int i = 0; i < sessionCount; i++) {
+                System.arraycopy(latencies[i], 0, all, i * MESSAGES_PER_SESSION, MESSAGES_PER_SESSION);
+            }
+            Arrays.sort(all);
+            return all;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.logging.Logger;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+
+/**
+ * Background thread that drains the local spool to MQ in batches.
+ * A batch is only committed in the spool after every message in it was put,
+ * so a failure part way through resends the batch (at-least-once delivery).
+ */
+public class SpoolForwarder implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(SpoolForwarder.class);
+    private static final long IDLE_WAIT_MS = 1000;
+    private static final long MIN_RETRY_DELAY_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private final MessageSpool spool;
+    private final MQMessageSender sender;
+    private volatile int batchSize;
+    private volatile boolean running;
+    private Thread thread;
+    private long forwardedCount;
+
+    public SpoolForwarder(MessageSpool spool, MQMessageSender sender, int batchSize) {
+        this.spool = spool;
+        this.sender = sender;
+        this.batchSize = batchSize;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "mq-spool-forwarder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long retryDelay = MIN_RETRY_DELAY_MS;
+        while (running) {
+            try {
+                if (spool.isEmpty()) {
+                    sender.spoolDrained();
+                    spool.awaitData(IDLE_WAIT_MS);
+                    continue;
+                }
+                MessageSpool.Batch batch = spool.readBatch(batchSize);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                sender.forward(batch.getMessages());
+                spool.commit(batch);
+                forwardedCount += batch.getMessages().size();
+                retryDelay = MIN_RETRY_DELAY_MS;
+            } catch (JMSException e) {
+                LOG.error("✗ Spool forwarding failed, retrying in {} ms: {}", retryDelay, e.getMessage());
+                sender.connectionLost();
+                retryDelay = sleep(retryDelay);
+            } catch (IOException e) {
+                LOG.error("✗ Error reading spool {}: {}", spool.getDirectory(), e.getMessage());
+                retryDelay = sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private long sleep(long delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        return Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                // Not interrupted, a put in progress is allowed to complete
+                thread.join(IDLE_WAIT_MS * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getForwardedCount() {
+        return forwardedCount;
+    }
+}
@@ -0,0 +1,119 @@
+package net.mahtabalam.message.producer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A text message waiting in the local spool, with its target queue and properties.
+ * Supported property types are Integer, Long, Boolean and String.
+ */
+public class SpooledMessage {
+
+    private static final byte TYPE_INT = 'I';
+    private static final byte TYPE_LONG = 'L';
+    private static final byte TYPE_BOOLEAN = 'B';
+    private static final byte TYPE_STRING = 'S';
+
+    private final String queueName;
+    private final String text;
+    private final Map<String, Object> properties;
+
+    public SpooledMessage(String queueName, String text, Map<String, Object> properties) {
+        this.queueName = queueName;
+        this.text = text;
+        this.properties = properties;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    public byte[] encode() {
+        byte[] queueBytes = queueName.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        int size = 4 + queueBytes.length + 4 + textBytes.length + 4;
+        byte[][] names = new byte[properties.size()][];
+        byte[][] values = new byte[properties.size()][];
+        int i = 0;
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            names[i] = property.getKey().getBytes(StandardCharsets.UTF_8);
+            Object value = property.getValue();
+            if (value instanceof String) {
+                values[i] = ((String) value).getBytes(StandardCharsets.UTF_8);
+                size += 4 + names[i].length + 1 + 4 + values[i].length;
+            } else if (value instanceof Integer) {
+                size += 4 + names[i].length + 1 + 4;
+            } else if (value instanceof Long) {
+                size += 4 + names[i].length + 1 + 8;
+            } else if (value instanceof Boolean) {
+                size += 4 + names[i].length + 1 + 1;
+            } else {
+                throw new IllegalArgumentException("Unsupported property type for " + property.getKey()
+                        + ": " + (value == null ? "null" : value.getClass().getName()));
+            }
+            i++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putBytes(buffer, queueBytes);
+        putBytes(buffer, textBytes);
+        buffer.putInt(properties.size());
+        i = 0;
+        for (Object value : properties.values()) {
+            putBytes(buffer, names[i]);
+            if (value instanceof String) {
+                buffer.put(TYPE_STRING);
+                putBytes(buffer, values[i]);
+            } else if (value instanceof Integer) {
+                buffer.put(TYPE_INT).putInt((Integer) value);
+            } else if (value instanceof Long) {
+                buffer.put(TYPE_LONG).putLong((Long) value);
+            } else {
+                buffer.put(TYPE_BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+            }
+            i++;
+        }
+        return buffer.array();
+    }
+
+    public static SpooledMessage decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        String queueName = getString(buffer);
+        String text = getString(buffer);
+        int propertyCount = buffer.getInt();
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (int i = 0; i < propertyCount; i++) {
+            String name = getString(buffer);
+            byte type = buffer.get();
+            switch (type) {
+                case TYPE_STRING -> properties.put(name, getString(buffer));
+                case TYPE_INT -> properties.put(name, buffer.getInt());
+                case TYPE_LONG -> properties.put(name, buffer.getLong());
+                case TYPE_BOOLEAN -> properties.put(name, buffer.get() != 0);
+                default -> throw new IllegalArgumentException("Unknown property type '" + (char) type + "' for " + name);
+            }
+        }
+        return new SpooledMessage(queueName, text, properties);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,119 @@
+package net.mahtabalam.message.producer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the time from launching a BatchProducer JVM to its first put.
+ *
+ * Every run starts a fresh JVM, with class data sharing off, with the JDK's
+ * default archive only, and with the application archive built by the appcds
+ * profile. The time is taken in this process from launch to the child's
+ * startup line, so it includes JVM boot. Without a reachable queue manager the
+ * child's first message goes to the spool instead, which still measures startup
+ * up to the failed connect. Children spool to a temporary directory that is
+ * removed afterwards, so benchmark messages are never forwarded later.
+ *
+ * Usage: StartupBenchmark JAR [CDS_ARCHIVE] [RUNS]
+ */
+public class StartupBenchmark {
+
+    private static final String STARTUP_MARKER = "Startup:";
+    private static final long RUN_TIMEOUT_MS = 60000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: StartupBenchmark JAR [CDS_ARCHIVE] [RUNS]");
+            return;
+        }
+        String jar = args[0];
+        Path archive = args.length > 1 ? Paths.get(args[1]) : null;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.println("\n╔═════════════════════════════════════════╗");
+        System.out.println("║     TIME TO FIRST PUT BENCHMARK         ║");
+        System.out.println("╚═════════════════════════════════════════╝\n");
+
+        List<String[]> variants = new ArrayList<>();
+        variants.add(new String[]{"no CDS", "-Xshare:off"});
+        variants.add(new String[]{"JDK CDS", "-Xshare:auto"});
+        if (archive != null && Files.exists(archive)) {
+            variants.add(new String[]{"AppCDS", "-XX:SharedArchiveFile=" + archive});
+        } else {
+            System.out.println("⚠ No CDS archive, build with -Pappcds to compare against it\n");
+        }
+
+        Path spoolDir = Files.createTempDirectory("mq-startup-spool");
+        List<long[]> results = new ArrayList<>();
+        try {
+            for (String[] variant : variants) {
+                long[] times = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    times[run] = launch(jar, variant[1], spoolDir);
+                    System.out.println("  " + variant[0] + " run " + (run + 1) + ": "
+                            + (times[run] >= 0 ? times[run] + " ms" : "no startup line"));
+                }
+                results.add(times);
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(spoolDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        System.out.println("\n=========================================");
+        System.out.println("TIME TO FIRST PUT (ms, " + runs + " runs)");
+        System.out.println("=========================================");
+        System.out.println(String.format("%-10s %8s %8s %8s", "variant", "min", "median", "max"));
+        for (int i = 0; i < variants.size(); i++) {
+            long[] sorted = Arrays.stream(results.get(i)).filter(time -> time >= 0).sorted().toArray();
+            if (sorted.length == 0) {
+                System.out.println(String.format("%-10s %8s", variants.get(i)[0], "failed"));
+                continue;
+            }
+            System.out.println(String.format("%-10s %8d %8d %8d", variants.get(i)[0],
+                    sorted[0], sorted[sorted.length / 2], sorted[sorted.length - 1]));
+        }
+        System.out.println("=========================================\n");
+    }
+
+    /**
+     * Run one BatchProducer with a single message
+     *
+     * @return milliseconds from launch to its startup line, -1 if it never printed one
+     */
+    private static long launch(String jar, String shareOption, Path spoolDir) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, shareOption, "-jar", jar, "1").redirectErrorStream(true);
+        // Environment overrides of producer.properties, the child exits without waiting for its spool
+        builder.environment().put("SPOOL_DIR", spoolDir.toString());
+        builder.environment().put("SPOOL_DRAIN_WAIT_MS", "0");
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long elapsed = -1;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (elapsed < 0 && line.contains(STARTUP_MARKER)) {
+                    elapsed = (System.nanoTime() - start) / 1_000_000;
+                }
+            }
+        }
+        if (!process.waitFor(RUN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,165 @@
+package net.mahtabalam.message.producer;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding values until their deadline.
+ *
+ * Level 0 has one slot per tick, each higher level one slot per full turn of the
+ * level below. A value goes into the lowest level whose turn covers its deadline
+ * and is moved down a level when the wheel reaches its slot, so add and expiry
+ * are O(1) however many values are pending. Deadlines beyond the top level wait
+ * in its last slot and are placed again each turn. Values expire up to one tick
+ * late, never early. Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private static final class Entry<T> {
+        final T value;
+        final long deadline;
+        Entry<T> next;
+
+        Entry(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] levelTicks;
+    private final Entry<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMs    resolution of the wheel
+     * @param wheelSize slots per level, a power of two
+     * @param levels    number of levels, the wheel spans tickMs * wheelSize^levels
+     * @param startMs   current time, earlier deadlines expire on the first advance
+     */
+    public TimingWheel(long tickMs, int wheelSize, int levels, long startMs) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.levelTicks = new long[levels];
+        this.slots = newSlots(levels, wheelSize);
+        long ticks = 1;
+        for (int level = 0; level < levels; level++) {
+            levelTicks[level] = ticks;
+            ticks *= wheelSize;
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    // Arrays of a generic type cannot be created, the slots only ever hold this wheel's Entry<T>
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[][] newSlots(int levels, int wheelSize) {
+        return (Entry<T>[][]) new Entry<?>[levels][wheelSize];
+    }
+
+    /**
+     * Add a value, one that is already due expires on the next advance past the current tick
+     */
+    public void add(T value, long deadlineMs) {
+        place(new Entry<>(value, deadlineMs));
+        size++;
+    }
+
+    private void place(Entry<T> entry) {
+        long deadlineTick = Math.max(entry.deadline / tickMs, currentTick);
+        int top = levelTicks.length - 1;
+        for (int level = 0; level <= top; level++) {
+            long slot = deadlineTick / levelTicks[level];
+            if (slot - currentTick / levelTicks[level] < wheelSize) {
+                push(level, slot, entry);
+                return;
+            }
+        }
+        // Beyond the top level, wait in the last slot of its turn and be placed again from there
+        push(top, currentTick / levelTicks[top] + wheelSize - 1, entry);
+    }
+
+    private void push(int level, long slot, Entry<T> entry) {
+        int index = (int) (slot & (wheelSize - 1));
+        entry.next = slots[level][index];
+        slots[level][index] = entry;
+    }
+
+    /**
+     * Move the wheel to nowMs and hand every value whose deadline has passed to expired
+     *
+     * @return number of values expired
+     */
+    public int advance(long nowMs, Consumer<T> expired) {
+        int count = 0;
+        long targetTick = nowMs / tickMs;
+        if (size == 0) {
+            // Nothing to cascade, skip the empty ticks
+            currentTick = Math.max(currentTick, targetTick);
+            return 0;
+        }
+        while (currentTick < targetTick) {
+            // Bring the values of this tick down from higher levels, top first
+            for (int level = levelTicks.length - 1; level > 0; level--) {
+                if (currentTick % levelTicks[level] == 0) {
+                    Entry<T> entry = take(level);
+                    while (entry != null) {
+                        Entry<T> next = entry.next;
+                        place(entry);
+                        entry = next;
+                    }
+                }
+            }
+            Entry<T> entry = take(0);
+            // Move on first, so values added by the callback never land in the slot just taken
+            currentTick++;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                size--;
+                count++;
+                expired.accept(entry.value);
+                entry = next;
+            }
+        }
+        return count;
+    }
+
+    private int index(int level) {
+        return (int) ((currentTick / levelTicks[level]) & (wheelSize - 1));
+    }
+
+    private Entry<T> take(int level) {
+        int index = index(level);
+        Entry<T> entry = slots[level][index];
+        slots[level][index] = null;
+        return entry;
+    }
+
+    /**
+     * Visit every pending value, in no particular order
+     */
+    public void forEach(Consumer<T> action) {
+        for (Entry<T>[] level : slots) {
+            for (Entry<T> entry : level) {
+                for (; entry != null; entry = entry.next) {
+                    action.accept(entry.value);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+}
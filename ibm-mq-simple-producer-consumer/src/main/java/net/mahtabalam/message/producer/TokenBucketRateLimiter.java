@@ -0,0 +1,120 @@
+package net.mahtabalam.message.producer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket that caps the put rate.
+ *
+ * Instead of a token count the bucket keeps the time at which the next
+ * permit becomes free, updated with a single compare-and-set. A caller
+ * reserves the next slot and then parks until it is due, so idle periods
+ * allow a burst of up to burstSize permits but never more than that.
+ */
+public class TokenBucketRateLimiter {
+
+    private final AtomicLong nextFreeNanos;
+    private final int burstSize;
+    private volatile long intervalNanos;
+
+    /**
+     * @param permitsPerSecond sustained rate, 0 or less means unlimited
+     * @param burstSize        permits that may be taken back to back after an idle period
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burstSize) {
+        if (burstSize < 1) {
+            throw new IllegalArgumentException("Burst size must be at least 1: " + burstSize);
+        }
+        this.burstSize = burstSize;
+        this.nextFreeNanos = new AtomicLong(System.nanoTime());
+        setRate(permitsPerSecond);
+    }
+
+    /**
+     * Block until a permit is available
+     *
+     * @return nanoseconds spent waiting
+     */
+    public long acquire() {
+        long interval = intervalNanos;
+        if (interval == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long due;
+        while (true) {
+            long next = nextFreeNanos.get();
+            long reserved = Math.max(next, now) + interval;
+            if (nextFreeNanos.compareAndSet(next, reserved)) {
+                due = reserved - interval * burstSize;
+                break;
+            }
+        }
+        long wait = due - now;
+        if (wait <= 0) {
+            return 0;
+        }
+        long remaining = wait;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            remaining = due - System.nanoTime();
+        }
+        return wait;
+    }
+
+    /**
+     * Take a permit only if one is available right now
+     */
+    public boolean tryAcquire() {
+        long interval = intervalNanos;
+        if (interval == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long next = nextFreeNanos.get();
+            long reserved = Math.max(next, now) + interval;
+            if (reserved - interval * burstSize > now) {
+                return false;
+            }
+            if (nextFreeNanos.compareAndSet(next, reserved)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop the permits saved up while idle, the next one is due one interval from now
+     */
+    public void clearBurst() {
+        long interval = intervalNanos;
+        if (interval == 0) {
+            return;
+        }
+        long earliest = System.nanoTime() + interval * burstSize;
+        nextFreeNanos.accumulateAndGet(earliest, Math::max);
+    }
+
+    /**
+     * Change the sustained rate, takes effect for the next permit
+     */
+    public void setRate(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (1_000_000_000L / permitsPerSecond) : 0;
+    }
+
+    /**
+     * Permits per second, or 0 if unlimited
+     */
+    public double getRate() {
+        long interval = intervalNanos;
+        return interval == 0 ? 0 : 1_000_000_000.0 / interval;
+    }
+
+    public int getBurstSize() {
+        return burstSize;
+    }
+}
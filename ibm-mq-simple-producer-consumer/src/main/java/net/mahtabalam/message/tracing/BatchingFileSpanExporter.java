@@ -0,0 +1,172 @@
+package net.mahtabalam.message.tracing;
+
+import net.mahtabalam.message.logging.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends spans to a file as JSON lines, one line per batch, shaped like the
+ * resourceSpans of an OTLP/JSON export request so a collector can ingest the file.
+ *
+ * export() only offers the span to a bounded queue. A background thread writes
+ * a batch when batchSize spans are waiting or flushIntervalMs has passed. When
+ * the queue is full, spans are dropped rather than slowing down messaging.
+ */
+public class BatchingFileSpanExporter implements SpanExporter, Runnable {
+
+    private static final Logger LOG = Logger.getLogger(BatchingFileSpanExporter.class);
+    private static final int QUEUE_CAPACITY_BATCHES = 16;
+
+    private final Path file;
+    private final String serviceName;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<Span> queue;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long exportedCount;
+
+    public BatchingFileSpanExporter(Path file, String serviceName, int batchSize, long flushIntervalMs) {
+        this.file = file;
+        this.serviceName = serviceName;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(batchSize * QUEUE_CAPACITY_BATCHES);
+        this.thread = new Thread(this, "mq-span-exporter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void export(Span span) {
+        if (!queue.offer(span)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Span> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Span first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                droppedCount.addAndGet(batch.size());
+                LOG.error("✗ Error writing spans to {}: {}", file, e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<Span> batch) throws IOException {
+        StringBuilder json = new StringBuilder(256 * batch.size());
+        json.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        appendAttribute(json, "service.name", serviceName);
+        json.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"net.mahtabalam.message\"},\"spans\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendSpan(json, batch.get(i));
+        }
+        json.append("]}]}]}\n");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(json.toString());
+        }
+        exportedCount += batch.size();
+    }
+
+    private static void appendSpan(StringBuilder json, Span span) {
+        json.append("{\"traceId\":\"").append(span.getContext().getTraceId())
+                .append("\",\"spanId\":\"").append(span.getContext().getSpanId()).append('"');
+        if (span.getParentSpanId() != null) {
+            json.append(",\"parentSpanId\":\"").append(span.getParentSpanId()).append('"');
+        }
+        // OTLP span kinds: 4 is PRODUCER, 5 is CONSUMER
+        json.append(",\"name\":\"").append(escape(span.getName()))
+                .append("\",\"kind\":").append(span.getKind() == Span.Kind.PRODUCER ? 4 : 5)
+                .append(",\"startTimeUnixNano\":\"").append(span.getStartEpochNanos())
+                .append("\",\"endTimeUnixNano\":\"").append(span.getEndEpochNanos())
+                .append("\",\"attributes\":[");
+        boolean first = true;
+        for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            appendAttribute(json, attribute.getKey(), attribute.getValue());
+            first = false;
+        }
+        json.append(']');
+        if (span.getError() != null) {
+            json.append(",\"status\":{\"code\":2,\"message\":\"").append(escape(span.getError())).append("\"}");
+        }
+        json.append('}');
+    }
+
+    private static void appendAttribute(StringBuilder json, String key, Object value) {
+        json.append("{\"key\":\"").append(escape(key)).append("\",\"value\":{");
+        if (value instanceof Integer || value instanceof Long) {
+            json.append("\"intValue\":\"").append(value).append("\"}}");
+        } else if (value instanceof Boolean) {
+            json.append("\"boolValue\":").append(value).append("}}");
+        } else {
+            json.append("\"stringValue\":\"").append(escape(String.valueOf(value))).append("\"}}");
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Write the spans still queued and stop the background thread
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(flushIntervalMs * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("✓ Spans exported to {}: {}, dropped: {}", file, exportedCount, droppedCount.get());
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,11 @@
+package net.mahtabalam.message.tracing;
+
+/**
+ * Receives finished spans. export() is called on the messaging thread and must not block.
+ */
+public interface SpanExporter {
+
+    void export(Span span);
+
+    void close();
+}
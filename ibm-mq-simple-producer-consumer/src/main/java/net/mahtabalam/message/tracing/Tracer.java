@@ -0,0 +1,85 @@
+package net.mahtabalam.message.tracing;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts producer and consumer spans and carries their context in message properties.
+ *
+ * Only sampled traces are stamped into messages: an unsampled send allocates
+ * no span and sets no property, and a consumer only continues traces whose
+ * traceparent says sampled. So tracing costs one random number on the producer
+ * and one property lookup on the consumer for messages that are not sampled.
+ */
+public class Tracer {
+
+    public static final String TRACEPARENT_PROPERTY = "traceparent";
+    /**
+     * Producer span start in epoch microseconds, the consumer derives the time spent on the queue from it
+     */
+    public static final String SEND_TIME_PROPERTY = "TraceSendTimeMicros";
+
+    private final TraceSampler sampler;
+    private final SpanExporter exporter;
+
+    public Tracer(TraceSampler sampler, SpanExporter exporter) {
+        this.sampler = sampler;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Start a span for sending the message and stamp its context into the message properties
+     *
+     * @return the span, or null if the trace is not sampled
+     */
+    public Span startProducerSpan(Message message, String destination) throws JMSException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long traceIdLow = random.nextLong();
+        if (!sampler.shouldSample(traceIdLow)) {
+            return null;
+        }
+        TraceContext context = new TraceContext(random.nextLong(), traceIdLow, nonZero(random.nextLong()), true);
+        Span span = new Span(destination + " send", Span.Kind.PRODUCER, context, null, exporter);
+        span.setAttribute("messaging.system", "ibmmq");
+        span.setAttribute("messaging.destination.name", destination);
+        message.setStringProperty(TRACEPARENT_PROPERTY, context.toTraceparent());
+        message.setLongProperty(SEND_TIME_PROPERTY, span.getStartEpochNanos() / 1000);
+        return span;
+    }
+
+    /**
+     * Continue the producer's trace for processing a received message
+     *
+     * @return the span, or null if the message carries no sampled trace
+     */
+    public Span startConsumerSpan(Message message, String destination) throws JMSException {
+        TraceContext parent = TraceContext.parse(message.getStringProperty(TRACEPARENT_PROPERTY));
+        if (parent == null || !parent.isSampled()) {
+            return null;
+        }
+        TraceContext context = new TraceContext(parent.getTraceIdHigh(), parent.getTraceIdLow(),
+                nonZero(ThreadLocalRandom.current().nextLong()), true);
+        Span span = new Span(destination + " process", Span.Kind.CONSUMER, context, parent.getSpanId(), exporter);
+        span.setAttribute("messaging.system", "ibmmq");
+        span.setAttribute("messaging.destination.name", destination);
+        span.setAttribute("messaging.message.id", message.getJMSMessageID());
+        if (message.propertyExists(SEND_TIME_PROPERTY)) {
+            long queuedMicros = span.getStartEpochNanos() / 1000 - message.getLongProperty(SEND_TIME_PROPERTY);
+            span.setAttribute("messaging.queue_time_us", Math.max(0, queuedMicros));
+        }
+        return span;
+    }
+
+    private static long nonZero(long id) {
+        return id == 0 ? 1 : id;
+    }
+
+    public TraceSampler getSampler() {
+        return sampler;
+    }
+
+    public void close() {
+        exporter.close();
+    }
+}
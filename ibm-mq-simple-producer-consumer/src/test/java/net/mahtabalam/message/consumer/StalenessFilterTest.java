@@ -0,0 +1,134 @@
+package net.mahtabalam.message.consumer;
+
+import net.mahtabalam.message.logging.AsyncAppender;
+import net.mahtabalam.message.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StalenessFilterTest {
+
+    private static final long MAX_AGE_MS = 60_000;
+
+    private final List<Object[]> diverted = Collections.synchronizedList(new ArrayList<>());
+    private final ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+    private final AsyncAppender appender = new AsyncAppender(new PrintStream(new ByteArrayOutputStream()),
+            new PrintStream(warnings, true, StandardCharsets.UTF_8), 1024);
+
+    @Test
+    void messageWithoutExpiryOrMaxAgeIsNeverStale() throws JMSException {
+        StalenessFilter filter = filter(0, null, 0);
+
+        assertFalse(filter.filter(message(0, 1)));
+        assertFalse(filter.filter(message(0, 0)));
+        assertEquals(0, filter.getStaleCount());
+    }
+
+    @Test
+    void expiredMessageIsDiscarded() throws JMSException {
+        StalenessFilter filter = filter(MAX_AGE_MS, null, 0);
+        long now = System.currentTimeMillis();
+
+        assertTrue(filter.filter(message(now - 1, now)));
+
+        assertEquals(1, filter.getExpiredCount());
+        assertEquals(0, filter.getTooOldCount());
+        assertEquals(0, filter.getDivertedCount());
+    }
+
+    @Test
+    void messageWithinExpiryAndMaxAgeIsKept() throws JMSException {
+        StalenessFilter filter = filter(MAX_AGE_MS, null, 0);
+        long now = System.currentTimeMillis();
+
+        assertFalse(filter.filter(message(now + 10_000, now - 1000)));
+        // Margin left on the age, no expiry set
+        assertFalse(filter.filter(message(0, now - MAX_AGE_MS + 10_000)));
+        // A missing timestamp cannot be aged
+        assertFalse(filter.filter(message(0, 0)));
+        assertEquals(0, filter.getStaleCount());
+    }
+
+    @Test
+    void messageOlderThanMaxAgeIsDivertedWithoutExpiry() throws JMSException {
+        StalenessFilter filter = filter(MAX_AGE_MS, "STALE.QUEUE", 0);
+        Message message = message(0, System.currentTimeMillis() - MAX_AGE_MS - 1000);
+
+        assertTrue(filter.filter(message));
+
+        assertEquals(1, filter.getTooOldCount());
+        assertEquals(1, filter.getDivertedCount());
+        assertEquals(1, diverted.size());
+        assertSame(message, diverted.get(0)[0]);
+        assertEquals((long) Message.DEFAULT_TIME_TO_LIVE, diverted.get(0)[3]);
+    }
+
+    @Test
+    void staleSkipsAreLoggedOncePerInterval() throws Exception {
+        StalenessFilter filter = filter(0, null, 300);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.filter(message(now - 1, now)));
+        }
+        Thread.sleep(400);
+        assertTrue(filter.filter(message(now - 1, now)));
+        appender.close();
+
+        String[] lines = warnings.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length, String.join("\n", lines));
+        assertTrue(lines[0].contains("Skipped stale message"), lines[0]);
+        assertTrue(lines[1].contains("(99 similar messages suppressed)"), lines[1]);
+        assertEquals(101, filter.getExpiredCount());
+    }
+
+    private StalenessFilter filter(long maxAgeMs, String divertQueueName, long logIntervalMs) throws JMSException {
+        Logger staleLog = Logger.getLogger(StalenessFilter.class, appender).throttled(logIntervalMs);
+        StalenessFilter filter = new StalenessFilter(maxAgeMs, divertQueueName, staleLog);
+        filter.initialize(proxy(Session.class, (method, args) -> switch (method.getName()) {
+            case "createQueue" -> proxy(Queue.class, (m, a) -> null);
+            case "createProducer" -> proxy(MessageProducer.class, (m, a) -> {
+                if (m.getName().equals("send")) {
+                    diverted.add(a);
+                }
+                return null;
+            });
+            default -> null;
+        }));
+        return filter;
+    }
+
+    private static Message message(long expiration, long timestamp) {
+        Map<String, Object> fields = Map.of("getJMSExpiration", expiration, "getJMSTimestamp", timestamp,
+                "getJMSMessageID", "ID:1", "getJMSPriority", Message.DEFAULT_PRIORITY,
+                "getJMSDeliveryMode", Message.DEFAULT_DELIVERY_MODE);
+        return proxy(Message.class, (method, args) -> fields.get(method.getName()));
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(StalenessFilterTest.class.getClassLoader(), new Class<?>[]{type},
+                (self, method, args) -> handler.invoke(method, args)));
+    }
+}
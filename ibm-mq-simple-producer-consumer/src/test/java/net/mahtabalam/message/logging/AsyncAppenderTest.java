@@ -0,0 +1,54 @@
+package net.mahtabalam.message.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncAppenderTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final AsyncAppender appender = new AsyncAppender(new PrintStream(out, true, StandardCharsets.UTF_8),
+            new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8), 16);
+
+    @Test
+    void mutableArgumentIsLoggedWithItsValueAtTheCall() {
+        StringBuilder state = new StringBuilder("before");
+        appender.append(Level.INFO, "test", "state {}", state, null, null, 1, null, 0);
+        state.setLength(0);
+        state.append("after");
+
+        String output = close();
+        assertTrue(output.contains("state before"), output);
+    }
+
+    @Test
+    void mutableVarargsArgumentIsLoggedWithItsValueAtTheCall() {
+        StringBuilder state = new StringBuilder("before");
+        Object[] args = {"a", 1, state};
+        appender.append(Level.INFO, "test", "{} {} {}", null, null, args, 3, null, 0);
+        state.append("-after");
+
+        String output = close();
+        assertTrue(output.contains("a 1 before\n"), output);
+        // The caller's array is left untouched
+        assertSame(state, args[2]);
+    }
+
+    @Test
+    void outputUsesTheStreamCharset() {
+        appender.append(Level.INFO, "test", "✓ {}", "é", null, null, 1, null, 0);
+
+        String output = close();
+        assertTrue(output.contains("✓ é"), output);
+    }
+
+    private String close() {
+        appender.close();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package net.mahtabalam.message.producer;
+
+import com.ibm.mq.MQException;
+import com.ibm.mq.constants.MQConstants;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveFlowControllerTest {
+
+    private static final long ONE_MS = 1_000_000L;
+
+    private final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1);
+
+    @Test
+    void queueFullHalvesTheRateOncePerCooldown() {
+        AdaptiveFlowController controller = new AdaptiveFlowController(limiter, 10, 1000);
+
+        controller.onQueueFull();
+        controller.onQueueFull();
+
+        assertEquals(500, controller.getCurrentRate(), 0.001);
+        assertEquals(500, limiter.getRate(), 0.001);
+        assertEquals(2, controller.getQueueFullCount());
+        assertEquals(1, controller.getDecreaseCount());
+    }
+
+    @Test
+    void decreaseTakesEffectForTheNextPermit() {
+        TokenBucketRateLimiter bursty = new TokenBucketRateLimiter(0, 100);
+        AdaptiveFlowController controller = new AdaptiveFlowController(bursty, 1, 10);
+
+        controller.onQueueFull();
+
+        // Permits saved up at the old rate are gone
+        assertFalse(bursty.tryAcquire());
+    }
+
+    @Test
+    void rateNeverDropsBelowMinRate() {
+        AdaptiveFlowController controller = new AdaptiveFlowController(limiter, 800, 1000);
+
+        controller.onQueueFull();
+
+        assertEquals(800, controller.getCurrentRate(), 0.001);
+    }
+
+    @Test
+    void latencySpikeDecreasesTheRate() {
+        AdaptiveFlowController controller = new AdaptiveFlowController(limiter, 10, 1000);
+        for (int i = 0; i < 10; i++) {
+            controller.onSuccess(ONE_MS);
+        }
+        assertEquals(1000, controller.getCurrentRate(), 0.001);
+
+        controller.onSuccess(10 * ONE_MS);
+
+        assertEquals(500, controller.getCurrentRate(), 0.001);
+        assertEquals(0, controller.getQueueFullCount());
+    }
+
+    @Test
+    void fastPutsIncreaseTheRateAfterTheInterval() throws InterruptedException {
+        AdaptiveFlowController controller = new AdaptiveFlowController(limiter, 10, 1000);
+        controller.onQueueFull();
+
+        controller.onSuccess(ONE_MS);
+        assertEquals(500, controller.getCurrentRate(), 0.001);
+        Thread.sleep(1100);
+        controller.onSuccess(ONE_MS);
+
+        // Additive step of 5% of the maximum rate
+        assertEquals(550, controller.getCurrentRate(), 0.001);
+    }
+
+    @Test
+    void lowerMaxRateCapsTheCurrentRate() {
+        AdaptiveFlowController controller = new AdaptiveFlowController(limiter, 10, 1000);
+
+        controller.setMaxRate(200);
+
+        assertEquals(200, controller.getCurrentRate(), 0.001);
+        assertEquals(200, limiter.getRate(), 0.001);
+    }
+
+    @Test
+    void queueFullIsRecognisedFromTheLinkedException() {
+        JMSException full = new JMSException("put failed");
+        full.setLinkedException(new MQException(MQConstants.MQCC_FAILED, MQConstants.MQRC_Q_FULL, null));
+        JMSException other = new JMSException("put failed");
+        other.setLinkedException(new MQException(MQConstants.MQCC_FAILED, MQConstants.MQRC_NOT_AUTHORIZED, null));
+
+        assertTrue(AdaptiveFlowController.isQueueFull(full));
+        assertFalse(AdaptiveFlowController.isQueueFull(other));
+        assertFalse(AdaptiveFlowController.isQueueFull(new JMSException("put failed")));
+    }
+}
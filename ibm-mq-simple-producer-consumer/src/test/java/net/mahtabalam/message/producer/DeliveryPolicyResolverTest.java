@@ -0,0 +1,44 @@
+package net.mahtabalam.message.producer;
+
+import org.junit.jupiter.api.Test;
+
+import javax.jms.DeliveryMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeliveryPolicyResolverTest {
+
+    private final DeliveryPolicy orders = DeliveryPolicy.persistent().withPriority(7);
+    private final DeliveryPolicy telemetry = DeliveryPolicy.nonPersistentAsync(60_000);
+
+    @Test
+    void messageTypePolicyWinsOverQueuePolicy() {
+        DeliveryPolicyResolver resolver = new DeliveryPolicyResolver()
+                .forQueue("TELEMETRY.QUEUE", telemetry)
+                .forMessageType("ORDER", orders);
+
+        assertSame(orders, resolver.resolve("TELEMETRY.QUEUE", "ORDER"));
+        assertSame(telemetry, resolver.resolve("TELEMETRY.QUEUE", "HEARTBEAT"));
+        assertSame(telemetry, resolver.resolve("TELEMETRY.QUEUE", null));
+    }
+
+    @Test
+    void unknownQueueFallsBackToDefaultPolicy() {
+        DeliveryPolicyResolver resolver = new DeliveryPolicyResolver().forQueue("TELEMETRY.QUEUE", telemetry);
+
+        DeliveryPolicy policy = resolver.resolve("FIRST.TEST.QUEUE");
+
+        assertEquals(DeliveryMode.PERSISTENT, policy.getDeliveryMode());
+        resolver.setDefaultPolicy(telemetry);
+        assertSame(telemetry, resolver.resolve("FIRST.TEST.QUEUE", "ORDER"));
+    }
+
+    @Test
+    void asyncPutRequiresNonPersistentDelivery() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DeliveryPolicy("BAD", DeliveryMode.PERSISTENT, true, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> DeliveryPolicy.persistent().withPriority(10));
+    }
+}
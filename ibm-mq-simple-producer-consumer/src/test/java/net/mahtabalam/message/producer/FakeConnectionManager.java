@@ -0,0 +1,117 @@
+package net.mahtabalam.message.producer;
+
+import com.ibm.mq.MQException;
+import com.ibm.mq.constants.MQConstants;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection manager whose session records sent messages instead of talking to a
+ * queue manager. connect() waits until the queue manager is made reachable, the
+ * next queueFullPuts sends fail with MQRC_Q_FULL.
+ */
+class FakeConnectionManager extends MQConnectionManager {
+
+    final List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger connectAttempts = new AtomicInteger();
+    final AtomicInteger queueFullPuts = new AtomicInteger();
+    final AtomicInteger queueFullCount = new AtomicInteger();
+    private final CountDownLatch reachable = new CountDownLatch(1);
+    private volatile Session session;
+
+    FakeConnectionManager() {
+        super("localhost", 1414, "DEV.APP.SVRCONN", "QM1");
+    }
+
+    void makeReachable() {
+        reachable.countDown();
+    }
+
+    @Override
+    public void connect() throws JMSException {
+        connectAttempts.incrementAndGet();
+        try {
+            reachable.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while connecting");
+        }
+        session = proxy(Session.class, (method, args) -> switch (method.getName()) {
+            case "createQueue" -> proxy(Queue.class, (m, a) -> m.getName().equals("getQueueName") ? args[0] : null);
+            case "createProducer" -> proxy(MessageProducer.class, (m, a) -> {
+                if (m.getName().equals("send")) {
+                    if (queueFullPuts.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        queueFullCount.incrementAndGet();
+                        JMSException e = new JMSException("Queue full");
+                        e.setLinkedException(new MQException(MQConstants.MQCC_FAILED, MQConstants.MQRC_Q_FULL, null));
+                        throw e;
+                    }
+                    sent.add((Message) a[0]);
+                }
+                return null;
+            });
+            case "createTextMessage" -> textMessage();
+            default -> null;
+        });
+    }
+
+    @Override
+    public boolean isConnected() {
+        return session != null;
+    }
+
+    @Override
+    public Session getSession() {
+        Session current = session;
+        if (current == null) {
+            throw new IllegalStateException("Not connected. Call connect() first.");
+        }
+        return current;
+    }
+
+    @Override
+    public void disconnect() {
+        session = null;
+    }
+
+    private static TextMessage textMessage() {
+        Map<String, Object> fields = new HashMap<>();
+        return proxy(TextMessage.class, (method, args) -> switch (method.getName()) {
+            case "setText" -> fields.put("text", args[0]);
+            case "getText" -> fields.get("text");
+            case "setObjectProperty" -> fields.put(args[0].toString(), args[1]);
+            case "getObjectProperty" -> fields.get(args[0].toString());
+            default -> null;
+        });
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(FakeConnectionManager.class.getClassLoader(), new Class<?>[]{type},
+                (self, method, args) -> {
+                    Object result = handler.invoke(method, args);
+                    Class<?> returnType = method.getReturnType();
+                    if (result == null && returnType.isPrimitive() && returnType != void.class) {
+                        return returnType == boolean.class ? false : returnType == long.class ? 0L : 0;
+                    }
+                    return returnType == void.class ? null : result;
+                }));
+    }
+}
@@ -0,0 +1,116 @@
+package net.mahtabalam.message.producer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MQMessageSenderTest {
+
+    @TempDir
+    Path spoolDirectory;
+
+    private MQMessageSender sender;
+
+    @AfterEach
+    void close() {
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Test
+    void producersSpoolWhileTheForwarderIsReconnecting() throws Exception {
+        FakeConnectionManager connectionManager = new FakeConnectionManager();
+        MessageSpool spool = spool();
+        sender = new MQMessageSender(connectionManager, "FIRST.TEST.QUEUE");
+        sender.enableStoreAndForward(spool, 10);
+        sender.initialize();
+
+        sender.sendMessages(1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connectionManager.connectAttempts.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // The forwarder is stuck in connect(), producers must not wait for it
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> sender.sendMessages(20));
+        assertEquals(1, connectionManager.connectAttempts.get());
+        assertEquals(21, spool.getAppendedCount());
+
+        connectionManager.makeReachable();
+        assertTrue(sender.awaitSpoolDrained(5000));
+        assertEquals(21, connectionManager.sent.size());
+        assertEquals(1, connectionManager.sent.get(0).getObjectProperty("MessageNumber"));
+    }
+
+    @Test
+    void directPutsResumeOnceTheSpoolIsDrained() throws Exception {
+        FakeConnectionManager connectionManager = new FakeConnectionManager();
+        MessageSpool spool = spool();
+        sender = new MQMessageSender(connectionManager, "FIRST.TEST.QUEUE");
+        sender.enableStoreAndForward(spool, 10);
+        sender.initialize();
+        sender.sendMessages(3);
+
+        connectionManager.makeReachable();
+        assertTrue(sender.awaitSpoolDrained(5000));
+        // The forwarder reopens direct puts on its next idle check, until then sends are spooled
+        long deadline = System.currentTimeMillis() + 5000;
+        long spooled;
+        do {
+            spooled = spool.getAppendedCount();
+            sender.sendMessages(1);
+            assertTrue(sender.awaitSpoolDrained(5000));
+        } while (spool.getAppendedCount() > spooled && System.currentTimeMillis() < deadline);
+        sender.sendMessages(5);
+
+        assertEquals(spooled, spool.getAppendedCount());
+        assertTrue(sender.awaitSpoolDrained(5000));
+        assertEquals(spooled + 6, connectionManager.sent.size());
+    }
+
+    @Test
+    void queueFullBackoffDoesNotHoldOtherProducers() throws Exception {
+        FakeConnectionManager connectionManager = new FakeConnectionManager();
+        connectionManager.makeReachable();
+        connectionManager.connect();
+        sender = new MQMessageSender(connectionManager, "FIRST.TEST.QUEUE");
+        sender.setFlowController(new AdaptiveFlowController(new TokenBucketRateLimiter(0, 100), 1000, 100_000));
+        sender.initialize();
+        connectionManager.queueFullPuts.set(1);
+
+        Thread slow = new Thread(() -> {
+            try {
+                sender.sendMessages(1, "SLOW");
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        slow.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connectionManager.queueFullCount.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        // Put while the first producer waits for room on the queue
+        sender.sendMessages(1, "FAST");
+        slow.join(5000);
+
+        assertEquals(2, connectionManager.sent.size());
+        assertEquals("FAST", connectionManager.sent.get(0).getObjectProperty("MessageType"));
+        assertEquals("SLOW", connectionManager.sent.get(1).getObjectProperty("MessageType"));
+    }
+
+    private MessageSpool spool() throws IOException {
+        return new MessageSpool(spoolDirectory, 64 * 1024, MessageSpool.FsyncPolicy.OS_DEFAULT, 1);
+    }
+}
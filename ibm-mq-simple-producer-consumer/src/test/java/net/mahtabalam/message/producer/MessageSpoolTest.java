@@ -0,0 +1,141 @@
+package net.mahtabalam.message.producer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageSpoolTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private static SpooledMessage message(int number) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("MessageNumber", number);
+        properties.put("MessageType", "TEST");
+        return new SpooledMessage("FIRST.TEST.QUEUE", "Message #" + number, properties);
+    }
+
+    private static List<String> texts(MessageSpool.Batch batch) {
+        return batch.getMessages().stream().map(SpooledMessage::getText).toList();
+    }
+
+    @Test
+    void spooledMessageSurvivesEncoding() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("Count", 42);
+        properties.put("Sequence", 1L << 40);
+        properties.put("Urgent", true);
+        properties.put("Region", "EMEA – süd");
+        SpooledMessage original = new SpooledMessage("FIRST.TEST.QUEUE", "Grüße 👋", properties);
+
+        SpooledMessage decoded = SpooledMessage.decode(original.encode());
+
+        assertEquals("FIRST.TEST.QUEUE", decoded.getQueueName());
+        assertEquals("Grüße 👋", decoded.getText());
+        assertEquals(properties, decoded.getProperties());
+    }
+
+    @Test
+    void batchIsReadAgainUntilCommitted() throws IOException {
+        MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, MessageSpool.FsyncPolicy.OS_DEFAULT, 1);
+        for (int i = 1; i <= 3; i++) {
+            spool.append(message(i));
+        }
+
+        MessageSpool.Batch first = spool.readBatch(2);
+        assertEquals(List.of("Message #1", "Message #2"), texts(first));
+        assertEquals(List.of("Message #1", "Message #2"), texts(spool.readBatch(2)));
+
+        spool.commit(first);
+        assertEquals(List.of("Message #3"), texts(spool.readBatch(2)));
+        assertFalse(spool.isEmpty());
+        spool.commit(spool.readBatch(2));
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    void reopenedSpoolResumesAtTheCheckpoint() throws IOException {
+        MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, MessageSpool.FsyncPolicy.EVERY_RECORD, 1);
+        for (int i = 1; i <= 5; i++) {
+            spool.append(message(i));
+        }
+        spool.commit(spool.readBatch(2));
+        spool.close();
+
+        MessageSpool reopened = new MessageSpool(directory, SEGMENT_SIZE, MessageSpool.FsyncPolicy.EVERY_RECORD, 1);
+        reopened.append(message(6));
+
+        assertEquals(List.of("Message #3", "Message #4", "Message #5", "Message #6"),
+                texts(reopened.readBatch(10)));
+    }
+
+    @Test
+    void tornRecordIsDroppedOnRecovery() throws IOException {
+        MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, MessageSpool.FsyncPolicy.EVERY_RECORD, 1);
+        spool.append(message(1));
+        spool.append(message(2));
+        spool.close();
+
+        // Simulate a crash half way through the second record: its payload no longer matches the CRC
+        int secondPayload = 8 + message(1).encode().length + 8;
+        try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f, 0x7f, 0x7f}), secondPayload);
+        }
+
+        MessageSpool reopened = new MessageSpool(directory, SEGMENT_SIZE, MessageSpool.FsyncPolicy.EVERY_RECORD, 1);
+        assertEquals(List.of("Message #1"), texts(reopened.readBatch(10)));
+
+        // The next append overwrites the torn record
+        reopened.append(message(3));
+        assertEquals(List.of("Message #1", "Message #3"), texts(reopened.readBatch(10)));
+    }
+
+    @Test
+    void forwardedSegmentsAreDeleted() throws IOException {
+        MessageSpool spool = new MessageSpool(directory, 256, MessageSpool.FsyncPolicy.OS_DEFAULT, 1);
+        for (int i = 1; i <= 20; i++) {
+            spool.append(message(i));
+        }
+        assertTrue(segmentCount() > 2);
+
+        int forwarded = 0;
+        while (!spool.isEmpty()) {
+            MessageSpool.Batch batch = spool.readBatch(7);
+            forwarded += batch.getMessages().size();
+            spool.commit(batch);
+        }
+        spool.readBatch(7);
+
+        assertEquals(20, forwarded);
+        assertEquals(1, segmentCount());
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package net.mahtabalam.message.producer;
+
+import net.mahtabalam.message.consumer.QueueExporter;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exports messages with QueueExporter into memory and replays them with QueueImporter
+ */
+class QueueImporterTest {
+
+    // Small blocks, so the archive holds several blocks and one record larger than a block
+    private static final int BLOCK_SIZE = 256;
+    private static final int BATCH_SIZE = 2;
+
+    private final ArchiveConnectionManager connectionManager = new ArchiveConnectionManager();
+    private final QueueImporter importer = new QueueImporter(new MQMessageSender(connectionManager, "TARGET"),
+            BATCH_SIZE);
+
+    @Test
+    void bodiesAndHeadersSurviveTheRoundTrip() throws Exception {
+        long expiration = System.currentTimeMillis() + 60_000;
+        byte[] largeBody = new byte[BLOCK_SIZE * 3];
+        for (int i = 0; i < largeBody.length; i++) {
+            largeBody[i] = (byte) i;
+        }
+        FakeMessage text = FakeMessage.text("héllo ✓");
+        text.fields.put("JMSCorrelationID", "corr-1");
+        text.fields.put("JMSType", "order");
+        text.fields.put("JMSPriority", 7);
+        text.fields.put("JMSDeliveryMode", DeliveryMode.NON_PERSISTENT);
+        text.fields.put("JMSExpiration", expiration);
+
+        long imported = roundTrip(text, FakeMessage.text(""), FakeMessage.bytes(new byte[]{1, 2, 3}),
+                FakeMessage.bytes(new byte[0]), FakeMessage.bytes(largeBody), FakeMessage.plain());
+
+        assertEquals(6, imported);
+        List<Put> puts = connectionManager.puts;
+        assertEquals("héllo ✓", ((TextMessage) puts.get(0).message).getText());
+        assertEquals("corr-1", puts.get(0).message.getJMSCorrelationID());
+        assertEquals("order", puts.get(0).message.getJMSType());
+        assertEquals(7, puts.get(0).priority);
+        assertEquals(DeliveryMode.NON_PERSISTENT, puts.get(0).deliveryMode);
+        assertTrue(puts.get(0).timeToLive > 0 && puts.get(0).timeToLive <= 60_000, "ttl " + puts.get(0).timeToLive);
+
+        assertEquals("", ((TextMessage) puts.get(1).message).getText());
+        assertNull(puts.get(1).message.getJMSCorrelationID());
+        assertEquals(0, puts.get(1).timeToLive);
+        assertArrayEquals(new byte[]{1, 2, 3}, body(puts.get(2).message));
+        assertArrayEquals(new byte[0], body(puts.get(3).message));
+        assertArrayEquals(largeBody, body(puts.get(4).message));
+        assertFalse(puts.get(5).message instanceof TextMessage || puts.get(5).message instanceof BytesMessage);
+        // Batches of two plus the final commit
+        assertEquals(4, connectionManager.commits);
+    }
+
+    @Test
+    void everyPropertyTypeKeepsItsType() throws Exception {
+        FakeMessage message = FakeMessage.text("body");
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("string", "value");
+        properties.put("emptyString", "");
+        properties.put("int", Integer.MIN_VALUE);
+        properties.put("long", Long.MAX_VALUE);
+        properties.put("boolean", true);
+        properties.put("double", Math.PI);
+        properties.put("float", 1.5f);
+        properties.put("short", (short) -2);
+        properties.put("byte", (byte) 0x7F);
+        properties.put("JMSXGroupID", "group-1");
+        message.properties.putAll(properties);
+        // Set by the queue manager on delivery, not exported
+        message.properties.put("JMSXDeliveryCount", 3);
+        message.properties.put("JMS_IBM_PutApplType", 28);
+
+        roundTrip(message);
+
+        Map<String, Object> imported = ((FakeMessage) Proxy.getInvocationHandler(connectionManager.puts.get(0).message))
+                .properties;
+        assertEquals(properties, imported);
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            assertEquals(entry.getValue().getClass(), imported.get(entry.getKey()).getClass(), entry.getKey());
+        }
+    }
+
+    @Test
+    void expiredMessagesAreSkipped() throws Exception {
+        FakeMessage expired = FakeMessage.text("old");
+        expired.fields.put("JMSExpiration", System.currentTimeMillis() - 1);
+
+        assertEquals(1, roundTrip(expired, FakeMessage.text("new")));
+
+        assertEquals(1, importer.getExpiredCount());
+        assertEquals("new", ((TextMessage) connectionManager.puts.get(0).message).getText());
+    }
+
+    @Test
+    void corruptBlockIsRejectedAndTheOpenBatchRolledBack() throws Exception {
+        byte[] archive = export(FakeMessage.text("a"), FakeMessage.text("b"), FakeMessage.text("c"));
+        // First byte of the first block's compressed data, after the file and block headers
+        archive[8 + 16] ^= 0x01;
+
+        IOException e = assertThrows(IOException.class, () -> importArchive(archive));
+
+        assertTrue(e.getMessage().contains("Corrupt block at offset 8"), e.getMessage());
+        assertEquals(1, connectionManager.rollbacks);
+        assertEquals(0, importer.getImportedCount());
+    }
+
+    @Test
+    void truncatedBlockIsRejected() throws Exception {
+        byte[] archive = export(FakeMessage.text("a"), FakeMessage.text("b"));
+
+        assertThrows(EOFException.class, () -> importArchive(Arrays.copyOf(archive, archive.length - 1)));
+        assertEquals(1, connectionManager.rollbacks);
+    }
+
+    @Test
+    void truncatedBlockHeaderIsRejected() throws Exception {
+        byte[] archive = export(FakeMessage.text("a"));
+
+        assertThrows(EOFException.class, () -> importArchive(Arrays.copyOf(archive, 8 + 5)));
+    }
+
+    @Test
+    void otherFilesAreRejected() {
+        IOException e = assertThrows(IOException.class, () -> importArchive(new byte[]{'P', 'K', 3, 4, 0, 0, 0, 0}));
+
+        assertEquals("Not a queue archive", e.getMessage());
+    }
+
+    private long roundTrip(FakeMessage... messages) throws Exception {
+        return importArchive(export(messages));
+    }
+
+    private static byte[] export(FakeMessage... messages) throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (QueueExporter exporter = new QueueExporter(Channels.newChannel(archive), "memory", BLOCK_SIZE)) {
+            for (FakeMessage message : messages) {
+                exporter.write(message.message);
+            }
+        }
+        return archive.toByteArray();
+    }
+
+    private long importArchive(byte[] archive) throws JMSException, IOException {
+        return importer.importFrom(Channels.newChannel(new ByteArrayInputStream(archive)), "memory", 0);
+    }
+
+    private static byte[] body(Message message) throws JMSException {
+        BytesMessage bytesMessage = (BytesMessage) message;
+        bytesMessage.reset();
+        byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        return body;
+    }
+
+    private record Put(Message message, int deliveryMode, int priority, long timeToLive) {
+    }
+
+    /**
+     * Transacted session that keeps the messages put on it
+     */
+    private static final class ArchiveConnectionManager extends MQConnectionManager {
+
+        final List<Put> puts = Collections.synchronizedList(new ArrayList<>());
+        int commits;
+        int rollbacks;
+
+        ArchiveConnectionManager() {
+            super("localhost", 1414, "DEV.APP.SVRCONN", "QM1");
+        }
+
+        @Override
+        public Session createTransactedSession() {
+            return FakeMessage.proxy(Session.class, (method, args) -> switch (method.getName()) {
+                case "createQueue" -> FakeMessage.proxy(Queue.class, (m, a) -> null);
+                case "createProducer" -> FakeMessage.proxy(MessageProducer.class, (m, a) -> {
+                    if (m.getName().equals("send")) {
+                        puts.add(new Put((Message) a[0], (Integer) a[1], (Integer) a[2], (Long) a[3]));
+                    }
+                    return null;
+                });
+                case "createTextMessage" -> FakeMessage.text((String) args[0]).message;
+                case "createBytesMessage" -> FakeMessage.bytes(new byte[0]).message;
+                case "createMessage" -> FakeMessage.plain().message;
+                case "commit" -> commits++;
+                case "rollback" -> rollbacks++;
+                default -> null;
+            });
+        }
+    }
+
+    /**
+     * Message of one of the three body types, backed by maps of header fields and properties
+     */
+    private static final class FakeMessage implements InvocationHandler {
+
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        final Message message;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private byte[] body;
+
+        private FakeMessage(Class<? extends Message> type, Object body) {
+            fields.put("JMSPriority", Message.DEFAULT_PRIORITY);
+            fields.put("JMSDeliveryMode", DeliveryMode.PERSISTENT);
+            fields.put("JMSTimestamp", System.currentTimeMillis());
+            fields.put("JMSExpiration", 0L);
+            if (body instanceof String text) {
+                fields.put("Text", text);
+            } else {
+                this.body = (byte[]) body;
+            }
+            this.message = type.cast(Proxy.newProxyInstance(QueueImporterTest.class.getClassLoader(),
+                    new Class<?>[]{type}, this));
+        }
+
+        static FakeMessage text(String text) {
+            return new FakeMessage(TextMessage.class, text);
+        }
+
+        static FakeMessage bytes(byte[] body) {
+            return new FakeMessage(BytesMessage.class, body);
+        }
+
+        static FakeMessage plain() {
+            return new FakeMessage(Message.class, null);
+        }
+
+        @Override
+        public Object invoke(Object self, Method method, Object[] args) {
+            String name = method.getName();
+            switch (name) {
+                case "getPropertyNames":
+                    return Collections.enumeration(new ArrayList<>(properties.keySet()));
+                case "getObjectProperty":
+                    return properties.get((String) args[0]);
+                case "setObjectProperty":
+                    properties.put((String) args[0], args[1]);
+                    return null;
+                case "writeBytes":
+                    written.writeBytes((byte[]) args[0]);
+                    return null;
+                case "reset":
+                    if (written.size() > 0) {
+                        body = written.toByteArray();
+                        written.reset();
+                    }
+                    return null;
+                case "getBodyLength":
+                    return (long) body.length;
+                case "readBytes":
+                    System.arraycopy(body, 0, (byte[]) args[0], 0, body.length);
+                    return body.length;
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "equals":
+                    return self == args[0];
+                default:
+                    if (name.startsWith("get")) {
+                        return fields.get(name.substring(3));
+                    }
+                    if (name.startsWith("set")) {
+                        fields.put(name.substring(3), args[0]);
+                    }
+                    return null;
+            }
+        }
+
+        interface Handler {
+            Object invoke(Method method, Object[] args) throws Throwable;
+        }
+
+        static <T> T proxy(Class<T> type, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(QueueImporterTest.class.getClassLoader(), new Class<?>[]{type},
+                    (self, method, args) -> {
+                        Object result = handler.invoke(method, args);
+                        return method.getReturnType() == void.class ? null : result;
+                    }));
+        }
+    }
+}
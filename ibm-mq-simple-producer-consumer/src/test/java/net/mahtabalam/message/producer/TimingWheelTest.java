@@ -0,0 +1,101 @@
+package net.mahtabalam.message.producer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    // Spans 10 ms * 8^3 = 5120 ms
+    private final TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, 8, 3, 0);
+
+    @Test
+    void valueExpiresWithinOneTickAfterItsDeadline() {
+        List<Long> expired = new ArrayList<>();
+        wheel.add(95L, 95);
+
+        assertEquals(0, wheel.advance(90, expired::add));
+        assertEquals(1, wheel.advance(100, expired::add));
+        assertEquals(List.of(95L), expired);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    void valuesOnHigherLevelsAndBeyondTheSpanExpireOnTime() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            // Up to three times the span, so values also wait in the top level's last slot
+            long deadline = random.nextInt(15_000);
+            wheel.add(deadline, deadline);
+        }
+        Map<Long, Long> expiredAt = new HashMap<>();
+
+        long now = 0;
+        while (!wheel.isEmpty()) {
+            // Uneven steps, like a scheduler thread that wakes up late
+            now += 1 + random.nextInt(40);
+            long time = now;
+            wheel.advance(now, deadline -> expiredAt.merge(deadline, time, Math::max));
+        }
+
+        assertEquals(0, wheel.size());
+        for (Map.Entry<Long, Long> entry : expiredAt.entrySet()) {
+            long deadline = entry.getKey();
+            long expiry = entry.getValue();
+            assertTrue(expiry >= deadline, deadline + " expired early at " + expiry);
+            assertTrue(expiry <= deadline + TICK_MS + 40, deadline + " expired late at " + expiry);
+        }
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextAdvance() {
+        wheel.advance(1000, value -> { });
+        wheel.add(500L, 500);
+
+        assertEquals(1, wheel.advance(1010, value -> { }));
+    }
+
+    @Test
+    void valueAddedByTheCallbackWaitsForTheNextAdvance() {
+        List<Long> expired = new ArrayList<>();
+        wheel.add(50L, 50);
+
+        wheel.advance(100, value -> {
+            expired.add(value);
+            wheel.add(value + 1, 100);
+        });
+
+        assertEquals(List.of(50L), expired);
+        assertEquals(1, wheel.size());
+        assertEquals(1, wheel.advance(110, expired::add));
+    }
+
+    @Test
+    void forEachVisitsEveryPendingValue() {
+        wheel.add(1L, 20);
+        wheel.add(2L, 900);
+        wheel.add(3L, 9000);
+        List<Long> pending = new ArrayList<>();
+
+        wheel.forEach(pending::add);
+
+        pending.sort(null);
+        assertEquals(List.of(1L, 2L, 3L), pending);
+        assertEquals(3, wheel.size());
+    }
+
+    @Test
+    void wheelSizeMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<Long>(TICK_MS, 10, 3, 0));
+    }
+}
@@ -0,0 +1,62 @@
+package net.mahtabalam.message.producer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void idleBucketAllowsBurstSizePermits() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(), "permit " + i);
+        }
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void acquireWaitsForTheSustainedRate() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 21; i++) {
+            limiter.acquire();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // The first permit is free, the next 20 are 10 ms apart
+        assertTrue(elapsedMs >= 190, "took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void zeroRateIsUnlimited() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire());
+            assertEquals(0, limiter.acquire());
+        }
+        assertEquals(0, limiter.getRate());
+    }
+
+    @Test
+    void rateChangeTakesEffect() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1);
+
+        limiter.setRate(250);
+
+        assertEquals(250, limiter.getRate(), 0.001);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void burstSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(10, 0));
+    }
+}